@@ -0,0 +1,136 @@
+package org.openmuc.framework.app.gateway.config;
+
+import java.util.Objects;
+
+/**
+ * IEC 104 server settings read from the mapping file.
+ * <p>
+ * Bind address and port are only applied when the server is (re)activated,
+ * common address, connection limit, cycle period, command and select timeout are picked up on every reload.
+ * The SOE buffer is resized on reload, snapshot settings are only read once at startup.
+ */
+public class Iec104Settings {
+
+    public static final String DEFAULT_BIND_IP = "127.0.0.1";
+    public static final int DEFAULT_PORT = 2404;
+    public static final int DEFAULT_COMMON_ADDRESS = 1;
+    public static final int DEFAULT_MAX_CONNECTIONS = 10;
+    public static final int DEFAULT_SOE_BUFFER_SIZE = 4096;
+    public static final int DEFAULT_CYCLE_PERIOD = 0;
+    public static final String DEFAULT_SNAPSHOT_FILE = "";
+    public static final int DEFAULT_SNAPSHOT_INTERVAL = 10;
+    public static final int DEFAULT_COMMAND_TIMEOUT = 10;
+    public static final int DEFAULT_SELECT_TIMEOUT = 30;
+
+    private final String bindIp;
+    private final int port;
+    private final int commonAddress;
+    private final int maxConnections;
+
+    /**
+     * Events kept in the sequence-of-events buffer.
+     */
+    private final int soeBufferSize;
+
+    /**
+     * Seconds in which all cyclic points are transmitted once (0 = no cyclic transmission).
+     */
+    private final int cyclePeriod;
+
+    /**
+     * Process image snapshot for warm restarts (empty = disabled), read once at startup.
+     */
+    private final String snapshotFile;
+
+    /**
+     * Seconds between two snapshots of the process image.
+     */
+    private final int snapshotInterval;
+
+    /**
+     * Seconds a command write may take before the command is confirmed negatively.
+     */
+    private final int commandTimeout;
+
+    /**
+     * Seconds in which a select-before-operate command must be executed after the select.
+     */
+    private final int selectTimeout;
+
+    public Iec104Settings(String bindIp, int port, int commonAddress, int maxConnections, int soeBufferSize,
+                          int cyclePeriod, String snapshotFile, int snapshotInterval, int commandTimeout,
+                          int selectTimeout) {
+        this.bindIp = bindIp;
+        this.port = port;
+        this.commonAddress = commonAddress;
+        this.maxConnections = maxConnections;
+        this.soeBufferSize = soeBufferSize;
+        this.cyclePeriod = cyclePeriod;
+        this.snapshotFile = snapshotFile;
+        this.snapshotInterval = snapshotInterval;
+        this.commandTimeout = commandTimeout;
+        this.selectTimeout = selectTimeout;
+    }
+
+    public static Iec104Settings defaults() {
+        return new Iec104Settings(DEFAULT_BIND_IP, DEFAULT_PORT, DEFAULT_COMMON_ADDRESS, DEFAULT_MAX_CONNECTIONS,
+                DEFAULT_SOE_BUFFER_SIZE, DEFAULT_CYCLE_PERIOD, DEFAULT_SNAPSHOT_FILE, DEFAULT_SNAPSHOT_INTERVAL,
+                DEFAULT_COMMAND_TIMEOUT, DEFAULT_SELECT_TIMEOUT);
+    }
+
+    public String getBindIp() {
+        return bindIp;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public int getCommonAddress() {
+        return commonAddress;
+    }
+
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    public int getSoeBufferSize() {
+        return soeBufferSize;
+    }
+
+    public int getCyclePeriod() {
+        return cyclePeriod;
+    }
+
+    public String getSnapshotFile() {
+        return snapshotFile;
+    }
+
+    public int getSnapshotInterval() {
+        return snapshotInterval;
+    }
+
+    public int getCommandTimeout() {
+        return commandTimeout;
+    }
+
+    public int getSelectTimeout() {
+        return selectTimeout;
+    }
+
+    /**
+     * True if the listening socket would have to be reopened to apply the other settings.
+     */
+    public boolean requiresRebind(Iec104Settings other) {
+        return port != other.port || !Objects.equals(bindIp, other.bindIp);
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "Iec104Settings[bind=%s:%d, ca=%d, maxConnections=%d, soeBuffer=%d, cycle=%ds, snapshot=%s/%ds, "
+                        + "commandTimeout=%ds, selectTimeout=%ds]",
+                bindIp, port, commonAddress, maxConnections, soeBufferSize, cyclePeriod, snapshotFile,
+                snapshotInterval, commandTimeout, selectTimeout);
+    }
+}
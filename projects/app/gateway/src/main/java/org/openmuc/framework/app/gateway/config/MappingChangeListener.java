@@ -0,0 +1,16 @@
+package org.openmuc.framework.app.gateway.config;
+
+import java.util.Set;
+
+/**
+ * Notified after a new point table has been swapped in.
+ */
+public interface MappingChangeListener {
+
+    /**
+     * @param oldTable          table that was active before the reload
+     * @param newTable          table that is active now
+     * @param changedChannelIds channels added, removed or remapped by the reload
+     */
+    void mappingChanged(PointTable oldTable, PointTable newTable, Set<String> changedChannelIds);
+}
@@ -0,0 +1,394 @@
+package org.openmuc.framework.app.gateway.config;
+
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.SAXParserFactory;
+
+import org.openmuc.framework.app.gateway.core.CounterStore;
+import org.openmuc.framework.app.gateway.core.SoeBuffer;
+import org.openmuc.framework.app.gateway.dto.CommandMapping;
+import org.openmuc.framework.app.gateway.dto.Mapping;
+import org.openmuc.framework.app.gateway.output.iec104.Iec104AsduBuilder;
+import org.openmuc.framework.config.ParseException;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.xml.sax.Attributes;
+import org.xml.sax.Locator;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Parses the gateway mapping file.
+ * <p>
+ * FORMAT:
+ * <pre>
+ * &lt;gateway&gt;
+ *   &lt;iec104 bindIp="127.0.0.1" port="2404" commonAddress="1" maxConnections="10"
+ *           soeBufferSize="4096" cyclePeriod="60" snapshotFile="data/gateway/process-image.snap"
+ *           snapshotInterval="10" commandTimeout="10" selectTimeout="30"/&gt;
+ *   &lt;modbusSlave bindIp="127.0.0.1" port="502" poolSize="5"/&gt;
+ *   &lt;mqttPublisher host="localhost" port="1883" topic="gateway" parser="openmuc"/&gt;
+ *   &lt;redundancyGroup name="controlCentre" clients="10.0.0.11 10.0.0.12"/&gt;
+ *   &lt;point channelId="modbus_register1" source="MODBUS_TCP" ioa="3001"
+ *          asduType="M_ME_NC_1" dataType="INT16" scalingFactor="0.1" offset="0"
+ *          description="Holding Register 1000" deadband="0.5" cyclic="true"/&gt;
+ *   &lt;point channelId="breaker1" source="MODBUS_TCP" ioa="4001" asduType="M_SP_TB_1"&gt;
+ *     &lt;command ioa="5001" type="C_SC_NA_1" selectBeforeOperate="true"/&gt;
+ *   &lt;/point&gt;
+ *   &lt;point channelId="energy1" source="MODBUS_TCP" ioa="6001" asduType="M_IT_TB_1" counterGroup="1"/&gt;
+ *   &lt;station commonAddress="2" port="2405"&gt;
+ *     &lt;point channelId="substation2_power" source="IEC61850" ioa="1001"/&gt;
+ *   &lt;/station&gt;
+ * &lt;/gateway&gt;
+ * </pre>
+ * Only channelId, source and ioa are mandatory on a point. A point may carry
+ * one command that writes to the same channel. Points outside a station
+ * belong to the station of the iec104 common address; the port of a station
+ * is optional. Integrated totals (M_IT_*) belong to counter group 1..4
+ * (default 1). Without a modbusSlave or mqttPublisher element the respective
+ * northbound output is not started. Errors in an element name the line of the
+ * element in the file, conflicts between points (duplicate IOAs or channels)
+ * name the channels involved.
+ */
+public class MappingFileParser {
+
+    private static final String ROOT_TAG = "gateway";
+    private static final String IEC104_TAG = "iec104";
+    private static final String STATION_TAG = "station";
+    private static final String MODBUS_SLAVE_TAG = "modbusSlave";
+    private static final String MQTT_PUBLISHER_TAG = "mqttPublisher";
+    private static final String REDUNDANCY_GROUP_TAG = "redundancyGroup";
+    private static final String POINT_TAG = "point";
+    private static final String COMMAND_TAG = "command";
+    private static final String LINE_KEY = "line";
+
+    private MappingFileParser() {
+    }
+
+    public static PointTable parse(File mappingFile) throws ParseException {
+        Document document;
+        try {
+            document = readDocument(mappingFile);
+        } catch (Exception e) {
+            throw new ParseException("Unable to read mapping file " + mappingFile + ": " + e.getMessage(), e);
+        }
+
+        Element root = document.getDocumentElement();
+        if (!ROOT_TAG.equals(root.getNodeName())) {
+            throw new ParseException("Root node of mapping file is not of type \"" + ROOT_TAG + "\"");
+        }
+
+        Iec104Settings settings = Iec104Settings.defaults();
+        List<Element> pointElements = new ArrayList<>();
+        List<Element> stationElements = new ArrayList<>();
+        List<RedundancyGroupSettings> redundancyGroups = new ArrayList<>();
+        ModbusSlaveSettings modbusSlave = null;
+        MqttPublisherSettings mqttPublisher = null;
+
+        NodeList children = root.getChildNodes();
+        for (int i = 0; i < children.getLength(); i++) {
+            Node child = children.item(i);
+            if (child.getNodeType() != Node.ELEMENT_NODE) {
+                continue;
+            }
+
+            switch (child.getNodeName()) {
+                case IEC104_TAG:
+                    settings = parseSettings((Element) child);
+                    break;
+                case MODBUS_SLAVE_TAG:
+                    modbusSlave = parseModbusSlave((Element) child);
+                    break;
+                case MQTT_PUBLISHER_TAG:
+                    mqttPublisher = parseMqttPublisher((Element) child);
+                    break;
+                case REDUNDANCY_GROUP_TAG:
+                    redundancyGroups.add(parseRedundancyGroup((Element) child));
+                    break;
+                case STATION_TAG:
+                    stationElements.add((Element) child);
+                    break;
+                case POINT_TAG:
+                    pointElements.add((Element) child);
+                    break;
+                default:
+                    throw new ParseException(
+                            line((Element) child) + "Found unknown tag in mapping file: " + child.getNodeName());
+            }
+        }
+
+        // Points are parsed after the settings so they can inherit the station common address
+        List<Mapping> mappings = new ArrayList<>(pointElements.size());
+        List<CommandMapping> commands = new ArrayList<>();
+        parsePoints(pointElements, settings.getCommonAddress(), mappings, commands);
+
+        List<StationSettings> stations = new ArrayList<>(stationElements.size());
+        for (Element stationElement : stationElements) {
+            requiredAttribute(stationElement, "commonAddress");
+            StationSettings station = new StationSettings(
+                    intAttribute(stationElement, "commonAddress", 0),
+                    intAttribute(stationElement, "port", StationSettings.SHARED_PORT));
+            stations.add(station);
+
+            List<Element> stationPoints = new ArrayList<>();
+            NodeList stationChildren = stationElement.getChildNodes();
+            for (int i = 0; i < stationChildren.getLength(); i++) {
+                Node child = stationChildren.item(i);
+                if (child.getNodeType() != Node.ELEMENT_NODE) {
+                    continue;
+                }
+                if (!POINT_TAG.equals(child.getNodeName())) {
+                    throw new ParseException(
+                            line((Element) child) + "Found unknown tag in station: " + child.getNodeName());
+                }
+                stationPoints.add((Element) child);
+            }
+            parsePoints(stationPoints, station.getCommonAddress(), mappings, commands);
+        }
+
+        return PointTable.create(settings, stations, redundancyGroups, modbusSlave, mqttPublisher, mappings,
+                commands);
+    }
+
+    /**
+     * Reads the elements and attributes of the file into a DOM, every element
+     * keeps its line in the file as user data. A DOCTYPE is rejected, so the
+     * file cannot pull in external entities or DTDs.
+     */
+    private static Document readDocument(File mappingFile) throws Exception {
+        SAXParserFactory parserFactory = SAXParserFactory.newInstance();
+        parserFactory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+        parserFactory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+        parserFactory.setFeature("http://xml.org/sax/features/external-general-entities", false);
+        parserFactory.setFeature("http://xml.org/sax/features/external-parameter-entities", false);
+
+        Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+        parserFactory.newSAXParser().parse(mappingFile, new DefaultHandler() {
+
+            private final Deque<Node> parents = new ArrayDeque<>();
+            private Locator locator;
+
+            @Override
+            public void setDocumentLocator(Locator locator) {
+                this.locator = locator;
+            }
+
+            @Override
+            public void startElement(String uri, String localName, String qName, Attributes attributes) {
+                Element element = document.createElement(qName);
+                for (int i = 0; i < attributes.getLength(); i++) {
+                    element.setAttribute(attributes.getQName(i), attributes.getValue(i));
+                }
+                if (locator != null) {
+                    element.setUserData(LINE_KEY, locator.getLineNumber(), null);
+                }
+                (parents.isEmpty() ? document : parents.peek()).appendChild(element);
+                parents.push(element);
+            }
+
+            @Override
+            public void endElement(String uri, String localName, String qName) {
+                parents.pop();
+            }
+        });
+        return document;
+    }
+
+    /**
+     * "line n: " for an element read by {@link #readDocument(File)}.
+     */
+    private static String line(Element element) {
+        Object line = element.getUserData(LINE_KEY);
+        return line != null ? "line " + line + ": " : "";
+    }
+
+    private static ModbusSlaveSettings parseModbusSlave(Element element) throws ParseException {
+        return new ModbusSlaveSettings(
+                stringAttribute(element, "bindIp", ModbusSlaveSettings.DEFAULT_BIND_IP),
+                intAttribute(element, "port", ModbusSlaveSettings.DEFAULT_PORT),
+                intAttribute(element, "poolSize", ModbusSlaveSettings.DEFAULT_POOL_SIZE));
+    }
+
+    private static MqttPublisherSettings parseMqttPublisher(Element element) throws ParseException {
+        return new MqttPublisherSettings(
+                stringAttribute(element, "host", MqttPublisherSettings.DEFAULT_HOST),
+                intAttribute(element, "port", MqttPublisherSettings.DEFAULT_PORT),
+                stringAttribute(element, "username", null),
+                stringAttribute(element, "password", ""),
+                stringAttribute(element, "topic", MqttPublisherSettings.DEFAULT_TOPIC),
+                stringAttribute(element, "parser", MqttPublisherSettings.DEFAULT_PARSER),
+                stringAttribute(element, "persistenceDirectory", MqttPublisherSettings.DEFAULT_PERSISTENCE_DIRECTORY),
+                intAttribute(element, "queueSize", MqttPublisherSettings.DEFAULT_QUEUE_SIZE));
+    }
+
+    private static RedundancyGroupSettings parseRedundancyGroup(Element element) throws ParseException {
+        String name = requiredAttribute(element, "name");
+        Set<String> clients = new LinkedHashSet<>();
+        for (String client : requiredAttribute(element, "clients").split("[,\\s]+")) {
+            if (!client.isEmpty()) {
+                clients.add(client);
+            }
+        }
+        return new RedundancyGroupSettings(name, clients);
+    }
+
+    private static void parsePoints(List<Element> pointElements, int commonAddress, List<Mapping> mappings,
+                                    List<CommandMapping> commands) throws ParseException {
+        for (Element pointElement : pointElements) {
+            Mapping mapping = parsePoint(pointElement, commonAddress);
+            mappings.add(mapping);
+
+            Element commandElement = childElement(pointElement, COMMAND_TAG);
+            if (commandElement != null) {
+                commands.add(parseCommand(commandElement, mapping));
+            }
+        }
+    }
+
+    private static Iec104Settings parseSettings(Element element) throws ParseException {
+        return new Iec104Settings(
+                stringAttribute(element, "bindIp", Iec104Settings.DEFAULT_BIND_IP),
+                intAttribute(element, "port", Iec104Settings.DEFAULT_PORT),
+                intAttribute(element, "commonAddress", Iec104Settings.DEFAULT_COMMON_ADDRESS),
+                intAttribute(element, "maxConnections", Iec104Settings.DEFAULT_MAX_CONNECTIONS),
+                intAttribute(element, "soeBufferSize", Iec104Settings.DEFAULT_SOE_BUFFER_SIZE),
+                intAttribute(element, "cyclePeriod", Iec104Settings.DEFAULT_CYCLE_PERIOD),
+                stringAttribute(element, "snapshotFile", Iec104Settings.DEFAULT_SNAPSHOT_FILE),
+                intAttribute(element, "snapshotInterval", Iec104Settings.DEFAULT_SNAPSHOT_INTERVAL),
+                intAttribute(element, "commandTimeout", Iec104Settings.DEFAULT_COMMAND_TIMEOUT),
+                intAttribute(element, "selectTimeout", Iec104Settings.DEFAULT_SELECT_TIMEOUT));
+    }
+
+    private static Mapping parsePoint(Element element, int commonAddress) throws ParseException {
+        String channelId = requiredAttribute(element, "channelId");
+        String source = requiredAttribute(element, "source");
+        requiredAttribute(element, "ioa");
+
+        String asduType = stringAttribute(element, "asduType", "M_ME_NC_1");
+        if (!Iec104AsduBuilder.isSupportedType(asduType)) {
+            throw new ParseException(line(element) + "Channel " + channelId + ": unknown asduType " + asduType);
+        }
+        boolean cyclic = Boolean.parseBoolean(stringAttribute(element, "cyclic", "false"));
+        if (cyclic && SoeBuffer.isEventType(asduType)) {
+            throw new ParseException(line(element) + "Channel " + channelId
+                    + ": cyclic transmission needs a type without time tag, not " + asduType);
+        }
+
+        int counterGroup = 0;
+        if (CounterStore.isCounterType(asduType)) {
+            if (cyclic) {
+                throw new ParseException(line(element) + "Channel " + channelId
+                        + ": integrated totals are sent on counter interrogation, not cyclically");
+            }
+            counterGroup = intAttribute(element, "counterGroup", 1);
+            if (counterGroup < 1 || counterGroup > 4) {
+                throw new ParseException(line(element) + "Channel " + channelId + ": counter group out of range 1..4: "
+                        + counterGroup);
+            }
+        }
+
+        return new Mapping(
+                channelId,
+                source,
+                intAttribute(element, "ioa", 0),
+                intAttribute(element, "commonAddress", commonAddress),
+                asduType,
+                stringAttribute(element, "dataType", "FLOAT"),
+                doubleAttribute(element, "scalingFactor", 1.0),
+                doubleAttribute(element, "offset", 0.0),
+                stringAttribute(element, "description", null),
+                doubleAttribute(element, "deadband", 0.0),
+                cyclic,
+                counterGroup);
+    }
+
+    private static CommandMapping parseCommand(Element element, Mapping mapping) throws ParseException {
+        requiredAttribute(element, "ioa");
+        String type = requiredAttribute(element, "type");
+
+        switch (type) {
+            case "C_SC_NA_1":
+            case "C_DC_NA_1":
+            case "C_SE_NC_1":
+            case "C_SE_NB_1":
+                break;
+            default:
+                throw new ParseException(line(element) + "Unsupported command type for channel "
+                        + mapping.getChannelId() + ": " + type);
+        }
+
+        return new CommandMapping(
+                mapping.getChannelId(),
+                intAttribute(element, "ioa", 0),
+                mapping.getCommonAddress(),
+                type,
+                Boolean.parseBoolean(stringAttribute(element, "selectBeforeOperate", "false")),
+                mapping.getScalingFactor(),
+                mapping.getOffset());
+    }
+
+    private static Element childElement(Element parent, String tagName) throws ParseException {
+        Element found = null;
+        NodeList children = parent.getChildNodes();
+        for (int i = 0; i < children.getLength(); i++) {
+            Node child = children.item(i);
+            if (child.getNodeType() != Node.ELEMENT_NODE) {
+                continue;
+            }
+            if (!tagName.equals(child.getNodeName()) || found != null) {
+                throw new ParseException(line((Element) child) + "Unexpected <" + child.getNodeName() + "> in <"
+                        + parent.getNodeName() + ">");
+            }
+            found = (Element) child;
+        }
+        return found;
+    }
+
+    private static String requiredAttribute(Element element, String name) throws ParseException {
+        String value = element.getAttribute(name).trim();
+        if (value.isEmpty()) {
+            throw new ParseException(
+                    line(element) + "Missing attribute \"" + name + "\" in <" + element.getNodeName() + ">");
+        }
+        return value;
+    }
+
+    private static String stringAttribute(Element element, String name, String defaultValue) {
+        String value = element.getAttribute(name).trim();
+        return value.isEmpty() ? defaultValue : value;
+    }
+
+    private static int intAttribute(Element element, String name, int defaultValue) throws ParseException {
+        String value = element.getAttribute(name).trim();
+        if (value.isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new ParseException(line(element) + "Attribute \"" + name + "\" is not an integer: " + value, e);
+        }
+    }
+
+    private static double doubleAttribute(Element element, String name, double defaultValue)
+            throws ParseException {
+        String value = element.getAttribute(name).trim();
+        if (value.isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            throw new ParseException(line(element) + "Attribute \"" + name + "\" is not a number: " + value, e);
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package org.openmuc.framework.app.gateway.config;
+
+import java.io.File;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.openmuc.framework.config.ParseException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Holds the active point table and hot-reloads it from the mapping file.
+ * <p>
+ * RELOAD:
+ * - The file is polled for modification every RELOAD_CHECK_INTERVAL_MS
+ * - A new table is parsed and validated completely before it is swapped in
+ * - An invalid file is logged and ignored, the previous table stays active
+ * - Listeners get the set of changed channels, so unchanged bindings and
+ *   IEC 104 sessions are left alone
+ * <p>
+ * The file location is taken from the system property
+ * {@value #MAPPING_FILE_PROPERTY} (default: {@value #DEFAULT_MAPPING_FILE}).
+ */
+public class MappingRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(MappingRegistry.class);
+
+    public static final String MAPPING_FILE_PROPERTY = "org.openmuc.framework.app.gateway.mappingfile";
+    public static final String DEFAULT_MAPPING_FILE = "conf/gateway-mappings.xml";
+
+    private static final long RELOAD_CHECK_INTERVAL_MS = 2000;
+
+    private final File mappingFile;
+    private final CopyOnWriteArrayList<MappingChangeListener> listeners = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService reloadExecutor;
+
+    private volatile PointTable pointTable;
+    private long loadedModificationTime;
+
+    private static volatile MappingRegistry instance;
+    private static int users = 0;
+
+    private MappingRegistry(File mappingFile) {
+        this.mappingFile = mappingFile;
+        this.pointTable = PointTable.empty(Iec104Settings.defaults());
+
+        if (!reload()) {
+            logger.error("No valid mapping loaded from {}, gateway starts without points",
+                    mappingFile.getAbsolutePath());
+        }
+
+        this.reloadExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "MappingRegistry-Reload");
+            t.setDaemon(true);
+            return t;
+        });
+        this.reloadExecutor.scheduleWithFixedDelay(this::checkForModification,
+                RELOAD_CHECK_INTERVAL_MS, RELOAD_CHECK_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    public static MappingRegistry getInstance() {
+        if (instance == null) {
+            synchronized (MappingRegistry.class) {
+                if (instance == null) {
+                    String fileName = System.getProperty(MAPPING_FILE_PROPERTY, DEFAULT_MAPPING_FILE);
+                    instance = new MappingRegistry(new File(fileName));
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Get the instance for a component, which must call release() on
+     * deactivation.
+     */
+    public static MappingRegistry acquire() {
+        synchronized (MappingRegistry.class) {
+            users++;
+            return getInstance();
+        }
+    }
+
+    /**
+     * Release the instance of a component. The last release stops the file
+     * polling, the next acquire() loads the file again.
+     */
+    public static void release() {
+        MappingRegistry released = null;
+        synchronized (MappingRegistry.class) {
+            if (users > 0 && --users == 0) {
+                released = instance;
+                instance = null;
+            }
+        }
+        if (released != null) {
+            released.shutdown();
+        }
+    }
+
+    /**
+     * Currently active table. Callers should read it once per operation
+     * so they work on a consistent snapshot.
+     */
+    public PointTable getPointTable() {
+        return pointTable;
+    }
+
+    public void addMappingChangeListener(MappingChangeListener listener) {
+        if (listener != null) {
+            listeners.addIfAbsent(listener);
+        }
+    }
+
+    public void removeMappingChangeListener(MappingChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    private void checkForModification() {
+        try {
+            if (mappingFile.lastModified() != loadedModificationTime) {
+                logger.info("Mapping file {} modified, reloading", mappingFile);
+                reload();
+            }
+        } catch (Exception e) {
+            logger.error("Error checking mapping file: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Parse the mapping file and swap it in atomically.
+     *
+     * @return true if a new table is active
+     */
+    public synchronized boolean reload() {
+        long modificationTime = mappingFile.lastModified();
+        // remember the attempt, an invalid file is not re-parsed until it changes again
+        loadedModificationTime = modificationTime;
+
+        if (!mappingFile.exists()) {
+            logger.warn("Mapping file not found: {}", mappingFile.getAbsolutePath());
+            return false;
+        }
+
+        PointTable newTable;
+        try {
+            newTable = MappingFileParser.parse(mappingFile);
+        } catch (ParseException e) {
+            logger.error("Rejected mapping file {}: {}", mappingFile, e.getMessage());
+            return false;
+        }
+
+        PointTable oldTable = pointTable;
+        Set<String> changed = oldTable.changedChannels(newTable);
+        pointTable = newTable;
+
+        logger.info("Mapping loaded: {} ({} channel(s) changed)", newTable, changed.size());
+
+        for (MappingChangeListener listener : listeners) {
+            try {
+                listener.mappingChanged(oldTable, newTable, changed);
+            } catch (Exception e) {
+                logger.error("Mapping listener error: {}", e.getMessage(), e);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Shutdown (stops file polling).
+     */
+    public void shutdown() {
+        reloadExecutor.shutdownNow();
+        listeners.clear();
+    }
+}
@@ -0,0 +1,56 @@
+package org.openmuc.framework.app.gateway.config;
+
+import java.util.Objects;
+
+/**
+ * Northbound Modbus TCP slave settings read from the mapping file.
+ * <p>
+ * The register map is generated from the points, every station is served
+ * as the Modbus unit with its common address. Bind address, port and pool
+ * size are only applied when the slave is (re)activated.
+ */
+public class ModbusSlaveSettings {
+
+    public static final String DEFAULT_BIND_IP = "127.0.0.1";
+    public static final int DEFAULT_PORT = 502;
+    public static final int DEFAULT_POOL_SIZE = 5;
+
+    private final String bindIp;
+    private final int port;
+
+    /**
+     * Request handler threads of the slave.
+     */
+    private final int poolSize;
+
+    public ModbusSlaveSettings(String bindIp, int port, int poolSize) {
+        this.bindIp = bindIp;
+        this.port = port;
+        this.poolSize = poolSize;
+    }
+
+    public String getBindIp() {
+        return bindIp;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    /**
+     * True if the slave would have to be restarted to apply the other settings.
+     */
+    public boolean requiresRebind(ModbusSlaveSettings other) {
+        return other == null || port != other.port || poolSize != other.poolSize
+                || !Objects.equals(bindIp, other.bindIp);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ModbusSlaveSettings[bind=%s:%d, poolSize=%d]", bindIp, port, poolSize);
+    }
+}
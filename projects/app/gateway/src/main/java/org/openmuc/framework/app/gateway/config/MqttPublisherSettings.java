@@ -0,0 +1,102 @@
+package org.openmuc.framework.app.gateway.config;
+
+import java.util.Objects;
+
+/**
+ * Northbound MQTT publisher settings read from the mapping file.
+ * <p>
+ * Every station publishes its coalesced changes to topic/&lt;ca&gt;/data and a
+ * full state to topic/&lt;ca&gt;/birth after each connect. The payload is encoded
+ * by the ParserService with the configured parser ID. Only applied when
+ * the publisher is (re)activated.
+ */
+public class MqttPublisherSettings {
+
+    public static final String DEFAULT_HOST = "localhost";
+    public static final int DEFAULT_PORT = 1883;
+    public static final String DEFAULT_TOPIC = "gateway";
+    public static final String DEFAULT_PARSER = "openmuc";
+    public static final String DEFAULT_PERSISTENCE_DIRECTORY = "data/gateway/mqtt";
+    public static final int DEFAULT_QUEUE_SIZE = 1024;
+
+    private final String host;
+    private final int port;
+    private final String username;
+    private final String password;
+    private final String topic;
+    private final String parser;
+
+    /**
+     * Directory for messages buffered while the broker is unreachable.
+     */
+    private final String persistenceDirectory;
+
+    /**
+     * Station batches waiting for the publisher thread, further batches are dropped.
+     */
+    private final int queueSize;
+
+    public MqttPublisherSettings(String host, int port, String username, String password, String topic,
+                                 String parser, String persistenceDirectory, int queueSize) {
+        this.host = host;
+        this.port = port;
+        this.username = username;
+        this.password = password;
+        this.topic = topic;
+        this.parser = parser;
+        this.persistenceDirectory = persistenceDirectory;
+        this.queueSize = queueSize;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    /**
+     * Broker user, null for anonymous access.
+     */
+    public String getUsername() {
+        return username;
+    }
+
+    public String getPassword() {
+        return password;
+    }
+
+    public String getTopic() {
+        return topic;
+    }
+
+    public String getParser() {
+        return parser;
+    }
+
+    public String getPersistenceDirectory() {
+        return persistenceDirectory;
+    }
+
+    public int getQueueSize() {
+        return queueSize;
+    }
+
+    /**
+     * True if the publisher would have to be restarted to apply the other settings.
+     */
+    public boolean requiresReconnect(MqttPublisherSettings other) {
+        return other == null || port != other.port || queueSize != other.queueSize
+                || !Objects.equals(host, other.host) || !Objects.equals(username, other.username)
+                || !Objects.equals(password, other.password) || !Objects.equals(topic, other.topic)
+                || !Objects.equals(parser, other.parser)
+                || !Objects.equals(persistenceDirectory, other.persistenceDirectory);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("MqttPublisherSettings[broker=%s:%d, user=%s, topic=%s, parser=%s, queue=%d]", host,
+                port, username, topic, parser, queueSize);
+    }
+}
@@ -0,0 +1,329 @@
+package org.openmuc.framework.app.gateway.config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.openmuc.framework.app.gateway.dto.CommandMapping;
+import org.openmuc.framework.app.gateway.dto.Mapping;
+import org.openmuc.framework.config.ParseException;
+
+/**
+ * Immutable snapshot of the point mapping.
+ * <p>
+ * Every mapped point gets a slot index (0..size-1). Channel IDs and
+ * (common address, IOA) pairs resolve to their slot through hash tables,
+ * so lookups are O(1) and a reload simply swaps in a new table.
+ * <p>
+ * IOAs are unique per station, different stations may reuse the same IOA.
+ */
+public class PointTable {
+
+    private static final int NO_SLOT = -1;
+
+    /**
+     * Global common address, addresses all stations of the gateway.
+     */
+    public static final int BROADCAST_ADDRESS = 0xFFFF;
+
+    private final Iec104Settings settings;
+    private final Mapping[] slots;
+    private final Map<String, Integer> slotByChannel;
+    private final Map<Long, Integer> slotByAddress;
+    private final Map<Long, CommandMapping> commandByAddress;
+    private final Map<Integer, StationSettings> stations;
+    private final Map<String, String> redundancyGroupByClient;
+    private final Map<Integer, List<Mapping>> cyclicByStation;
+    private final Map<Integer, List<Mapping>> countersByStation;
+    private final ModbusSlaveSettings modbusSlave;
+    private final MqttPublisherSettings mqttPublisher;
+
+    private PointTable(Iec104Settings settings, Mapping[] slots, Map<String, Integer> slotByChannel,
+                       Map<Long, Integer> slotByAddress, Map<Long, CommandMapping> commandByAddress,
+                       Map<Integer, StationSettings> stations, Map<String, String> redundancyGroupByClient,
+                       Map<Integer, List<Mapping>> cyclicByStation, Map<Integer, List<Mapping>> countersByStation,
+                       ModbusSlaveSettings modbusSlave, MqttPublisherSettings mqttPublisher) {
+        this.settings = settings;
+        this.slots = slots;
+        this.slotByChannel = slotByChannel;
+        this.slotByAddress = slotByAddress;
+        this.commandByAddress = commandByAddress;
+        this.stations = stations;
+        this.redundancyGroupByClient = redundancyGroupByClient;
+        this.cyclicByStation = cyclicByStation;
+        this.countersByStation = countersByStation;
+        this.modbusSlave = modbusSlave;
+        this.mqttPublisher = mqttPublisher;
+    }
+
+    /**
+     * Build a table, rejecting duplicate channel IDs and duplicate IOAs within a station.
+     * Command IOAs share the address space with the monitored IOAs. Stations that are
+     * referenced by points but not declared are served on the shared listener.
+     */
+    public static PointTable create(Iec104Settings settings, List<StationSettings> declaredStations,
+                                    List<RedundancyGroupSettings> redundancyGroups, ModbusSlaveSettings modbusSlave,
+                                    MqttPublisherSettings mqttPublisher, List<Mapping> mappings,
+                                    List<CommandMapping> commands) throws ParseException {
+        Mapping[] slots = mappings.toArray(new Mapping[0]);
+        Map<String, Integer> slotByChannel = new HashMap<>(slots.length * 2);
+        Map<Long, Integer> slotByAddress = new HashMap<>(slots.length * 2);
+
+        Map<Integer, StationSettings> stations = new LinkedHashMap<>();
+        Set<Integer> dedicatedPorts = new HashSet<>();
+        for (StationSettings station : declaredStations) {
+            if (station.getCommonAddress() <= 0 || station.getCommonAddress() >= BROADCAST_ADDRESS) {
+                throw new ParseException("Common address out of range: " + station.getCommonAddress());
+            }
+            if (stations.put(station.getCommonAddress(), station) != null) {
+                throw new ParseException("Station " + station.getCommonAddress() + " is declared more than once");
+            }
+            if (station.getPort() != StationSettings.SHARED_PORT && (station.getPort() == settings.getPort()
+                    || !dedicatedPorts.add(station.getPort()))) {
+                throw new ParseException("Port " + station.getPort() + " of station " + station.getCommonAddress()
+                        + " is already in use");
+            }
+        }
+
+        for (int slot = 0; slot < slots.length; slot++) {
+            Mapping mapping = slots[slot];
+
+            if (mapping.getIoa() <= 0 || mapping.getIoa() > 0xFFFFFF) {
+                throw new ParseException("IOA out of range for channel " + mapping.getChannelId()
+                        + ": " + mapping.getIoa());
+            }
+
+            Integer previous = slotByAddress.put(address(mapping.getCommonAddress(), mapping.getIoa()), slot);
+            if (previous != null) {
+                throw new ParseException("Duplicate IOA " + mapping.getIoa() + " for channels "
+                        + slots[previous].getChannelId() + " and " + mapping.getChannelId());
+            }
+            addImplicitStation(stations, mapping.getCommonAddress());
+
+            previous = slotByChannel.put(mapping.getChannelId(), slot);
+            if (previous != null) {
+                throw new ParseException("Channel " + mapping.getChannelId() + " is mapped more than once");
+            }
+        }
+
+        Map<Long, CommandMapping> commandByAddress = new HashMap<>(commands.size() * 2);
+        for (CommandMapping command : commands) {
+            if (command.getIoa() <= 0 || command.getIoa() > 0xFFFFFF) {
+                throw new ParseException("IOA out of range for command of channel " + command.getChannelId()
+                        + ": " + command.getIoa());
+            }
+            long address = address(command.getCommonAddress(), command.getIoa());
+            if (slotByAddress.containsKey(address) || commandByAddress.put(address, command) != null) {
+                throw new ParseException("Duplicate IOA " + command.getIoa() + " for command of channel "
+                        + command.getChannelId());
+            }
+        }
+
+        // The default station always exists, even without points
+        addImplicitStation(stations, settings.getCommonAddress());
+
+        Map<String, String> redundancyGroupByClient = new HashMap<>();
+        Set<String> groupNames = new HashSet<>();
+        for (RedundancyGroupSettings group : redundancyGroups) {
+            if (!groupNames.add(group.getName())) {
+                throw new ParseException("Redundancy group " + group.getName() + " is declared more than once");
+            }
+            for (String clientAddress : group.getClientAddresses()) {
+                String previous = redundancyGroupByClient.put(clientAddress, group.getName());
+                if (previous != null) {
+                    throw new ParseException("Client " + clientAddress + " is member of redundancy groups "
+                            + previous + " and " + group.getName());
+                }
+            }
+        }
+
+        Map<Integer, List<Mapping>> cyclicByStation = new HashMap<>();
+        Map<Integer, List<Mapping>> countersByStation = new HashMap<>();
+        for (Mapping mapping : slots) {
+            if (mapping.isCyclic()) {
+                cyclicByStation.computeIfAbsent(mapping.getCommonAddress(), ca -> new ArrayList<>()).add(mapping);
+            }
+            if (mapping.getCounterGroup() > 0) {
+                countersByStation.computeIfAbsent(mapping.getCommonAddress(), ca -> new ArrayList<>()).add(mapping);
+            }
+        }
+
+        return new PointTable(settings, slots, slotByChannel, slotByAddress, commandByAddress, stations,
+                redundancyGroupByClient, cyclicByStation, countersByStation, modbusSlave, mqttPublisher);
+    }
+
+    private static void addImplicitStation(Map<Integer, StationSettings> stations, int commonAddress)
+            throws ParseException {
+        if (!stations.containsKey(commonAddress)) {
+            if (commonAddress <= 0 || commonAddress >= BROADCAST_ADDRESS) {
+                throw new ParseException("Common address out of range: " + commonAddress);
+            }
+            stations.put(commonAddress, new StationSettings(commonAddress, StationSettings.SHARED_PORT));
+        }
+    }
+
+    public static PointTable empty(Iec104Settings settings) {
+        return new PointTable(settings, new Mapping[0], Collections.emptyMap(), Collections.emptyMap(),
+                Collections.emptyMap(), Collections.singletonMap(settings.getCommonAddress(),
+                        new StationSettings(settings.getCommonAddress(), StationSettings.SHARED_PORT)),
+                Collections.emptyMap(), Collections.emptyMap(), Collections.emptyMap(), null, null);
+    }
+
+    /**
+     * Lookup key of a point: common address in the upper bits, 24 bit IOA in the lower.
+     */
+    public static long address(int commonAddress, int ioa) {
+        return ((long) commonAddress << 24) | ioa;
+    }
+
+    public Iec104Settings getSettings() {
+        return settings;
+    }
+
+    public int size() {
+        return slots.length;
+    }
+
+    public int slotOfChannel(String channelId) {
+        Integer slot = slotByChannel.get(channelId);
+        return slot != null ? slot : NO_SLOT;
+    }
+
+    public int slotOf(int commonAddress, int ioa) {
+        Integer slot = slotByAddress.get(address(commonAddress, ioa));
+        return slot != null ? slot : NO_SLOT;
+    }
+
+    public Mapping getMapping(int slot) {
+        return slots[slot];
+    }
+
+    public Mapping getMappingForChannel(String channelId) {
+        int slot = slotOfChannel(channelId);
+        return slot != NO_SLOT ? slots[slot] : null;
+    }
+
+    public Mapping getMapping(int commonAddress, int ioa) {
+        int slot = slotOf(commonAddress, ioa);
+        return slot != NO_SLOT ? slots[slot] : null;
+    }
+
+    /**
+     * Command mapping of a control IOA, null if the IOA is not controllable.
+     */
+    public CommandMapping getCommand(int commonAddress, int ioa) {
+        return commandByAddress.get(address(commonAddress, ioa));
+    }
+
+    /**
+     * Station of a common address, null if the gateway does not serve it.
+     */
+    public StationSettings getStation(int commonAddress) {
+        return stations.get(commonAddress);
+    }
+
+    /**
+     * All stations in declaration order, the default station included.
+     */
+    public Collection<StationSettings> getStations() {
+        return Collections.unmodifiableCollection(stations.values());
+    }
+
+    /**
+     * Points of a station that are transmitted cyclically, in slot order.
+     */
+    public List<Mapping> getCyclicMappings(int commonAddress) {
+        List<Mapping> cyclic = cyclicByStation.get(commonAddress);
+        return cyclic != null ? Collections.unmodifiableList(cyclic) : Collections.emptyList();
+    }
+
+    /**
+     * Integrated totals of a station, in slot order.
+     */
+    public List<Mapping> getCounterMappings(int commonAddress) {
+        List<Mapping> counters = countersByStation.get(commonAddress);
+        return counters != null ? Collections.unmodifiableList(counters) : Collections.emptyList();
+    }
+
+    /**
+     * Configured redundancy group of a client address, null if the client is not part of one.
+     */
+    public String getRedundancyGroup(String clientAddress) {
+        return redundancyGroupByClient.get(clientAddress);
+    }
+
+    /**
+     * Northbound Modbus slave settings, null if no Modbus slave is configured.
+     */
+    public ModbusSlaveSettings getModbusSlaveSettings() {
+        return modbusSlave;
+    }
+
+    /**
+     * Northbound MQTT publisher settings, null if no MQTT publisher is configured.
+     */
+    public MqttPublisherSettings getMqttPublisherSettings() {
+        return mqttPublisher;
+    }
+
+    /**
+     * Ports of all listeners the stations need, the shared port first.
+     */
+    public Set<Integer> getListenerPorts() {
+        Set<Integer> ports = new LinkedHashSet<>();
+        ports.add(settings.getPort());
+        for (StationSettings station : stations.values()) {
+            ports.add(station.getListenerPort(settings));
+        }
+        return ports;
+    }
+
+    public List<Mapping> getMappings() {
+        return Collections.unmodifiableList(Arrays.asList(slots));
+    }
+
+    /**
+     * Mappings of one source protocol, in slot order.
+     */
+    public List<Mapping> getMappings(String sourceProtocol) {
+        List<Mapping> result = new ArrayList<>();
+        for (Mapping mapping : slots) {
+            if (sourceProtocol.equals(mapping.getSourceProtocol())) {
+                result.add(mapping);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Channel IDs that were added, removed or whose mapping settings differ in the newer table.
+     */
+    public Set<String> changedChannels(PointTable newer) {
+        Set<String> changed = new HashSet<>();
+
+        for (Mapping mapping : slots) {
+            if (!mapping.hasSameSettings(newer.getMappingForChannel(mapping.getChannelId()))) {
+                changed.add(mapping.getChannelId());
+            }
+        }
+        for (Mapping mapping : newer.slots) {
+            if (slotOfChannel(mapping.getChannelId()) == NO_SLOT) {
+                changed.add(mapping.getChannelId());
+            }
+        }
+        return changed;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("PointTable[points=%d, stations=%d, %s]", slots.length, stations.size(), settings);
+    }
+}
@@ -0,0 +1,36 @@
+package org.openmuc.framework.app.gateway.config;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Client addresses that form one IEC 104 redundancy group.
+ * <p>
+ * Connections from these addresses share one outbound stream, only the
+ * connection with STARTDT receives data. A client address that is not part
+ * of a configured group forms a group of its own.
+ */
+public class RedundancyGroupSettings {
+
+    private final String name;
+    private final Set<String> clientAddresses;
+
+    public RedundancyGroupSettings(String name, Set<String> clientAddresses) {
+        this.name = name;
+        this.clientAddresses = Collections.unmodifiableSet(new LinkedHashSet<>(clientAddresses));
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Set<String> getClientAddresses() {
+        return clientAddresses;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("RedundancyGroup[name=%s, clients=%s]", name, clientAddresses);
+    }
+}
@@ -0,0 +1,45 @@
+package org.openmuc.framework.app.gateway.config;
+
+/**
+ * A virtual IEC 104 station (one ASDU common address) served by the gateway.
+ * <p>
+ * Each station has its own points and GI scope. A station without its own
+ * port is served on the shared listener of the iec104 settings, a station
+ * with a port gets a dedicated TCP listener and is only served there.
+ */
+public class StationSettings {
+
+    public static final int SHARED_PORT = 0;
+
+    private final int commonAddress;
+    private final int port;
+
+    public StationSettings(int commonAddress, int port) {
+        this.commonAddress = commonAddress;
+        this.port = port;
+    }
+
+    public int getCommonAddress() {
+        return commonAddress;
+    }
+
+    /**
+     * Dedicated listener port, SHARED_PORT if served on the shared listener.
+     */
+    public int getPort() {
+        return port;
+    }
+
+    /**
+     * Port the station is actually served on.
+     */
+    public int getListenerPort(Iec104Settings settings) {
+        return port != SHARED_PORT ? port : settings.getPort();
+    }
+
+    @Override
+    public String toString() {
+        return port != SHARED_PORT ? String.format("Station[ca=%d, port=%d]", commonAddress, port)
+                : String.format("Station[ca=%d]", commonAddress);
+    }
+}
@@ -0,0 +1,246 @@
+package org.openmuc.framework.app.gateway.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import org.openmuc.framework.app.gateway.config.MappingRegistry;
+import org.openmuc.framework.app.gateway.config.PointTable;
+import org.openmuc.framework.app.gateway.dto.CounterPoint;
+import org.openmuc.framework.app.gateway.dto.CounterReading;
+import org.openmuc.framework.app.gateway.dto.DataPoint;
+import org.openmuc.framework.app.gateway.dto.Mapping;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Store of the integrated totals (M_IT_NA_1 / M_IT_TB_1), separate from the
+ * measurement process image in the DataHolder.
+ * <p>
+ * LIVE / FROZEN:
+ * - Counter samples update the live counters under the store lock
+ * - A freeze (per station and QCC group) copies the live counters into an
+ *   immutable snapshot, a freeze-with-reset restarts counting afterwards
+ * - Counter interrogations read the snapshot without any lock, so they never
+ *   contend with counter samples or the measurement store
+ * <p>
+ * The counter group of a point is taken from its mapping at freeze time,
+ * points that are no longer mapped are skipped.
+ * <p>
+ * OTHER OUTPUTS:
+ * - Counters do not pass the process image of the DataHolder, outputs
+ *   without counter interrogation (Modbus, MQTT) read the live counters here
+ * - Change listeners get the live counter after every sample
+ * <p>
+ * The store belongs to a DataHolder instance and reads the mapping of the
+ * registry it was acquired with, live and frozen counters are cleared when
+ * the DataHolder is released.
+ */
+public class CounterStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(CounterStore.class);
+
+    /**
+     * QCC RQT of a general counter interrogation (all groups).
+     */
+    public static final int GENERAL_GROUP = 5;
+
+    private final MappingRegistry mappingRegistry;
+
+    // Guarded by this
+    private final Map<Long, CounterPoint> live = new HashMap<>();
+
+    // Copy-on-write: frozen readings per station, by IOA
+    private volatile Map<Integer, Map<Integer, CounterReading>> frozen = Collections.emptyMap();
+
+    private final CopyOnWriteArrayList<Consumer<DataPoint>> changeListeners = new CopyOnWriteArrayList<>();
+
+    // Metrics
+    private volatile long freezes = 0;
+
+    CounterStore(MappingRegistry mappingRegistry) {
+        this.mappingRegistry = mappingRegistry;
+    }
+
+    /**
+     * True for the integrated totals ASDU types, which are kept here instead of the DataHolder.
+     */
+    public static boolean isCounterType(String asduType) {
+        return "M_IT_NA_1".equals(asduType) || "M_IT_TB_1".equals(asduType);
+    }
+
+    /**
+     * Take a counter sample and notify the change listeners.
+     */
+    public void update(DataPoint dataPoint) {
+        Object value = dataPoint.getValue();
+        boolean valid = dataPoint.isValid() && value instanceof Number;
+        update(dataPoint.getCommonAddress(), dataPoint.getIoa(), dataPoint.getAsduType(),
+                valid ? ((Number) value).doubleValue() : 0, valid, dataPoint.getTimestamp());
+    }
+
+    /**
+     * Take a counter sample from a process image slot and notify the change
+     * listeners. The live counter is only copied into a DataPoint if there
+     * is a listener.
+     */
+    public void update(int commonAddress, int ioa, String asduType, double value, boolean valid, long timestamp) {
+        DataPoint live = null;
+        synchronized (this) {
+            CounterPoint point = livePoint(commonAddress, ioa);
+            point.update(valid ? Math.round(value) : 0, valid, timestamp);
+            if (!changeListeners.isEmpty()) {
+                live = point.toDataPoint(asduType);
+            }
+        }
+        if (live == null) {
+            return;
+        }
+
+        for (Consumer<DataPoint> listener : changeListeners) {
+            try {
+                listener.accept(live);
+            } catch (Exception e) {
+                logger.error("Counter listener error for CA={} IOA={}: {}", commonAddress, ioa, e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Register a listener for live counter changes. It runs on the input
+     * thread of the sample and must not block.
+     */
+    public void addChangeListener(Consumer<DataPoint> listener) {
+        if (listener != null) {
+            changeListeners.addIfAbsent(listener);
+        }
+    }
+
+    public void removeChangeListener(Consumer<DataPoint> listener) {
+        changeListeners.remove(listener);
+    }
+
+    /**
+     * Live counters of a station that received a sample, as data points
+     * (value: counter since the last reset, Long).
+     */
+    public List<DataPoint> getLive(int commonAddress) {
+        List<DataPoint> result = new ArrayList<>();
+        for (Mapping mapping : counterMappings(commonAddress, GENERAL_GROUP)) {
+            synchronized (this) {
+                CounterPoint point = live.get(PointTable.address(commonAddress, mapping.getIoa()));
+                if (point != null) {
+                    result.add(point.toDataPoint(mapping.getAsduType()));
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Freeze the counters of a station group into the snapshot.
+     *
+     * @param group
+     *            counter group 1..4 or {@link #GENERAL_GROUP}
+     * @param reset
+     *            restart counting after the freeze
+     */
+    public synchronized void freeze(int commonAddress, int group, boolean reset) {
+        long now = System.currentTimeMillis();
+        Map<Integer, CounterReading> readings = new HashMap<>(frozen.getOrDefault(commonAddress,
+                Collections.emptyMap()));
+
+        int count = 0;
+        for (Mapping mapping : counterMappings(commonAddress, group)) {
+            CounterPoint point = livePoint(mapping.getCommonAddress(), mapping.getIoa());
+            readings.put(mapping.getIoa(), point.freeze(mapping.getAsduType(), mapping.getCounterGroup(), reset, now));
+            count++;
+        }
+
+        Map<Integer, Map<Integer, CounterReading>> newFrozen = new HashMap<>(frozen);
+        newFrozen.put(commonAddress, Collections.unmodifiableMap(readings));
+        frozen = Collections.unmodifiableMap(newFrozen);
+        freezes++;
+
+        logger.debug("Froze {} counter(s) of CA {} group {}{}", count, commonAddress, group,
+                reset ? " with reset" : "");
+    }
+
+    /**
+     * Restart counting of a station group without a freeze.
+     */
+    public synchronized void reset(int commonAddress, int group) {
+        for (Mapping mapping : counterMappings(commonAddress, group)) {
+            livePoint(mapping.getCommonAddress(), mapping.getIoa()).resetBaseline();
+        }
+    }
+
+    /**
+     * Frozen readings of a station group, in mapping order. Lock-free.
+     * Counters that were never frozen are missing.
+     */
+    public List<CounterReading> getFrozen(int commonAddress, int group) {
+        Map<Integer, CounterReading> readings = frozen.get(commonAddress);
+        if (readings == null) {
+            return Collections.emptyList();
+        }
+
+        List<CounterReading> result = new ArrayList<>();
+        for (Mapping mapping : counterMappings(commonAddress, group)) {
+            CounterReading reading = readings.get(mapping.getIoa());
+            if (reading != null) {
+                result.add(reading);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Drop a counter that is no longer mapped (mapping reload).
+     */
+    public synchronized void remove(int commonAddress, int ioa) {
+        live.remove(PointTable.address(commonAddress, ioa));
+    }
+
+    /**
+     * Drop the live and frozen counters (the DataHolder was released).
+     */
+    synchronized void clear() {
+        live.clear();
+        frozen = Collections.emptyMap();
+        changeListeners.clear();
+    }
+
+    private CounterPoint livePoint(int commonAddress, int ioa) {
+        long address = PointTable.address(commonAddress, ioa);
+        CounterPoint point = live.get(address);
+        if (point == null) {
+            point = new CounterPoint(commonAddress, ioa);
+            live.put(address, point);
+        }
+        return point;
+    }
+
+    private List<Mapping> counterMappings(int commonAddress, int group) {
+        List<Mapping> counters = mappingRegistry.getPointTable().getCounterMappings(commonAddress);
+        if (group == GENERAL_GROUP) {
+            return counters;
+        }
+
+        List<Mapping> inGroup = new ArrayList<>();
+        for (Mapping mapping : counters) {
+            if (mapping.getCounterGroup() == group) {
+                inGroup.add(mapping);
+            }
+        }
+        return inGroup;
+    }
+
+    public long getFreezes() {
+        return freezes;
+    }
+}
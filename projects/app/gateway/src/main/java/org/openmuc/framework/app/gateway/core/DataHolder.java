@@ -1,18 +1,28 @@
 package org.openmuc.framework.app.gateway.core;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Consumer;
 
+import org.openmuc.framework.app.gateway.config.MappingChangeListener;
+import org.openmuc.framework.app.gateway.config.MappingRegistry;
+import org.openmuc.framework.app.gateway.config.PointTable;
+import org.openmuc.framework.app.gateway.core.GatewayDiagnostics.Counter;
+import org.openmuc.framework.app.gateway.core.GatewayDiagnostics.SampledLog;
+import org.openmuc.framework.app.gateway.core.LatencyStats.Stage;
 import org.openmuc.framework.app.gateway.dto.DataPoint;
+import org.openmuc.framework.app.gateway.dto.Mapping;
+import org.openmuc.framework.data.ValueType;
 import org.slf4j.LoggerFactory;
 import org.slf4j.Logger;
 
@@ -20,9 +30,17 @@ import org.slf4j.Logger;
  * Thread-safe in-memory data holder with async notification system.
  * 
  * FEATURES:
- * - Stores latest value per IOA (fixed memory)
- * - Async notifications (non-blocking updates)
+ * - Stores latest value per IOA, partitioned by station (common address)
+ * - Inputs write primitives into a preallocated slot per point, a
+ *   DataPoint is only built when the value is read or notified
+ * - Async notifications (non-blocking updates), one notification lane per
+ *   station so stations are processed in parallel and in order
+ * - Changes of time-tagged points are kept in the SoeBuffer of the instance,
+ *   sized from the mapping
+ * - Integrated totals are passed on to the CounterStore of the instance, not kept here
  * - Thread-safe operations
+ * - No per-update logging: events are counted in GatewayDiagnostics,
+ *   single points can be traced at runtime
  * - 24/7 continuous operation
  * 
  * MEMORY:
@@ -39,43 +57,39 @@ public class DataHolder {
     private static final Logger logger = LoggerFactory.getLogger(DataHolder.class);
 
     private static final int INITIAL_CAPACITY = 6000;
-    private static final int NOTIFICATION_THREADS = 24; // Increased for 10 max connections + headroom
     private static final long NOTIFICATION_BATCH_INTERVAL_MS = 100; // Batch updates every 100ms
 
-    private final Map<Integer, DataPoint> dataPoints;
-    private final CopyOnWriteArrayList<Consumer<DataPoint>> changeListeners;
+    // Station state by common address
+    private final Map<Integer, StationState> stations;
+    private final CopyOnWriteArrayList<Consumer<List<DataPoint>>> changeListeners;
+    private final SoeBuffer soeBuffer;
+    private final CounterStore counterStore;
+    private final MappingRegistry mappingRegistry;
+    private final MappingChangeListener soeBufferResizer = this::resizeSoeBuffer;
+    private final LatencyStats latencyStats = LatencyStats.getInstance();
+    private final GatewayDiagnostics diagnostics = GatewayDiagnostics.getInstance();
+    private final SampledLog newPointLog = new SampledLog(10, TimeUnit.SECONDS);
 
-    // Coalescing notification system - stores only latest update per IOA
-    private final ConcurrentHashMap<Integer, DataPoint> pendingNotifications;
-    private final ExecutorService notificationExecutor;
     private final Thread notificationThread;
     private volatile boolean running;
 
-    // Metrics for monitoring
-    private volatile long totalUpdates = 0;
-    private volatile long coalescedUpdates = 0;
+    // Metrics for monitoring, updated concurrently from the inputs
+    private final LongAdder totalUpdates = new LongAdder();
+    private final LongAdder coalescedUpdates = new LongAdder();
+    private final LongAdder suppressedUpdates = new LongAdder();
 
     private static volatile DataHolder instance;
+    private static int users = 0;
 
-    private DataHolder() {
+    private DataHolder(MappingRegistry mappingRegistry) {
         logger.info("Initializing DataHolder...");
 
-        this.dataPoints = new ConcurrentHashMap<>(INITIAL_CAPACITY);
+        this.stations = new ConcurrentHashMap<>();
+        this.counterStore = new CounterStore(mappingRegistry);
+        this.mappingRegistry = mappingRegistry;
         this.changeListeners = new CopyOnWriteArrayList<>();
-        this.pendingNotifications = new ConcurrentHashMap<>(INITIAL_CAPACITY);
-
-        this.notificationExecutor = Executors.newFixedThreadPool(
-                NOTIFICATION_THREADS,
-                new ThreadFactory() {
-                    private int counter = 0;
-
-                    @Override
-                    public Thread newThread(Runnable r) {
-                        Thread t = new Thread(r, "DataHolder-Notifier-" + (++counter));
-                        t.setDaemon(true);
-                        return t;
-                    }
-                });
+        this.soeBuffer = new SoeBuffer(mappingRegistry.getPointTable().getSettings().getSoeBufferSize());
+        mappingRegistry.addMappingChangeListener(soeBufferResizer);
 
         this.running = true;
         this.notificationThread = new Thread(
@@ -87,26 +101,63 @@ public class DataHolder {
         logger.info("DataHolder initialized (capacity: {}, async enabled)", INITIAL_CAPACITY);
     }
 
-    public static DataHolder getInstance() {
-        if (instance == null) {
-            synchronized (DataHolder.class) {
-                if (instance == null) {
-                    instance = new DataHolder();
-                }
+    /**
+     * Get the instance for a component, which must call release() on
+     * deactivation.
+     *
+     * @param mappingRegistry registry acquired by the component, the first
+     *            acquire() reads the counter mapping and SOE buffer size from it
+     */
+    public static DataHolder acquire(MappingRegistry mappingRegistry) {
+        synchronized (DataHolder.class) {
+            users++;
+            if (instance == null) {
+                instance = new DataHolder(mappingRegistry);
             }
+            return instance;
+        }
+    }
+
+    /**
+     * Release the instance of a component. The last release shuts the
+     * instance down, the next acquire() creates a new one. Call it before
+     * MappingRegistry.release(), the lanes read the mapping while draining.
+     */
+    public static void release() {
+        DataHolder released = null;
+        synchronized (DataHolder.class) {
+            if (users > 0 && --users == 0) {
+                released = instance;
+                instance = null;
+            }
+        }
+        if (released != null) {
+            released.shutdown();
         }
-        return instance;
     }
 
     /**
      * Update data point (non-blocking, ~0.11 ms).
      * 
      * FLOW:
-     * 1. Store in map (replaces old value)
+     * 1. Store in the station's map (replaces old value)
      * 2. Queue for async notification
      * 3. Return immediately
      */
     public void updateDataPoint(DataPoint dataPoint) {
+        updateDataPoint(dataPoint, 0.0);
+    }
+
+    /**
+     * Update data point with a spontaneous deadband.
+     * <p>
+     * The process image always takes the new value (GI and cyclic data are
+     * current), but a numeric change smaller than the deadband against the
+     * last reported value is neither queued nor recorded as event.
+     *
+     * @param deadband minimum change in scaled units, 0 reports every update
+     */
+    public void updateDataPoint(DataPoint dataPoint, double deadband) {
         if (dataPoint == null) {
             logger.warn("Null data point, ignoring");
             return;
@@ -115,58 +166,251 @@ public class DataHolder {
             logger.warn("IOA=0, ignoring");
             return;
         }
+        if (CounterStore.isCounterType(dataPoint.getAsduType())) {
+            counterStore.update(dataPoint);
+            return;
+        }
+
+        Object value = dataPoint.getValue();
+        StationState station = stations.computeIfAbsent(dataPoint.getCommonAddress(), StationState::new);
+        Slot slot = station.slot(dataPoint.getIoa());
+        synchronized (slot) {
+            slot.identify(dataPoint.getId(), dataPoint.getSourceProtocol(), dataPoint.getAsduType());
+            boolean added = !slot.hasValue;
+            boolean changed = slot.store(typeOf(value), numberOf(value), value, dataPoint.isValid(),
+                    dataPoint.getTimestamp(), dataPoint.getSampleTime());
+            report(slot, added, changed, deadband, dataPoint.getInputNanos());
+            dataPoint.setQueuedNanos(slot.queuedNanos);
+            slot.current = dataPoint;
+        }
+    }
+
+    /**
+     * Open the slot of a mapped point for an input. Slots are preallocated
+     * and take primitive values, so writing a sample creates no DataPoint.
+     * Integrated totals written to the slot are passed on to the CounterStore.
+     *
+     * @param valueType type of the values written, kept as their boxed type in the process image
+     */
+    public Slot openSlot(String channelId, Mapping mapping, ValueType valueType) {
+        if (CounterStore.isCounterType(mapping.getAsduType())) {
+            return new Slot(null, mapping.getCommonAddress(), mapping.getIoa(), mapping.getAsduType());
+        }
+
+        Slot slot;
+        if (mapping.getIoa() == 0) {
+            logger.warn("IOA=0, ignoring {}", channelId);
+            slot = new Slot(null, mapping.getCommonAddress(), 0, null);
+        } else {
+            slot = stations.computeIfAbsent(mapping.getCommonAddress(), StationState::new).slot(mapping.getIoa());
+        }
+
+        synchronized (slot) {
+            slot.identify(channelId, mapping.getSourceProtocol(), mapping.getAsduType());
+            slot.openType = valueType;
+            slot.deadband = mapping.getDeadband();
+        }
+        return slot;
+    }
+
+    /**
+     * Report the value just stored in a slot, called under the slot lock.
+     */
+    private void report(Slot slot, boolean added, boolean changed, double deadband, long inputNanos) {
+        long queuedNanos = System.nanoTime();
+        if (inputNanos != 0) {
+            latencyStats.recordNanos(Stage.INPUT_TO_QUEUE, inputNanos, queuedNanos);
+        }
+        slot.queuedNanos = queuedNanos;
+
+        boolean traced = diagnostics.isTraced(slot.commonAddress, slot.ioa);
+        if (deadband > 0 && slot.isWithinDeadband(deadband)) {
+            suppressedUpdates.increment();
+            if (traced) {
+                diagnostics.trace(slot.commonAddress, slot.ioa, "within deadband", slot.value());
+            }
+            return;
+        }
 
-        DataPoint previous = dataPoints.put(dataPoint.getIoa(), dataPoint);
+        // Time-tagged points: record every change before coalescing
+        boolean event = SoeBuffer.isEventType(slot.asduType) && slot.changedSinceReported();
+        slot.markReported();
+        if (event) {
+            soeBuffer.record(slot.asduType, slot.commonAddress, slot.ioa, (float) slot.number, slot.timestamp,
+                    slot.valid);
+        }
 
-        if (previous == null) {
-            logger.info("New point: IOA={}, value={}, total={}",
-                    dataPoint.getIoa(), dataPoint.getValue(), dataPoints.size());
-        } else if (!previous.getValue().equals(dataPoint.getValue())) {
-            logger.info("Updated: IOA={}, {} -> {}",
-                    dataPoint.getIoa(), previous.getValue(), dataPoint.getValue());
+        if (added) {
+            diagnostics.count(Counter.POINT_ADDED);
+            if (newPointLog.sample()) {
+                logger.info("New point: CA={}, IOA={}, value={} ({} more since last report)",
+                        slot.commonAddress, slot.ioa, slot.value(), newPointLog.takeSuppressed());
+            }
+        } else if (changed) {
+            diagnostics.count(Counter.VALUE_CHANGED);
         }
 
-        // Coalesce: put in map (replaces any pending update for same IOA)
-        DataPoint replaced = pendingNotifications.put(dataPoint.getIoa(), dataPoint);
+        // Coalesce: a slot is pending at most once
+        boolean replaced = slot.station.pending.put(slot.ioa, slot) != null;
+
+        totalUpdates.increment();
+        if (replaced) {
+            coalescedUpdates.increment();
+        }
+
+        if (traced) {
+            diagnostics.trace(slot.commonAddress, slot.ioa, "queued",
+                    slot.value() + (slot.valid ? "" : " (invalid)") + (replaced ? ", coalesced" : ""));
+        }
+    }
 
-        totalUpdates++;
-        if (replaced != null) {
-            coalescedUpdates++;
-            if (coalescedUpdates % 100 == 0) {
-                logger.info("Coalescing stats: {} total updates, {} coalesced ({}%)",
-                        totalUpdates, coalescedUpdates,
-                        (coalescedUpdates * 100 / totalUpdates));
+    /**
+     * Put a point restored from the process image snapshot. Only fills IOAs
+     * without a value, so a sample that arrived first is never overwritten.
+     * Restored points are not reported spontaneously.
+     *
+     * @return true if the point was taken
+     */
+    public boolean restoreDataPoint(DataPoint dataPoint) {
+        Object value = dataPoint.getValue();
+        Slot slot = stations.computeIfAbsent(dataPoint.getCommonAddress(), StationState::new)
+                .slot(dataPoint.getIoa());
+        synchronized (slot) {
+            if (slot.hasValue || slot.detached) {
+                return false;
             }
+            slot.identify(dataPoint.getId(), dataPoint.getSourceProtocol(), dataPoint.getAsduType());
+            slot.store(typeOf(value), numberOf(value), value, dataPoint.isValid(), dataPoint.getTimestamp(),
+                    dataPoint.getSampleTime());
+            slot.notTopical = dataPoint.isNotTopical();
+            slot.current = dataPoint;
+            return true;
+        }
+    }
+
+    /**
+     * Value type a DataPoint value is kept as, null for other objects.
+     */
+    private static ValueType typeOf(Object value) {
+        if (value instanceof Boolean) {
+            return ValueType.BOOLEAN;
+        } else if (value instanceof Float) {
+            return ValueType.FLOAT;
+        } else if (value instanceof Double) {
+            return ValueType.DOUBLE;
+        } else if (value instanceof Integer) {
+            return ValueType.INTEGER;
+        } else if (value instanceof Long) {
+            return ValueType.LONG;
+        } else if (value instanceof Short) {
+            return ValueType.SHORT;
+        } else if (value instanceof Byte) {
+            return ValueType.BYTE;
+        } else if (value instanceof String) {
+            return ValueType.STRING;
+        } else if (value instanceof byte[]) {
+            return ValueType.BYTE_ARRAY;
+        }
+        return null;
+    }
+
+    private static double numberOf(Object value) {
+        if (value instanceof Boolean) {
+            return (Boolean) value ? 1 : 0;
+        }
+        return value instanceof Number ? ((Number) value).doubleValue() : 0;
+    }
+
+    private static boolean isNumeric(ValueType type) {
+        return type != null && type != ValueType.BOOLEAN && type != ValueType.STRING
+                && type != ValueType.BYTE_ARRAY;
+    }
+
+    /**
+     * Remove a point that is no longer mapped (mapping reload).
+     * A pending notification for it is dropped as well, an input still
+     * holding its slot writes into nothing.
+     */
+    public void removeDataPoint(int commonAddress, int ioa) {
+        counterStore.remove(commonAddress, ioa);
+
+        StationState station = stations.get(commonAddress);
+        if (station == null) {
+            return;
+        }
+
+        Slot slot = station.points.remove(ioa);
+        if (slot == null) {
+            return;
+        }
+        boolean hadValue;
+        synchronized (slot) {
+            slot.detached = true;
+            station.pending.remove(ioa);
+            hadValue = slot.hasValue;
+        }
+        if (hadValue) {
+            logger.info("Removed point: CA={}, IOA={}, total={}", commonAddress, ioa, station.points.size());
         }
     }
 
     /**
-     * Get current value for an IOA.
+     * Get current value of a point.
      */
-    public DataPoint getDataPoint(int ioa) {
-        return dataPoints.get(ioa);
+    public DataPoint getDataPoint(int commonAddress, int ioa) {
+        StationState station = stations.get(commonAddress);
+        Slot slot = station != null ? station.points.get(ioa) : null;
+        return slot != null ? slot.snapshot() : null;
     }
 
     /**
-     * Get all data points (immutable snapshot).
+     * Get all data points of one station (snapshot).
      * Used for General Interrogation.
      */
-    public Map<Integer, DataPoint> getAllDataPoints() {
-        return Map.copyOf(dataPoints);
+    public List<DataPoint> getStationDataPoints(int commonAddress) {
+        StationState station = stations.get(commonAddress);
+        if (station == null) {
+            return Collections.emptyList();
+        }
+
+        List<DataPoint> points = new ArrayList<>(station.points.size());
+        for (Slot slot : station.points.values()) {
+            DataPoint dataPoint = slot.snapshot();
+            if (dataPoint != null) {
+                points.add(dataPoint);
+            }
+        }
+        return points;
+    }
+
+    /**
+     * Visit the current value of every point (weakly consistent, concurrent
+     * updates may or may not be seen).
+     */
+    public void forEachDataPoint(Consumer<DataPoint> action) {
+        for (StationState station : stations.values()) {
+            for (Slot slot : station.points.values()) {
+                DataPoint dataPoint = slot.snapshot();
+                if (dataPoint != null) {
+                    action.accept(dataPoint);
+                }
+            }
+        }
     }
 
     /**
-     * Get all IOAs (lightweight, no copy).
+     * Common addresses of all stations holding data (lightweight, no copy).
      */
-    public Set<Integer> getAllIOAs() {
-        return dataPoints.keySet();
+    public Set<Integer> getCommonAddresses() {
+        return stations.keySet();
     }
 
     /**
-     * Register change listener.
+     * Register change listener. The listener receives the coalesced changes
+     * of one station per call, calls for the same station never overlap.
      * MUST call removeChangeListener() when done!
      */
-    public void addChangeListener(Consumer<DataPoint> listener) {
+    public void addChangeListener(Consumer<List<DataPoint>> listener) {
         if (listener == null) {
             logger.warn("Null listener, ignoring");
             return;
@@ -183,7 +427,7 @@ public class DataHolder {
     /**
      * Remove change listener (prevent memory leak!).
      */
-    public void removeChangeListener(Consumer<DataPoint> listener) {
+    public void removeChangeListener(Consumer<List<DataPoint>> listener) {
         if (listener == null) {
             logger.warn("Null listener, ignoring");
             return;
@@ -203,9 +447,10 @@ public class DataHolder {
      * 
      * BATCHING STRATEGY:
      * - Waits NOTIFICATION_BATCH_INTERVAL_MS (100ms) to collect updates
-     * - Drains all pending notifications in one batch
+     * - Drains the pending notifications of every station in one batch
      * - Only latest value per IOA is notified (coalescing)
-     * - Reduces context switching and improves throughput
+     * - Each station batch is handed to the station's lane, so stations
+     *   are notified in parallel while one station stays in order
      */
     private void processNotifications() {
         logger.info("Notification processor started (batch interval: {}ms)",
@@ -216,22 +461,16 @@ public class DataHolder {
                 // Wait for batch interval to allow coalescing
                 Thread.sleep(NOTIFICATION_BATCH_INTERVAL_MS);
 
-                // Skip if no pending notifications
-                if (pendingNotifications.isEmpty()) {
-                    continue;
-                }
-
-                // Drain all pending notifications atomically
-                Map<Integer, DataPoint> batch = new java.util.HashMap<>(pendingNotifications);
-                pendingNotifications.keySet().removeAll(batch.keySet());
-
-                // Notify listeners for each unique IOA
-                int batchSize = batch.size();
-                if (batchSize > 0) {
-                    logger.info("Processing batch of {} notifications", batchSize);
-
-                    for (DataPoint dataPoint : batch.values()) {
-                        notifyListenersAsync(dataPoint);
+                for (StationState station : stations.values()) {
+                    List<DataPoint> batch = station.drainPending();
+                    if (!batch.isEmpty()) {
+                        long dispatchNanos = System.nanoTime();
+                        for (DataPoint dataPoint : batch) {
+                            latencyStats.recordNanos(Stage.QUEUE_TO_DISPATCH, dataPoint.getQueuedNanos(),
+                                    dispatchNanos);
+                        }
+                        diagnostics.count(Counter.NOTIFICATION_BATCH);
+                        notifyListenersAsync(station, batch);
                     }
                 }
 
@@ -249,19 +488,20 @@ public class DataHolder {
     }
 
     /**
-     * Notify listeners in parallel (non-blocking).
+     * Notify listeners on the station's lane (non-blocking).
      */
-    private void notifyListenersAsync(DataPoint dataPoint) {
-        for (Consumer<DataPoint> listener : changeListeners) {
-            notificationExecutor.submit(() -> {
+    private void notifyListenersAsync(StationState station, List<DataPoint> batch) {
+        List<DataPoint> readOnlyBatch = Collections.unmodifiableList(batch);
+        station.lane.submit(() -> {
+            for (Consumer<List<DataPoint>> listener : changeListeners) {
                 try {
-                    listener.accept(dataPoint);
+                    listener.accept(readOnlyBatch);
                 } catch (Exception e) {
-                    logger.error("Listener error for IOA={}: {}",
-                            dataPoint.getIoa(), e.getMessage(), e);
+                    logger.error("Listener error for CA={}: {}",
+                            station.commonAddress, e.getMessage(), e);
                 }
-            });
-        }
+            }
+        });
     }
 
     /**
@@ -271,6 +511,7 @@ public class DataHolder {
         logger.info("Shutting down DataHolder...");
 
         running = false;
+        mappingRegistry.removeMappingChangeListener(soeBufferResizer);
 
         try {
             notificationThread.join(5000);
@@ -279,16 +520,17 @@ public class DataHolder {
                 notificationThread.interrupt();
             }
 
-            notificationExecutor.shutdown();
-            boolean terminated = notificationExecutor.awaitTermination(5, TimeUnit.SECONDS);
+            int dropped = 0;
+            for (StationState station : stations.values()) {
+                station.lane.shutdown();
+                if (!station.lane.awaitTermination(5, TimeUnit.SECONDS)) {
+                    logger.warn("Forcing notification lane shutdown for CA {}", station.commonAddress);
+                    station.lane.shutdownNow();
+                }
 
-            if (!terminated) {
-                logger.warn("Forcing executor shutdown");
-                notificationExecutor.shutdownNow();
+                dropped += station.pending.size();
+                station.pending.clear();
             }
-
-            int dropped = pendingNotifications.size();
-            pendingNotifications.clear();
             if (dropped > 0) {
                 logger.warn("Dropped {} pending notifications", dropped);
             }
@@ -298,23 +540,53 @@ public class DataHolder {
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
             logger.error("Shutdown interrupted", e);
-            notificationExecutor.shutdownNow();
+            for (StationState station : stations.values()) {
+                station.lane.shutdownNow();
+            }
         }
+        counterStore.clear();
+    }
+
+    private void resizeSoeBuffer(PointTable oldTable, PointTable newTable, Set<String> changedChannelIds) {
+        soeBuffer.resize(newTable.getSettings().getSoeBufferSize());
+    }
+
+    /**
+     * Events of the time-tagged points of this instance.
+     */
+    public SoeBuffer getSoeBuffer() {
+        return soeBuffer;
+    }
+
+    /**
+     * Integrated totals of this instance, dropped with it on the last release().
+     */
+    public CounterStore getCounterStore() {
+        return counterStore;
     }
 
     /**
      * Get statistics.
      */
     public DataHolderStats getStats() {
+        int pointCount = 0;
+        int queued = 0;
+        for (StationState station : stations.values()) {
+            for (Slot slot : station.points.values()) {
+                if (slot.hasValue) {
+                    pointCount++;
+                }
+            }
+            queued += station.pending.size();
+        }
         return new DataHolderStats(
-                dataPoints.size(),
+                pointCount,
+                stations.size(),
                 changeListeners.size(),
-                estimateMemoryUsageKB(),
-                pendingNotifications.size());
-    }
-
-    private long estimateMemoryUsageKB() {
-        return (dataPoints.size() * 500L) / 1024;
+                queued,
+                totalUpdates.sum(),
+                coalescedUpdates.sum(),
+                suppressedUpdates.sum());
     }
 
     /**
@@ -322,46 +594,330 @@ public class DataHolder {
      */
     @Deprecated
     public void clear() {
-        dataPoints.clear();
-        pendingNotifications.clear();
+        for (StationState station : stations.values()) {
+            for (Integer ioa : station.points.keySet()) {
+                removeDataPoint(station.commonAddress, ioa);
+            }
+        }
         logger.warn("DataHolder cleared!");
     }
 
+    /**
+     * Slots, pending notifications and notification lane of one station.
+     */
+    private class StationState {
+        private final int commonAddress;
+        private final Map<Integer, Slot> points = new ConcurrentHashMap<>();
+
+        // Coalescing: a slot is pending once, however often it was written
+        private final Map<Integer, Slot> pending = new ConcurrentHashMap<>();
+        private final ExecutorService lane;
+
+        StationState(int commonAddress) {
+            this.commonAddress = commonAddress;
+            this.lane = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, "DataHolder-Station-" + commonAddress);
+                t.setDaemon(true);
+                return t;
+            });
+        }
+
+        Slot slot(int ioa) {
+            return points.computeIfAbsent(ioa, i -> new Slot(this, commonAddress, i, null));
+        }
+
+        /**
+         * Remove the pending slots and return their current values. An update
+         * arriving meanwhile either makes it into this batch or stays pending
+         * for the next one.
+         */
+        List<DataPoint> drainPending() {
+            List<DataPoint> batch = new ArrayList<>(pending.size());
+            for (Slot slot : pending.values()) {
+                synchronized (slot) {
+                    if (pending.remove(slot.ioa, slot)) {
+                        batch.add(slot.snapshot());
+                    }
+                }
+            }
+            return batch;
+        }
+    }
+
+    /**
+     * Preallocated process image slot of one point, opened by an input with
+     * {@link DataHolder#openSlot(String, Mapping, ValueType)}.
+     * <p>
+     * VALUES:
+     * - Written as primitives, numbers are held as double and booleans as 1 / 0
+     * - The DataPoint handed to readers is built from the slot on the first
+     *   read after a write and kept until the next write
+     * - An invalid sample keeps the last value
+     * <p>
+     * LOCKING: slot state is guarded by the slot, the SoeBuffer and the
+     * pending map are entered while holding it.
+     */
+    public final class Slot {
+        private final StationState station;
+        private final int commonAddress;
+        private final int ioa;
+
+        // Integrated total kept in the CounterStore, null for process image slots
+        private final String counterType;
+
+        // Guarded by this
+        private String id;
+        private String sourceProtocol;
+        private String asduType;
+        private ValueType openType;
+        private double deadband;
+        private boolean detached;
+
+        private volatile boolean hasValue;
+        private ValueType type;
+        private double number;
+        private Object object;
+        private boolean valid;
+        private boolean notTopical;
+        private long timestamp;
+        private long sampleTime;
+        private long queuedNanos;
+
+        private boolean reported;
+        private ValueType reportedType;
+        private double reportedNumber;
+        private Object reportedObject;
+        private boolean reportedValid;
+
+        private DataPoint current;
+
+        private Slot(StationState station, int commonAddress, int ioa, String counterType) {
+            this.station = station;
+            this.commonAddress = commonAddress;
+            this.ioa = ioa;
+            this.counterType = counterType;
+            this.detached = station == null;
+        }
+
+        /**
+         * Write a numeric sample.
+         */
+        public void write(double value, long timestamp, long sampleTime, long inputNanos) {
+            if (counterType != null) {
+                counterStore.update(commonAddress, ioa, counterType, value, true, timestamp);
+                return;
+            }
+            synchronized (this) {
+                write(openType, value, null, true, timestamp, sampleTime, inputNanos);
+            }
+        }
+
+        /**
+         * Write a boolean sample.
+         */
+        public void write(boolean value, long timestamp, long sampleTime, long inputNanos) {
+            write(value ? 1.0 : 0.0, timestamp, sampleTime, inputNanos);
+        }
+
+        /**
+         * Write a sample that is no number (String, byte[]).
+         */
+        public void write(Object value, long timestamp, long sampleTime, long inputNanos) {
+            if (counterType != null) {
+                invalidate(timestamp, sampleTime, inputNanos);
+                return;
+            }
+            synchronized (this) {
+                write(openType, 0, value, true, timestamp, sampleTime, inputNanos);
+            }
+        }
+
+        /**
+         * Mark the point invalid, keeping its last value.
+         */
+        public void invalidate(long timestamp, long sampleTime, long inputNanos) {
+            if (counterType != null) {
+                counterStore.update(commonAddress, ioa, counterType, 0, false, timestamp);
+                return;
+            }
+            synchronized (this) {
+                if (hasValue) {
+                    write(type, number, object, false, timestamp, sampleTime, inputNanos);
+                } else {
+                    write(openType, 0, null, false, timestamp, sampleTime, inputNanos);
+                }
+            }
+        }
+
+        private void write(ValueType type, double number, Object object, boolean valid, long timestamp,
+                long sampleTime, long inputNanos) {
+            if (detached) {
+                return;
+            }
+            boolean added = !hasValue;
+            boolean changed = store(type, number, object, valid, timestamp, sampleTime);
+            report(this, added, changed, deadband, inputNanos);
+        }
+
+        private void identify(String id, String sourceProtocol, String asduType) {
+            this.id = id;
+            this.sourceProtocol = sourceProtocol;
+            this.asduType = asduType;
+        }
+
+        /**
+         * @return true if the value changed
+         */
+        private boolean store(ValueType type, double number, Object object, boolean valid, long timestamp,
+                long sampleTime) {
+            if (isNumeric(type) || type == ValueType.BOOLEAN) {
+                object = null;
+            }
+            boolean changed = !hasValue || !isSame(type, number, object);
+            this.type = type;
+            this.number = number;
+            this.object = object;
+            this.valid = valid;
+            this.notTopical = false;
+            this.timestamp = timestamp;
+            this.sampleTime = sampleTime;
+            this.current = null;
+            this.hasValue = true;
+            return changed;
+        }
+
+        private boolean isSame(ValueType type, double number, Object object) {
+            return this.type == type && Double.doubleToLongBits(this.number) == Double.doubleToLongBits(number)
+                    && Objects.equals(this.object, object);
+        }
+
+        private boolean isWithinDeadband(double deadband) {
+            return reported && reportedValid == valid && isNumeric(reportedType) && isNumeric(type)
+                    && Math.abs(number - reportedNumber) < deadband;
+        }
+
+        private boolean changedSinceReported() {
+            return !reported || reportedValid != valid || reportedType != type
+                    || Double.doubleToLongBits(reportedNumber) != Double.doubleToLongBits(number)
+                    || !Objects.equals(reportedObject, object);
+        }
+
+        private void markReported() {
+            reported = true;
+            reportedType = type;
+            reportedNumber = number;
+            reportedObject = object;
+            reportedValid = valid;
+        }
+
+        /**
+         * Current value, boxed as the type it was written with.
+         */
+        private Object value() {
+            if (type == null) {
+                return object;
+            }
+            switch (type) {
+                case BOOLEAN:
+                    return number != 0;
+                case BYTE:
+                    return (byte) number;
+                case SHORT:
+                    return (short) number;
+                case INTEGER:
+                    return (int) number;
+                case LONG:
+                    return (long) number;
+                case FLOAT:
+                    return (float) number;
+                case DOUBLE:
+                    return number;
+                default:
+                    return object;
+            }
+        }
+
+        /**
+         * Current value as DataPoint, null if the slot was never written.
+         */
+        private synchronized DataPoint snapshot() {
+            if (!hasValue) {
+                return null;
+            }
+            if (current == null) {
+                DataPoint dataPoint = new DataPoint(ioa, commonAddress, asduType, value(), timestamp, valid);
+                dataPoint.setId(id);
+                dataPoint.setSourceProtocol(sourceProtocol);
+                dataPoint.setNotTopical(notTopical);
+                dataPoint.setSampleTime(sampleTime);
+                dataPoint.setQueuedNanos(queuedNanos);
+                current = dataPoint;
+            }
+            return current;
+        }
+    }
+
+    /**
+     * Counters of the process image, latencies are kept in LatencyStats.
+     */
     public static class DataHolderStats {
         private final int dataPointCount;
+        private final int stationCount;
         private final int listenerCount;
-        private final long estimatedMemoryKB;
         private final int queuedNotifications;
+        private final long totalUpdates;
+        private final long coalescedUpdates;
+        private final long suppressedUpdates;
 
-        public DataHolderStats(int dataPointCount, int listenerCount,
-                long estimatedMemoryKB, int queuedNotifications) {
+        public DataHolderStats(int dataPointCount, int stationCount, int listenerCount,
+                int queuedNotifications, long totalUpdates, long coalescedUpdates, long suppressedUpdates) {
             this.dataPointCount = dataPointCount;
+            this.stationCount = stationCount;
             this.listenerCount = listenerCount;
-            this.estimatedMemoryKB = estimatedMemoryKB;
             this.queuedNotifications = queuedNotifications;
+            this.totalUpdates = totalUpdates;
+            this.coalescedUpdates = coalescedUpdates;
+            this.suppressedUpdates = suppressedUpdates;
         }
 
         public int getDataPointCount() {
             return dataPointCount;
         }
 
-        public int getListenerCount() {
-            return listenerCount;
+        public int getStationCount() {
+            return stationCount;
         }
 
-        public long getEstimatedMemoryKB() {
-            return estimatedMemoryKB;
+        public int getListenerCount() {
+            return listenerCount;
         }
 
         public int getQueuedNotifications() {
             return queuedNotifications;
         }
 
+        public long getTotalUpdates() {
+            return totalUpdates;
+        }
+
+        public long getCoalescedUpdates() {
+            return coalescedUpdates;
+        }
+
+        /**
+         * Updates kept out of spontaneous transmission by a deadband.
+         */
+        public long getSuppressedUpdates() {
+            return suppressedUpdates;
+        }
+
         @Override
         public String toString() {
             return String.format(
-                    "DataHolder[points=%d, listeners=%d, memory=%dKB, queued=%d]",
-                    dataPointCount, listenerCount, estimatedMemoryKB, queuedNotifications);
+                    "DataHolder[points=%d, stations=%d, listeners=%d, queued=%d, updates=%d, coalesced=%d,"
+                            + " suppressed=%d]",
+                    dataPointCount, stationCount, listenerCount, queuedNotifications, totalUpdates,
+                    coalescedUpdates, suppressedUpdates);
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,136 @@
+package org.openmuc.framework.app.gateway.core;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.openmuc.framework.app.gateway.config.PointTable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Diagnostics of the gateway hot path, replacing per-update logging.
+ * <p>
+ * PARTS:
+ * - Counters: one LongAdder per event, read by the diagnostics servlet
+ * - Sampled logs: an event is logged at most once per interval together
+ *   with the number of occurrences that were not logged
+ * - Trace: every stage of selected points is logged, the set of traced
+ *   points is changed at runtime (see GatewayDiagnosticsServlet)
+ * <p>
+ * The steady state costs an adder increment per event, a clock read for
+ * sampled events and an emptiness check for the trace; log messages are
+ * only formatted for sampled or traced events.
+ */
+public class GatewayDiagnostics {
+
+    private static final Logger logger = LoggerFactory.getLogger(GatewayDiagnostics.class);
+
+    public enum Counter {
+        POINT_ADDED,
+        VALUE_CHANGED,
+        NOTIFICATION_BATCH,
+        SPONTANEOUS_BATCH,
+        SPONTANEOUS_SKIPPED,
+        ASDU_RECEIVED,
+        INVALID_RECORD
+    }
+
+    private static final GatewayDiagnostics instance = new GatewayDiagnostics();
+
+    private final Map<Counter, LongAdder> counters = new EnumMap<>(Counter.class);
+
+    // Copy-on-write: traced points by PointTable.address
+    private volatile Set<Long> traced = Collections.emptySet();
+
+    private GatewayDiagnostics() {
+        for (Counter counter : Counter.values()) {
+            counters.put(counter, new LongAdder());
+        }
+    }
+
+    public static GatewayDiagnostics getInstance() {
+        return instance;
+    }
+
+    public void count(Counter counter) {
+        counters.get(counter).increment();
+    }
+
+    public long get(Counter counter) {
+        return counters.get(counter).sum();
+    }
+
+    /**
+     * True if the point is traced. Cheap while nothing is traced.
+     */
+    public boolean isTraced(int commonAddress, int ioa) {
+        Set<Long> current = traced;
+        return !current.isEmpty() && current.contains(PointTable.address(commonAddress, ioa));
+    }
+
+    /**
+     * Log a stage of a traced point. Callers check {@link #isTraced(int, int)} first.
+     */
+    public void trace(int commonAddress, int ioa, String stage, Object detail) {
+        logger.info("TRACE CA={} IOA={} {}: {}", commonAddress, ioa, stage, detail);
+    }
+
+    /**
+     * Replace the traced points, empty to stop tracing.
+     *
+     * @param addresses
+     *            point addresses as built by PointTable.address
+     */
+    public void setTraced(Collection<Long> addresses) {
+        traced = addresses.isEmpty() ? Collections.emptySet()
+                : Collections.unmodifiableSet(new LinkedHashSet<>(addresses));
+        logger.info("Tracing {} point(s)", traced.size());
+    }
+
+    public Set<Long> getTraced() {
+        return traced;
+    }
+
+    /**
+     * Rate-limited log of a frequent event.
+     * <p>
+     * Usage: {@code if (log.sample()) logger.info("... ({} more)", ..., log.takeSuppressed());}
+     */
+    public static class SampledLog {
+
+        private final long intervalNanos;
+        private final AtomicLong nextNanos = new AtomicLong(Long.MIN_VALUE);
+        private final LongAdder suppressed = new LongAdder();
+
+        public SampledLog(long interval, TimeUnit unit) {
+            this.intervalNanos = unit.toNanos(interval);
+        }
+
+        /**
+         * True if this occurrence should be logged, at most once per interval.
+         */
+        public boolean sample() {
+            long now = System.nanoTime();
+            long next = nextNanos.get();
+            if ((next == Long.MIN_VALUE || now - next >= 0) && nextNanos.compareAndSet(next, now + intervalNanos)) {
+                return true;
+            }
+            suppressed.increment();
+            return false;
+        }
+
+        /**
+         * Occurrences not logged since the last call.
+         */
+        public long takeSuppressed() {
+            return suppressed.sumThenReset();
+        }
+    }
+}
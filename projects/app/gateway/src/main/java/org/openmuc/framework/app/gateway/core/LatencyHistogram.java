@@ -0,0 +1,99 @@
+package org.openmuc.framework.app.gateway.core;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free latency histogram with power-of-two microsecond buckets.
+ * <p>
+ * Bucket 0 counts latencies below 1 us, bucket i (i &gt; 0) counts
+ * [2^(i-1), 2^i) us. The last bucket also takes everything above ~35 min.
+ * Recording is a few atomic adds, percentiles are reported as the upper
+ * bound of the bucket they fall into.
+ */
+public class LatencyHistogram {
+
+    private static final int BUCKETS = 32;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sumMicros = new AtomicLong();
+    private final AtomicLong maxMicros = new AtomicLong();
+
+    public void record(long micros) {
+        if (micros < 0) {
+            // clock skew between device and gateway
+            micros = 0;
+        }
+
+        int bucket = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+        counts.incrementAndGet(bucket);
+        count.incrementAndGet();
+        sumMicros.addAndGet(micros);
+
+        long max;
+        while (micros > (max = maxMicros.get()) && !maxMicros.compareAndSet(max, micros)) {
+            // retry
+        }
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getMaxMicros() {
+        return maxMicros.get();
+    }
+
+    public long getMeanMicros() {
+        long n = count.get();
+        return n > 0 ? sumMicros.get() / n : 0;
+    }
+
+    /**
+     * Upper bound in us of the bucket holding the given percentile (0..100), 0 if empty.
+     */
+    public long getPercentileMicros(double percentile) {
+        long n = count.get();
+        if (n == 0) {
+            return 0;
+        }
+
+        long rank = (long) Math.ceil(n * percentile / 100.0);
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            seen += counts.get(bucket);
+            if (seen >= rank) {
+                return Math.min(1L << bucket, maxMicros.get());
+            }
+        }
+        return maxMicros.get();
+    }
+
+    /**
+     * Share of recorded latencies above the given limit, upper estimate on bucket granularity.
+     */
+    public double getFractionAboveMicros(long limitMicros) {
+        long n = count.get();
+        if (n == 0) {
+            return 0;
+        }
+
+        long above = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            if ((1L << bucket) > limitMicros) {
+                above += counts.get(bucket);
+            }
+        }
+        return (double) above / n;
+    }
+
+    public void reset() {
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            counts.set(bucket, 0);
+        }
+        count.set(0);
+        sumMicros.set(0);
+        maxMicros.set(0);
+    }
+}
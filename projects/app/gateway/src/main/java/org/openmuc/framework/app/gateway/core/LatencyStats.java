@@ -0,0 +1,78 @@
+package org.openmuc.framework.app.gateway.core;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of values on their way from the device sample to the IEC 104 socket.
+ * <p>
+ * STAGES:
+ * - SAMPLE_TO_INPUT: record timestamp (SamplingTask) to the gateway RecordListener,
+ *   covers the driver read, ChannelImpl.notifyListeners and the listener executor
+ * - INPUT_TO_QUEUE: RecordListener to the DataHolder store
+ * - QUEUE_TO_DISPATCH: DataHolder store to the station lane (coalescing delay)
+ * - DISPATCH_TO_SEND: station lane to Connection.send returned, per group
+ * - END_TO_END: record timestamp to Connection.send returned
+ * <p>
+ * END_TO_END is also kept per IEC 104 client group.
+ */
+public class LatencyStats {
+
+    public enum Stage {
+        SAMPLE_TO_INPUT,
+        INPUT_TO_QUEUE,
+        QUEUE_TO_DISPATCH,
+        DISPATCH_TO_SEND,
+        END_TO_END
+    }
+
+    private static final LatencyStats instance = new LatencyStats();
+
+    private final Map<Stage, LatencyHistogram> stages = new EnumMap<>(Stage.class);
+    private final Map<String, LatencyHistogram> clients = new ConcurrentHashMap<>();
+
+    private LatencyStats() {
+        for (Stage stage : Stage.values()) {
+            stages.put(stage, new LatencyHistogram());
+        }
+    }
+
+    public static LatencyStats getInstance() {
+        return instance;
+    }
+
+    public void recordNanos(Stage stage, long fromNanos, long toNanos) {
+        stages.get(stage).record(TimeUnit.NANOSECONDS.toMicros(toNanos - fromNanos));
+    }
+
+    public void recordMillis(Stage stage, long fromMillis, long toMillis) {
+        stages.get(stage).record(TimeUnit.MILLISECONDS.toMicros(toMillis - fromMillis));
+    }
+
+    /**
+     * End-to-end latency of a value delivered to a client group.
+     */
+    public void recordClient(String clientGroup, long sampleMillis, long sentMillis) {
+        long micros = TimeUnit.MILLISECONDS.toMicros(sentMillis - sampleMillis);
+        stages.get(Stage.END_TO_END).record(micros);
+        clients.computeIfAbsent(clientGroup, group -> new LatencyHistogram()).record(micros);
+    }
+
+    public LatencyHistogram getStage(Stage stage) {
+        return stages.get(stage);
+    }
+
+    public Map<String, LatencyHistogram> getClients() {
+        return Collections.unmodifiableMap(clients);
+    }
+
+    public void reset() {
+        for (LatencyHistogram histogram : stages.values()) {
+            histogram.reset();
+        }
+        clients.clear();
+    }
+}
@@ -0,0 +1,384 @@
+package org.openmuc.framework.app.gateway.core;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import org.openmuc.framework.app.gateway.config.MappingRegistry;
+import org.openmuc.framework.app.gateway.config.PointTable;
+import org.openmuc.framework.app.gateway.dto.DataPoint;
+import org.openmuc.framework.app.gateway.dto.Mapping;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Periodic checkpoint of the DataHolder process image for warm restarts.
+ * <p>
+ * FILE LAYOUT (memory-mapped, big endian, fixed size):
+ * - Header (32 bytes): magic "GWPI", version, capacity, record size
+ * - Two slots, each a 32 byte slot header followed by capacity records
+ * - Slot header: generation, write time, record count, CRC32
+ * - Record (32 bytes): CA, IOA, value type, flags, value bits, timestamp
+ * <p>
+ * CRASH SAFETY:
+ * - A checkpoint writes the slot not holding the latest generation, forces
+ *   the records, then writes and forces the slot header
+ * - The CRC covers generation, count and records, a torn slot fails the check
+ * - Restore takes the valid slot with the highest generation
+ * <p>
+ * RESTORE:
+ * - Only points that are still mapped are restored, with the current ASDU type
+ * - Restored points are marked not topical (NT) until the source reports again
+ * <p>
+ * Checkpoints iterate the DataHolder maps without locking, updates are never blocked.
+ * Points beyond the capacity (twice the mapped points at creation, at least
+ * MIN_CAPACITY) are left out of the snapshot.
+ */
+public class ProcessImageSnapshot {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProcessImageSnapshot.class);
+
+    private static final int MAGIC = 0x47575049; // "GWPI"
+    private static final short VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+    private static final int SLOT_HEADER_SIZE = 32;
+    private static final int RECORD_SIZE = 32;
+    private static final int MIN_CAPACITY = 1024;
+
+    private static final byte VALUE_BOOLEAN = 1;
+    private static final byte VALUE_FLOAT = 2;
+    private static final byte VALUE_DOUBLE = 3;
+    private static final byte VALUE_INTEGER = 4;
+    private static final byte VALUE_LONG = 5;
+
+    private static final byte FLAG_VALID = 0x01;
+
+    private final Path file;
+    private final DataHolder dataHolder;
+    private final MappingRegistry mappingRegistry;
+
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int capacity;
+    private long generation;
+    private ScheduledExecutorService executor;
+
+    // Metrics
+    private volatile long checkpoints = 0;
+    private volatile int lastCheckpointPoints = 0;
+    private volatile int skippedPoints = 0;
+
+    public ProcessImageSnapshot(String file, DataHolder dataHolder, MappingRegistry mappingRegistry) {
+        this.file = Paths.get(file);
+        this.dataHolder = dataHolder;
+        this.mappingRegistry = mappingRegistry;
+    }
+
+    /**
+     * Map the snapshot file, restore the latest valid checkpoint into the
+     * DataHolder and start checkpointing every intervalSeconds.
+     */
+    public synchronized void start(int intervalSeconds) throws IOException {
+        if (executor != null) {
+            return;
+        }
+
+        open();
+        restore();
+
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "ProcessImage-Snapshot");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(1, intervalSeconds);
+        executor.scheduleWithFixedDelay(this::checkpointSafely, period, period, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Stop checkpointing, write a last checkpoint and unmap the file.
+     */
+    public synchronized void stop() {
+        if (executor == null) {
+            return;
+        }
+
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            executor.shutdownNow();
+        }
+        executor = null;
+
+        checkpointSafely();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            logger.warn("Error closing snapshot file {}: {}", file, e.getMessage());
+        }
+        channel = null;
+        buffer = null;
+    }
+
+    private void open() throws IOException {
+        int required = Math.max(MIN_CAPACITY, mappingRegistry.getPointTable().size() * 2);
+
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+
+        int existing = readCapacity();
+        if (existing >= required) {
+            capacity = existing;
+        } else {
+            if (existing > 0) {
+                logger.warn("Snapshot {} holds {} points, {} needed: previous snapshot discarded", file, existing,
+                        required);
+            }
+            capacity = required;
+            channel.truncate(0);
+        }
+
+        long size = HEADER_SIZE + 2L * slotSize();
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+
+        if (existing != capacity) {
+            buffer.putInt(0, MAGIC);
+            buffer.putShort(4, VERSION);
+            buffer.putInt(8, capacity);
+            buffer.putInt(12, RECORD_SIZE);
+            buffer.force();
+        }
+
+        logger.info("Process image snapshot {} mapped ({} points, {} bytes)", file, capacity, size);
+    }
+
+    /**
+     * Capacity of an existing snapshot file, 0 if missing or of another layout.
+     */
+    private int readCapacity() throws IOException {
+        if (channel.size() < HEADER_SIZE) {
+            return 0;
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        channel.read(header, 0);
+        if (header.getInt(0) != MAGIC || header.getShort(4) != VERSION || header.getInt(12) != RECORD_SIZE) {
+            logger.warn("Snapshot {} has an unknown format, ignoring it", file);
+            return 0;
+        }
+
+        int fileCapacity = header.getInt(8);
+        if (fileCapacity <= 0 || channel.size() < HEADER_SIZE + 2L * (SLOT_HEADER_SIZE + (long) fileCapacity
+                * RECORD_SIZE)) {
+            logger.warn("Snapshot {} is truncated, ignoring it", file);
+            return 0;
+        }
+        return fileCapacity;
+    }
+
+    private void restore() {
+        int slot = latestValidSlot();
+        if (slot < 0) {
+            logger.info("No valid process image snapshot in {}", file);
+            return;
+        }
+
+        int base = slotOffset(slot);
+        generation = buffer.getLong(base);
+        long writtenAt = buffer.getLong(base + 8);
+        int count = buffer.getInt(base + 16);
+
+        PointTable pointTable = mappingRegistry.getPointTable();
+        int restored = 0;
+        for (int i = 0; i < count; i++) {
+            int offset = base + SLOT_HEADER_SIZE + i * RECORD_SIZE;
+            int commonAddress = buffer.getInt(offset);
+            int ioa = buffer.getInt(offset + 4);
+
+            Mapping mapping = pointTable.getMapping(commonAddress, ioa);
+            if (mapping == null) {
+                continue;
+            }
+
+            DataPoint dp = new DataPoint(ioa, commonAddress, mapping.getAsduType(),
+                    decodeValue(buffer.get(offset + 8), buffer.getLong(offset + 12)),
+                    buffer.getLong(offset + 20), (buffer.get(offset + 9) & FLAG_VALID) != 0);
+            dp.setId(mapping.getChannelId());
+            dp.setSourceProtocol(mapping.getSourceProtocol());
+            dp.setNotTopical(true);
+
+            if (dp.getValue() != null && dataHolder.restoreDataPoint(dp)) {
+                restored++;
+            }
+        }
+
+        logger.info("Restored {} of {} points from snapshot generation {} ({} s old)", restored, count,
+                generation, (System.currentTimeMillis() - writtenAt) / 1000);
+    }
+
+    private int latestValidSlot() {
+        int latest = -1;
+        long latestGeneration = 0;
+        for (int slot = 0; slot < 2; slot++) {
+            int base = slotOffset(slot);
+            long slotGeneration = buffer.getLong(base);
+            int count = buffer.getInt(base + 16);
+            if (slotGeneration <= latestGeneration || count < 0 || count > capacity) {
+                continue;
+            }
+            if (crc(base, slotGeneration, count) == buffer.getInt(base + 20)) {
+                latest = slot;
+                latestGeneration = slotGeneration;
+            }
+        }
+        return latest;
+    }
+
+    private void checkpointSafely() {
+        try {
+            checkpoint();
+        } catch (Exception e) {
+            logger.error("Process image checkpoint failed: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Write the current process image into the older slot.
+     * Only called from the snapshot thread or after it was stopped.
+     */
+    private void checkpoint() {
+        long nextGeneration = generation + 1;
+        int base = slotOffset((int) (nextGeneration & 1));
+
+        int[] count = { 0 };
+        int[] skipped = { 0 };
+        dataHolder.forEachDataPoint(dp -> {
+            byte valueType = valueType(dp.getValue());
+            if (valueType == 0) {
+                return;
+            }
+            if (count[0] == capacity) {
+                skipped[0]++;
+                return;
+            }
+
+            int offset = base + SLOT_HEADER_SIZE + count[0] * RECORD_SIZE;
+            buffer.putInt(offset, dp.getCommonAddress());
+            buffer.putInt(offset + 4, dp.getIoa());
+            buffer.put(offset + 8, valueType);
+            buffer.put(offset + 9, dp.isValid() ? FLAG_VALID : 0);
+            buffer.putLong(offset + 12, encodeValue(valueType, dp.getValue()));
+            buffer.putLong(offset + 20, dp.getTimestamp());
+            count[0]++;
+        });
+        buffer.force();
+
+        // Commit: header last, the CRC only matches once the records are on disk
+        buffer.putLong(base, nextGeneration);
+        buffer.putLong(base + 8, System.currentTimeMillis());
+        buffer.putInt(base + 16, count[0]);
+        buffer.putInt(base + 20, crc(base, nextGeneration, count[0]));
+        buffer.force();
+        generation = nextGeneration;
+
+        checkpoints++;
+        lastCheckpointPoints = count[0];
+        if (skipped[0] > 0 && skipped[0] != skippedPoints) {
+            logger.warn("Snapshot capacity {} exceeded, {} points not checkpointed", capacity, skipped[0]);
+        }
+        skippedPoints = skipped[0];
+    }
+
+    private int crc(int base, long slotGeneration, int count) {
+        CRC32 crc = new CRC32();
+        ByteBuffer header = ByteBuffer.allocate(12);
+        header.putLong(slotGeneration).putInt(count);
+        crc.update(header.array());
+
+        ByteBuffer records = buffer.duplicate();
+        records.position(base + SLOT_HEADER_SIZE);
+        records.limit(base + SLOT_HEADER_SIZE + count * RECORD_SIZE);
+        crc.update(records);
+        return (int) crc.getValue();
+    }
+
+    private long slotSize() {
+        return SLOT_HEADER_SIZE + (long) capacity * RECORD_SIZE;
+    }
+
+    private int slotOffset(int slot) {
+        return (int) (HEADER_SIZE + slot * slotSize());
+    }
+
+    private static byte valueType(Object value) {
+        if (value instanceof Boolean) {
+            return VALUE_BOOLEAN;
+        }
+        if (value instanceof Float) {
+            return VALUE_FLOAT;
+        }
+        if (value instanceof Long) {
+            return VALUE_LONG;
+        }
+        if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return VALUE_INTEGER;
+        }
+        if (value instanceof Number) {
+            return VALUE_DOUBLE;
+        }
+        return 0;
+    }
+
+    private static long encodeValue(byte valueType, Object value) {
+        switch (valueType) {
+            case VALUE_BOOLEAN:
+                return (Boolean) value ? 1 : 0;
+            case VALUE_INTEGER:
+            case VALUE_LONG:
+                return ((Number) value).longValue();
+            default:
+                return Double.doubleToLongBits(((Number) value).doubleValue());
+        }
+    }
+
+    private static Object decodeValue(byte valueType, long bits) {
+        switch (valueType) {
+            case VALUE_BOOLEAN:
+                return bits != 0;
+            case VALUE_FLOAT:
+                return (float) Double.longBitsToDouble(bits);
+            case VALUE_DOUBLE:
+                return Double.longBitsToDouble(bits);
+            case VALUE_INTEGER:
+                return (int) bits;
+            case VALUE_LONG:
+                return bits;
+            default:
+                return null;
+        }
+    }
+
+    public long getCheckpoints() {
+        return checkpoints;
+    }
+
+    public int getLastCheckpointPoints() {
+        return lastCheckpointPoints;
+    }
+}
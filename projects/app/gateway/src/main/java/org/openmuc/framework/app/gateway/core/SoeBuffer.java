@@ -0,0 +1,236 @@
+package org.openmuc.framework.app.gateway.core;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.openmuc.framework.app.gateway.dto.DataPoint;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Sequence-of-events ring buffer for time-tagged points.
+ * <p>
+ * FEATURES:
+ * - Every change of an M_SP_TB_1 / M_ME_TF_1 point is recorded (no coalescing)
+ * - One global sequence number, so ordering across IOAs is kept
+ * - Preallocated primitive arrays: memory is fixed regardless of event rate
+ * - Oldest events are overwritten when full, readers that fall behind are counted as overflow
+ * <p>
+ * Sequence numbers start at 1. A reader keeps the sequence number of the
+ * next event it wants and calls {@link #read(long, int)} until it is caught up.
+ * <p>
+ * The buffer belongs to a DataHolder instance, which sizes it from the
+ * mapping and resizes it when a reload changes the soeBufferSize.
+ */
+public class SoeBuffer {
+
+    private static final Logger logger = LoggerFactory.getLogger(SoeBuffer.class);
+
+    private static final byte TYPE_SINGLE_POINT = 1;
+    private static final byte TYPE_SHORT_FLOAT = 2;
+
+    // Guarded by this, replaced on resize
+    private int capacity;
+    private int mask;
+
+    private long[] timestamps;
+    private int[] ioas;
+    private int[] commonAddresses;
+    private float[] values;
+    private byte[] types;
+    private boolean[] invalid;
+
+    /**
+     * Sequence number the next recorded event gets.
+     */
+    private long nextSeq = 1;
+
+    // Metrics
+    private long recordedEvents = 0;
+    private long overflowedEvents = 0;
+
+    SoeBuffer(int requestedCapacity) {
+        allocate(capacityFor(requestedCapacity));
+        logger.info("SOE buffer initialized (capacity: {} events)", capacity);
+    }
+
+    private static int capacityFor(int requestedCapacity) {
+        return Integer.highestOneBit(Math.max(16, requestedCapacity) - 1) << 1;
+    }
+
+    private void allocate(int newCapacity) {
+        capacity = newCapacity;
+        mask = newCapacity - 1;
+
+        timestamps = new long[newCapacity];
+        ioas = new int[newCapacity];
+        commonAddresses = new int[newCapacity];
+        values = new float[newCapacity];
+        types = new byte[newCapacity];
+        invalid = new boolean[newCapacity];
+    }
+
+    /**
+     * Change the capacity, keeping the newest events that fit and the
+     * sequence numbers. Readers behind the kept events get an overflow.
+     */
+    public synchronized void resize(int requestedCapacity) {
+        int newCapacity = capacityFor(requestedCapacity);
+        if (newCapacity == capacity) {
+            return;
+        }
+
+        long[] oldTimestamps = timestamps;
+        int[] oldIoas = ioas;
+        int[] oldCommonAddresses = commonAddresses;
+        float[] oldValues = values;
+        byte[] oldTypes = types;
+        boolean[] oldInvalid = invalid;
+        int oldMask = mask;
+        long from = Math.max(oldestSeq(), nextSeq - newCapacity);
+
+        allocate(newCapacity);
+        for (long seq = from; seq < nextSeq; seq++) {
+            int oldIndex = (int) (seq & oldMask);
+            int index = (int) (seq & mask);
+            timestamps[index] = oldTimestamps[oldIndex];
+            ioas[index] = oldIoas[oldIndex];
+            commonAddresses[index] = oldCommonAddresses[oldIndex];
+            values[index] = oldValues[oldIndex];
+            types[index] = oldTypes[oldIndex];
+            invalid[index] = oldInvalid[oldIndex];
+        }
+
+        logger.info("SOE buffer resized (capacity: {} events)", capacity);
+    }
+
+    /**
+     * True for ASDU types that carry a time tag and are buffered as events.
+     */
+    public static boolean isEventType(String asduType) {
+        return "M_SP_TB_1".equals(asduType) || "M_ME_TF_1".equals(asduType);
+    }
+
+    /**
+     * Record an event.
+     *
+     * @return sequence number of the event, or 0 if the point is not an event type
+     */
+    public long record(DataPoint dataPoint) {
+        Object value = dataPoint.getValue();
+        float number;
+        if (value instanceof Boolean) {
+            number = (Boolean) value ? 1f : 0f;
+        } else {
+            number = value instanceof Number ? ((Number) value).floatValue() : 0f;
+        }
+        return record(dataPoint.getAsduType(), dataPoint.getCommonAddress(), dataPoint.getIoa(), number,
+                dataPoint.getTimestamp(), dataPoint.isValid());
+    }
+
+    /**
+     * Record an event from primitives, a single point is on for a value whose integer part is not 0.
+     *
+     * @return sequence number of the event, or 0 if the point is not an event type
+     */
+    public synchronized long record(String asduType, int commonAddress, int ioa, float value, long timestamp,
+            boolean valid) {
+        byte type;
+
+        if ("M_SP_TB_1".equals(asduType)) {
+            type = TYPE_SINGLE_POINT;
+            value = (int) value != 0 ? 1f : 0f;
+        } else if ("M_ME_TF_1".equals(asduType)) {
+            type = TYPE_SHORT_FLOAT;
+        } else {
+            return 0;
+        }
+
+        long seq = nextSeq++;
+        int index = (int) (seq & mask);
+
+        timestamps[index] = timestamp > 0 ? timestamp : System.currentTimeMillis();
+        ioas[index] = ioa;
+        commonAddresses[index] = commonAddress;
+        values[index] = value;
+        types[index] = type;
+        invalid[index] = !valid;
+
+        recordedEvents++;
+        return seq;
+    }
+
+    /**
+     * Read up to maxEvents events starting at fromSeq.
+     * If fromSeq was already overwritten, reading continues at the oldest
+     * available event and the gap is counted as overflow.
+     */
+    public synchronized List<SoeEvent> read(long fromSeq, int maxEvents) {
+        long oldest = oldestSeq();
+        long seq = fromSeq;
+
+        if (seq < oldest) {
+            long lost = oldest - seq;
+            overflowedEvents += lost;
+            logger.warn("SOE overflow: {} event(s) overwritten before delivery", lost);
+            seq = oldest;
+        }
+
+        int count = (int) Math.min(maxEvents, Math.max(0, nextSeq - seq));
+        List<SoeEvent> events = new ArrayList<>(count);
+
+        for (int i = 0; i < count; i++, seq++) {
+            int index = (int) (seq & mask);
+            events.add(new SoeEvent(seq, ioas[index], commonAddresses[index],
+                    types[index] == TYPE_SINGLE_POINT ? "M_SP_TB_1" : "M_ME_TF_1",
+                    types[index] == TYPE_SINGLE_POINT ? (Object) (values[index] != 0f) : (Object) values[index],
+                    timestamps[index], !invalid[index]));
+        }
+        return events;
+    }
+
+    /**
+     * Sequence number of the most recent event (0 if none yet).
+     */
+    public synchronized long lastSeq() {
+        return nextSeq - 1;
+    }
+
+    private long oldestSeq() {
+        return Math.max(1, nextSeq - capacity);
+    }
+
+    public synchronized int getCapacity() {
+        return capacity;
+    }
+
+    public synchronized long getRecordedEvents() {
+        return recordedEvents;
+    }
+
+    public synchronized long getOverflowedEvents() {
+        return overflowedEvents;
+    }
+
+    /**
+     * One buffered event, copied out of the ring.
+     */
+    public static class SoeEvent {
+        private final long seq;
+        private final DataPoint dataPoint;
+
+        SoeEvent(long seq, int ioa, int commonAddress, String asduType, Object value, long timestamp,
+                boolean valid) {
+            this.seq = seq;
+            this.dataPoint = new DataPoint(ioa, commonAddress, asduType, value, timestamp, valid);
+        }
+
+        public long getSeq() {
+            return seq;
+        }
+
+        public DataPoint getDataPoint() {
+            return dataPoint;
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package org.openmuc.framework.app.gateway.core;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openmuc.framework.data.Record;
+import org.openmuc.framework.data.Value;
+import org.openmuc.framework.data.ValueType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Captures the records arriving at the gateway input, with their
+ * timing, for offline replay by the TrafficReplay of the replay tool bundle.
+ * <p>
+ * FILE LAYOUT (big endian, var = unsigned LEB128, zvar = zigzag var):
+ * - Header: magic "GWTC", version (short), capture start (long, epoch ms)
+ * - CHANNEL entry: tag 1, channel index (var), channel ID (UTF),
+ *   written once before the first record of a channel
+ * - RECORD entry: tag 2, channel index (var), micros since the previous
+ *   entry (var), flag code (byte), kind (byte), arrival - timestamp in ms
+ *   (zvar, only if timestamped), value (only if present)
+ * - kind = value type ordinal + 1 (0 = no value), bit 7 set if timestamped
+ * <p>
+ * Capturing is enabled by the system property {@value #CAPTURE_FILE_PROPERTY}.
+ * Records are appended to a buffered stream under the recorder lock, so the
+ * slot writers pay one synchronized buffer copy per record. The file is
+ * flushed when the input binder is deactivated and closed on JVM exit.
+ */
+public class TrafficRecorder {
+
+    private static final Logger logger = LoggerFactory.getLogger(TrafficRecorder.class);
+
+    public static final String CAPTURE_FILE_PROPERTY = "org.openmuc.framework.app.gateway.capturefile";
+
+    public static final int MAGIC = 0x47575443; // "GWTC"
+    public static final short VERSION = 1;
+    public static final int TAG_CHANNEL = 1;
+    public static final int TAG_RECORD = 2;
+    public static final int KIND_TIMESTAMPED = 0x80;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final TrafficRecorder instance = new TrafficRecorder(System.getProperty(CAPTURE_FILE_PROPERTY));
+
+    private final Map<String, Integer> channelIndexes = new HashMap<>();
+    private DataOutputStream out;
+    private volatile boolean enabled;
+    private long lastNanos;
+    private long recordCount;
+
+    private TrafficRecorder(String fileName) {
+        if (fileName == null || fileName.isEmpty()) {
+            return;
+        }
+
+        File file = new File(fileName);
+        try {
+            File parent = file.getAbsoluteFile().getParentFile();
+            if (parent != null) {
+                parent.mkdirs();
+            }
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE));
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+            out.writeLong(System.currentTimeMillis());
+            lastNanos = System.nanoTime();
+            enabled = true;
+            Runtime.getRuntime().addShutdownHook(new Thread(this::close, "TrafficRecorder-Close"));
+            logger.info("Capturing gateway input traffic to {}", file.getAbsolutePath());
+        } catch (IOException e) {
+            logger.error("Traffic capture to {} not started: {}", file.getAbsolutePath(), e.getMessage());
+        }
+    }
+
+    public static TrafficRecorder getInstance() {
+        return instance;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Append a record received for a channel. Called on the listener thread.
+     */
+    public void record(String channelId, Record record, long arrivalMillis) {
+        if (!enabled) {
+            return;
+        }
+
+        synchronized (this) {
+            if (!enabled) {
+                return;
+            }
+            try {
+                Integer index = channelIndexes.get(channelId);
+                if (index == null) {
+                    index = channelIndexes.size();
+                    channelIndexes.put(channelId, index);
+                    out.writeByte(TAG_CHANNEL);
+                    writeVar(out, index);
+                    out.writeUTF(channelId);
+                }
+
+                long nowNanos = System.nanoTime();
+                Value value = record.getValue();
+                Long timestamp = record.getTimestamp();
+                int kind = value != null ? value.getValueType().ordinal() + 1 : 0;
+                if (timestamp != null) {
+                    kind |= KIND_TIMESTAMPED;
+                }
+
+                out.writeByte(TAG_RECORD);
+                writeVar(out, index);
+                writeVar(out, TimeUnit.NANOSECONDS.toMicros(nowNanos - lastNanos));
+                out.writeByte(record.getFlag().getCode());
+                out.writeByte(kind);
+                if (timestamp != null) {
+                    writeVar(out, zigzag(arrivalMillis - timestamp));
+                }
+                if (value != null) {
+                    writeValue(out, value);
+                }
+
+                lastNanos = nowNanos;
+                recordCount++;
+            } catch (Exception e) {
+                logger.error("Traffic capture stopped after {} records: {}", recordCount, e.getMessage());
+                closeQuietly();
+            }
+        }
+    }
+
+    private static void writeValue(DataOutputStream out, Value value) throws IOException {
+        switch (value.getValueType()) {
+            case BOOLEAN:
+                out.writeBoolean(value.asBoolean());
+                break;
+            case BYTE:
+                out.writeByte(value.asByte());
+                break;
+            case SHORT:
+                out.writeShort(value.asShort());
+                break;
+            case INTEGER:
+                writeVar(out, zigzag(value.asInt()));
+                break;
+            case LONG:
+                writeVar(out, zigzag(value.asLong()));
+                break;
+            case FLOAT:
+                out.writeInt(Float.floatToIntBits(value.asFloat()));
+                break;
+            case DOUBLE:
+                out.writeLong(Double.doubleToLongBits(value.asDouble()));
+                break;
+            case STRING:
+                byte[] text = value.asString().getBytes(StandardCharsets.UTF_8);
+                writeVar(out, text.length);
+                out.write(text);
+                break;
+            case BYTE_ARRAY:
+                byte[] bytes = value.asByteArray();
+                writeVar(out, bytes.length);
+                out.write(bytes);
+                break;
+            default:
+                throw new IOException("Unsupported value type " + value.getValueType());
+        }
+    }
+
+    private static void writeVar(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    public synchronized long getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * Write buffered records to the file.
+     */
+    public synchronized void flush() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            out.flush();
+        } catch (IOException e) {
+            logger.error("Traffic capture stopped after {} records: {}", recordCount, e.getMessage());
+            closeQuietly();
+        }
+    }
+
+    /**
+     * Flush and close the capture file. Later records are ignored.
+     */
+    public synchronized void close() {
+        if (!enabled) {
+            return;
+        }
+        logger.info("Traffic capture closed after {} records", recordCount);
+        closeQuietly();
+    }
+
+    private void closeQuietly() {
+        enabled = false;
+        try {
+            out.close();
+        } catch (IOException e) {
+            logger.warn("Error closing traffic capture: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Value type of a record kind byte, null if the record has no value.
+     */
+    public static ValueType valueTypeOf(int kind) {
+        int ordinal = (kind & ~KIND_TIMESTAMPED) - 1;
+        return ordinal < 0 ? null : ValueType.values()[ordinal];
+    }
+}
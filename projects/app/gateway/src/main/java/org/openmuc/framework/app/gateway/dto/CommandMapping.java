@@ -0,0 +1,74 @@
+package org.openmuc.framework.app.gateway.dto;
+
+/**
+ * Command Configuration - Maps an IEC 104 control IOA to an OpenMUC channel write.
+ * <p>
+ * SUPPORTED TYPES:
+ * - "C_SC_NA_1": Single command  -> BOOLEAN
+ * - "C_DC_NA_1": Double command  -> BOOLEAN (ON=true, OFF=false)
+ * - "C_SE_NC_1": Set point float -> DOUBLE
+ * - "C_SE_NB_1": Set point scaled -> DOUBLE
+ * <p>
+ * Set point values are converted back from the gateway scaling of the point:
+ * raw_value = (command_value - offset) / scalingFactor
+ */
+public class CommandMapping {
+
+    private final String channelId;
+    private final int ioa;
+    private final int commonAddress;
+    private final String commandType;
+
+    /**
+     * Select-before-operate: execute is only accepted after a select of the same IOA.
+     */
+    private final boolean selectBeforeOperate;
+
+    private final double scalingFactor;
+    private final double offset;
+
+    public CommandMapping(String channelId, int ioa, int commonAddress, String commandType,
+                          boolean selectBeforeOperate, double scalingFactor, double offset) {
+        this.channelId = channelId;
+        this.ioa = ioa;
+        this.commonAddress = commonAddress;
+        this.commandType = commandType;
+        this.selectBeforeOperate = selectBeforeOperate;
+        this.scalingFactor = scalingFactor;
+        this.offset = offset;
+    }
+
+    public String getChannelId() {
+        return channelId;
+    }
+
+    public int getIoa() {
+        return ioa;
+    }
+
+    public int getCommonAddress() {
+        return commonAddress;
+    }
+
+    public String getCommandType() {
+        return commandType;
+    }
+
+    public boolean isSelectBeforeOperate() {
+        return selectBeforeOperate;
+    }
+
+    /**
+     * Convert a set point value to the channel's raw value.
+     */
+    public double toRawValue(double commandValue) {
+        double raw = commandValue - offset;
+        return scalingFactor != 0 ? raw / scalingFactor : raw;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("CommandMapping[channel=%s, ioa=%d, ca=%d, type=%s, sbo=%b]",
+                channelId, ioa, commonAddress, commandType, selectBeforeOperate);
+    }
+}
@@ -0,0 +1,91 @@
+package org.openmuc.framework.app.gateway.dto;
+
+/**
+ * Live state of an integrated total (M_IT_NA_1 / M_IT_TB_1).
+ * <p>
+ * The device delivers an absolute counter. The reported value is the
+ * counter minus the baseline, the baseline is moved to the current counter
+ * by a freeze-with-reset or a reset, so a reset counter reports the
+ * increment since the reset.
+ * <p>
+ * Not thread-safe, guarded by the CounterStore.
+ */
+public class CounterPoint {
+
+    private final int commonAddress;
+    private final int ioa;
+
+    private long counter;
+    private long baseline;
+    private boolean received;
+    private boolean valid;
+    private long timestamp;
+
+    /**
+     * Counter went backwards (device reset, rollover) since the last freeze.
+     */
+    private boolean adjusted;
+
+    /**
+     * Sequence number of the last freeze, 0..31.
+     */
+    private int sequenceNumber;
+
+    public CounterPoint(int commonAddress, int ioa) {
+        this.commonAddress = commonAddress;
+        this.ioa = ioa;
+    }
+
+    public void update(long counter, boolean valid, long timestamp) {
+        if (valid) {
+            if (received && counter < this.counter) {
+                adjusted = true;
+            }
+            this.counter = counter;
+            this.received = true;
+        }
+        this.valid = valid;
+        this.timestamp = timestamp;
+    }
+
+    /**
+     * Take a reading and advance the sequence number.
+     *
+     * @param reset
+     *            restart counting from the current counter after the reading
+     */
+    public CounterReading freeze(String asduType, int group, boolean reset, long frozenAt) {
+        sequenceNumber = (sequenceNumber + 1) & 0x1F;
+
+        long value = counter - baseline;
+        boolean carry = value > Integer.MAX_VALUE || value < Integer.MIN_VALUE;
+        CounterReading reading = new CounterReading(ioa, asduType, group, (int) value, sequenceNumber, carry,
+                adjusted, !received || !valid, received ? timestamp : frozenAt);
+
+        adjusted = false;
+        if (reset) {
+            resetBaseline();
+        }
+        return reading;
+    }
+
+    /**
+     * Live reading as data point: counter since the last reset (Long), the
+     * time of the last sample.
+     */
+    public DataPoint toDataPoint(String asduType) {
+        return new DataPoint(ioa, commonAddress, asduType, counter - baseline, timestamp, received && valid);
+    }
+
+    public void resetBaseline() {
+        baseline = counter;
+    }
+
+    public int getCommonAddress() {
+        return commonAddress;
+    }
+
+    public int getIoa() {
+        return ioa;
+    }
+}
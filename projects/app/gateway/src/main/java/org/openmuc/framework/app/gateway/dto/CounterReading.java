@@ -0,0 +1,76 @@
+package org.openmuc.framework.app.gateway.dto;
+
+/**
+ * Frozen reading of an integrated total, as answered to a counter interrogation.
+ * Immutable, shared between connections.
+ */
+public class CounterReading {
+
+    private final int ioa;
+    private final String asduType;
+    private final int group;
+    private final int value;
+    private final int sequenceNumber;
+    private final boolean carry;
+    private final boolean adjusted;
+    private final boolean invalid;
+    private final long timestamp;
+
+    public CounterReading(int ioa, String asduType, int group, int value, int sequenceNumber, boolean carry,
+                          boolean adjusted, boolean invalid, long timestamp) {
+        this.ioa = ioa;
+        this.asduType = asduType;
+        this.group = group;
+        this.value = value;
+        this.sequenceNumber = sequenceNumber;
+        this.carry = carry;
+        this.adjusted = adjusted;
+        this.invalid = invalid;
+        this.timestamp = timestamp;
+    }
+
+    public int getIoa() {
+        return ioa;
+    }
+
+    public String getAsduType() {
+        return asduType;
+    }
+
+    /**
+     * Counter group 1..4 (QCC RQT).
+     */
+    public int getGroup() {
+        return group;
+    }
+
+    public int getValue() {
+        return value;
+    }
+
+    public int getSequenceNumber() {
+        return sequenceNumber;
+    }
+
+    public boolean isCarry() {
+        return carry;
+    }
+
+    public boolean isAdjusted() {
+        return adjusted;
+    }
+
+    public boolean isInvalid() {
+        return invalid;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    @Override
+    public String toString() {
+        return "CounterReading[ioa=" + ioa + ", group=" + group + ", value=" + value + ", sq=" + sequenceNumber
+                + (carry ? ", CY" : "") + (adjusted ? ", CA" : "") + (invalid ? ", IV" : "") + "]";
+    }
+}
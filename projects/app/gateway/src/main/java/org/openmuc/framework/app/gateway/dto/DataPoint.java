@@ -161,6 +161,15 @@ public class DataPoint {
      */
     private boolean valid = true; // Default: assume valid
 
+    /**
+     * Not topical: the value was restored from the process image snapshot
+     * and has not been confirmed by the source since the restart.
+     *
+     * IEC 104 MAPPING:
+     * - true → Quality flags: NT=1
+     */
+    private boolean notTopical;
+
     /**
      * Timestamp from source device (milliseconds since epoch).
      *
@@ -233,6 +242,19 @@ public class DataPoint {
      */
     private long lastUpdated;
 
+    /**
+     * Latency trace (see LatencyStats).
+     *
+     * - sampleTime: record timestamp from the sampling task (ms since epoch)
+     * - inputNanos: System.nanoTime() when the gateway RecordListener got the record
+     * - queuedNanos: System.nanoTime() when DataHolder stored the point
+     *
+     * 0 if unknown.
+     */
+    private long sampleTime;
+    private long inputNanos;
+    private long queuedNanos;
+
     // ============================================================================
     // CONSTRUCTORS
     // ============================================================================
@@ -331,6 +353,14 @@ public class DataPoint {
         this.valid = valid;
     }
 
+    public boolean isNotTopical() {
+        return notTopical;
+    }
+
+    public void setNotTopical(boolean notTopical) {
+        this.notTopical = notTopical;
+    }
+
     public long getTimestamp() {
         return timestamp;
     }
@@ -366,6 +396,30 @@ public class DataPoint {
         return lastUpdated;
     }
 
+    public long getSampleTime() {
+        return sampleTime;
+    }
+
+    public void setSampleTime(long sampleTime) {
+        this.sampleTime = sampleTime;
+    }
+
+    public long getInputNanos() {
+        return inputNanos;
+    }
+
+    public void setInputNanos(long inputNanos) {
+        this.inputNanos = inputNanos;
+    }
+
+    public long getQueuedNanos() {
+        return queuedNanos;
+    }
+
+    public void setQueuedNanos(long queuedNanos) {
+        this.queuedNanos = queuedNanos;
+    }
+
     // ============================================================================
     // UTILITY METHODS
     // ============================================================================
@@ -16,6 +16,16 @@ import java.util.Objects;
  */
 public class Mapping {
 
+    /**
+     * OpenMUC channel ID this mapping is bound to (null for programmatic mappings).
+     */
+    private final String channelId;
+
+    /**
+     * Source protocol of the channel (e.g., "IEC61850", "MODBUS_TCP").
+     */
+    private final String sourceProtocol;
+
     /**
      * IEC 104 Information Object Address.
      */
@@ -52,6 +62,23 @@ public class Mapping {
      */
     private final String description;
 
+    /**
+     * Spontaneous deadband in scaled units (0 = every change is sent).
+     * A numeric change smaller than this is kept in the process image
+     * but not transmitted spontaneously; validity changes always are.
+     */
+    private final double deadband;
+
+    /**
+     * Point is part of the cyclic (COT=1 periodic) transmission.
+     */
+    private final boolean cyclic;
+
+    /**
+     * Counter group 1..4 of an integrated total (M_IT_*), 0 for other points.
+     */
+    private final int counterGroup;
+
     // ============================================================================
     // CONSTRUCTORS
     // ============================================================================
@@ -86,11 +113,32 @@ public class Mapping {
         this(ioa, 1, asduType, dataType, scalingFactor, offset, description);
     }
 
-    /**
-     * Full constructor.
-     */
     public Mapping(int ioa, int commonAddress, String asduType, String dataType,
                    double scalingFactor, double offset, String description) {
+        this(null, null, ioa, commonAddress, asduType, dataType, scalingFactor, offset, description);
+    }
+
+    public Mapping(String channelId, String sourceProtocol, int ioa, int commonAddress, String asduType,
+                   String dataType, double scalingFactor, double offset, String description) {
+        this(channelId, sourceProtocol, ioa, commonAddress, asduType, dataType, scalingFactor, offset, description,
+                0.0, false);
+    }
+
+    public Mapping(String channelId, String sourceProtocol, int ioa, int commonAddress, String asduType,
+                   String dataType, double scalingFactor, double offset, String description, double deadband,
+                   boolean cyclic) {
+        this(channelId, sourceProtocol, ioa, commonAddress, asduType, dataType, scalingFactor, offset, description,
+                deadband, cyclic, 0);
+    }
+
+    /**
+     * Full constructor (used by the mapping file parser).
+     */
+    public Mapping(String channelId, String sourceProtocol, int ioa, int commonAddress, String asduType,
+                   String dataType, double scalingFactor, double offset, String description, double deadband,
+                   boolean cyclic, int counterGroup) {
+        this.channelId = channelId;
+        this.sourceProtocol = sourceProtocol;
         this.ioa = ioa;
         this.commonAddress = commonAddress;
         this.asduType = asduType;
@@ -98,12 +146,23 @@ public class Mapping {
         this.scalingFactor = scalingFactor;
         this.offset = offset;
         this.description = description;
+        this.deadband = deadband;
+        this.cyclic = cyclic;
+        this.counterGroup = counterGroup;
     }
 
     // ============================================================================
     // GETTERS
     // ============================================================================
 
+    public String getChannelId() {
+        return channelId;
+    }
+
+    public String getSourceProtocol() {
+        return sourceProtocol;
+    }
+
     public int getIoa() {
         return ioa;
     }
@@ -132,6 +191,37 @@ public class Mapping {
         return description;
     }
 
+    public double getDeadband() {
+        return deadband;
+    }
+
+    public boolean isCyclic() {
+        return cyclic;
+    }
+
+    public int getCounterGroup() {
+        return counterGroup;
+    }
+
+    /**
+     * Compare every configured field, not only the IEC 104 address.
+     * Used on mapping reload to find the channels whose binding must be renewed.
+     */
+    public boolean hasSameSettings(Mapping other) {
+        return other != null
+                && ioa == other.ioa
+                && commonAddress == other.commonAddress
+                && Double.compare(scalingFactor, other.scalingFactor) == 0
+                && Double.compare(offset, other.offset) == 0
+                && Double.compare(deadband, other.deadband) == 0
+                && cyclic == other.cyclic
+                && counterGroup == other.counterGroup
+                && Objects.equals(channelId, other.channelId)
+                && Objects.equals(sourceProtocol, other.sourceProtocol)
+                && Objects.equals(asduType, other.asduType)
+                && Objects.equals(dataType, other.dataType);
+    }
+
     // ============================================================================
     // OBJECT METHODS
     // ============================================================================
@@ -152,8 +242,8 @@ public class Mapping {
     @Override
     public String toString() {
         return String.format(
-                "Mapping[ioa=%d, ca=%d, type=%s, dataType=%s, scaling=%.2f, offset=%.2f, desc='%s']",
-                ioa, commonAddress, asduType, dataType, scalingFactor, offset, description
+                "Mapping[channel=%s, ioa=%d, ca=%d, type=%s, dataType=%s, scaling=%.2f, offset=%.2f, desc='%s']",
+                channelId, ioa, commonAddress, asduType, dataType, scalingFactor, offset, description
         );
     }
 }
@@ -0,0 +1,194 @@
+package org.openmuc.framework.app.gateway.input;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.openmuc.framework.app.gateway.config.MappingChangeListener;
+import org.openmuc.framework.app.gateway.config.MappingRegistry;
+import org.openmuc.framework.app.gateway.config.PointTable;
+import org.openmuc.framework.app.gateway.core.DataHolder;
+import org.openmuc.framework.app.gateway.core.TrafficRecorder;
+import org.openmuc.framework.app.gateway.dto.Mapping;
+import org.openmuc.framework.config.ConfigChangeListener;
+import org.openmuc.framework.config.ConfigService;
+import org.openmuc.framework.dataaccess.Channel;
+import org.openmuc.framework.dataaccess.DataAccessService;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
+import org.osgi.service.component.annotations.Reference;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Binds every mapped channel, whatever its source protocol, to a
+ * {@link SlotWriter} compiled for the mapping and the channel value type
+ * (OSGi Component).
+ * <p>
+ * BINDING:
+ * - On every applied channel configuration, channels that are new or were
+ *   recreated by the DataManager are (re-)subscribed
+ * - On a mapping reload only the changed channels are re-subscribed
+ * - A binding is kept while channel object, value type and mapping settings
+ *   are unchanged
+ */
+@Component(immediate = true)
+public class InputBinder {
+
+    private static final Logger logger = LoggerFactory.getLogger(InputBinder.class);
+
+    @Reference
+    private DataAccessService dataAccessService;
+
+    @Reference
+    private ConfigService configService;
+
+    private DataHolder dataHolder;
+    private MappingRegistry mappingRegistry;
+    private final MappingChangeListener mappingChangeListener = this::onMappingChanged;
+    private final ConfigChangeListener configChangeListener = this::onConfigApplied;
+    private final Map<String, Channel> channels = new HashMap<>();
+    private final Map<String, SlotWriter> writers = new HashMap<>();
+
+    @Activate
+    protected void activate() {
+        logger.info("Activating gateway input binder...");
+
+        mappingRegistry = MappingRegistry.acquire();
+        dataHolder = DataHolder.acquire(mappingRegistry);
+        mappingRegistry.addMappingChangeListener(mappingChangeListener);
+
+        // Subscribes as soon as the channel configuration is applied and again on every change
+        configService.listenForConfigChange(configChangeListener);
+    }
+
+    /**
+     * Channel configuration applied (initially or after a change).
+     */
+    private synchronized void onConfigApplied() {
+        List<Mapping> mappings = mappingRegistry.getPointTable().getMappings();
+
+        if (mappings.isEmpty()) {
+            logger.warn("No points in mapping file");
+            return;
+        }
+
+        int bound = 0;
+        int missing = 0;
+
+        for (Mapping mapping : mappings) {
+            if (bind(mapping)) {
+                bound++;
+            } else {
+                missing++;
+            }
+        }
+
+        logger.info("Channel config applied: {} bound, {} missing", bound, missing);
+    }
+
+    /**
+     * Re-subscribe only the channels touched by a mapping reload.
+     */
+    private synchronized void onMappingChanged(PointTable oldTable, PointTable newTable, Set<String> changed) {
+        int rebound = 0;
+
+        for (String channelId : changed) {
+            Mapping oldMapping = oldTable.getMappingForChannel(channelId);
+            Mapping newMapping = newTable.getMappingForChannel(channelId);
+
+            unbind(channelId);
+
+            // drop the stale value unless the channel keeps its address
+            if (oldMapping != null
+                    && (newMapping == null || newMapping.getIoa() != oldMapping.getIoa()
+                            || newMapping.getCommonAddress() != oldMapping.getCommonAddress())
+                    && newTable.getMapping(oldMapping.getCommonAddress(), oldMapping.getIoa()) == null) {
+                dataHolder.removeDataPoint(oldMapping.getCommonAddress(), oldMapping.getIoa());
+            }
+
+            if (newMapping != null && bind(newMapping)) {
+                rebound++;
+            }
+        }
+
+        logger.info("Mapping reload: {} channel(s) re-subscribed", rebound);
+    }
+
+    /**
+     * Subscribe to a mapped channel. Does nothing if it is already bound with the same settings.
+     */
+    private synchronized boolean bind(Mapping mapping) {
+        String channelId = mapping.getChannelId();
+
+        try {
+            Channel channel = dataAccessService.getChannel(channelId);
+
+            SlotWriter existing = writers.get(channelId);
+            if (existing != null) {
+                // the DataManager replaces channel objects on some config changes
+                if (channels.get(channelId) == channel && existing.isCompiledFor(mapping, channel.getValueType())) {
+                    return true;
+                }
+                unbind(channelId);
+            }
+
+            if (channel == null) {
+                logger.debug("Channel not configured: {}", channelId);
+                return false;
+            }
+
+            SlotWriter writer = SlotWriter.compile(channelId, mapping, channel.getValueType(), dataHolder);
+            channel.addListener(writer);
+
+            channels.put(channelId, channel);
+            writers.put(channelId, writer);
+
+            logger.debug("{}: {} ({}) - CA {} IOA {} {}", mapping.getSourceProtocol(), channelId,
+                    channel.getValueType(), mapping.getCommonAddress(), mapping.getIoa(), mapping.getAsduType());
+            return true;
+
+        } catch (Exception e) {
+            logger.error("Failed {}: {}", channelId, e.getMessage());
+            return false;
+        }
+    }
+
+    private synchronized void unbind(String channelId) {
+        Channel channel = channels.remove(channelId);
+        SlotWriter writer = writers.remove(channelId);
+
+        if (channel != null && writer != null) {
+            try {
+                channel.removeListener(writer);
+            } catch (Exception e) {
+                logger.error("Error removing listener: {}", e.getMessage());
+            }
+        }
+    }
+
+    @Deactivate
+    protected synchronized void deactivate() {
+        logger.info("Deactivating gateway input binder...");
+
+        configService.stopListeningForConfigChange(configChangeListener);
+
+        if (mappingRegistry != null) {
+            mappingRegistry.removeMappingChangeListener(mappingChangeListener);
+        }
+
+        for (String channelId : new ArrayList<>(channels.keySet())) {
+            unbind(channelId);
+        }
+
+        channels.clear();
+        writers.clear();
+        TrafficRecorder.getInstance().flush();
+        DataHolder.release();
+        MappingRegistry.release();
+        logger.info("Gateway input binder deactivated");
+    }
+}
@@ -0,0 +1,218 @@
+package org.openmuc.framework.app.gateway.input;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+
+import org.openmuc.framework.app.gateway.core.DataHolder;
+import org.openmuc.framework.app.gateway.core.GatewayDiagnostics;
+import org.openmuc.framework.app.gateway.core.GatewayDiagnostics.Counter;
+import org.openmuc.framework.app.gateway.core.GatewayDiagnostics.SampledLog;
+import org.openmuc.framework.app.gateway.core.LatencyStats;
+import org.openmuc.framework.app.gateway.core.LatencyStats.Stage;
+import org.openmuc.framework.app.gateway.core.TrafficRecorder;
+import org.openmuc.framework.app.gateway.dto.Mapping;
+import org.openmuc.framework.data.Flag;
+import org.openmuc.framework.data.Record;
+import org.openmuc.framework.data.TypeConversionException;
+import org.openmuc.framework.data.Value;
+import org.openmuc.framework.data.ValueType;
+import org.openmuc.framework.dataaccess.RecordListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes the records of one channel into its process image slot.
+ * <p>
+ * COMPILED ONCE PER BINDING:
+ * - Slot of the mapping in the DataHolder, which holds address, ASDU type
+ *   and deadband
+ * - Value conversion for the channel value type: numbers and booleans are
+ *   converted into a primitive, numeric values of Modbus (non IEC 61850)
+ *   channels scaled into a float
+ * <p>
+ * No DataPoint is created and no value is boxed per record.
+ * <p>
+ * QUALITY: a record with a flag other than VALID, without value or with a
+ * value that cannot be converted marks the point invalid, the slot keeps
+ * its last value. Only the conversion is guarded, errors writing the
+ * converted value are logged and leave the point as written.
+ * <p>
+ * TIMESTAMP: IEC 61850 points take the record timestamp (the arrival time if
+ * the record has none), Modbus points the arrival time.
+ */
+public class SlotWriter implements RecordListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(SlotWriter.class);
+
+    private static final SampledLog invalidLog = new SampledLog(10, TimeUnit.SECONDS);
+
+    private static final String IEC61850 = "IEC61850";
+
+    private final String channelId;
+    private final Mapping mapping;
+    private final ValueType valueType;
+    private final int commonAddress;
+    private final int ioa;
+    private final String sourceProtocol;
+    private final boolean recordTimestamp;
+    private final DataHolder.Slot slot;
+    // Conversion of numbers and booleans, null for strings and byte arrays
+    private final ToDoubleFunction<Value> toNumber;
+
+    private final LatencyStats latencyStats = LatencyStats.getInstance();
+    private final TrafficRecorder trafficRecorder = TrafficRecorder.getInstance();
+    private final GatewayDiagnostics diagnostics = GatewayDiagnostics.getInstance();
+
+    private SlotWriter(String channelId, Mapping mapping, ValueType valueType, DataHolder dataHolder) {
+        this.channelId = channelId;
+        this.mapping = mapping;
+        this.valueType = valueType;
+        this.commonAddress = mapping.getCommonAddress();
+        this.ioa = mapping.getIoa();
+        this.sourceProtocol = mapping.getSourceProtocol();
+        this.recordTimestamp = IEC61850.equals(sourceProtocol);
+
+        boolean scaled = !IEC61850.equals(sourceProtocol) && isNumeric(valueType);
+        this.slot = dataHolder.openSlot(channelId, mapping, scaled ? ValueType.FLOAT : valueType);
+        this.toNumber = compileConversion(mapping, valueType, scaled);
+    }
+
+    /**
+     * Compile the writer of a channel.
+     *
+     * @param valueType
+     *            configured value type of the channel
+     */
+    public static SlotWriter compile(String channelId, Mapping mapping, ValueType valueType, DataHolder dataHolder) {
+        return new SlotWriter(channelId, mapping, valueType, dataHolder);
+    }
+
+    private static ToDoubleFunction<Value> compileConversion(Mapping mapping, ValueType valueType,
+            boolean scaled) {
+        switch (valueType) {
+            case BOOLEAN:
+                // Written like DataHolder.Slot.write(boolean)
+                return value -> value.asBoolean() ? 1.0 : 0.0;
+            case STRING:
+            case BYTE_ARRAY:
+                return null;
+            default:
+                break;
+        }
+
+        ToDoubleFunction<Value> extract = compileExtract(valueType);
+        if (!scaled) {
+            return extract;
+        }
+
+        // Register values are scaled into a float
+        double scalingFactor = mapping.getScalingFactor();
+        double offset = mapping.getOffset();
+        return value -> (float) (extract.applyAsDouble(value) * scalingFactor + offset);
+    }
+
+    private static ToDoubleFunction<Value> compileExtract(ValueType valueType) {
+        switch (valueType) {
+            case BYTE:
+                return Value::asByte;
+            case SHORT:
+                return Value::asShort;
+            case INTEGER:
+                return Value::asInt;
+            case LONG:
+                return Value::asLong;
+            case FLOAT:
+                return Value::asFloat;
+            case DOUBLE:
+            default:
+                return Value::asDouble;
+        }
+    }
+
+    private static boolean isNumeric(ValueType valueType) {
+        return valueType != ValueType.BOOLEAN && valueType != ValueType.STRING && valueType != ValueType.BYTE_ARRAY;
+    }
+
+    /**
+     * True if this writer was compiled for the same mapping settings and value type.
+     */
+    public boolean isCompiledFor(Mapping mapping, ValueType valueType) {
+        return this.valueType == valueType && this.mapping.hasSameSettings(mapping);
+    }
+
+    public Mapping getMapping() {
+        return mapping;
+    }
+
+    @Override
+    public void newRecord(Record record) {
+        if (record == null) {
+            return;
+        }
+
+        try {
+            long inputNanos = System.nanoTime();
+            long inputMillis = System.currentTimeMillis();
+            Long timestamp = record.getTimestamp();
+            if (timestamp != null) {
+                latencyStats.recordMillis(Stage.SAMPLE_TO_INPUT, timestamp, inputMillis);
+            }
+            trafficRecorder.record(channelId, record, inputMillis);
+            if (diagnostics.isTraced(commonAddress, ioa)) {
+                diagnostics.trace(commonAddress, ioa, "received " + channelId, record);
+            }
+
+            long sampleTime = timestamp != null ? timestamp : inputMillis;
+            long pointTime = recordTimestamp && timestamp != null ? timestamp : inputMillis;
+
+            if (record.getFlag() != Flag.VALID || !write(record.getValue(), pointTime, sampleTime, inputNanos)) {
+                invalid(record);
+                slot.invalidate(pointTime, sampleTime, inputNanos);
+            }
+
+        } catch (Exception e) {
+            logger.error("Error processing {}: {}", channelId, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Convert the value and write it into the slot. Errors of the write are
+     * not caught here, the value was valid.
+     *
+     * @return false if there is no value or it cannot be converted
+     */
+    private boolean write(Value value, long timestamp, long sampleTime, long inputNanos) {
+        if (value == null) {
+            return false;
+        }
+
+        if (toNumber == null) {
+            Object converted;
+            try {
+                converted = valueType == ValueType.STRING ? value.asString() : value.asByteArray();
+            } catch (TypeConversionException | NumberFormatException | ClassCastException e) {
+                return false;
+            }
+            slot.write(converted, timestamp, sampleTime, inputNanos);
+            return true;
+        }
+
+        double converted;
+        try {
+            converted = toNumber.applyAsDouble(value);
+        } catch (TypeConversionException | NumberFormatException | ClassCastException e) {
+            // unparsable strings throw NumberFormatException
+            return false;
+        }
+        slot.write(converted, timestamp, sampleTime, inputNanos);
+        return true;
+    }
+
+    private void invalid(Record record) {
+        diagnostics.count(Counter.INVALID_RECORD);
+        if (invalidLog.sample()) {
+            logger.info("{}: {} flag={} value={} - marking INVALID ({} more since last report)", sourceProtocol,
+                    channelId, record.getFlag(), record.getValue(), invalidLog.takeSuppressed());
+        }
+    }
+}
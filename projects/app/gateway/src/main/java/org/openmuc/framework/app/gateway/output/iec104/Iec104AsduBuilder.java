@@ -1,12 +1,23 @@
 package org.openmuc.framework.app.gateway.output.iec104;
 
-import org.openmuc.framework.app.gateway.config.HardcodedMappings;
+import org.openmuc.framework.app.gateway.dto.CounterReading;
 import org.openmuc.framework.app.gateway.dto.DataPoint;
 import org.openmuc.j60870.*;
 import org.openmuc.j60870.ie.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
 /**
  * Builds complete IEC 104 ASDUs from DataPoints.
  */
@@ -14,6 +25,22 @@ public class Iec104AsduBuilder {
 
     private static final Logger logger = LoggerFactory.getLogger(Iec104AsduBuilder.class);
 
+    private static final int MAX_ASDU_PAYLOAD = 253 - 4 - 6;
+
+    /**
+     * Monitoring types this builder encodes, checked when the mapping file is parsed.
+     */
+    private static final Set<String> SUPPORTED_TYPES = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            "M_SP_NA_1", "M_SP_TB_1", "M_DP_NA_1", "M_ME_NB_1", "M_ME_NC_1", "M_ME_TF_1", "M_IT_NA_1",
+            "M_IT_TB_1")));
+
+    /**
+     * True if points of the ASDU type can be sent.
+     */
+    public static boolean isSupportedType(String asduType) {
+        return SUPPORTED_TYPES.contains(asduType);
+    }
+
     /**
      * Build ASDU with SPONTANEOUS cause (default for data updates).
      */
@@ -31,84 +58,210 @@ public class Iec104AsduBuilder {
         }
 
         try {
-            String asduTypeStr = dp.getAsduType();
-            if (asduTypeStr == null) {
-                asduTypeStr = "M_ME_NC_1";
-            }
-
-            ASdu asdu = null;
+            ASduType type = resolveType(dp);
+            return new ASdu(
+                    type,
+                    false,
+                    cot,
+                    false,
+                    false,
+                    0,
+                    dp.getCommonAddress(),
+                    new InformationObject[] { buildInformationObject(dp, type) });
 
-            switch (asduTypeStr) {
-                case "M_SP_NA_1": // Single point without time
-                    asdu = buildSinglePoint(dp, cot, false);
-                    break;
+        } catch (Exception e) {
+            logger.error("Error building ASDU for IOA {}: {}", dp.getIoa(), e.getMessage(), e);
+            return null;
+        }
+    }
 
-                case "M_SP_TB_1": // Single point with time
-                    asdu = buildSinglePoint(dp, cot, true);
-                    break;
+    /**
+     * Pack the points of one station into as few ASDUs as possible.
+     * <p>
+     * Points are grouped by type, each ASDU holds as many information
+     * objects as fit into the maximum APDU length.
+     */
+    public List<ASdu> buildPackedAsdus(int commonAddress, Collection<DataPoint> points, CauseOfTransmission cot) {
+        Map<ASduType, List<InformationObject>> objectsByType = new EnumMap<>(ASduType.class);
+
+        for (DataPoint dp : points) {
+            try {
+                ASduType type = resolveType(dp);
+                objectsByType.computeIfAbsent(type, t -> new ArrayList<>()).add(buildInformationObject(dp, type));
+            } catch (Exception e) {
+                logger.error("Error building information object for IOA {}: {}", dp.getIoa(), e.getMessage(), e);
+            }
+        }
 
-                case "M_ME_NC_1": // Short float without time
-                    asdu = buildShortFloat(dp, cot, false);
-                    break;
+        return pack(commonAddress, objectsByType, cot);
+    }
 
-                case "M_ME_TF_1": // Short float with time
-                    asdu = buildShortFloat(dp, cot, true);
-                    break;
+    /**
+     * Pack frozen counter readings of one station into M_IT_NA_1 / M_IT_TB_1 ASDUs.
+     */
+    public List<ASdu> buildCounterAsdus(int commonAddress, Collection<CounterReading> readings,
+            CauseOfTransmission cot) {
+        Map<ASduType, List<InformationObject>> objectsByType = new EnumMap<>(ASduType.class);
+
+        for (CounterReading reading : readings) {
+            ASduType type = "M_IT_TB_1".equals(reading.getAsduType()) ? ASduType.M_IT_TB_1 : ASduType.M_IT_NA_1;
+            objectsByType.computeIfAbsent(type, t -> new ArrayList<>())
+                    .add(buildIntegratedTotal(reading, type == ASduType.M_IT_TB_1));
+        }
 
-                case "M_ME_NB_1": // Scaled value
-                    asdu = buildScaledValue(dp, cot);
-                    break;
+        return pack(commonAddress, objectsByType, cot);
+    }
 
-                default:
-                    logger.debug("Using default M_ME_NC_1 for type: {}", asduTypeStr);
-                    asdu = buildShortFloat(dp, cot, false);
+    private static List<ASdu> pack(int commonAddress, Map<ASduType, List<InformationObject>> objectsByType,
+            CauseOfTransmission cot) {
+        List<ASdu> asdus = new ArrayList<>();
+        for (Map.Entry<ASduType, List<InformationObject>> entry : objectsByType.entrySet()) {
+            ASduType type = entry.getKey();
+            List<InformationObject> objects = entry.getValue();
+            int perAsdu = maxObjectsPerAsdu(type);
+
+            for (int from = 0; from < objects.size(); from += perAsdu) {
+                List<InformationObject> chunk = objects.subList(from, Math.min(from + perAsdu, objects.size()));
+                asdus.add(new ASdu(
+                        type,
+                        false,
+                        cot,
+                        false,
+                        false,
+                        0,
+                        commonAddress,
+                        chunk.toArray(new InformationObject[0])));
             }
+        }
+        return asdus;
+    }
 
-            return asdu;
+    /**
+     * Information objects of a type that fit into one ASDU (APDU max 253 bytes,
+     * 4 control bytes, 6 bytes ASDU header, 3 bytes IOA per object).
+     */
+    private static int maxObjectsPerAsdu(ASduType type) {
+        int elementBytes;
+        switch (type) {
+            case M_SP_NA_1:
+                elementBytes = 1;
+                break;
+            case M_SP_TB_1:
+                elementBytes = 1 + 7;
+                break;
+            case M_DP_NA_1:
+                elementBytes = 1;
+                break;
+            case M_ME_NB_1:
+                elementBytes = 2 + 1;
+                break;
+            case M_ME_TF_1:
+                elementBytes = 4 + 1 + 7;
+                break;
+            case M_IT_NA_1:
+                elementBytes = 5;
+                break;
+            case M_IT_TB_1:
+                elementBytes = 5 + 7;
+                break;
+            case M_ME_NC_1:
+            default:
+                elementBytes = 4 + 1;
+        }
+        return MAX_ASDU_PAYLOAD / (3 + elementBytes);
+    }
 
-        } catch (Exception e) {
-            logger.error("Error building ASDU for IOA {}: {}", dp.getIoa(), e.getMessage(), e);
-            return null;
+    private static ASduType resolveType(DataPoint dp) {
+        String asduTypeStr = dp.getAsduType();
+        if (asduTypeStr == null) {
+            return ASduType.M_ME_NC_1;
+        }
+
+        switch (asduTypeStr) {
+            case "M_SP_NA_1": // Single point without time
+                return ASduType.M_SP_NA_1;
+            case "M_SP_TB_1": // Single point with time
+                return ASduType.M_SP_TB_1;
+            case "M_DP_NA_1": // Double point without time
+                return ASduType.M_DP_NA_1;
+            case "M_ME_NC_1": // Short float without time
+                return ASduType.M_ME_NC_1;
+            case "M_ME_TF_1": // Short float with time
+                return ASduType.M_ME_TF_1;
+            case "M_ME_NB_1": // Scaled value
+                return ASduType.M_ME_NB_1;
+            default:
+                logger.debug("Using default M_ME_NC_1 for type: {}", asduTypeStr);
+                return ASduType.M_ME_NC_1;
         }
     }
 
-    private ASdu buildSinglePoint(DataPoint dp, CauseOfTransmission cot, boolean withTime) {
+    private InformationObject buildInformationObject(DataPoint dp, ASduType type) {
+        switch (type) {
+            case M_SP_NA_1:
+                return buildSinglePoint(dp, false);
+            case M_SP_TB_1:
+                return buildSinglePoint(dp, true);
+            case M_DP_NA_1:
+                return buildDoublePoint(dp);
+            case M_ME_TF_1:
+                return buildShortFloat(dp, true);
+            case M_ME_NB_1:
+                return buildScaledValue(dp);
+            case M_ME_NC_1:
+            default:
+                return buildShortFloat(dp, false);
+        }
+    }
+
+    private InformationObject buildSinglePoint(DataPoint dp, boolean withTime) {
         boolean value = extractBoolean(dp.getValue());
 
         IeSinglePointWithQuality sp = new IeSinglePointWithQuality(
                 value,
                 false, // blocked
                 false, // substituted
-                false, // not topical
+                dp.isNotTopical(), // not topical
                 !dp.isValid() // invalid
         );
 
         InformationElement[][] elements;
-        ASduType type;
 
         if (withTime) {
             IeTime56 time = new IeTime56(dp.getTimestamp() > 0 ? dp.getTimestamp() : System.currentTimeMillis());
             elements = new InformationElement[][] { { sp, time } };
-            type = ASduType.M_SP_TB_1;
         } else {
             elements = new InformationElement[][] { { sp } };
-            type = ASduType.M_SP_NA_1;
         }
 
-        InformationObject io = new InformationObject(dp.getIoa(), elements);
+        return new InformationObject(dp.getIoa(), elements);
+    }
 
-        return new ASdu(
-                type,
-                false,
-                cot,
-                false,
-                false,
-                0,
-                dp.getCommonAddress(),
-                new InformationObject[] { io });
+    /**
+     * Double point: a number is the state (0 intermediate, 1 OFF, 2 ON,
+     * 3 indeterminate), a boolean is ON or OFF.
+     */
+    private InformationObject buildDoublePoint(DataPoint dp) {
+        IeDoublePointWithQuality.DoublePointInformation state;
+        if (dp.getValue() instanceof Boolean) {
+            state = (Boolean) dp.getValue() ? IeDoublePointWithQuality.DoublePointInformation.ON
+                    : IeDoublePointWithQuality.DoublePointInformation.OFF;
+        } else {
+            state = IeDoublePointWithQuality.DoublePointInformation.values()[extractInt(dp.getValue()) & 0x03];
+        }
+
+        IeDoublePointWithQuality dpq = new IeDoublePointWithQuality(
+                state,
+                false, // blocked
+                false, // substituted
+                dp.isNotTopical(), // not topical
+                !dp.isValid() // invalid
+        );
+
+        return new InformationObject(dp.getIoa(), new InformationElement[][] { { dpq } });
     }
 
-    private ASdu buildShortFloat(DataPoint dp, CauseOfTransmission cot, boolean withTime) {
+    private InformationObject buildShortFloat(DataPoint dp, boolean withTime) {
         float value = extractFloat(dp.getValue());
 
         IeShortFloat sf = new IeShortFloat(value);
@@ -116,36 +269,23 @@ public class Iec104AsduBuilder {
                 false, // overflow
                 false, // blocked
                 false, // substituted
-                false, // not topical
+                dp.isNotTopical(), // not topical
                 !dp.isValid() // invalid
         );
 
         InformationElement[][] elements;
-        ASduType type;
 
         if (withTime) {
             IeTime56 time = new IeTime56(dp.getTimestamp() > 0 ? dp.getTimestamp() : System.currentTimeMillis());
             elements = new InformationElement[][] { { sf, quality, time } };
-            type = ASduType.M_ME_TF_1;
         } else {
             elements = new InformationElement[][] { { sf, quality } };
-            type = ASduType.M_ME_NC_1;
         }
 
-        InformationObject io = new InformationObject(dp.getIoa(), elements);
-
-        return new ASdu(
-                type,
-                false,
-                cot,
-                false,
-                false,
-                0,
-                dp.getCommonAddress(),
-                new InformationObject[] { io });
+        return new InformationObject(dp.getIoa(), elements);
     }
 
-    private ASdu buildScaledValue(DataPoint dp, CauseOfTransmission cot) {
+    private InformationObject buildScaledValue(DataPoint dp) {
         int value = extractInt(dp.getValue());
 
         // Clamp to INT16 range
@@ -156,21 +296,35 @@ public class Iec104AsduBuilder {
                 false,
                 false,
                 false,
-                false,
+                dp.isNotTopical(),
                 !dp.isValid());
 
         InformationElement[][] elements = new InformationElement[][] { { sv, quality } };
-        InformationObject io = new InformationObject(dp.getIoa(), elements);
+        return new InformationObject(dp.getIoa(), elements);
+    }
 
-        return new ASdu(
-                ASduType.M_ME_NB_1,
-                false,
-                cot,
-                false,
-                false,
-                0,
-                dp.getCommonAddress(),
-                new InformationObject[] { io });
+    private InformationObject buildIntegratedTotal(CounterReading reading, boolean withTime) {
+        Set<IeBinaryCounterReading.Flag> flags = EnumSet.noneOf(IeBinaryCounterReading.Flag.class);
+        if (reading.isCarry()) {
+            flags.add(IeBinaryCounterReading.Flag.CARRY);
+        }
+        if (reading.isAdjusted()) {
+            flags.add(IeBinaryCounterReading.Flag.COUNTER_ADJUSTED);
+        }
+        if (reading.isInvalid()) {
+            flags.add(IeBinaryCounterReading.Flag.INVALID);
+        }
+
+        IeBinaryCounterReading bcr = new IeBinaryCounterReading(reading.getValue(), reading.getSequenceNumber(),
+                flags);
+
+        InformationElement[][] elements;
+        if (withTime) {
+            elements = new InformationElement[][] { { bcr, new IeTime56(reading.getTimestamp()) } };
+        } else {
+            elements = new InformationElement[][] { { bcr } };
+        }
+        return new InformationObject(reading.getIoa(), elements);
     }
 
     // Helper methods
@@ -0,0 +1,218 @@
+package org.openmuc.framework.app.gateway.output.iec104;
+
+import org.openmuc.framework.app.gateway.config.MappingRegistry;
+import org.openmuc.framework.app.gateway.dto.CommandMapping;
+import org.openmuc.framework.data.BooleanValue;
+import org.openmuc.framework.data.DoubleValue;
+import org.openmuc.framework.data.Flag;
+import org.openmuc.framework.data.Value;
+import org.openmuc.framework.dataaccess.Channel;
+import org.openmuc.framework.dataaccess.DataAccessService;
+import org.openmuc.j60870.ASdu;
+import org.openmuc.j60870.CauseOfTransmission;
+import org.openmuc.j60870.ie.IeDoubleCommand;
+import org.openmuc.j60870.ie.IeQualifierOfSetPointCommand;
+import org.openmuc.j60870.ie.IeScaledValue;
+import org.openmuc.j60870.ie.IeShortFloat;
+import org.openmuc.j60870.ie.IeSingleCommand;
+import org.openmuc.j60870.ie.InformationElement;
+import org.openmuc.j60870.ie.InformationObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Executes IEC 104 control commands as OpenMUC channel writes.
+ * <p>
+ * SUPPORTED COMMANDS:
+ * - C_SC_NA_1 single command, C_DC_NA_1 double command
+ * - C_SE_NC_1 set point float, C_SE_NB_1 set point scaled
+ * <p>
+ * SEQUENCE:
+ * - Direct execute: write -> ACTCON (+/-) -> ACTTERM
+ * - Select-before-operate: select -> ACTCON, execute within the selectTimeout of the settings -> as above
+ * - Deactivation cancels a pending selection -> DEACTCON
+ * <p>
+ * Writes use Channel.writeAsync, so the j60870 receive thread is never blocked
+ * by a driver; confirmations are sent from the write completion. A write not
+ * completed within the commandTimeout of the settings is confirmed negatively,
+ * a late completion is then only logged.
+ */
+public class Iec104CommandExecutor {
+
+    private static final Logger logger = LoggerFactory.getLogger(Iec104CommandExecutor.class);
+
+    private final DataAccessService dataAccessService;
+    private final MappingRegistry mappingRegistry;
+
+    // Pending selections: "clientId:ioa" -> time of selection, the client id is unique per connection
+    private final Map<String, Long> selections = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService timeoutExecutor;
+
+    public Iec104CommandExecutor(DataAccessService dataAccessService, MappingRegistry mappingRegistry) {
+        this.dataAccessService = dataAccessService;
+        this.mappingRegistry = mappingRegistry;
+        this.timeoutExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "Iec104-CommandTimeout");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public void shutdown() {
+        timeoutExecutor.shutdownNow();
+    }
+
+    /**
+     * Handle a command ASDU. Called from the j60870 receive thread, must not block.
+     */
+    public void execute(ASdu asdu, Iec104ConnectionHandler handler) {
+        CauseOfTransmission cot = asdu.getCauseOfTransmission();
+        if (cot != CauseOfTransmission.ACTIVATION && cot != CauseOfTransmission.DEACTIVATION) {
+            handler.sendCommandResponse(asdu, CauseOfTransmission.UNKNOWN_CAUSE_OF_TRANSMISSION, true);
+            return;
+        }
+
+        if (!handler.servesStation(asdu.getCommonAddress())) {
+            handler.sendCommandResponse(asdu, CauseOfTransmission.UNKNOWN_COMMON_ADDRESS_OF_ASDU, true);
+            return;
+        }
+
+        InformationObject[] ios = asdu.getInformationObjects();
+        if (ios == null || ios.length != 1) {
+            handler.sendCommandResponse(asdu, CauseOfTransmission.ACTIVATION_CON, true);
+            return;
+        }
+
+        int ioa = ios[0].getInformationObjectAddress();
+        CommandMapping command = mappingRegistry.getPointTable().getCommand(asdu.getCommonAddress(), ioa);
+        if (command == null || !command.getCommandType().equals(asdu.getTypeIdentification().name())) {
+            logger.warn("Command {} for unknown IOA {} from {}", asdu.getTypeIdentification(), ioa,
+                    handler.getClientId());
+            handler.sendCommandResponse(asdu, CauseOfTransmission.UNKNOWN_INFORMATION_OBJECT_ADDRESS, true);
+            return;
+        }
+
+        String selectionKey = handler.getClientId() + ":" + ioa;
+
+        if (cot == CauseOfTransmission.DEACTIVATION) {
+            selections.remove(selectionKey);
+            handler.sendCommandResponse(asdu, CauseOfTransmission.DEACTIVATION_CON, false);
+            return;
+        }
+
+        InformationElement[] elements = ios[0].getInformationElements()[0];
+        Value value = toValue(command, elements);
+        if (value == null) {
+            handler.sendCommandResponse(asdu, CauseOfTransmission.ACTIVATION_CON, true);
+            return;
+        }
+
+        if (isSelect(elements)) {
+            if (!command.isSelectBeforeOperate()) {
+                handler.sendCommandResponse(asdu, CauseOfTransmission.ACTIVATION_CON, true);
+                return;
+            }
+            selections.put(selectionKey, System.currentTimeMillis());
+            handler.sendCommandResponse(asdu, CauseOfTransmission.ACTIVATION_CON, false);
+            return;
+        }
+
+        if (command.isSelectBeforeOperate()) {
+            Long selectedAt = selections.remove(selectionKey);
+            long selectTimeoutMs = mappingRegistry.getPointTable().getSettings().getSelectTimeout() * 1000L;
+            if (selectedAt == null || System.currentTimeMillis() - selectedAt > selectTimeoutMs) {
+                logger.warn("Execute without valid select for IOA {} from {}", ioa, handler.getClientId());
+                handler.sendCommandResponse(asdu, CauseOfTransmission.ACTIVATION_CON, true);
+                return;
+            }
+        }
+
+        Channel channel = dataAccessService.getChannel(command.getChannelId());
+        if (channel == null) {
+            logger.warn("Channel {} of command IOA {} not found", command.getChannelId(), ioa);
+            handler.sendCommandResponse(asdu, CauseOfTransmission.ACTIVATION_CON, true);
+            return;
+        }
+
+        CompletableFuture<Flag> write = channel.writeAsync(value);
+
+        // Exactly one confirmation: from the completion or from the timeout, whichever is first
+        AtomicBoolean confirmed = new AtomicBoolean();
+        int timeout = mappingRegistry.getPointTable().getSettings().getCommandTimeout();
+        ScheduledFuture<?> timeoutTask = timeoutExecutor.schedule(() -> {
+            if (confirmed.compareAndSet(false, true)) {
+                logger.warn("Command write to {} not completed within {}s", command.getChannelId(), timeout);
+                handler.sendCommandResponse(asdu, CauseOfTransmission.ACTIVATION_CON, true);
+            }
+        }, timeout, TimeUnit.SECONDS);
+
+        write.whenComplete((flag, e) -> {
+            timeoutTask.cancel(false);
+            if (!confirmed.compareAndSet(false, true)) {
+                logger.warn("Command write to {} completed after the timeout: {}", command.getChannelId(),
+                        e != null ? e : flag);
+                return;
+            }
+            if (e != null || flag != Flag.VALID) {
+                logger.warn("Command write to {} failed: {}", command.getChannelId(), e != null ? e : flag);
+                handler.sendCommandResponse(asdu, CauseOfTransmission.ACTIVATION_CON, true);
+                return;
+            }
+            handler.sendCommandResponse(asdu, CauseOfTransmission.ACTIVATION_CON, false);
+            handler.sendCommandResponse(asdu, CauseOfTransmission.ACTIVATION_TERMINATION, false);
+        });
+    }
+
+    /**
+     * Drop pending selections of a closed connection.
+     */
+    public void connectionClosed(Iec104ConnectionHandler handler) {
+        String prefix = handler.getClientId() + ":";
+        selections.keySet().removeIf(key -> key.startsWith(prefix));
+    }
+
+    private static Value toValue(CommandMapping command, InformationElement[] elements) {
+        InformationElement element = elements[0];
+        switch (command.getCommandType()) {
+            case "C_SC_NA_1":
+                return new BooleanValue(((IeSingleCommand) element).isCommandStateOn());
+            case "C_DC_NA_1":
+                switch (((IeDoubleCommand) element).getCommandState()) {
+                    case ON:
+                        return new BooleanValue(true);
+                    case OFF:
+                        return new BooleanValue(false);
+                    default:
+                        return null;
+                }
+            case "C_SE_NC_1":
+                return new DoubleValue(command.toRawValue(((IeShortFloat) element).getValue()));
+            case "C_SE_NB_1":
+                return new DoubleValue(command.toRawValue(((IeScaledValue) element).getUnnormalizedValue()));
+            default:
+                return null;
+        }
+    }
+
+    private static boolean isSelect(InformationElement[] elements) {
+        InformationElement qualifier = elements[elements.length - 1];
+        if (qualifier instanceof IeSingleCommand) {
+            return ((IeSingleCommand) qualifier).isSelect();
+        }
+        if (qualifier instanceof IeDoubleCommand) {
+            return ((IeDoubleCommand) qualifier).isSelect();
+        }
+        return qualifier instanceof IeQualifierOfSetPointCommand
+                && ((IeQualifierOfSetPointCommand) qualifier).isSelect();
+    }
+}
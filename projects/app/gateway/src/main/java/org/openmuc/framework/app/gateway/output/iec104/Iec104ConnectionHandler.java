@@ -1,43 +1,89 @@
 package org.openmuc.framework.app.gateway.output.iec104;
 
-import org.openmuc.framework.app.gateway.config.HardcodedMappings;
+import org.openmuc.framework.app.gateway.config.MappingRegistry;
+import org.openmuc.framework.app.gateway.config.PointTable;
+import org.openmuc.framework.app.gateway.config.StationSettings;
+import org.openmuc.framework.app.gateway.core.CounterStore;
 import org.openmuc.framework.app.gateway.core.DataHolder;
+import org.openmuc.framework.app.gateway.core.GatewayDiagnostics;
+import org.openmuc.framework.app.gateway.core.GatewayDiagnostics.Counter;
+import org.openmuc.framework.app.gateway.core.GatewayDiagnostics.SampledLog;
+import org.openmuc.framework.app.gateway.dto.CounterReading;
 import org.openmuc.framework.app.gateway.dto.DataPoint;
 import org.openmuc.j60870.*;
+import org.openmuc.j60870.ie.IeQualifierOfCounterInterrogation;
 import org.openmuc.j60870.ie.IeQualifierOfInterrogation;
+import org.openmuc.j60870.ie.InformationElement;
 import org.openmuc.j60870.ie.InformationObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
+import java.util.function.IntPredicate;
 
 /**
  * Handles an individual IEC 104 client connection.
  * Implements j60870 1.7.2 ConnectionEventListener interface.
+ * <p>
+ * SPONTANEOUS DATA:
+ * - Sent by the connection's RedundancyGroup while this connection is the
+ *   group's active one (STARTDT), standby connections only answer requests
+ * - Every sent I-frame is counted so the group can tell which frames the
+ *   client has acknowledged (sent - unconfirmed)
+ * <p>
+ * STATIONS:
+ * - The connection serves the stations (common addresses) of its listener
+ * - GI addressed to a single station covers that station only, the global
+ *   address 0xFFFF interrogates every served station in turn
+ * <p>
+ * Counter interrogations are answered from the frozen CounterStore snapshot.
  */
 public class Iec104ConnectionHandler implements ConnectionEventListener {
 
     private static final Logger logger = LoggerFactory.getLogger(Iec104ConnectionHandler.class);
 
+    // Connections accepted in the same millisecond must not share an id, selections are kept by it
+    private static final AtomicLong nextClientId = new AtomicLong();
+
     private final Connection connection;
     private final DataHolder dataHolder;
+    private final MappingRegistry mappingRegistry;
     private final Consumer<Iec104ConnectionHandler> onCloseCallback;
     private final String clientId;
     private final Iec104AsduBuilder asduBuilder;
+    private final GatewayDiagnostics diagnostics = GatewayDiagnostics.getInstance();
+    private final SampledLog asduLog = new SampledLog(10, TimeUnit.SECONDS);
+    private final RedundancyGroup redundancyGroup;
+    private final Iec104CommandExecutor commandExecutor;
+    private final IntPredicate stationScope;
     private volatile boolean active;
 
+    // I-frame accounting for acknowledgement tracking, counted under the connection's send monitor
+    private final AtomicLong iFramesSent = new AtomicLong();
+
     public Iec104ConnectionHandler(
             Connection connection,
             DataHolder dataHolder,
+            MappingRegistry mappingRegistry,
+            RedundancyGroup redundancyGroup,
+            Iec104CommandExecutor commandExecutor,
+            IntPredicate stationScope,
             Consumer<Iec104ConnectionHandler> onCloseCallback) {
 
         this.connection = connection;
         this.dataHolder = dataHolder;
+        this.mappingRegistry = mappingRegistry;
         this.onCloseCallback = onCloseCallback;
-        this.clientId = "client-" + System.currentTimeMillis();
+        this.clientId = "client-" + nextClientId.incrementAndGet();
         this.asduBuilder = new Iec104AsduBuilder();
+        this.redundancyGroup = redundancyGroup;
+        this.commandExecutor = commandExecutor;
+        this.stationScope = stationScope;
         this.active = true;
 
         logger.info("Connection handler created: {}", clientId);
@@ -48,7 +94,11 @@ public class Iec104ConnectionHandler implements ConnectionEventListener {
      */
     @Override
     public void newASdu(Connection connection, ASdu asdu) {
-        logger.info("Received ASDU from {}: type={}", clientId, asdu.getTypeIdentification());
+        diagnostics.count(Counter.ASDU_RECEIVED);
+        if (asduLog.sample()) {
+            logger.info("Received ASDU from {}: type={} ({} more since last report)", clientId,
+                    asdu.getTypeIdentification(), asduLog.takeSuppressed());
+        }
 
         try {
             switch (asdu.getTypeIdentification()) {
@@ -64,9 +114,16 @@ public class Iec104ConnectionHandler implements ConnectionEventListener {
                     handleClockSync(asdu);
                     break;
 
+                case C_SC_NA_1:
+                case C_DC_NA_1:
+                case C_SE_NC_1:
+                case C_SE_NB_1:
+                    commandExecutor.execute(asdu, this);
+                    break;
+
                 default:
                     logger.warn("Unsupported ASDU type: {}", asdu.getTypeIdentification());
-                    sendNegativeConfirmation(asdu);
+                    sendNegativeConfirmation(asdu, CauseOfTransmission.UNKNOWN_TYPE_ID);
             }
 
         } catch (Exception e) {
@@ -75,52 +132,143 @@ public class Iec104ConnectionHandler implements ConnectionEventListener {
     }
 
     private void handleGeneralInterrogation(ASdu asdu) throws IOException {
-        logger.info("General Interrogation from {}", clientId);
+        logger.info("General Interrogation from {} for CA {}", clientId, asdu.getCommonAddress());
 
-        sendActivationConfirmation(asdu);
-        sendAllDataPoints();
-        sendActivationTermination(asdu);
+        for (int commonAddress : addressedStations(asdu)) {
+            sendActivationConfirmation(asdu, commonAddress);
+            sendStationDataPoints(commonAddress);
+            sendActivationTermination(asdu, commonAddress);
+        }
     }
 
     /**
      * Handle Counter Interrogation Command (C_CI_NA_1).
-     * Responds with integrated totals / counter values.
+     * <p>
+     * QCC FRZ 0 reads the frozen integrated totals of the requested group
+     * (a group that was never frozen is frozen first), 1 freezes, 2 freezes
+     * with reset and 3 resets the counters. Freeze and reset are only
+     * confirmed, the readings are fetched with a later read.
      */
     private void handleCounterInterrogation(ASdu asdu) throws IOException {
-        logger.info("Counter Interrogation from {}", clientId);
+        IeQualifierOfCounterInterrogation qualifier = counterQualifier(asdu);
+        if (qualifier == null || qualifier.getRequest() < 1 || qualifier.getRequest() > CounterStore.GENERAL_GROUP
+                || qualifier.getFreeze() > 3) {
+            logger.warn("Counter Interrogation from {} with unsupported qualifier {}", clientId, qualifier);
+            sendNegativeConfirmation(asdu, CauseOfTransmission.ACTIVATION_CON);
+            return;
+        }
+        int group = qualifier.getRequest();
+        int freeze = qualifier.getFreeze();
+        logger.info("Counter Interrogation from {} for CA {}: group {}, freeze {}", clientId,
+                asdu.getCommonAddress(), group, freeze);
+
+        CounterStore counterStore = dataHolder.getCounterStore();
+        for (int commonAddress : addressedStations(asdu)) {
+            sendActivationConfirmation(asdu, commonAddress);
+
+            switch (freeze) {
+                case 0:
+                    sendCounterReadings(commonAddress, group);
+                    break;
+                case 1:
+                case 2:
+                    counterStore.freeze(commonAddress, group, freeze == 2);
+                    break;
+                default:
+                    counterStore.reset(commonAddress, group);
+            }
 
-        sendActivationConfirmation(asdu);
+            sendActivationTermination(asdu, commonAddress);
+        }
+    }
 
-        // Send all counter-type data points (M_IT_NA_1, M_IT_TB_1)
-        // For now, we respond with the same data points as GI
-        // In production, filter for M_IT_* types only
-        sendAllDataPoints();
+    private static IeQualifierOfCounterInterrogation counterQualifier(ASdu asdu) {
+        InformationObject[] ios = asdu.getInformationObjects();
+        if (ios == null || ios.length == 0) {
+            return null;
+        }
+        InformationElement[][] elements = ios[0].getInformationElements();
+        if (elements.length == 0 || elements[0].length == 0
+                || !(elements[0][0] instanceof IeQualifierOfCounterInterrogation)) {
+            return null;
+        }
+        return (IeQualifierOfCounterInterrogation) elements[0][0];
+    }
+
+    private void sendCounterReadings(int commonAddress, int group) {
+        CounterStore counterStore = dataHolder.getCounterStore();
+        List<CounterReading> readings = counterStore.getFrozen(commonAddress, group);
+        if (readings.isEmpty()) {
+            counterStore.freeze(commonAddress, group, false);
+            readings = counterStore.getFrozen(commonAddress, group);
+        }
 
-        sendActivationTermination(asdu);
-        logger.info("Counter Interrogation complete");
+        CauseOfTransmission cot = counterCause(group);
+        for (ASdu counterAsdu : asduBuilder.buildCounterAsdus(commonAddress, readings, cot)) {
+            try {
+                send(counterAsdu);
+            } catch (Exception e) {
+                logger.error("Error sending counter readings of CA {}: {}", commonAddress, e.getMessage());
+            }
+        }
+        logger.debug("Counter Interrogation of CA {}: {} readings sent", commonAddress, readings.size());
     }
 
-    private void sendAllDataPoints() {
-        Map<Integer, DataPoint> allPoints = dataHolder.getAllDataPoints();
-        logger.info("Sending {} data points", allPoints.size());
+    private static CauseOfTransmission counterCause(int group) {
+        switch (group) {
+            case 1:
+                return CauseOfTransmission.REQUESTED_BY_GROUP_1_COUNTER;
+            case 2:
+                return CauseOfTransmission.REQUESTED_BY_GROUP_2_COUNTER;
+            case 3:
+                return CauseOfTransmission.REQUESTED_BY_GROUP_3_COUNTER;
+            case 4:
+                return CauseOfTransmission.REQUESTED_BY_GROUP_4_COUNTER;
+            default:
+                return CauseOfTransmission.REQUESTED_BY_GENERAL_COUNTER;
+        }
+    }
+
+    /**
+     * Served stations an interrogation is addressed to. An unknown common
+     * address is answered with a negative confirmation and yields no station.
+     */
+    private List<Integer> addressedStations(ASdu asdu) throws IOException {
+        List<Integer> addressed = new ArrayList<>();
+
+        if (asdu.getCommonAddress() == PointTable.BROADCAST_ADDRESS) {
+            for (StationSettings station : mappingRegistry.getPointTable().getStations()) {
+                if (servesStation(station.getCommonAddress())) {
+                    addressed.add(station.getCommonAddress());
+                }
+            }
+        } else if (servesStation(asdu.getCommonAddress())) {
+            addressed.add(asdu.getCommonAddress());
+        } else {
+            sendNegativeConfirmation(asdu, CauseOfTransmission.UNKNOWN_COMMON_ADDRESS_OF_ASDU);
+        }
+        return addressed;
+    }
+
+    private void sendStationDataPoints(int commonAddress) {
+        List<DataPoint> stationPoints = dataHolder.getStationDataPoints(commonAddress);
+        logger.debug("Sending {} data points of CA {}", stationPoints.size(), commonAddress);
 
         int sent = 0;
-        for (DataPoint dp : allPoints.values()) {
+        for (ASdu dataAsdu : asduBuilder.buildPackedAsdus(commonAddress, stationPoints,
+                CauseOfTransmission.INTERROGATED_BY_STATION)) {
             try {
-                ASdu dataAsdu = asduBuilder.buildMeasurementAsdu(dp, CauseOfTransmission.INTERROGATED_BY_STATION);
-                if (dataAsdu != null) {
-                    connection.send(dataAsdu);
-                    sent++;
-                }
+                send(dataAsdu);
+                sent += dataAsdu.getInformationObjects().length;
             } catch (Exception e) {
-                logger.error("Error sending IOA {}: {}", dp.getIoa(), e.getMessage());
+                logger.error("Error sending GI response of CA {}: {}", commonAddress, e.getMessage());
             }
         }
 
-        logger.info("GI complete: {} points sent", sent);
+        logger.debug("GI complete: {} points sent", sent);
     }
 
-    private void sendActivationConfirmation(ASdu requestAsdu) throws IOException {
+    private void sendActivationConfirmation(ASdu requestAsdu, int commonAddress) throws IOException {
         InformationObject[] ios = requestAsdu.getInformationObjects();
         ASdu confirmation = new ASdu(
                 requestAsdu.getTypeIdentification(),
@@ -129,12 +277,12 @@ public class Iec104ConnectionHandler implements ConnectionEventListener {
                 false,
                 false,
                 requestAsdu.getOriginatorAddress(),
-                HardcodedMappings.IEC104_COMMON_ADDRESS,
+                commonAddress,
                 ios != null ? ios : new InformationObject[0]);
-        connection.send(confirmation);
+        send(confirmation);
     }
 
-    private void sendActivationTermination(ASdu requestAsdu) throws IOException {
+    private void sendActivationTermination(ASdu requestAsdu, int commonAddress) throws IOException {
         InformationObject[] ios = requestAsdu.getInformationObjects();
         ASdu termination = new ASdu(
                 requestAsdu.getTypeIdentification(),
@@ -143,43 +291,88 @@ public class Iec104ConnectionHandler implements ConnectionEventListener {
                 false,
                 false,
                 requestAsdu.getOriginatorAddress(),
-                HardcodedMappings.IEC104_COMMON_ADDRESS,
+                commonAddress,
                 ios != null ? ios : new InformationObject[0]);
-        connection.send(termination);
+        send(termination);
     }
 
     private void handleClockSync(ASdu asdu) throws IOException {
         logger.debug("Clock sync from {}", clientId);
-        sendActivationConfirmation(asdu);
+        sendActivationConfirmation(asdu, asdu.getCommonAddress());
     }
 
-    private void sendNegativeConfirmation(ASdu asdu) throws IOException {
+    private void sendNegativeConfirmation(ASdu asdu, CauseOfTransmission cot) throws IOException {
         InformationObject[] ios = asdu.getInformationObjects();
 
         ASdu negative = new ASdu(
                 asdu.getTypeIdentification(),
                 false,
-                CauseOfTransmission.UNKNOWN_TYPE_ID,
-                false,
+                cot,
                 false,
+                true,
                 asdu.getOriginatorAddress(),
-                HardcodedMappings.IEC104_COMMON_ADDRESS,
+                asdu.getCommonAddress(),
                 ios != null ? ios : new InformationObject[0]);
-        connection.send(negative);
+        send(negative);
     }
 
-    public void sendSpontaneous(DataPoint dataPoint) throws IOException {
+    /**
+     * Mirror a command ASDU with the given cause. Called from the command
+     * executor, possibly on a driver thread once the channel write finished.
+     */
+    public void sendCommandResponse(ASdu command, CauseOfTransmission cot, boolean negative) {
         if (!active) {
             return;
         }
 
-        ASdu asdu = asduBuilder.buildMeasurementAsdu(dataPoint, CauseOfTransmission.SPONTANEOUS);
-        if (asdu != null) {
+        ASdu response = new ASdu(
+                command.getTypeIdentification(),
+                false,
+                cot,
+                false,
+                negative,
+                command.getOriginatorAddress(),
+                command.getCommonAddress(),
+                command.getInformationObjects());
+        try {
+            send(response);
+        } catch (IOException e) {
+            logger.warn("Command response {} to {} failed: {}", cot, clientId, e.getMessage());
+        }
+    }
+
+    /**
+     * True if the station is served on this connection's listener.
+     */
+    public boolean servesStation(int commonAddress) {
+        return stationScope.test(commonAddress);
+    }
+
+    /**
+     * Send an I-frame. The frame is counted under the monitor j60870 writes
+     * it with (released while waiting for the k-window), so the numbers
+     * follow the order on the wire.
+     *
+     * @return number of I-frames sent on this connection so far, this one included
+     */
+    long send(ASdu asdu) throws IOException {
+        synchronized (connection) {
             connection.send(asdu);
-            logger.trace("Sent spontaneous: IOA {} = {}", dataPoint.getIoa(), dataPoint.getValue());
+            return iFramesSent.incrementAndGet();
         }
     }
 
+    /**
+     * Number of I-frames the client has acknowledged. I-frames are
+     * acknowledged in order, so these are the first (sent - unconfirmed).
+     * The sent count is read first: a frame sent meanwhile only raises the
+     * unconfirmed count, the result may be low but never too high.
+     */
+    long getConfirmedFrames() {
+        long sent = iFramesSent.get();
+        return sent - connection.getNumUnconfirmedAPdusSent();
+    }
+
     /**
      * j60870 1.7.2 API: connectionClosed(Connection, IOException)
      */
@@ -192,6 +385,8 @@ public class Iec104ConnectionHandler implements ConnectionEventListener {
         }
 
         active = false;
+        redundancyGroup.leave(this);
+        commandExecutor.connectionClosed(this);
 
         if (onCloseCallback != null) {
             onCloseCallback.accept(this);
@@ -205,9 +400,12 @@ public class Iec104ConnectionHandler implements ConnectionEventListener {
     public void dataTransferStateChanged(Connection connection, boolean stopped) {
         if (stopped) {
             logger.debug("Data transfer stopped for {}", clientId);
-        } else {
-            logger.info("Data transfer started for {}", clientId);
+            redundancyGroup.standby(this);
+            return;
         }
+
+        logger.info("Data transfer started for {} in group {}", clientId, redundancyGroup.getName());
+        redundancyGroup.activate(this);
     }
 
     public void close() {
@@ -229,6 +427,10 @@ public class Iec104ConnectionHandler implements ConnectionEventListener {
         return clientId;
     }
 
+    RedundancyGroup getRedundancyGroup() {
+        return redundancyGroup;
+    }
+
     public boolean isActive() {
         return active;
     }
@@ -0,0 +1,111 @@
+package org.openmuc.framework.app.gateway.output.iec104;
+
+import org.openmuc.framework.app.gateway.config.MappingRegistry;
+import org.openmuc.framework.app.gateway.config.PointTable;
+import org.openmuc.framework.app.gateway.config.StationSettings;
+import org.openmuc.framework.app.gateway.core.DataHolder;
+import org.openmuc.framework.app.gateway.dto.DataPoint;
+import org.openmuc.framework.app.gateway.dto.Mapping;
+import org.openmuc.j60870.ASdu;
+import org.openmuc.j60870.CauseOfTransmission;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+/**
+ * Cyclic transmission (COT=1 PERIODIC) of the points marked cyclic.
+ * <p>
+ * SCHEDULING:
+ * - The cycle period of the iec104 settings is split into slices of TICK_MS
+ * - Every tick sends the next slice of each station's cyclic points, so a
+ *   full scan is spread evenly over the period instead of one burst
+ * - A slice is packed into as few ASDUs as possible
+ * - Period and cyclic points are read from the current mapping on every tick
+ */
+public class Iec104CyclicScheduler {
+
+    private static final Logger logger = LoggerFactory.getLogger(Iec104CyclicScheduler.class);
+
+    private static final long TICK_MS = 1000;
+
+    private final MappingRegistry mappingRegistry;
+    private final DataHolder dataHolder;
+    private final BiConsumer<Integer, List<ASdu>> sink;
+    private final Iec104AsduBuilder asduBuilder = new Iec104AsduBuilder();
+
+    private ScheduledExecutorService executor;
+    private long tick;
+
+    /**
+     * @param sink receives the packed ASDUs of one station slice (common address, ASDUs)
+     */
+    public Iec104CyclicScheduler(MappingRegistry mappingRegistry, DataHolder dataHolder,
+                                 BiConsumer<Integer, List<ASdu>> sink) {
+        this.mappingRegistry = mappingRegistry;
+        this.dataHolder = dataHolder;
+        this.sink = sink;
+    }
+
+    public synchronized void start() {
+        if (executor != null) {
+            return;
+        }
+
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "Iec104-Cyclic");
+            t.setDaemon(true);
+            return t;
+        });
+        executor.scheduleAtFixedRate(this::runTick, TICK_MS, TICK_MS, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    private void runTick() {
+        try {
+            PointTable pointTable = mappingRegistry.getPointTable();
+            int cyclePeriod = pointTable.getSettings().getCyclePeriod();
+            if (cyclePeriod <= 0) {
+                return;
+            }
+
+            long slices = Math.max(1, TimeUnit.SECONDS.toMillis(cyclePeriod) / TICK_MS);
+            long slice = tick++ % slices;
+
+            for (StationSettings station : pointTable.getStations()) {
+                List<Mapping> cyclic = pointTable.getCyclicMappings(station.getCommonAddress());
+                int from = (int) (slice * cyclic.size() / slices);
+                int to = (int) ((slice + 1) * cyclic.size() / slices);
+                if (from == to) {
+                    continue;
+                }
+
+                List<DataPoint> points = new ArrayList<>(to - from);
+                for (Mapping mapping : cyclic.subList(from, to)) {
+                    DataPoint dataPoint = dataHolder.getDataPoint(mapping.getCommonAddress(), mapping.getIoa());
+                    if (dataPoint != null) {
+                        points.add(dataPoint);
+                    }
+                }
+
+                if (!points.isEmpty()) {
+                    sink.accept(station.getCommonAddress(), asduBuilder.buildPackedAsdus(
+                            station.getCommonAddress(), points, CauseOfTransmission.PERIODIC));
+                }
+            }
+        } catch (Exception e) {
+            logger.error("Cyclic transmission failed: {}", e.getMessage(), e);
+        }
+    }
+}
@@ -1,9 +1,21 @@
 package org.openmuc.framework.app.gateway.output.iec104;
 
-import org.openmuc.framework.app.gateway.config.HardcodedMappings;
+import org.openmuc.framework.app.gateway.config.Iec104Settings;
+import org.openmuc.framework.app.gateway.config.MappingChangeListener;
+import org.openmuc.framework.app.gateway.config.MappingRegistry;
+import org.openmuc.framework.app.gateway.config.PointTable;
+import org.openmuc.framework.app.gateway.config.StationSettings;
 import org.openmuc.framework.app.gateway.core.DataHolder;
+import org.openmuc.framework.app.gateway.core.GatewayDiagnostics;
+import org.openmuc.framework.app.gateway.core.GatewayDiagnostics.Counter;
+import org.openmuc.framework.app.gateway.core.LatencyStats;
+import org.openmuc.framework.app.gateway.core.LatencyStats.Stage;
+import org.openmuc.framework.app.gateway.core.ProcessImageSnapshot;
+import org.openmuc.framework.app.gateway.core.SoeBuffer;
 import org.openmuc.framework.app.gateway.dto.DataPoint;
 import org.openmuc.framework.dataaccess.DataAccessService;
+import org.openmuc.j60870.ASdu;
+import org.openmuc.j60870.CauseOfTransmission;
 import org.openmuc.j60870.Connection;
 import org.openmuc.j60870.ConnectionEventListener;
 import org.openmuc.j60870.Server;
@@ -17,7 +29,12 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.function.Consumer;
 
@@ -29,7 +46,11 @@ import java.util.function.Consumer;
  * - Accept SCADA client connections
  * - Manage connection lifecycle
  * - Subscribe to DataHolder for spontaneous updates
- * - Broadcast data changes to all clients
+ * - Build spontaneous ASDUs once per station batch and hand them to every
+ *   redundancy group, which sends them on its active connection
+ * - Route control commands to channel writes (Iec104CommandExecutor)
+ * - Open one listener per port: the shared port of the iec104 settings
+ *   plus one for every station with a dedicated port
  */
 @Component(immediate = true)
 public class Iec104Server {
@@ -39,10 +60,38 @@ public class Iec104Server {
     @Reference
     private DataAccessService dataAccessService;
 
-    private Server server;
+    // j60870 servers by listening port
+    private final Map<Integer, Server> servers = new LinkedHashMap<>();
     private DataHolder dataHolder;
     private final List<Iec104ConnectionHandler> activeConnections = new CopyOnWriteArrayList<>();
-    private Consumer<DataPoint> dataHolderListener;
+
+    // Redundancy groups by name and listener port, configured ones are kept across reconnects.
+    // Creating and joining a group and removing an empty one are synchronized on the map.
+    private final Map<String, RedundancyGroup> redundancyGroups = new ConcurrentHashMap<>();
+
+    // Last acknowledged event of removed client groups, so a reconnect resumes the stream (guarded by redundancyGroups)
+    private static final int MAX_RELEASED_GROUPS = 256;
+    private final Map<String, Long> releasedGroupSeqs = new LinkedHashMap<String, Long>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+            return size() > MAX_RELEASED_GROUPS;
+        }
+    };
+    private final Iec104AsduBuilder asduBuilder = new Iec104AsduBuilder();
+    private final LatencyStats latencyStats = LatencyStats.getInstance();
+    private final GatewayDiagnostics diagnostics = GatewayDiagnostics.getInstance();
+    private Consumer<List<DataPoint>> dataHolderListener;
+    private MappingRegistry mappingRegistry;
+    private MappingChangeListener mappingChangeListener;
+    private Iec104CommandExecutor commandExecutor;
+    private Iec104CyclicScheduler cyclicScheduler;
+    private ProcessImageSnapshot snapshot;
+
+    /**
+     * Settings the listening sockets were opened with.
+     */
+    private Iec104Settings boundSettings;
+    private Set<Integer> boundPorts;
 
     // Rate limiting for max connections log
     private static final long MAX_CONN_LOG_INTERVAL_MS = 30_000; // 30 seconds
@@ -55,47 +104,68 @@ public class Iec104Server {
 
         try {
             // Get DataHolder instance
-            dataHolder = DataHolder.getInstance();
-
-            // Start IEC 104 Server
-            startServer();
+            mappingRegistry = MappingRegistry.acquire();
+            dataHolder = DataHolder.acquire(mappingRegistry);
+            PointTable pointTable = mappingRegistry.getPointTable();
+            boundSettings = pointTable.getSettings();
+            boundPorts = pointTable.getListenerPorts();
+            commandExecutor = new Iec104CommandExecutor(dataAccessService, mappingRegistry);
+
+            // Warm restart: answer GI from the last snapshot until fresh samples arrive
+            startSnapshot(boundSettings);
+
+            // Start IEC 104 Server, one listener per port
+            for (int port : boundPorts) {
+                startServer(port);
+            }
 
             // Register listener for spontaneous updates
             registerDataHolderListener();
 
+            // Cyclic transmission, idle while no cycle period is configured
+            cyclicScheduler = new Iec104CyclicScheduler(mappingRegistry, dataHolder, this::sendPeriodic);
+            cyclicScheduler.start();
+
+            // Watch for settings changes on mapping reload
+            mappingChangeListener = this::onMappingChanged;
+            mappingRegistry.addMappingChangeListener(mappingChangeListener);
+
             logger.info("IEC 104 Server activated successfully");
-            logger.info("Listening on {}:{}",
-                    HardcodedMappings.IEC104_BIND_IP,
-                    HardcodedMappings.IEC104_PORT);
+            logger.info("Listening on {} port(s) {}",
+                    boundSettings.getBindIp(),
+                    boundPorts);
 
         } catch (Exception e) {
             logger.error("Failed to activate IEC 104 Server", e);
+            // not deactivated by the framework after a failed activation
+            deactivate();
             throw new RuntimeException("IEC 104 Server activation failed", e);
         }
     }
 
     /**
-     * Start j60870 Server.
+     * Start a j60870 Server listening on the given port.
      */
-    private void startServer() throws IOException {
+    private void startServer(int port) throws IOException {
         try {
             Server.Builder builder = Server.builder();
 
             // Bind to configured address
-            if (!"0.0.0.0".equals(HardcodedMappings.IEC104_BIND_IP)) {
-                InetAddress bindAddr = InetAddress.getByName(HardcodedMappings.IEC104_BIND_IP);
+            if (!"0.0.0.0".equals(boundSettings.getBindIp())) {
+                InetAddress bindAddr = InetAddress.getByName(boundSettings.getBindIp());
                 builder.setBindAddr(bindAddr);
             }
 
-            builder.setPort(HardcodedMappings.IEC104_PORT);
+            builder.setPort(port);
             builder.setBacklog(10); // Queue for pending connections
 
-            server = builder.build();
+            Server server = builder.build();
 
             // Start listening (non-blocking)
-            server.start(new Iec104ServerEventListener());
+            server.start(new Iec104ServerEventListener(port));
+            servers.put(port, server);
 
-            logger.info("j60870 Server started successfully");
+            logger.info("j60870 Server started successfully on port {}", port);
 
         } catch (IOException e) {
             logger.error("Failed to start j60870 Server: {}", e.getMessage(), e);
@@ -113,49 +183,113 @@ public class Iec104Server {
     }
 
     /**
-     * Handle data point updates from DataHolder (spontaneous transmission).
+     * Mapping reload: points are re-bound by the input binder, existing
+     * sessions stay connected. A new bind address or port is only applied
+     * on the next activation, as reopening the socket would drop all clients.
      */
-    private void handleDataPointUpdate(DataPoint dataPoint) {
-        if (activeConnections.isEmpty()) {
-            logger.info("No active connections, skipping update for IOA {}",
-                    dataPoint.getIoa());
-            return;
+    private void onMappingChanged(PointTable oldTable, PointTable newTable, Set<String> changedChannels) {
+        Iec104Settings newSettings = newTable.getSettings();
+        if (boundSettings.requiresRebind(newSettings)) {
+            logger.warn("IEC 104 bind address changed to {}:{}, restart the gateway to apply",
+                    newSettings.getBindIp(), newSettings.getPort());
         }
+        if (!boundPorts.equals(newTable.getListenerPorts())) {
+            logger.warn("IEC 104 station ports changed to {}, restart the gateway to apply",
+                    newTable.getListenerPorts());
+        }
+    }
 
-        logger.info("Broadcasting spontaneous update: IOA {} = {}",
-                dataPoint.getIoa(), dataPoint.getValue());
-
-        // Send to all active connections, remove dead ones
-        List<Iec104ConnectionHandler> deadHandlers = new java.util.ArrayList<>();
-        int successCount = 0;
+    /**
+     * True if a station is served on the listener of the given port.
+     * Stations without a dedicated port belong to the shared listener.
+     */
+    private boolean servesStation(int listenerPort, int commonAddress) {
+        StationSettings station = mappingRegistry.getPointTable().getStation(commonAddress);
+        if (station == null) {
+            return false;
+        }
+        int stationPort = station.getPort() != StationSettings.SHARED_PORT ? station.getPort()
+                : boundSettings.getPort();
+        return stationPort == listenerPort;
+    }
 
-        for (Iec104ConnectionHandler handler : activeConnections) {
-            // Skip already-closed connections
-            if (!handler.isActive()) {
-                deadHandlers.add(handler);
-                continue;
+    /**
+     * Handle the coalesced updates of one station from DataHolder (spontaneous transmission).
+     */
+    private void handleDataPointUpdate(List<DataPoint> stationBatch) {
+        int commonAddress = stationBatch.get(0).getCommonAddress();
+        if (activeConnections.isEmpty()) {
+            diagnostics.count(Counter.SPONTANEOUS_SKIPPED);
+            return;
+        }
+        diagnostics.count(Counter.SPONTANEOUS_BATCH);
+
+        // Encode once: time-tagged points go through the SoeBuffer of each group
+        List<DataPoint> measurements = new ArrayList<>(stationBatch.size());
+        boolean hasEvents = false;
+        for (DataPoint dataPoint : stationBatch) {
+            if (SoeBuffer.isEventType(dataPoint.getAsduType())) {
+                hasEvents = true;
+            } else {
+                measurements.add(dataPoint);
             }
-
-            try {
-                handler.sendSpontaneous(dataPoint);
-                successCount++;
-            } catch (Exception e) {
-                logger.warn("Send failed for {}, marking for removal: {}",
-                        handler.getClientId(), e.getMessage());
-                deadHandlers.add(handler);
+        }
+        List<ASdu> measurementAsdus = asduBuilder.buildPackedAsdus(commonAddress, measurements,
+                CauseOfTransmission.SPONTANEOUS);
+
+        long dispatchNanos = System.nanoTime();
+        for (RedundancyGroup group : redundancyGroups.values()) {
+            if (group.sendSpontaneous(commonAddress, hasEvents, measurementAsdus)) {
+                latencyStats.recordNanos(Stage.DISPATCH_TO_SEND, dispatchNanos, System.nanoTime());
+                long sentMillis = System.currentTimeMillis();
+                for (DataPoint dataPoint : stationBatch) {
+                    if (dataPoint.getSampleTime() != 0) {
+                        latencyStats.recordClient(group.getName(), dataPoint.getSampleTime(), sentMillis);
+                    }
+                }
             }
         }
 
         // Clean up dead connections
-        if (!deadHandlers.isEmpty()) {
-            activeConnections.removeAll(deadHandlers);
+        int before = activeConnections.size();
+        activeConnections.removeIf(handler -> !handler.isActive());
+        if (activeConnections.size() < before) {
             logger.info("Removed {} dead connection(s), remaining: {}",
-                    deadHandlers.size(), activeConnections.size());
+                    before - activeConnections.size(), activeConnections.size());
         }
 
-        if (logger.isInfoEnabled()) {
-            logger.info("Broadcast complete: {} sent to {} clients",
-                    successCount, activeConnections.size());
+        if (!diagnostics.getTraced().isEmpty()) {
+            for (DataPoint dataPoint : stationBatch) {
+                if (diagnostics.isTraced(commonAddress, dataPoint.getIoa())) {
+                    diagnostics.trace(commonAddress, dataPoint.getIoa(), "sent",
+                            redundancyGroups.size() + " group(s)");
+                }
+            }
+        }
+    }
+
+    private void startSnapshot(Iec104Settings settings) {
+        if (settings.getSnapshotFile().isEmpty()) {
+            logger.info("Process image snapshot disabled");
+            return;
+        }
+
+        snapshot = new ProcessImageSnapshot(settings.getSnapshotFile(), dataHolder, mappingRegistry);
+        try {
+            snapshot.start(settings.getSnapshotInterval());
+        } catch (IOException e) {
+            // Not fatal: the gateway only loses its warm restart
+            logger.error("Process image snapshot {} unavailable: {}", settings.getSnapshotFile(), e.getMessage());
+            snapshot = null;
+        }
+    }
+
+    /**
+     * Hand one slice of the cyclic transmission to every redundancy group.
+     */
+    private void sendPeriodic(int commonAddress, List<ASdu> periodicAsdus) {
+        for (RedundancyGroup group : redundancyGroups.values()) {
+            group.sendPeriodic(commonAddress, periodicAsdus);
         }
     }
 
@@ -165,6 +299,23 @@ public class Iec104Server {
         logger.info("Deactivating IEC 104 Server...");
         logger.info("========================================");
 
+        if (mappingChangeListener != null && mappingRegistry != null) {
+            mappingRegistry.removeMappingChangeListener(mappingChangeListener);
+        }
+
+        if (cyclicScheduler != null) {
+            cyclicScheduler.stop();
+        }
+
+        if (commandExecutor != null) {
+            commandExecutor.shutdown();
+        }
+
+        if (snapshot != null) {
+            snapshot.stop();
+            snapshot = null;
+        }
+
         // Remove DataHolder listener
         if (dataHolderListener != null && dataHolder != null) {
             dataHolder.removeChangeListener(dataHolderListener);
@@ -174,12 +325,15 @@ public class Iec104Server {
         // Close all connections
         closeAllConnections();
 
-        // Stop server
-        if (server != null) {
-            server.stop();
-            logger.info("j60870 Server stopped");
+        // Stop servers
+        for (Map.Entry<Integer, Server> entry : servers.entrySet()) {
+            entry.getValue().stop();
+            logger.info("j60870 Server on port {} stopped", entry.getKey());
         }
+        servers.clear();
 
+        DataHolder.release();
+        MappingRegistry.release();
         logger.info("IEC 104 Server deactivated");
     }
 
@@ -211,9 +365,15 @@ public class Iec104Server {
      */
     private class Iec104ServerEventListener implements ServerEventListener {
 
+        private final int port;
+
+        Iec104ServerEventListener(int port) {
+            this.port = port;
+        }
+
         @Override
         public ConnectionEventListener connectionIndication(Connection connection) {
-            return handleNewConnection(connection);
+            return handleNewConnection(connection, port);
         }
 
         @Override
@@ -235,9 +395,10 @@ public class Iec104Server {
      * Handle new client connection.
      * 
      * @param connection j60870 Connection object
+     * @param listenerPort port the connection was accepted on
      * @return ConnectionEventListener for this connection
      */
-    private ConnectionEventListener handleNewConnection(Connection connection) {
+    private ConnectionEventListener handleNewConnection(Connection connection, int listenerPort) {
         String clientAddress = "unknown";
         try {
             clientAddress = connection.toString();
@@ -247,13 +408,14 @@ public class Iec104Server {
 
         logger.info("New client connection from: {}", clientAddress);
 
-        // Check max connections limit
-        if (activeConnections.size() >= HardcodedMappings.IEC104_MAX_CONNECTIONS) {
+        // Check max connections limit (picked up from the current mapping)
+        int maxConnections = mappingRegistry.getPointTable().getSettings().getMaxConnections();
+        if (activeConnections.size() >= maxConnections) {
             rejectedSinceLastLog++;
             long now = System.currentTimeMillis();
             if (now - lastMaxConnLogTime > MAX_CONN_LOG_INTERVAL_MS) {
                 logger.warn("Max connections ({}) reached, rejected {} attempt(s) since last log. Latest: {}",
-                        HardcodedMappings.IEC104_MAX_CONNECTIONS, rejectedSinceLastLog, clientAddress);
+                        maxConnections, rejectedSinceLastLog, clientAddress);
                 lastMaxConnLogTime = now;
                 rejectedSinceLastLog = 0;
             }
@@ -269,10 +431,28 @@ public class Iec104Server {
 
         // Create connection handler
         try {
-            Iec104ConnectionHandler handler = new Iec104ConnectionHandler(
-                    connection,
-                    dataHolder,
-                    this::onConnectionClosed);
+            RedundancyGroup group;
+            Iec104ConnectionHandler handler;
+            boolean joined;
+            synchronized (redundancyGroups) {
+                group = redundancyGroupFor(connection, listenerPort);
+                handler = new Iec104ConnectionHandler(
+                        connection,
+                        dataHolder,
+                        mappingRegistry,
+                        group,
+                        commandExecutor,
+                        commonAddress -> servesStation(listenerPort, commonAddress),
+                        this::onConnectionClosed);
+                joined = group.join(handler);
+            }
+
+            if (!joined) {
+                logger.warn("Redundancy group {} already has {} connections, rejecting {}",
+                        group.getName(), RedundancyGroup.MAX_MEMBERS, clientAddress);
+                connection.close();
+                return null;
+            }
 
             activeConnections.add(handler);
 
@@ -295,6 +475,35 @@ public class Iec104Server {
         }
     }
 
+    /**
+     * Redundancy group of the client on a listener: the configured group of
+     * its address, or a group of its own. A group seen for the first time
+     * starts at the newest event (its GI provides the current state), the
+     * own group of a client that reconnects after its last connection closed
+     * resumes after the last event it acknowledged.
+     */
+    private RedundancyGroup redundancyGroupFor(Connection connection, int listenerPort) {
+        String clientAddress = connection.getRemoteInetAddress() != null
+                ? connection.getRemoteInetAddress().getHostAddress()
+                : "unknown";
+        String configuredGroup = mappingRegistry.getPointTable().getRedundancyGroup(clientAddress);
+        String groupName = (configuredGroup != null ? configuredGroup : clientAddress) + ":" + listenerPort;
+        return redundancyGroups.computeIfAbsent(groupName, name -> {
+            Long releasedSeq = releasedGroupSeqs.remove(name);
+            SoeBuffer soeBuffer = dataHolder.getSoeBuffer();
+            long acknowledgedSeq = releasedSeq != null ? releasedSeq : soeBuffer.lastSeq();
+            return new RedundancyGroup(name, soeBuffer, acknowledgedSeq, configuredGroup != null);
+        });
+    }
+
+    /**
+     * Redundancy group of a name (configured group or client address) on a
+     * listener, null while it has no connection.
+     */
+    RedundancyGroup getRedundancyGroup(String name, int listenerPort) {
+        return redundancyGroups.get(name + ":" + listenerPort);
+    }
+
     /**
      * Callback when connection closes.
      */
@@ -305,5 +514,16 @@ public class Iec104Server {
             logger.info("Client disconnected: {} (remaining: {})",
                     handler.getClientId(), activeConnections.size());
         }
+
+        RedundancyGroup group = handler.getRedundancyGroup();
+        if (!group.isConfigured()) {
+            synchronized (redundancyGroups) {
+                if (group.getMemberCount() == 0 && redundancyGroups.remove(group.getName(), group)) {
+                    releasedGroupSeqs.put(group.getName(), group.getAcknowledgedSeq());
+                    logger.debug("Removed redundancy group {} at event #{}", group.getName(),
+                            group.getAcknowledgedSeq());
+                }
+            }
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,313 @@
+package org.openmuc.framework.app.gateway.output.iec104;
+
+import org.openmuc.framework.app.gateway.core.SoeBuffer;
+import org.openmuc.framework.app.gateway.core.SoeBuffer.SoeEvent;
+import org.openmuc.j60870.ASdu;
+import org.openmuc.j60870.CauseOfTransmission;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * IEC 60870-5-104 redundancy group: up to MAX_MEMBERS connections of one
+ * controlling station sharing a single outbound stream.
+ * <p>
+ * STREAM:
+ * - Only the connection that sent STARTDT last is active, standby
+ *   connections get no I-frames (test frames are handled by j60870)
+ * - Spontaneous ASDUs are built once per station batch by the server and
+ *   handed to the group, events are read from the SoeBuffer once per group
+ * - Every sent frame stays queued until the active connection reports it
+ *   acknowledged (sent - unconfirmed I-frames)
+ * - Frames are built and queued under the group monitor, the socket writes
+ *   happen outside it, so a client with a full k-window only delays the stream
+ * <p>
+ * SWITCHOVER:
+ * - STARTDT on another member makes it the active one; frames not yet
+ *   acknowledged are resent to it, then the event stream continues
+ * - A configured group outlives its connections, so a reconnect resumes the
+ *   same way. The own group of a client address is removed with its last
+ *   connection, the server keeps its last acknowledged event and the group
+ *   of a reconnect resumes after it (frames other than events are not kept)
+ * <p>
+ * LOCKING:
+ * - The group monitor never calls into a connection: the confirmed frame
+ *   count of a member is read before entering it. A stale count is lower
+ *   than the current one, so at worst frames are sent again
+ */
+public class RedundancyGroup {
+
+    private static final Logger logger = LoggerFactory.getLogger(RedundancyGroup.class);
+
+    public static final int MAX_MEMBERS = 4;
+
+    private static final int EVENT_READ_BATCH = 256;
+
+    private final String name;
+    private final boolean configured;
+    private final SoeBuffer soeBuffer;
+    private final Iec104AsduBuilder asduBuilder = new Iec104AsduBuilder();
+    private final List<Iec104ConnectionHandler> members = new CopyOnWriteArrayList<>();
+    private volatile Iec104ConnectionHandler activeHandler;
+
+    // Guarded by this: outbound stream position of the group
+    private long acknowledgedSeq;
+    private long nextEventSeq;
+    private final ArrayDeque<PendingFrame> unacknowledgedFrames = new ArrayDeque<>();
+    private final ArrayDeque<PendingFrame> unsentFrames = new ArrayDeque<>();
+
+    // Serializes the socket writes of the group, taken before the monitor, never while holding it
+    private final Object transmitLock = new Object();
+
+    /**
+     * @param acknowledgedSeq last event the group does not need to receive
+     * @param configured true for a group of the mapping, false for the own group of a client address
+     */
+    public RedundancyGroup(String name, SoeBuffer soeBuffer, long acknowledgedSeq, boolean configured) {
+        this.name = name;
+        this.configured = configured;
+        this.soeBuffer = soeBuffer;
+        this.acknowledgedSeq = acknowledgedSeq;
+        this.nextEventSeq = acknowledgedSeq + 1;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public boolean isConfigured() {
+        return configured;
+    }
+
+    /**
+     * Add a connection as standby member.
+     *
+     * @return false if the group is full
+     */
+    public synchronized boolean join(Iec104ConnectionHandler handler) {
+        if (members.size() >= MAX_MEMBERS) {
+            return false;
+        }
+        members.add(handler);
+        logger.info("{} joined redundancy group {} ({} member(s))", handler.getClientId(), name, members.size());
+        return true;
+    }
+
+    public void leave(Iec104ConnectionHandler handler) {
+        standby(handler);
+        synchronized (this) {
+            members.remove(handler);
+        }
+    }
+
+    /**
+     * STARTDT: make the connection the active one and continue the stream
+     * from the last acknowledged frame.
+     */
+    public void activate(Iec104ConnectionHandler handler) {
+        Iec104ConnectionHandler previous = activeHandler;
+        long previousConfirmed = previous != null ? previous.getConfirmedFrames() : 0;
+
+        synchronized (this) {
+            if (activeHandler == handler) {
+                return;
+            }
+
+            updateAcknowledged(previous, previousConfirmed);
+            if (activeHandler != null) {
+                logger.info("Redundancy group {}: switchover {} -> {}", name, activeHandler.getClientId(),
+                        handler.getClientId());
+            }
+            activeHandler = handler;
+
+            // sent but unacknowledged frames go out again, ahead of the unsent ones
+            int resend = unacknowledgedFrames.size();
+            PendingFrame frame;
+            while ((frame = unacknowledgedFrames.pollLast()) != null) {
+                unsentFrames.addFirst(new PendingFrame(frame.asdu, frame.eventSeq));
+            }
+            logger.info("Redundancy group {}: {} active, resending {} frame(s), events after #{}", name,
+                    handler.getClientId(), resend, acknowledgedSeq);
+
+            queueEvents(handler);
+        }
+        transmitUnsent();
+    }
+
+    /**
+     * STOPDT or connection loss of a member. Unacknowledged frames stay queued.
+     */
+    public void standby(Iec104ConnectionHandler handler) {
+        long confirmedFrames = handler.getConfirmedFrames();
+
+        synchronized (this) {
+            if (activeHandler != handler) {
+                return;
+            }
+            updateAcknowledged(handler, confirmedFrames);
+            activeHandler = null;
+            logger.info("Redundancy group {}: {} standby, {} frame(s) unacknowledged", name, handler.getClientId(),
+                    unacknowledgedFrames.size() + unsentFrames.size());
+        }
+    }
+
+    /**
+     * Send one station batch to the active connection.
+     *
+     * @param hasEvents true if the batch contains time-tagged points, these are read from the SoeBuffer
+     * @param measurementAsdus pre-built ASDUs of the other points, shared by all groups
+     * @return true if the batch went out on the active connection
+     */
+    public boolean sendSpontaneous(int commonAddress, boolean hasEvents, List<ASdu> measurementAsdus) {
+        Iec104ConnectionHandler handler = activeHandler;
+        long confirmedFrames = handler != null ? handler.getConfirmedFrames() : 0;
+
+        synchronized (this) {
+            updateAcknowledged(handler, confirmedFrames);
+            handler = activeHandler;
+            if (handler == null || !handler.servesStation(commonAddress)) {
+                return false;
+            }
+
+            // Time-tagged points: every buffered change is delivered in order
+            if (hasEvents) {
+                queueEvents(handler);
+            }
+            for (ASdu asdu : measurementAsdus) {
+                unsentFrames.addLast(new PendingFrame(asdu, 0));
+            }
+        }
+        return transmitUnsent();
+    }
+
+    /**
+     * Send ASDUs of the cyclic transmission to the active connection.
+     */
+    public boolean sendPeriodic(int commonAddress, List<ASdu> periodicAsdus) {
+        return sendSpontaneous(commonAddress, false, periodicAsdus);
+    }
+
+    /**
+     * Queue the ASDUs of the buffered events not queued yet.
+     */
+    private void queueEvents(Iec104ConnectionHandler handler) {
+        List<SoeEvent> events;
+        int queued = 0;
+        do {
+            events = soeBuffer.read(nextEventSeq, EVENT_READ_BATCH);
+            for (SoeEvent event : events) {
+                nextEventSeq = event.getSeq() + 1;
+                if (!handler.servesStation(event.getDataPoint().getCommonAddress())) {
+                    continue;
+                }
+
+                ASdu asdu = asduBuilder.buildMeasurementAsdu(event.getDataPoint(), CauseOfTransmission.SPONTANEOUS);
+                if (asdu != null) {
+                    unsentFrames.addLast(new PendingFrame(asdu, event.getSeq()));
+                    queued++;
+                }
+            }
+        } while (events.size() == EVENT_READ_BATCH);
+
+        logger.trace("Queued {} buffered event(s) for {}", queued, handler.getClientId());
+    }
+
+    /**
+     * Write the unsent frames to the active connection, in order. The socket
+     * writes block while the client's k-window is full, so they run outside
+     * the group monitor: a slow client never delays join, leave or failover.
+     * A switchover meanwhile moves the frames to the new active connection.
+     *
+     * @return false if the active connection failed
+     */
+    private boolean transmitUnsent() {
+        synchronized (transmitLock) {
+            while (true) {
+                Iec104ConnectionHandler handler;
+                PendingFrame frame;
+                synchronized (this) {
+                    handler = activeHandler;
+                    frame = unsentFrames.peekFirst();
+                    if (handler == null || frame == null) {
+                        return true;
+                    }
+                }
+
+                long frameNo;
+                try {
+                    frameNo = handler.send(frame.asdu);
+                } catch (IOException e) {
+                    transmitFailed(handler, e);
+                    return false;
+                }
+
+                synchronized (this) {
+                    // otherwise a switchover queued the frame again for the new active connection
+                    if (activeHandler == handler && unsentFrames.peekFirst() == frame) {
+                        unsentFrames.pollFirst();
+                        frame.frameNo = frameNo;
+                        unacknowledgedFrames.addLast(frame);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * I-frames are acknowledged in order, so every frame up to
+     * (sent - unconfirmed) has reached the client. The queued frames were
+     * all sent on the active connection, a count read from another one is ignored.
+     */
+    private void updateAcknowledged(Iec104ConnectionHandler handler, long confirmedFrames) {
+        if (handler == null || handler != activeHandler) {
+            return;
+        }
+        PendingFrame oldest;
+        while ((oldest = unacknowledgedFrames.peekFirst()) != null && oldest.frameNo <= confirmedFrames) {
+            if (oldest.eventSeq > acknowledgedSeq) {
+                acknowledgedSeq = oldest.eventSeq;
+            }
+            unacknowledgedFrames.pollFirst();
+        }
+    }
+
+    /**
+     * Drop the active member after a failed send, it is closed and the group waits for STARTDT on another.
+     */
+    private void transmitFailed(Iec104ConnectionHandler handler, IOException e) {
+        logger.warn("Redundancy group {}: send to {} failed: {}", name, handler.getClientId(), e.getMessage());
+        synchronized (this) {
+            if (activeHandler == handler) {
+                activeHandler = null;
+            }
+        }
+        handler.close();
+    }
+
+    public synchronized long getAcknowledgedSeq() {
+        return acknowledgedSeq;
+    }
+
+    public int getMemberCount() {
+        return members.size();
+    }
+
+    private static class PendingFrame {
+        private final ASdu asdu;
+
+        // I-frame number on the active connection, set when sent (guarded by the group)
+        private long frameNo;
+
+        // SoeBuffer sequence of an event frame, 0 for other frames
+        private final long eventSeq;
+
+        PendingFrame(ASdu asdu, long eventSeq) {
+            this.asdu = asdu;
+            this.eventSeq = eventSeq;
+        }
+    }
+}
@@ -0,0 +1,321 @@
+package org.openmuc.framework.app.gateway.output.modbus;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.openmuc.framework.app.gateway.dto.DataPoint;
+import org.openmuc.framework.app.gateway.dto.Mapping;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.ghgande.j2mod.modbus.procimg.DigitalIn;
+import com.ghgande.j2mod.modbus.procimg.DigitalOut;
+import com.ghgande.j2mod.modbus.procimg.FIFO;
+import com.ghgande.j2mod.modbus.procimg.File;
+import com.ghgande.j2mod.modbus.procimg.IllegalAddressException;
+import com.ghgande.j2mod.modbus.procimg.InputRegister;
+import com.ghgande.j2mod.modbus.procimg.ProcessImage;
+import com.ghgande.j2mod.modbus.procimg.Register;
+import com.ghgande.j2mod.modbus.procimg.SimpleDigitalIn;
+import com.ghgande.j2mod.modbus.procimg.SimpleInputRegister;
+
+/**
+ * Register image of one station, served as one Modbus unit.
+ * <p>
+ * REGISTER MAP (generated from the points of the station, ascending IOA):
+ * - Single points (M_SP_*): one discrete input each (FC2)
+ * - Double points (M_DP_*): one input register holding the state
+ *   (0 intermediate, 1 OFF, 2 ON, 3 indeterminate)
+ * - Scaled values (M_ME_NB_1): one input register, INT16
+ * - Integrated totals (M_IT_*): two input registers, INT32 high word first,
+ *   wrapping like the binary counter reading of IEC 104
+ * - Other measurements: two input registers, FLOAT32 high word first
+ * - Holding registers (FC3) mirror the input registers read-only
+ * <p>
+ * Values are encoded into the register array when they change, requests
+ * copy a range under the image lock, so a FLOAT32 or INT32 is never read half
+ * updated.
+ */
+public class ModbusProcessImage implements ProcessImage {
+
+    private static final Logger logger = LoggerFactory.getLogger(ModbusProcessImage.class);
+
+    private static final byte KIND_BIT = 1;
+    private static final byte KIND_INT16 = 2;
+    private static final byte KIND_FLOAT32 = 3;
+    private static final byte KIND_DOUBLE_POINT = 4;
+    private static final byte KIND_INT32 = 5;
+
+    private final int unitId;
+    private final Map<Integer, Integer> addressByIoa = new HashMap<>();
+    private final Map<Integer, Byte> kindByIoa = new HashMap<>();
+
+    // Guarded by this
+    private final int[] registers;
+    private final boolean[] bits;
+
+    public ModbusProcessImage(int unitId, List<Mapping> stationMappings) {
+        this.unitId = unitId;
+
+        List<Mapping> sorted = new ArrayList<>(stationMappings);
+        sorted.sort(Comparator.comparingInt(Mapping::getIoa));
+
+        int registerCount = 0;
+        int bitCount = 0;
+        for (Mapping mapping : sorted) {
+            byte kind = kindOf(mapping.getAsduType());
+            kindByIoa.put(mapping.getIoa(), kind);
+
+            if (kind == KIND_BIT) {
+                addressByIoa.put(mapping.getIoa(), bitCount++);
+            } else {
+                addressByIoa.put(mapping.getIoa(), registerCount);
+                registerCount += kind == KIND_FLOAT32 || kind == KIND_INT32 ? 2 : 1;
+            }
+
+            logger.debug("Unit {}: IOA {} ({}) -> {} {}", unitId, mapping.getIoa(), mapping.getAsduType(),
+                    kind == KIND_BIT ? "discrete input" : "input register", addressByIoa.get(mapping.getIoa()));
+        }
+
+        this.registers = new int[registerCount];
+        this.bits = new boolean[bitCount];
+    }
+
+    private static byte kindOf(String asduType) {
+        if (asduType != null && asduType.startsWith("M_SP_")) {
+            return KIND_BIT;
+        }
+        if (asduType != null && asduType.startsWith("M_DP_")) {
+            return KIND_DOUBLE_POINT;
+        }
+        if ("M_ME_NB_1".equals(asduType)) {
+            return KIND_INT16;
+        }
+        if (asduType != null && asduType.startsWith("M_IT_")) {
+            return KIND_INT32;
+        }
+        return KIND_FLOAT32;
+    }
+
+    public int getUnitId() {
+        return unitId;
+    }
+
+    /**
+     * Encode the value of a point into its registers. Points not in the map are ignored.
+     */
+    public void update(DataPoint dataPoint) {
+        Integer address = addressByIoa.get(dataPoint.getIoa());
+        if (address == null) {
+            return;
+        }
+
+        Object value = dataPoint.getValue();
+        switch (kindByIoa.get(dataPoint.getIoa())) {
+            case KIND_BIT:
+                boolean set = value instanceof Boolean ? (Boolean) value
+                        : value instanceof Number && ((Number) value).intValue() != 0;
+                synchronized (this) {
+                    bits[address] = set;
+                }
+                break;
+
+            case KIND_DOUBLE_POINT:
+                int state = value instanceof Boolean ? ((Boolean) value ? 2 : 1)
+                        : value instanceof Number ? ((Number) value).intValue() & 0x03 : 0;
+                synchronized (this) {
+                    registers[address] = state;
+                }
+                break;
+
+            case KIND_INT16:
+                int scaled = value instanceof Number ? ((Number) value).intValue() : 0;
+                scaled = Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, scaled));
+                synchronized (this) {
+                    registers[address] = scaled & 0xFFFF;
+                }
+                break;
+
+            case KIND_INT32:
+                int count = value instanceof Number ? (int) ((Number) value).longValue() : 0;
+                synchronized (this) {
+                    registers[address] = count >>> 16;
+                    registers[address + 1] = count & 0xFFFF;
+                }
+                break;
+
+            case KIND_FLOAT32:
+            default:
+                int floatBits = Float.floatToIntBits(value instanceof Number ? ((Number) value).floatValue() : 0f);
+                synchronized (this) {
+                    registers[address] = floatBits >>> 16;
+                    registers[address + 1] = floatBits & 0xFFFF;
+                }
+        }
+    }
+
+    public int getMappedPoints() {
+        return addressByIoa.size();
+    }
+
+    private static void checkRange(int offset, int count, int size) {
+        if (offset < 0 || count < 1 || offset + count > size) {
+            throw new IllegalAddressException();
+        }
+    }
+
+    @Override
+    public synchronized InputRegister[] getInputRegisterRange(int offset, int count) {
+        checkRange(offset, count, registers.length);
+        InputRegister[] range = new InputRegister[count];
+        for (int i = 0; i < count; i++) {
+            range[i] = new SimpleInputRegister(registers[offset + i]);
+        }
+        return range;
+    }
+
+    @Override
+    public InputRegister getInputRegister(int ref) {
+        return getInputRegisterRange(ref, 1)[0];
+    }
+
+    @Override
+    public int getInputRegisterCount() {
+        return registers.length;
+    }
+
+    @Override
+    public synchronized Register[] getRegisterRange(int offset, int count) {
+        checkRange(offset, count, registers.length);
+        Register[] range = new Register[count];
+        for (int i = 0; i < count; i++) {
+            range[i] = new ReadOnlyRegister(registers[offset + i]);
+        }
+        return range;
+    }
+
+    @Override
+    public Register getRegister(int ref) {
+        return getRegisterRange(ref, 1)[0];
+    }
+
+    @Override
+    public int getRegisterCount() {
+        return registers.length;
+    }
+
+    @Override
+    public synchronized DigitalIn[] getDigitalInRange(int offset, int count) {
+        checkRange(offset, count, bits.length);
+        DigitalIn[] range = new DigitalIn[count];
+        for (int i = 0; i < count; i++) {
+            range[i] = new SimpleDigitalIn(bits[offset + i]);
+        }
+        return range;
+    }
+
+    @Override
+    public DigitalIn getDigitalIn(int ref) {
+        return getDigitalInRange(ref, 1)[0];
+    }
+
+    @Override
+    public int getDigitalInCount() {
+        return bits.length;
+    }
+
+    @Override
+    public DigitalOut[] getDigitalOutRange(int offset, int count) {
+        throw new IllegalAddressException();
+    }
+
+    @Override
+    public DigitalOut getDigitalOut(int ref) {
+        throw new IllegalAddressException();
+    }
+
+    @Override
+    public int getDigitalOutCount() {
+        return 0;
+    }
+
+    @Override
+    public File getFile(int ref) {
+        throw new IllegalAddressException();
+    }
+
+    @Override
+    public File getFileByNumber(int ref) {
+        throw new IllegalAddressException();
+    }
+
+    @Override
+    public int getFileCount() {
+        return 0;
+    }
+
+    @Override
+    public FIFO getFIFO(int ref) {
+        throw new IllegalAddressException();
+    }
+
+    @Override
+    public FIFO getFIFOByAddress(int ref) {
+        throw new IllegalAddressException();
+    }
+
+    @Override
+    public int getFIFOCount() {
+        return 0;
+    }
+
+    /**
+     * Holding register copy that rejects writes, control goes through IEC 104.
+     */
+    private static class ReadOnlyRegister implements Register {
+
+        private final int value;
+
+        ReadOnlyRegister(int value) {
+            this.value = value & 0xFFFF;
+        }
+
+        @Override
+        public int getValue() {
+            return value;
+        }
+
+        @Override
+        public int toUnsignedShort() {
+            return value;
+        }
+
+        @Override
+        public short toShort() {
+            return (short) value;
+        }
+
+        @Override
+        public byte[] toBytes() {
+            return new byte[] { (byte) (value >> 8), (byte) value };
+        }
+
+        @Override
+        public void setValue(int value) {
+            throw new IllegalAddressException("Gateway registers are read-only");
+        }
+
+        @Override
+        public void setValue(short value) {
+            throw new IllegalAddressException("Gateway registers are read-only");
+        }
+
+        @Override
+        public void setValue(byte[] bytes) {
+            throw new IllegalAddressException("Gateway registers are read-only");
+        }
+    }
+}
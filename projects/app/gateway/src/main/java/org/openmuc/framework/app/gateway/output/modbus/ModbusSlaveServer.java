@@ -0,0 +1,223 @@
+package org.openmuc.framework.app.gateway.output.modbus;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import org.openmuc.framework.app.gateway.config.MappingChangeListener;
+import org.openmuc.framework.app.gateway.config.MappingRegistry;
+import org.openmuc.framework.app.gateway.config.ModbusSlaveSettings;
+import org.openmuc.framework.app.gateway.config.PointTable;
+import org.openmuc.framework.app.gateway.config.StationSettings;
+import org.openmuc.framework.app.gateway.core.CounterStore;
+import org.openmuc.framework.app.gateway.core.DataHolder;
+import org.openmuc.framework.app.gateway.dto.DataPoint;
+import org.openmuc.framework.app.gateway.dto.Mapping;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.ghgande.j2mod.modbus.slave.ModbusSlave;
+import com.ghgande.j2mod.modbus.slave.ModbusSlaveFactory;
+
+/**
+ * Northbound Modbus TCP slave on the gateway process image (OSGi Component).
+ * <p>
+ * FEATURES:
+ * - Same DataHolder and change listener path as the IEC 104 server
+ * - Integrated totals show the live counter from the CounterStore
+ * - One Modbus unit per station, unit ID = common address (1..247)
+ * - Register map generated from the point mapping (see ModbusProcessImage)
+ *   and rebuilt on every mapping reload
+ * - Reads are served from the pre-encoded registers, never from the channels
+ * <p>
+ * Only started if the mapping file contains a modbusSlave element.
+ */
+@Component(immediate = true)
+public class ModbusSlaveServer {
+
+    private static final Logger logger = LoggerFactory.getLogger(ModbusSlaveServer.class);
+
+    private static final int MAX_UNIT_ID = 247;
+
+    private CounterStore counterStore;
+    private DataHolder dataHolder;
+    private MappingRegistry mappingRegistry;
+    private ModbusSlaveSettings boundSettings;
+
+    // Start, stop and rebuild run under the lock, mapping reloads arrive on another thread
+    private final Object slaveLock = new Object();
+    // Guarded by slaveLock
+    private ModbusSlave slave;
+
+    // Images by common address, replaced as a whole on mapping reload
+    private volatile Map<Integer, ModbusProcessImage> images = Collections.emptyMap();
+
+    private Consumer<List<DataPoint>> dataHolderListener;
+    private Consumer<DataPoint> counterListener;
+    private MappingChangeListener mappingChangeListener;
+
+    @Activate
+    protected void activate() {
+        mappingRegistry = MappingRegistry.acquire();
+        dataHolder = DataHolder.acquire(mappingRegistry);
+        counterStore = dataHolder.getCounterStore();
+
+        PointTable pointTable = mappingRegistry.getPointTable();
+        boundSettings = pointTable.getModbusSlaveSettings();
+
+        mappingChangeListener = this::onMappingChanged;
+        mappingRegistry.addMappingChangeListener(mappingChangeListener);
+
+        if (boundSettings == null) {
+            logger.info("Modbus slave not configured");
+            return;
+        }
+
+        synchronized (slaveLock) {
+            try {
+                dataHolderListener = this::onDataPointsChanged;
+                dataHolder.addChangeListener(dataHolderListener);
+                counterListener = this::onCounterChanged;
+                counterStore.addChangeListener(counterListener);
+
+                slave = ModbusSlaveFactory.createTCPSlave(InetAddress.getByName(boundSettings.getBindIp()),
+                        boundSettings.getPort(), boundSettings.getPoolSize(), false);
+                slave.setThreadName("Gateway-ModbusSlave");
+                rebuildImages(pointTable);
+                slave.open();
+
+                logger.info("Modbus slave listening on {}:{} with {} unit(s)", boundSettings.getBindIp(),
+                        boundSettings.getPort(), images.size());
+
+            } catch (Exception e) {
+                logger.error("Failed to start Modbus slave on {}:{}: {}", boundSettings.getBindIp(),
+                        boundSettings.getPort(), e.getMessage(), e);
+                stopSlave();
+            }
+        }
+    }
+
+    /**
+     * Generate the register images of the table's stations, hand them to the
+     * slave and fill them from the current process image. Called under
+     * slaveLock with a slave.
+     */
+    private void rebuildImages(PointTable pointTable) {
+        Map<Integer, List<Mapping>> mappingsByStation = new HashMap<>();
+        for (Mapping mapping : pointTable.getMappings()) {
+            mappingsByStation.computeIfAbsent(mapping.getCommonAddress(), ca -> new ArrayList<>()).add(mapping);
+        }
+
+        Map<Integer, ModbusProcessImage> newImages = new HashMap<>();
+        for (StationSettings station : pointTable.getStations()) {
+            int commonAddress = station.getCommonAddress();
+            if (commonAddress > MAX_UNIT_ID) {
+                logger.warn("Station {} is not served by the Modbus slave, unit IDs end at {}", commonAddress,
+                        MAX_UNIT_ID);
+                continue;
+            }
+
+            List<Mapping> stationMappings = mappingsByStation.getOrDefault(commonAddress, Collections.emptyList());
+            newImages.put(commonAddress, new ModbusProcessImage(commonAddress, stationMappings));
+        }
+
+        for (Integer unitId : images.keySet()) {
+            if (!newImages.containsKey(unitId)) {
+                slave.removeProcessImage(unitId);
+            }
+        }
+        for (ModbusProcessImage image : newImages.values()) {
+            slave.addProcessImage(image.getUnitId(), image);
+        }
+
+        // Swap before filling, updates arriving meanwhile go to the new images
+        images = newImages;
+        for (ModbusProcessImage image : newImages.values()) {
+            for (DataPoint dataPoint : dataHolder.getStationDataPoints(image.getUnitId())) {
+                image.update(dataPoint);
+            }
+            for (DataPoint counter : counterStore.getLive(image.getUnitId())) {
+                image.update(counter);
+            }
+            logger.info("Modbus unit {}: {} points, {} input registers, {} discrete inputs", image.getUnitId(),
+                    image.getMappedPoints(), image.getInputRegisterCount(), image.getDigitalInCount());
+        }
+    }
+
+    /**
+     * DataHolder listener, called with the changes of one station.
+     */
+    private void onDataPointsChanged(List<DataPoint> changedPoints) {
+        if (changedPoints.isEmpty()) {
+            return;
+        }
+
+        ModbusProcessImage image = images.get(changedPoints.get(0).getCommonAddress());
+        if (image == null) {
+            return;
+        }
+        for (DataPoint dataPoint : changedPoints) {
+            image.update(dataPoint);
+        }
+    }
+
+    /**
+     * CounterStore listener, called with the live value after every counter sample.
+     */
+    private void onCounterChanged(DataPoint counter) {
+        ModbusProcessImage image = images.get(counter.getCommonAddress());
+        if (image != null) {
+            image.update(counter);
+        }
+    }
+
+    private void onMappingChanged(PointTable oldTable, PointTable newTable, Set<String> changedChannels) {
+        ModbusSlaveSettings newSettings = newTable.getModbusSlaveSettings();
+        if (boundSettings == null ? newSettings != null : boundSettings.requiresRebind(newSettings)) {
+            logger.warn("Modbus slave settings changed to {}, restart the gateway to apply", newSettings);
+        }
+
+        synchronized (slaveLock) {
+            if (slave != null) {
+                rebuildImages(newTable);
+            }
+        }
+    }
+
+    private void stopSlave() {
+        synchronized (slaveLock) {
+            if (dataHolderListener != null) {
+                dataHolder.removeChangeListener(dataHolderListener);
+                dataHolderListener = null;
+            }
+            if (counterListener != null) {
+                counterStore.removeChangeListener(counterListener);
+                counterListener = null;
+            }
+            if (slave != null) {
+                ModbusSlaveFactory.close(slave);
+                slave = null;
+            }
+            images = Collections.emptyMap();
+        }
+    }
+
+    @Deactivate
+    protected void deactivate() {
+        if (mappingChangeListener != null) {
+            mappingRegistry.removeMappingChangeListener(mappingChangeListener);
+        }
+        stopSlave();
+        DataHolder.release();
+        MappingRegistry.release();
+        logger.info("Modbus slave stopped");
+    }
+}
@@ -0,0 +1,327 @@
+package org.openmuc.framework.app.gateway.output.mqtt;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import org.openmuc.framework.app.gateway.config.MappingChangeListener;
+import org.openmuc.framework.app.gateway.config.MappingRegistry;
+import org.openmuc.framework.app.gateway.config.MqttPublisherSettings;
+import org.openmuc.framework.app.gateway.config.PointTable;
+import org.openmuc.framework.app.gateway.config.StationSettings;
+import org.openmuc.framework.app.gateway.core.CounterStore;
+import org.openmuc.framework.app.gateway.core.DataHolder;
+import org.openmuc.framework.app.gateway.dto.DataPoint;
+import org.openmuc.framework.data.BooleanValue;
+import org.openmuc.framework.data.DoubleValue;
+import org.openmuc.framework.data.Flag;
+import org.openmuc.framework.data.FloatValue;
+import org.openmuc.framework.data.IntValue;
+import org.openmuc.framework.data.LongValue;
+import org.openmuc.framework.data.Record;
+import org.openmuc.framework.data.Value;
+import org.openmuc.framework.datalogger.spi.LoggingRecord;
+import org.openmuc.framework.lib.mqtt.MqttConnection;
+import org.openmuc.framework.lib.mqtt.MqttReadyListener;
+import org.openmuc.framework.lib.mqtt.MqttSettings;
+import org.openmuc.framework.lib.mqtt.MqttWriter;
+import org.openmuc.framework.parser.spi.ParserService;
+import org.openmuc.framework.parser.spi.SerializationException;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
+import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.component.annotations.ReferenceCardinality;
+import org.osgi.service.component.annotations.ReferencePolicy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Northbound MQTT publisher on the gateway process image (OSGi Component).
+ * <p>
+ * MESSAGES:
+ * - topic/&lt;ca&gt;/data: the coalesced changes of one station per DataHolder flush
+ * - topic/&lt;ca&gt;/birth: full state of the station after every (re)connect, published
+ *   after the buffered messages so it is never overwritten by older values
+ * - One record per point: channel ID = IOA, value, flag, timestamp
+ * - Integrated totals: the live counter from the CounterStore, coalesced
+ *   per point and published with the data at most once per queue poll
+ * - Quality: invalid -> DRIVER_ERROR_READ_FAILURE, not topical -> NO_VALUE_RECEIVED_YET
+ * <p>
+ * DECOUPLING:
+ * - The DataHolder listener only queues the batch, encoding and publishing
+ *   run on the publisher thread, so a slow broker never delays IEC 104
+ * - A full queue drops data batches (counted), a birth replaces everything queued
+ * - Messages for an unreachable broker are buffered by the MqttWriter
+ * <p>
+ * Only started if the mapping file contains an mqttPublisher element.
+ */
+@Component(immediate = true)
+public class MqttPublisher {
+
+    private static final Logger logger = LoggerFactory.getLogger(MqttPublisher.class);
+
+    private static final String WRITER_ID = "gateway-mqtt";
+    private static final String PARSER_ID_PROPERTY = "parserID";
+
+    private final Map<String, ParserService> parsers = new ConcurrentHashMap<>();
+    private CounterStore counterStore;
+
+    // Latest live counter per point not published yet, by PointTable.address
+    private final Map<Long, DataPoint> pendingCounters = new ConcurrentHashMap<>();
+
+    private DataHolder dataHolder;
+    private MappingRegistry mappingRegistry;
+    private MqttPublisherSettings settings;
+    private MqttWriter mqttWriter;
+    private BlockingQueue<List<DataPoint>> queue;
+    private Thread publisherThread;
+    private volatile boolean running;
+    private volatile boolean birthPending;
+
+    private Consumer<List<DataPoint>> dataHolderListener;
+    private Consumer<DataPoint> counterListener;
+    private MqttReadyListener readyListener;
+    private MappingChangeListener mappingChangeListener;
+
+    // Metrics
+    private final LongAdder publishedBatches = new LongAdder();
+    private final LongAdder droppedBatches = new LongAdder();
+
+    @Reference(cardinality = ReferenceCardinality.MULTIPLE, policy = ReferencePolicy.DYNAMIC)
+    protected void addParserService(ParserService parserService, Map<String, Object> properties) {
+        String parserId = (String) properties.get(PARSER_ID_PROPERTY);
+        if (parserId != null) {
+            parsers.put(parserId, parserService);
+            logger.info("Parser {} available for MQTT publisher", parserId);
+        }
+    }
+
+    protected void removeParserService(ParserService parserService, Map<String, Object> properties) {
+        String parserId = (String) properties.get(PARSER_ID_PROPERTY);
+        if (parserId != null) {
+            parsers.remove(parserId, parserService);
+        }
+    }
+
+    @Activate
+    protected void activate() {
+        mappingRegistry = MappingRegistry.acquire();
+        dataHolder = DataHolder.acquire(mappingRegistry);
+        counterStore = dataHolder.getCounterStore();
+        settings = mappingRegistry.getPointTable().getMqttPublisherSettings();
+
+        mappingChangeListener = this::onMappingChanged;
+        mappingRegistry.addMappingChangeListener(mappingChangeListener);
+
+        if (settings == null) {
+            logger.info("MQTT publisher not configured");
+            return;
+        }
+
+        queue = new ArrayBlockingQueue<>(Math.max(1, settings.getQueueSize()));
+        running = true;
+        publisherThread = new Thread(this::publishLoop, "Gateway-MqttPublisher");
+        publisherThread.setDaemon(true);
+        publisherThread.start();
+
+        mqttWriter = new MqttWriter(new MqttConnection(createMqttSettings(settings)), WRITER_ID);
+        readyListener = () -> birthPending = true;
+        mqttWriter.addReadyListener(readyListener);
+
+        dataHolderListener = this::onDataPointsChanged;
+        dataHolder.addChangeListener(dataHolderListener);
+        counterListener = counter -> pendingCounters
+                .put(PointTable.address(counter.getCommonAddress(), counter.getIoa()), counter);
+        counterStore.addChangeListener(counterListener);
+
+        mqttWriter.getConnection().connect();
+        logger.info("MQTT publisher connecting to {}:{} (topic {}, parser {})", settings.getHost(),
+                settings.getPort(), settings.getTopic(), settings.getParser());
+    }
+
+    private static MqttSettings createMqttSettings(MqttPublisherSettings settings) {
+        // Retained birth/data would outlive the gateway, the birth after connect replaces them
+        return new MqttSettings(settings.getHost(), settings.getPort(), 0, null, settings.getUsername(),
+                settings.getPassword(), false, 1000, 5000, 2, 10, 10, settings.getPersistenceDirectory(), "",
+                new byte[0], false, "", new byte[0], 0, 0, false, false, "", settings.getParser());
+    }
+
+    /**
+     * DataHolder listener, runs on the station lane: queue only, never block.
+     */
+    private void onDataPointsChanged(List<DataPoint> changedPoints) {
+        if (!queue.offer(changedPoints)) {
+            if (countDropped() % 100 == 1) {
+                logger.warn("MQTT publisher queue full, {} batch(es) dropped so far", droppedBatches.sum());
+            }
+        }
+    }
+
+    private void publishLoop() {
+        while (running) {
+            try {
+                if (birthPending) {
+                    birthPending = false;
+                    // The birth carries the full state, queued changes are contained in it
+                    queue.clear();
+                    pendingCounters.clear();
+                    publishBirth();
+                }
+
+                List<DataPoint> batch = queue.poll(1, TimeUnit.SECONDS);
+                if (batch != null && !batch.isEmpty()) {
+                    publish(batch.get(0).getCommonAddress(), "data", batch);
+                }
+                publishCounters();
+
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                logger.error("MQTT publish failed: {}", e.getMessage(), e);
+            }
+        }
+    }
+
+    private void publishBirth() throws SerializationException {
+        for (StationSettings station : mappingRegistry.getPointTable().getStations()) {
+            int commonAddress = station.getCommonAddress();
+            List<DataPoint> points = new ArrayList<>(dataHolder.getStationDataPoints(commonAddress));
+            points.addAll(counterStore.getLive(commonAddress));
+            publish(commonAddress, "birth", points);
+        }
+        logger.info("MQTT birth published");
+    }
+
+    /**
+     * Publish the pending live counters, one data message per station.
+     */
+    private void publishCounters() throws SerializationException {
+        if (pendingCounters.isEmpty()) {
+            return;
+        }
+
+        Map<Integer, List<DataPoint>> byStation = new HashMap<>();
+        for (Long address : pendingCounters.keySet()) {
+            DataPoint counter = pendingCounters.remove(address);
+            if (counter != null) {
+                byStation.computeIfAbsent(counter.getCommonAddress(), ca -> new ArrayList<>()).add(counter);
+            }
+        }
+        for (Map.Entry<Integer, List<DataPoint>> entry : byStation.entrySet()) {
+            publish(entry.getKey(), "data", entry.getValue());
+        }
+    }
+
+    private void publish(int commonAddress, String kind, List<DataPoint> points) throws SerializationException {
+        ParserService parser = parsers.get(settings.getParser());
+        if (parser == null) {
+            if (countDropped() % 100 == 1) {
+                logger.warn("Parser {} not available, MQTT batch dropped", settings.getParser());
+            }
+            return;
+        }
+
+        List<LoggingRecord> records = new ArrayList<>(points.size());
+        for (DataPoint dataPoint : points) {
+            records.add(new LoggingRecord(String.valueOf(dataPoint.getIoa()), toRecord(dataPoint)));
+        }
+
+        mqttWriter.write(settings.getTopic() + "/" + commonAddress + "/" + kind, parser.serialize(records));
+        publishedBatches.increment();
+    }
+
+    /**
+     * Count a dropped batch and return the count so far (approximate under concurrent drops).
+     */
+    private long countDropped() {
+        droppedBatches.increment();
+        return droppedBatches.sum();
+    }
+
+    private static Record toRecord(DataPoint dataPoint) {
+        Flag flag = Flag.VALID;
+        if (!dataPoint.isValid()) {
+            flag = Flag.DRIVER_ERROR_READ_FAILURE;
+        } else if (dataPoint.isNotTopical()) {
+            flag = Flag.NO_VALUE_RECEIVED_YET;
+        }
+        return new Record(toValue(dataPoint.getValue()), dataPoint.getTimestamp(), flag);
+    }
+
+    private static Value toValue(Object value) {
+        if (value instanceof Boolean) {
+            return new BooleanValue((Boolean) value);
+        }
+        if (value instanceof Float) {
+            return new FloatValue((Float) value);
+        }
+        if (value instanceof Long) {
+            return new LongValue((Long) value);
+        }
+        if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return new IntValue(((Number) value).intValue());
+        }
+        if (value instanceof Number) {
+            return new DoubleValue(((Number) value).doubleValue());
+        }
+        return null;
+    }
+
+    private void onMappingChanged(PointTable oldTable, PointTable newTable, Set<String> changedChannels) {
+        MqttPublisherSettings newSettings = newTable.getMqttPublisherSettings();
+        if (settings == null ? newSettings != null : settings.requiresReconnect(newSettings)) {
+            logger.warn("MQTT publisher settings changed to {}, restart the gateway to apply", newSettings);
+        }
+    }
+
+    public long getPublishedBatches() {
+        return publishedBatches.sum();
+    }
+
+    public long getDroppedBatches() {
+        return droppedBatches.sum();
+    }
+
+    @Deactivate
+    protected void deactivate() {
+        if (mappingChangeListener != null) {
+            mappingRegistry.removeMappingChangeListener(mappingChangeListener);
+        }
+        if (settings != null) {
+            stopPublishing();
+        }
+        DataHolder.release();
+        MappingRegistry.release();
+    }
+
+    private void stopPublishing() {
+        dataHolder.removeChangeListener(dataHolderListener);
+        counterStore.removeChangeListener(counterListener);
+        mqttWriter.removeReadyListener(readyListener);
+
+        running = false;
+        publisherThread.interrupt();
+        try {
+            publisherThread.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        // Persists buffered messages and stops reconnecting
+        mqttWriter.shutdown();
+        if (mqttWriter.isConnected()) {
+            mqttWriter.getConnection().disconnect();
+        }
+        logger.info("MQTT publisher stopped");
+    }
+}
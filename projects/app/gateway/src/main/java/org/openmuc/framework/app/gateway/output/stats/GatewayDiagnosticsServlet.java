@@ -0,0 +1,89 @@
+package org.openmuc.framework.app.gateway.output.stats;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.openmuc.framework.app.gateway.config.PointTable;
+import org.openmuc.framework.app.gateway.core.GatewayDiagnostics;
+import org.openmuc.framework.app.gateway.core.GatewayDiagnostics.Counter;
+
+/**
+ * GET: diagnostic counters and the traced points as JSON.
+ * PUT ?points=ca:ioa,ca:ioa: trace these points (replaces the previous set).
+ * DELETE: stop tracing.
+ */
+public class GatewayDiagnosticsServlet extends HttpServlet {
+
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        GatewayDiagnostics diagnostics = GatewayDiagnostics.getInstance();
+
+        StringBuilder json = new StringBuilder(512);
+        json.append("{\"counters\":{");
+        boolean first = true;
+        for (Counter counter : Counter.values()) {
+            if (!first) {
+                json.append(',');
+            }
+            first = false;
+            json.append('"').append(counter.name()).append("\":").append(diagnostics.get(counter));
+        }
+
+        json.append("},\"traced\":[");
+        first = true;
+        for (long address : diagnostics.getTraced()) {
+            if (!first) {
+                json.append(',');
+            }
+            first = false;
+            json.append("\"").append(address >>> 24).append(':').append(address & 0xFFFFFF).append('"');
+        }
+        json.append("]}");
+
+        response.setContentType("application/json");
+        response.setCharacterEncoding("UTF-8");
+        response.getWriter().write(json.toString());
+    }
+
+    @Override
+    protected void doPut(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String points = request.getParameter("points");
+        if (points == null) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Parameter points=ca:ioa,... missing");
+            return;
+        }
+
+        List<Long> addresses = new ArrayList<>();
+        for (String point : points.split(",")) {
+            if (point.trim().isEmpty()) {
+                continue;
+            }
+            String[] parts = point.trim().split(":");
+            try {
+                if (parts.length != 2) {
+                    throw new NumberFormatException(point);
+                }
+                addresses.add(PointTable.address(Integer.parseInt(parts[0]), Integer.parseInt(parts[1])));
+            } catch (NumberFormatException e) {
+                response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid point " + point + ", use ca:ioa");
+                return;
+            }
+        }
+
+        GatewayDiagnostics.getInstance().setTraced(addresses);
+        response.setStatus(HttpServletResponse.SC_NO_CONTENT);
+    }
+
+    @Override
+    protected void doDelete(HttpServletRequest request, HttpServletResponse response) {
+        GatewayDiagnostics.getInstance().setTraced(new ArrayList<>());
+        response.setStatus(HttpServletResponse.SC_NO_CONTENT);
+    }
+}
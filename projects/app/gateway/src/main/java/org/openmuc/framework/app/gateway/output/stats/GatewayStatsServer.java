@@ -0,0 +1,61 @@
+package org.openmuc.framework.app.gateway.output.stats;
+
+import org.openmuc.framework.app.gateway.config.MappingRegistry;
+import org.openmuc.framework.app.gateway.core.DataHolder;
+import org.openmuc.framework.authentication.AuthenticationService;
+import org.openmuc.framework.server.restws.SecurityHandler;
+import org.osgi.service.component.ComponentContext;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
+import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.http.HttpService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Publishes the gateway statistics at ALIAS and the diagnostics at
+ * DIAGNOSTICS_ALIAS (OSGi Component).
+ * <p>
+ * The statistics reset the histograms and the diagnostics change the
+ * tracing at runtime, both are registered with the SecurityHandler of the
+ * REST server and need the credentials of an OpenMUC user.
+ */
+@Component(immediate = true)
+public class GatewayStatsServer {
+
+    private static final Logger logger = LoggerFactory.getLogger(GatewayStatsServer.class);
+
+    public static final String ALIAS = "/gateway/stats";
+    public static final String DIAGNOSTICS_ALIAS = "/gateway/diagnostics";
+
+    @Reference
+    private HttpService httpService;
+
+    @Reference
+    private AuthenticationService authenticationService;
+
+    private DataHolder dataHolder;
+
+    @Activate
+    protected void activate(ComponentContext context) {
+        SecurityHandler securityHandler = new SecurityHandler(context.getBundleContext().getBundle(),
+                authenticationService);
+        dataHolder = DataHolder.acquire(MappingRegistry.acquire());
+        try {
+            httpService.registerServlet(ALIAS, new GatewayStatsServlet(dataHolder), null, securityHandler);
+            httpService.registerServlet(DIAGNOSTICS_ALIAS, new GatewayDiagnosticsServlet(), null, securityHandler);
+            logger.info("Gateway statistics available at {}, diagnostics at {}", ALIAS, DIAGNOSTICS_ALIAS);
+        } catch (Exception e) {
+            logger.error("Failed to register gateway statistics servlet", e);
+        }
+    }
+
+    @Deactivate
+    protected void deactivate() {
+        httpService.unregister(ALIAS);
+        httpService.unregister(DIAGNOSTICS_ALIAS);
+        DataHolder.release();
+        MappingRegistry.release();
+    }
+}
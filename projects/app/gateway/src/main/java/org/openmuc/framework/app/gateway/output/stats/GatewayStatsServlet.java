@@ -0,0 +1,98 @@
+package org.openmuc.framework.app.gateway.output.stats;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.Map;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.openmuc.framework.app.gateway.core.DataHolder;
+import org.openmuc.framework.app.gateway.core.DataHolder.DataHolderStats;
+import org.openmuc.framework.app.gateway.core.LatencyHistogram;
+import org.openmuc.framework.app.gateway.core.LatencyStats;
+import org.openmuc.framework.app.gateway.core.LatencyStats.Stage;
+
+/**
+ * GET: process image counters and latency histograms as JSON.
+ * DELETE: reset the latency histograms (e.g. before a load test).
+ * <p>
+ * Latencies are in microseconds, "overSla" is the share of values whose
+ * latency exceeded SLA_MICROS.
+ */
+public class GatewayStatsServlet extends HttpServlet {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final long SLA_MICROS = 1_000_000;
+
+    private final transient DataHolder dataHolder;
+
+    /**
+     * @param dataHolder instance acquired by the registering component
+     */
+    public GatewayStatsServlet(DataHolder dataHolder) {
+        this.dataHolder = dataHolder;
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        DataHolderStats dataHolderStats = dataHolder.getStats();
+        LatencyStats latencyStats = LatencyStats.getInstance();
+
+        StringBuilder json = new StringBuilder(2048);
+        json.append("{\"dataHolder\":{")
+                .append("\"points\":").append(dataHolderStats.getDataPointCount())
+                .append(",\"stations\":").append(dataHolderStats.getStationCount())
+                .append(",\"listeners\":").append(dataHolderStats.getListenerCount())
+                .append(",\"queued\":").append(dataHolderStats.getQueuedNotifications())
+                .append(",\"updates\":").append(dataHolderStats.getTotalUpdates())
+                .append(",\"coalesced\":").append(dataHolderStats.getCoalescedUpdates())
+                .append(",\"suppressed\":").append(dataHolderStats.getSuppressedUpdates())
+                .append("},\"stages\":{");
+
+        boolean first = true;
+        for (Stage stage : Stage.values()) {
+            if (!first) {
+                json.append(',');
+            }
+            first = false;
+            appendHistogram(json, stage.name(), latencyStats.getStage(stage));
+        }
+
+        json.append("},\"clients\":{");
+        first = true;
+        for (Map.Entry<String, LatencyHistogram> client : latencyStats.getClients().entrySet()) {
+            if (!first) {
+                json.append(',');
+            }
+            first = false;
+            appendHistogram(json, client.getKey(), client.getValue());
+        }
+        json.append("}}");
+
+        response.setContentType("application/json");
+        response.setCharacterEncoding("UTF-8");
+        response.getWriter().write(json.toString());
+    }
+
+    @Override
+    protected void doDelete(HttpServletRequest request, HttpServletResponse response) {
+        LatencyStats.getInstance().reset();
+        response.setStatus(HttpServletResponse.SC_NO_CONTENT);
+    }
+
+    private static void appendHistogram(StringBuilder json, String name, LatencyHistogram histogram) {
+        json.append('"').append(name.replace("\\", "\\\\").replace("\"", "\\\"")).append("\":{")
+                .append("\"count\":").append(histogram.getCount())
+                .append(",\"mean\":").append(histogram.getMeanMicros())
+                .append(",\"p50\":").append(histogram.getPercentileMicros(50))
+                .append(",\"p99\":").append(histogram.getPercentileMicros(99))
+                .append(",\"p999\":").append(histogram.getPercentileMicros(99.9))
+                .append(",\"max\":").append(histogram.getMaxMicros())
+                .append(",\"overSla\":")
+                .append(String.format(Locale.ROOT, "%.6f", histogram.getFractionAboveMicros(SLA_MICROS)))
+                .append('}');
+    }
+}
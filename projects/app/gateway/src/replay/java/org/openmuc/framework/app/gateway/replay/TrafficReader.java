@@ -0,0 +1,191 @@
+package org.openmuc.framework.app.gateway.replay;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.openmuc.framework.app.gateway.core.TrafficRecorder;
+import org.openmuc.framework.data.BooleanValue;
+import org.openmuc.framework.data.ByteArrayValue;
+import org.openmuc.framework.data.ByteValue;
+import org.openmuc.framework.data.DoubleValue;
+import org.openmuc.framework.data.Flag;
+import org.openmuc.framework.data.FloatValue;
+import org.openmuc.framework.data.IntValue;
+import org.openmuc.framework.data.LongValue;
+import org.openmuc.framework.data.Record;
+import org.openmuc.framework.data.ShortValue;
+import org.openmuc.framework.data.StringValue;
+import org.openmuc.framework.data.Value;
+import org.openmuc.framework.data.ValueType;
+
+/**
+ * Sequential reader of a capture file written by {@link TrafficRecorder}.
+ * Record timestamps are restored relative to the replay clock, so replayed
+ * records look as fresh as they were when captured.
+ */
+public class TrafficReader implements Closeable {
+
+    private final DataInputStream in;
+    private final List<String> channelIds = new ArrayList<>();
+    private final long captureStartMillis;
+
+    public TrafficReader(File file) throws IOException {
+        in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 64 * 1024));
+
+        if (in.readInt() != TrafficRecorder.MAGIC) {
+            in.close();
+            throw new IOException("Not a gateway traffic capture: " + file);
+        }
+        short version = in.readShort();
+        if (version != TrafficRecorder.VERSION) {
+            in.close();
+            throw new IOException("Unsupported capture version " + version + ": " + file);
+        }
+        captureStartMillis = in.readLong();
+    }
+
+    public long getCaptureStartMillis() {
+        return captureStartMillis;
+    }
+
+    /**
+     * Next captured record, null at the end of the capture.
+     *
+     * @param arrivalMillis
+     *            replay wall clock the record timestamp is restored against
+     */
+    public CapturedRecord next(long arrivalMillis) throws IOException {
+        while (true) {
+            int tag;
+            try {
+                tag = in.readUnsignedByte();
+            } catch (EOFException e) {
+                return null;
+            }
+
+            if (tag == TrafficRecorder.TAG_CHANNEL) {
+                int index = (int) readVar();
+                if (index != channelIds.size()) {
+                    throw new IOException("Corrupt capture: channel index " + index);
+                }
+                channelIds.add(in.readUTF());
+                continue;
+            }
+            if (tag != TrafficRecorder.TAG_RECORD) {
+                throw new IOException("Corrupt capture: unknown tag " + tag);
+            }
+
+            // A capture cut off by a crash ends with a partial entry
+            try {
+                int index = (int) readVar();
+                long delayMicros = readVar();
+                Flag flag = Flag.newFlag(in.readUnsignedByte());
+                int kind = in.readUnsignedByte();
+                Long timestamp = null;
+                if ((kind & TrafficRecorder.KIND_TIMESTAMPED) != 0) {
+                    timestamp = arrivalMillis - unzigzag(readVar());
+                }
+                ValueType valueType = TrafficRecorder.valueTypeOf(kind);
+                Value value = valueType != null ? readValue(valueType) : null;
+
+                if (index >= channelIds.size()) {
+                    throw new IOException("Corrupt capture: undefined channel index " + index);
+                }
+                return new CapturedRecord(channelIds.get(index), delayMicros, new Record(value, timestamp, flag));
+            } catch (EOFException e) {
+                return null;
+            }
+        }
+    }
+
+    private Value readValue(ValueType valueType) throws IOException {
+        switch (valueType) {
+            case BOOLEAN:
+                return new BooleanValue(in.readBoolean());
+            case BYTE:
+                return new ByteValue(in.readByte());
+            case SHORT:
+                return new ShortValue(in.readShort());
+            case INTEGER:
+                return new IntValue((int) unzigzag(readVar()));
+            case LONG:
+                return new LongValue(unzigzag(readVar()));
+            case FLOAT:
+                return new FloatValue(Float.intBitsToFloat(in.readInt()));
+            case DOUBLE:
+                return new DoubleValue(Double.longBitsToDouble(in.readLong()));
+            case STRING:
+                return new StringValue(new String(readBytes(), StandardCharsets.UTF_8));
+            case BYTE_ARRAY:
+                return new ByteArrayValue(readBytes());
+            default:
+                throw new IOException("Unsupported value type " + valueType);
+        }
+    }
+
+    private byte[] readBytes() throws IOException {
+        byte[] bytes = new byte[(int) readVar()];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    private long readVar() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Corrupt capture: varint too long");
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    /**
+     * A record as received by the input binder.
+     */
+    public static class CapturedRecord {
+
+        private final String channelId;
+        private final long delayMicros;
+        private final Record record;
+
+        CapturedRecord(String channelId, long delayMicros, Record record) {
+            this.channelId = channelId;
+            this.delayMicros = delayMicros;
+            this.record = record;
+        }
+
+        public String getChannelId() {
+            return channelId;
+        }
+
+        /**
+         * Time since the previous captured record.
+         */
+        public long getDelayMicros() {
+            return delayMicros;
+        }
+
+        public Record getRecord() {
+            return record;
+        }
+    }
+}
@@ -0,0 +1,359 @@
+package org.openmuc.framework.app.gateway.replay;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.openmuc.framework.app.gateway.config.Iec104Settings;
+import org.openmuc.framework.app.gateway.config.MappingRegistry;
+import org.openmuc.framework.app.gateway.config.PointTable;
+import org.openmuc.framework.app.gateway.core.DataHolder;
+import org.openmuc.framework.app.gateway.core.DataHolder.DataHolderStats;
+import org.openmuc.framework.app.gateway.core.LatencyHistogram;
+import org.openmuc.framework.app.gateway.dto.Mapping;
+import org.openmuc.framework.app.gateway.input.SlotWriter;
+import org.openmuc.framework.app.gateway.replay.TrafficReader.CapturedRecord;
+import org.openmuc.framework.data.Record;
+import org.openmuc.framework.data.ValueType;
+import org.openmuc.j60870.ASdu;
+import org.openmuc.j60870.CauseOfTransmission;
+import org.openmuc.j60870.ClientConnectionBuilder;
+import org.openmuc.j60870.Connection;
+import org.openmuc.j60870.ConnectionEventListener;
+import org.openmuc.j60870.ie.InformationObject;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Replays a traffic capture (see {@link org.openmuc.framework.app.gateway.core.TrafficRecorder})
+ * into the DataHolder while simulated IEC 104 clients are attached, for
+ * offline benchmarks against real workloads (OSGi Component).
+ * <p>
+ * TOOL BUNDLE: built separately by the replayBundle task
+ * (org.openmuc.framework.app.gateway.replay), install it next to the
+ * gateway for a benchmark only, it is not part of the gateway bundle.
+ * <p>
+ * SETUP (system properties):
+ * - {@value #REPLAY_FILE_PROPERTY}: capture to replay, the component is idle without it
+ * - {@value #REPLAY_SPEED_PROPERTY}: 1 = captured timing, N = N times faster, 0 = max speed
+ * - {@value #REPLAY_CLIENTS_PROPERTY}: simulated clients per IEC 104 listener
+ * <p>
+ * Run the gateway without drivers, so the replay is the only input. Records
+ * are written through the same {@link SlotWriter} as live channel records.
+ * Each simulated client connects from its own loopback address, so it forms
+ * a redundancy group of its own and receives every spontaneous update.
+ * <p>
+ * REPORT (logged when the capture is exhausted):
+ * - Throughput: replayed records per second
+ * - Latency per client: replay of the point's newest record to reception
+ *   of a spontaneous update, objects received with another cause
+ *   (interrogation, periodic) are only counted
+ * - Coalescing ratio: DataHolder updates merged into pending notifications
+ * - Heap in use and GC count/time during the replay
+ */
+@Component(immediate = true)
+public class TrafficReplay {
+
+    private static final Logger logger = LoggerFactory.getLogger(TrafficReplay.class);
+
+    public static final String REPLAY_FILE_PROPERTY = "org.openmuc.framework.app.gateway.replayfile";
+    public static final String REPLAY_SPEED_PROPERTY = "org.openmuc.framework.app.gateway.replayspeed";
+    public static final String REPLAY_CLIENTS_PROPERTY = "org.openmuc.framework.app.gateway.replayclients";
+
+    private static final int CONNECT_ATTEMPTS = 20;
+    private static final long CONNECT_RETRY_MS = 500;
+    private static final long DRAIN_MS = 2000;
+
+    // Replay time of the newest record per point, by PointTable.address
+    private final Map<Long, Long> injectedNanos = new ConcurrentHashMap<>();
+    private final List<SimulatedClient> clients = new ArrayList<>();
+    private final Map<String, SlotWriter> writers = new HashMap<>();
+
+    private DataHolder dataHolder;
+    private MappingRegistry mappingRegistry;
+    private Thread replayThread;
+    private volatile boolean running;
+
+    @Activate
+    protected void activate() {
+        String fileName = System.getProperty(REPLAY_FILE_PROPERTY);
+        if (fileName == null || fileName.isEmpty()) {
+            return;
+        }
+
+        double speed = parseSpeed(System.getProperty(REPLAY_SPEED_PROPERTY, "1"));
+        int clientCount = Integer.getInteger(REPLAY_CLIENTS_PROPERTY, 1);
+
+        mappingRegistry = MappingRegistry.acquire();
+        dataHolder = DataHolder.acquire(mappingRegistry);
+
+        running = true;
+        replayThread = new Thread(() -> run(new File(fileName), speed, clientCount), "Gateway-TrafficReplay");
+        replayThread.setDaemon(true);
+        replayThread.start();
+    }
+
+    private static double parseSpeed(String speed) {
+        try {
+            double parsed = Double.parseDouble(speed);
+            if (parsed >= 0) {
+                return parsed;
+            }
+        } catch (NumberFormatException e) {
+            // logged below
+        }
+        logger.error("Invalid replay speed {} in {}, replaying with captured timing", speed, REPLAY_SPEED_PROPERTY);
+        return 1;
+    }
+
+    private void run(File file, double speed, int clientCount) {
+        try {
+            connectClients(clientCount);
+            replay(file, speed);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            logger.error("Traffic replay of {} failed: {}", file, e.getMessage(), e);
+        } finally {
+            disconnectClients();
+        }
+    }
+
+    private void connectClients(int clientCount) throws InterruptedException {
+        PointTable pointTable = mappingRegistry.getPointTable();
+        Iec104Settings settings = pointTable.getSettings();
+        String host = "0.0.0.0".equals(settings.getBindIp()) ? "127.0.0.1" : settings.getBindIp();
+
+        for (int port : pointTable.getListenerPorts()) {
+            for (int i = 0; i < clientCount && running; i++) {
+                SimulatedClient client = new SimulatedClient("replay-" + port + "-" + (i + 1));
+                if (connect(client, host, port, i)) {
+                    clients.add(client);
+                }
+            }
+        }
+        logger.info("Traffic replay: {} simulated client(s) connected", clients.size());
+    }
+
+    /**
+     * Connect a client, retrying while the IEC 104 server is still starting.
+     */
+    private boolean connect(SimulatedClient client, String host, int port, int index)
+            throws InterruptedException {
+        for (int attempt = 1; attempt <= CONNECT_ATTEMPTS && running; attempt++) {
+            try {
+                ClientConnectionBuilder builder = new ClientConnectionBuilder(host).setPort(port)
+                        .setConnectionEventListener(client);
+                InetAddress serverAddress = InetAddress.getByName(host);
+                if (serverAddress.isLoopbackAddress()) {
+                    // 127.0.0.x: one redundancy group per client
+                    builder.setLocalAddress(InetAddress.getByAddress(new byte[] { 127, 0, 0, (byte) (index + 1) }), 0);
+                }
+                client.connection = builder.build();
+                client.connection.startDataTransfer();
+                return true;
+            } catch (IOException e) {
+                logger.debug("{} connect attempt {} failed: {}", client.name, attempt, e.getMessage());
+                Thread.sleep(CONNECT_RETRY_MS);
+            }
+        }
+        logger.warn("{} could not connect to {}:{}", client.name, host, port);
+        return false;
+    }
+
+    private void replay(File file, double speed) throws IOException, InterruptedException {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        long gcCountBefore = gcCount();
+        long gcMillisBefore = gcMillis();
+        long heapBefore = memory.getHeapMemoryUsage().getUsed();
+        long heapPeak = heapBefore;
+        DataHolderStats statsBefore = dataHolder.getStats();
+
+        long replayed = 0;
+        long unmapped = 0;
+        long startNanos = System.nanoTime();
+        long targetNanos = startNanos;
+
+        logger.info("Traffic replay of {} started (speed {})", file, speed > 0 ? speed + "x" : "max");
+
+        try (TrafficReader reader = new TrafficReader(file)) {
+            CapturedRecord captured;
+            while (running && (captured = reader.next(System.currentTimeMillis())) != null) {
+                if (speed > 0) {
+                    targetNanos += (long) (TimeUnit.MICROSECONDS.toNanos(captured.getDelayMicros()) / speed);
+                    long waitNanos = targetNanos - System.nanoTime();
+                    if (waitNanos > 0) {
+                        LockSupport.parkNanos(waitNanos);
+                    }
+                }
+
+                Mapping mapping = mappingRegistry.getPointTable().getMappingForChannel(captured.getChannelId());
+                if (mapping == null) {
+                    unmapped++;
+                    continue;
+                }
+
+                SlotWriter writer = writerFor(captured.getChannelId(), mapping, captured.getRecord());
+                injectedNanos.put(PointTable.address(mapping.getCommonAddress(), mapping.getIoa()),
+                        System.nanoTime());
+                writer.newRecord(captured.getRecord());
+                replayed++;
+
+                if ((replayed & 0xFFF) == 0) {
+                    heapPeak = Math.max(heapPeak, memory.getHeapMemoryUsage().getUsed());
+                }
+            }
+        }
+
+        long replayNanos = System.nanoTime() - startNanos;
+
+        // Let the station lanes and clients catch up before reporting
+        Thread.sleep(DRAIN_MS);
+
+        DataHolderStats statsAfter = dataHolder.getStats();
+        long updates = statsAfter.getTotalUpdates() - statsBefore.getTotalUpdates();
+        long coalesced = statsAfter.getCoalescedUpdates() - statsBefore.getCoalescedUpdates();
+        heapPeak = Math.max(heapPeak, memory.getHeapMemoryUsage().getUsed());
+
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("Traffic replay of %s finished%n", file));
+        report.append(String.format("  records:     %d replayed, %d unmapped in %.3f s%n", replayed, unmapped,
+                replayNanos / 1e9));
+        report.append(String.format("  throughput:  %.0f records/s%n",
+                replayNanos > 0 ? replayed * 1e9 / replayNanos : 0.0));
+        report.append(String.format("  coalescing:  %d of %d updates (%.1f %%), %d suppressed by deadband%n",
+                coalesced, updates, updates > 0 ? coalesced * 100.0 / updates : 0.0,
+                statsAfter.getSuppressedUpdates() - statsBefore.getSuppressedUpdates()));
+        report.append(String.format("  heap:        %d MB before, %d MB peak (sampled)%n", heapBefore >> 20,
+                heapPeak >> 20));
+        report.append(String.format("  gc:          %d collections, %d ms%n", gcCount() - gcCountBefore,
+                gcMillis() - gcMillisBefore));
+        for (SimulatedClient client : clients) {
+            LatencyHistogram latency = client.latency;
+            report.append(String.format(
+                    "  %s: %d spontaneous objects, latency p50 %d us, p99 %d us, max %d us, %d other objects%n",
+                    client.name, client.received.get(), latency.getPercentileMicros(50),
+                    latency.getPercentileMicros(99), latency.getMaxMicros(), client.receivedOther.get()));
+        }
+        logger.info(report.toString());
+    }
+
+    /**
+     * Writer of a channel, compiled like the input binder does with the value
+     * type of the captured record.
+     */
+    private SlotWriter writerFor(String channelId, Mapping mapping, Record record) {
+        ValueType valueType = record.getValue() != null ? record.getValue().getValueType() : ValueType.DOUBLE;
+        SlotWriter writer = writers.get(channelId);
+        if (writer == null || !writer.isCompiledFor(mapping, valueType)) {
+            writer = SlotWriter.compile(channelId, mapping, valueType, dataHolder);
+            writers.put(channelId, writer);
+        }
+        return writer;
+    }
+
+    private static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, gc.getCollectionCount());
+        }
+        return count;
+    }
+
+    private static long gcMillis() {
+        long millis = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            millis += Math.max(0, gc.getCollectionTime());
+        }
+        return millis;
+    }
+
+    private void disconnectClients() {
+        for (SimulatedClient client : clients) {
+            if (client.connection != null) {
+                client.connection.close();
+            }
+        }
+        clients.clear();
+    }
+
+    @Deactivate
+    protected void deactivate() {
+        if (replayThread == null) {
+            return;
+        }
+        running = false;
+        replayThread.interrupt();
+        try {
+            replayThread.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        replayThread = null;
+        DataHolder.release();
+        MappingRegistry.release();
+    }
+
+    /**
+     * IEC 104 client that measures the latency of every spontaneous information
+     * object. Objects of interrogation responses and cyclic transmission are
+     * counted separately, their latency is not that of an update.
+     */
+    private class SimulatedClient implements ConnectionEventListener {
+
+        private final String name;
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final AtomicLong received = new AtomicLong();
+        private final AtomicLong receivedOther = new AtomicLong();
+        private volatile Connection connection;
+
+        SimulatedClient(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public void newASdu(Connection connection, ASdu asdu) {
+            long nowNanos = System.nanoTime();
+            InformationObject[] ios = asdu.getInformationObjects();
+            if (ios == null) {
+                return;
+            }
+            if (asdu.getCauseOfTransmission() != CauseOfTransmission.SPONTANEOUS) {
+                receivedOther.addAndGet(ios.length);
+                return;
+            }
+            for (InformationObject io : ios) {
+                Long sentNanos = injectedNanos.get(
+                        PointTable.address(asdu.getCommonAddress(), io.getInformationObjectAddress()));
+                if (sentNanos != null) {
+                    latency.record(TimeUnit.NANOSECONDS.toMicros(nowNanos - sentNanos));
+                }
+                received.incrementAndGet();
+            }
+        }
+
+        @Override
+        public void connectionClosed(Connection connection, IOException e) {
+            logger.debug("{} closed: {}", name, e != null ? e.getMessage() : "gracefully");
+        }
+
+        @Override
+        public void dataTransferStateChanged(Connection connection, boolean stopped) {
+            // not relevant on the client side
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package org.openmuc.framework.app.gateway.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.openmuc.framework.app.gateway.config.MappingRegistry;
+import org.openmuc.framework.app.gateway.dto.CounterReading;
+
+/**
+ * Freeze and reset of integrated totals, on a store of its own per test.
+ */
+class CounterStoreTest {
+
+    private static final int ENERGY_IOA = 6001;
+    private static final int GAS_IOA = 6002;
+    private static final long TIME = 1700000000000L;
+
+    @TempDir
+    File folder;
+
+    private CounterStore store;
+
+    @BeforeEach
+    void loadMapping() throws Exception {
+        StringBuilder mapping = new StringBuilder("<gateway>\n  <iec104 commonAddress=\"1\"/>\n");
+        for (int commonAddress = 11; commonAddress <= 16; commonAddress++) {
+            mapping.append(counter("energy", commonAddress, ENERGY_IOA, 1))
+                    .append(counter("gas", commonAddress, GAS_IOA, 2));
+        }
+        mapping.append("</gateway>\n");
+
+        File mappingFile = new File(folder, "gateway-mappings.xml");
+        Files.write(mappingFile.toPath(), mapping.toString().getBytes(StandardCharsets.UTF_8));
+        System.setProperty(MappingRegistry.MAPPING_FILE_PROPERTY, mappingFile.getAbsolutePath());
+        store = new CounterStore(MappingRegistry.acquire());
+    }
+
+    @AfterEach
+    void release() {
+        MappingRegistry.release();
+    }
+
+    @Test
+    void testFreezeKeepsReading() {
+        update(11, ENERGY_IOA, 100);
+        store.freeze(11, CounterStore.GENERAL_GROUP, false);
+        update(11, ENERGY_IOA, 150);
+
+        CounterReading reading = frozen(11, ENERGY_IOA);
+        assertEquals(100, reading.getValue());
+        assertEquals(1, reading.getSequenceNumber());
+        assertFalse(reading.isInvalid());
+        assertEquals(TIME, reading.getTimestamp());
+
+        assertEquals(150L, store.getLive(11).get(0).getValue());
+
+        // without reset the next freeze reports the whole counter
+        store.freeze(11, CounterStore.GENERAL_GROUP, false);
+        reading = frozen(11, ENERGY_IOA);
+        assertEquals(150, reading.getValue());
+        assertEquals(2, reading.getSequenceNumber());
+    }
+
+    @Test
+    void testFreezeWithReset() {
+        update(12, ENERGY_IOA, 100);
+        store.freeze(12, CounterStore.GENERAL_GROUP, true);
+        assertEquals(100, frozen(12, ENERGY_IOA).getValue());
+        assertEquals(0L, store.getLive(12).get(0).getValue());
+
+        update(12, ENERGY_IOA, 130);
+        store.freeze(12, CounterStore.GENERAL_GROUP, true);
+        assertEquals(30, frozen(12, ENERGY_IOA).getValue());
+    }
+
+    @Test
+    void testResetWithoutFreeze() {
+        update(13, ENERGY_IOA, 100);
+        update(13, GAS_IOA, 40);
+        store.reset(13, 1);
+        update(13, ENERGY_IOA, 120);
+        update(13, GAS_IOA, 50);
+
+        store.freeze(13, CounterStore.GENERAL_GROUP, false);
+        assertEquals(20, frozen(13, ENERGY_IOA).getValue());
+        // other group not reset
+        assertEquals(50, frozen(13, GAS_IOA).getValue());
+    }
+
+    @Test
+    void testFreezeOfOneGroup() {
+        update(14, ENERGY_IOA, 100);
+        update(14, GAS_IOA, 40);
+        store.freeze(14, 2, false);
+
+        List<CounterReading> readings = store.getFrozen(14, CounterStore.GENERAL_GROUP);
+        assertEquals(1, readings.size());
+        assertEquals(GAS_IOA, readings.get(0).getIoa());
+        assertEquals(2, readings.get(0).getGroup());
+        assertTrue(store.getFrozen(14, 1).isEmpty());
+    }
+
+    @Test
+    void testCounterGoingBackwardsIsAdjusted() {
+        update(15, ENERGY_IOA, 100);
+        update(15, ENERGY_IOA, 50);
+        store.freeze(15, CounterStore.GENERAL_GROUP, false);
+        assertTrue(frozen(15, ENERGY_IOA).isAdjusted());
+
+        store.freeze(15, CounterStore.GENERAL_GROUP, false);
+        assertFalse(frozen(15, ENERGY_IOA).isAdjusted());
+    }
+
+    @Test
+    void testInvalidSampleKeepsCounter() {
+        // never sampled
+        store.freeze(16, CounterStore.GENERAL_GROUP, false);
+        assertTrue(frozen(16, ENERGY_IOA).isInvalid());
+
+        update(16, ENERGY_IOA, 100);
+        store.update(16, ENERGY_IOA, "M_IT_NA_1", 0, false, TIME);
+        store.freeze(16, CounterStore.GENERAL_GROUP, false);
+
+        CounterReading reading = frozen(16, ENERGY_IOA);
+        assertTrue(reading.isInvalid());
+        assertEquals(100, reading.getValue());
+    }
+
+    @Test
+    void testReleaseDropsCounters() {
+        MappingRegistry mappingRegistry = MappingRegistry.acquire();
+        store = DataHolder.acquire(mappingRegistry).getCounterStore();
+        update(11, ENERGY_IOA, 100);
+        store.freeze(11, CounterStore.GENERAL_GROUP, false);
+        DataHolder.release();
+
+        store = DataHolder.acquire(mappingRegistry).getCounterStore();
+        try {
+            assertTrue(store.getFrozen(11, CounterStore.GENERAL_GROUP).isEmpty());
+            assertTrue(store.getLive(11).isEmpty());
+        } finally {
+            DataHolder.release();
+            MappingRegistry.release();
+        }
+    }
+
+    private void update(int commonAddress, int ioa, double value) {
+        store.update(commonAddress, ioa, "M_IT_NA_1", value, true, TIME);
+    }
+
+    private CounterReading frozen(int commonAddress, int ioa) {
+        for (CounterReading reading : store.getFrozen(commonAddress, CounterStore.GENERAL_GROUP)) {
+            if (reading.getIoa() == ioa) {
+                return reading;
+            }
+        }
+        throw new AssertionError("no frozen reading for IOA " + ioa);
+    }
+
+    private static String counter(String name, int commonAddress, int ioa, int group) {
+        return "  <point channelId=\"" + name + commonAddress + "\" source=\"MODBUS_TCP\" ioa=\"" + ioa
+                + "\" commonAddress=\"" + commonAddress + "\" asduType=\"M_IT_NA_1\" dataType=\"LONG\""
+                + " counterGroup=\"" + group + "\"/>\n";
+    }
+}
@@ -0,0 +1,168 @@
+package org.openmuc.framework.app.gateway.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.openmuc.framework.app.gateway.config.MappingRegistry;
+import org.openmuc.framework.app.gateway.dto.DataPoint;
+
+/**
+ * Warm restart from the snapshot file. A restart releases the DataHolder,
+ * so the next one starts empty.
+ */
+class ProcessImageSnapshotTest {
+
+    private static final int COMMON_ADDRESS = 21;
+    private static final int POWER_IOA = 7001;
+    private static final int BREAKER_IOA = 7002;
+    private static final long TIME = 1700000000000L;
+
+    // File layout: 32 byte header, two slots of a 32 byte header and 1024 records of 32 bytes
+    private static final long SLOT_SIZE = 32 + 1024 * 32;
+
+    @TempDir
+    File folder;
+
+    private File snapshotFile;
+    private MappingRegistry mappingRegistry;
+    private DataHolder dataHolder;
+
+    @BeforeEach
+    void start() throws IOException {
+        File mappingFile = new File(folder, "gateway-mappings.xml");
+        String mapping = "<gateway>\n"
+                + "  <iec104 commonAddress=\"" + COMMON_ADDRESS + "\"/>\n"
+                + "  <point channelId=\"power\" source=\"IEC61850\" ioa=\"" + POWER_IOA + "\"/>\n"
+                + "  <point channelId=\"breaker\" source=\"IEC61850\" ioa=\"" + BREAKER_IOA + "\""
+                + " asduType=\"M_SP_NA_1\" dataType=\"BOOLEAN\"/>\n"
+                + "</gateway>\n";
+        Files.write(mappingFile.toPath(), mapping.getBytes(StandardCharsets.UTF_8));
+        System.setProperty(MappingRegistry.MAPPING_FILE_PROPERTY, mappingFile.getAbsolutePath());
+        mappingRegistry = MappingRegistry.acquire();
+
+        snapshotFile = new File(folder, "process-image.snapshot");
+        dataHolder = DataHolder.acquire(mappingRegistry);
+    }
+
+    @AfterEach
+    void stop() {
+        DataHolder.release();
+        MappingRegistry.release();
+    }
+
+    @Test
+    void testRestoreAfterRestart() throws IOException {
+        update(POWER_IOA, "M_ME_NC_1", 12.5f, true);
+        update(BREAKER_IOA, "M_SP_NA_1", true, false);
+        // no longer mapped
+        update(7999, "M_ME_NC_1", 1.0f, true);
+        checkpoint();
+
+        restart();
+
+        DataPoint power = dataHolder.getDataPoint(COMMON_ADDRESS, POWER_IOA);
+        assertEquals(12.5f, power.getValue());
+        assertTrue(power.isValid());
+        assertTrue(power.isNotTopical());
+        assertEquals(TIME, power.getTimestamp());
+        assertEquals("power", power.getId());
+
+        DataPoint breaker = dataHolder.getDataPoint(COMMON_ADDRESS, BREAKER_IOA);
+        assertEquals(Boolean.TRUE, breaker.getValue());
+        assertFalse(breaker.isValid());
+
+        assertNull(dataHolder.getDataPoint(COMMON_ADDRESS, 7999));
+    }
+
+    @Test
+    void testTornSlotFallsBackToPreviousGeneration() throws IOException {
+        update(POWER_IOA, "M_ME_NC_1", 1.0f, true);
+        checkpoint();
+        update(POWER_IOA, "M_ME_NC_1", 2.0f, true);
+        checkpoint();
+
+        // generation 2 is in slot 0: records written, header of the crash-interrupted commit does not match
+        corrupt(slotOffset(0) + 32 + 12);
+
+        restart();
+        assertEquals(1.0f, dataHolder.getDataPoint(COMMON_ADDRESS, POWER_IOA).getValue());
+    }
+
+    @Test
+    void testCorruptSnapshotRestoresNothing() throws IOException {
+        update(POWER_IOA, "M_ME_NC_1", 1.0f, true);
+        checkpoint();
+        update(POWER_IOA, "M_ME_NC_1", 2.0f, true);
+        checkpoint();
+
+        // CRC of both slot headers
+        corrupt(slotOffset(0) + 20);
+        corrupt(slotOffset(1) + 20);
+
+        restart();
+        assertNull(dataHolder.getDataPoint(COMMON_ADDRESS, POWER_IOA));
+    }
+
+    @Test
+    void testRestoreDoesNotOverwriteNewerSample() throws IOException {
+        update(POWER_IOA, "M_ME_NC_1", 1.0f, true);
+        checkpoint();
+
+        DataHolder.release();
+        dataHolder = DataHolder.acquire(mappingRegistry);
+        update(POWER_IOA, "M_ME_NC_1", 3.0f, true);
+        checkpoint();
+
+        DataPoint power = dataHolder.getDataPoint(COMMON_ADDRESS, POWER_IOA);
+        assertEquals(3.0f, power.getValue());
+        assertFalse(power.isNotTopical());
+    }
+
+    /**
+     * Start and stop a snapshot, which restores the latest checkpoint and writes a new one.
+     */
+    private void checkpoint() throws IOException {
+        ProcessImageSnapshot snapshot = new ProcessImageSnapshot(snapshotFile.getPath(), dataHolder,
+                mappingRegistry);
+        snapshot.start(3600);
+        snapshot.stop();
+    }
+
+    private void restart() throws IOException {
+        DataHolder.release();
+        dataHolder = DataHolder.acquire(mappingRegistry);
+        ProcessImageSnapshot snapshot = new ProcessImageSnapshot(snapshotFile.getPath(), dataHolder,
+                mappingRegistry);
+        snapshot.start(3600);
+        snapshot.stop();
+    }
+
+    private void update(int ioa, String asduType, Object value, boolean valid) {
+        dataHolder.updateDataPoint(new DataPoint(ioa, COMMON_ADDRESS, asduType, value, TIME, valid));
+    }
+
+    private void corrupt(long position) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(snapshotFile, "rw")) {
+            file.seek(position);
+            int b = file.read();
+            file.seek(position);
+            file.write(b ^ 0xFF);
+        }
+    }
+
+    private static long slotOffset(int slot) {
+        return 32 + slot * SLOT_SIZE;
+    }
+}
@@ -0,0 +1,137 @@
+package org.openmuc.framework.app.gateway.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.openmuc.framework.app.gateway.core.SoeBuffer.SoeEvent;
+import org.openmuc.framework.app.gateway.dto.DataPoint;
+
+class SoeBufferTest {
+
+    private static final long TIME = 1700000000000L;
+
+    @Test
+    void testEventsReadInRecordOrder() {
+        SoeBuffer buffer = new SoeBuffer(16);
+        assertEquals(1, buffer.record(new DataPoint(2001, 1, "M_SP_TB_1", true, TIME, true)));
+        assertEquals(2, buffer.record(new DataPoint(1001, 2, "M_ME_TF_1", 12.5f, TIME + 1, false)));
+        assertEquals(3, buffer.record(new DataPoint(2001, 1, "M_SP_TB_1", false, TIME + 2, true)));
+        assertEquals(3, buffer.lastSeq());
+
+        List<SoeEvent> events = buffer.read(1, 10);
+        assertEquals(3, events.size());
+
+        assertEvent(events.get(0), 1, 2001, 1, "M_SP_TB_1", true, TIME, true);
+        assertEvent(events.get(1), 2, 1001, 2, "M_ME_TF_1", 12.5f, TIME + 1, false);
+        assertEvent(events.get(2), 3, 2001, 1, "M_SP_TB_1", false, TIME + 2, true);
+        assertEquals(0, buffer.getOverflowedEvents());
+    }
+
+    @Test
+    void testReadContinuesAtNextSequence() {
+        SoeBuffer buffer = new SoeBuffer(16);
+        for (int i = 0; i < 5; i++) {
+            buffer.record("M_ME_TF_1", 1, 1000 + i, i, TIME + i, true);
+        }
+
+        List<SoeEvent> first = buffer.read(1, 2);
+        assertEquals(2, first.size());
+        assertEquals(2, first.get(1).getSeq());
+
+        List<SoeEvent> rest = buffer.read(3, 10);
+        assertEquals(3, rest.size());
+        assertEquals(1002, rest.get(0).getDataPoint().getIoa());
+        assertEquals(5, rest.get(2).getSeq());
+
+        assertTrue(buffer.read(6, 10).isEmpty());
+    }
+
+    @Test
+    void testOtherTypesNotRecorded() {
+        SoeBuffer buffer = new SoeBuffer(16);
+        assertEquals(0, buffer.record(new DataPoint(1001, 1, "M_ME_NC_1", 1.0f, TIME, true)));
+        assertEquals(0, buffer.lastSeq());
+        assertEquals(0, buffer.getRecordedEvents());
+    }
+
+    @Test
+    void testOverflowCounted() {
+        SoeBuffer buffer = new SoeBuffer(16);
+        for (int i = 1; i <= 20; i++) {
+            buffer.record("M_SP_TB_1", 1, i, i % 2, TIME + i, true);
+        }
+
+        // events 1..4 were overwritten, reading goes on at the oldest one left
+        List<SoeEvent> events = buffer.read(1, 100);
+        assertEquals(16, events.size());
+        assertEquals(5, events.get(0).getSeq());
+        assertEquals(5, events.get(0).getDataPoint().getIoa());
+        assertEquals(20, events.get(15).getSeq());
+        assertEquals(4, buffer.getOverflowedEvents());
+        assertEquals(20, buffer.getRecordedEvents());
+
+        // a reader that kept up does not count
+        buffer.read(21, 100);
+        assertEquals(4, buffer.getOverflowedEvents());
+    }
+
+    @Test
+    void testCapacityRoundedToPowerOfTwo() {
+        assertEquals(16, new SoeBuffer(1).getCapacity());
+        assertEquals(16, new SoeBuffer(16).getCapacity());
+        assertEquals(32, new SoeBuffer(17).getCapacity());
+    }
+
+    @Test
+    void testResizeKeepsNewestEvents() {
+        SoeBuffer buffer = new SoeBuffer(32);
+        for (int i = 0; i < 20; i++) {
+            buffer.record("M_ME_TF_1", 1, 1000 + i, i, TIME + i, true);
+        }
+
+        buffer.resize(16);
+        assertEquals(16, buffer.getCapacity());
+        assertEquals(20, buffer.lastSeq());
+
+        // events 1..4 did not fit
+        List<SoeEvent> events = buffer.read(1, 32);
+        assertEquals(16, events.size());
+        assertEquals(5, events.get(0).getSeq());
+        assertEquals(1004, events.get(0).getDataPoint().getIoa());
+        assertEquals(4, buffer.getOverflowedEvents());
+
+        buffer.resize(64);
+        assertEquals(21, buffer.record("M_ME_TF_1", 1, 1020, 20, TIME + 20, true));
+        events = buffer.read(5, 32);
+        assertEquals(17, events.size());
+        assertEquals(1019, events.get(15).getDataPoint().getIoa());
+        assertEquals(1020, events.get(16).getDataPoint().getIoa());
+    }
+
+    @Test
+    void testSinglePointFromNumber() {
+        SoeBuffer buffer = new SoeBuffer(16);
+        buffer.record(new DataPoint(2001, 1, "M_SP_TB_1", 1, TIME, true));
+        buffer.record(new DataPoint(2001, 1, "M_SP_TB_1", 0.5, TIME, true));
+
+        List<SoeEvent> events = buffer.read(1, 10);
+        assertEquals(Boolean.TRUE, events.get(0).getDataPoint().getValue());
+        assertFalse((Boolean) events.get(1).getDataPoint().getValue());
+    }
+
+    private static void assertEvent(SoeEvent event, long seq, int ioa, int commonAddress, String asduType,
+            Object value, long timestamp, boolean valid) {
+        DataPoint dp = event.getDataPoint();
+        assertEquals(seq, event.getSeq());
+        assertEquals(ioa, dp.getIoa());
+        assertEquals(commonAddress, dp.getCommonAddress());
+        assertEquals(asduType, dp.getAsduType());
+        assertEquals(value, dp.getValue());
+        assertEquals(timestamp, dp.getTimestamp());
+        assertEquals(valid, dp.isValid());
+    }
+}
@@ -0,0 +1,132 @@
+package org.openmuc.framework.app.gateway.input;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.openmuc.framework.app.gateway.config.MappingRegistry;
+import org.openmuc.framework.app.gateway.core.DataHolder;
+import org.openmuc.framework.app.gateway.dto.DataPoint;
+import org.openmuc.framework.app.gateway.dto.Mapping;
+import org.openmuc.framework.data.BooleanValue;
+import org.openmuc.framework.data.Flag;
+import org.openmuc.framework.data.IntValue;
+import org.openmuc.framework.data.Record;
+import org.openmuc.framework.data.StringValue;
+import org.openmuc.framework.data.ValueType;
+
+/**
+ * Records written through compiled slot writers, read back from the process image.
+ */
+class SlotWriterTest {
+
+    private static final int COMMON_ADDRESS = 40;
+    private static final long SAMPLED = 1700000000000L;
+
+    private DataHolder dataHolder;
+
+    @BeforeEach
+    void acquire() {
+        dataHolder = DataHolder.acquire(MappingRegistry.acquire());
+    }
+
+    @AfterEach
+    void release() {
+        DataHolder.release();
+        MappingRegistry.release();
+    }
+
+    @Test
+    void testModbusValueScaledIntoFloat() {
+        SlotWriter writer = compile("MODBUS_TCP", 3001, "M_ME_NC_1", ValueType.INTEGER, 0.1, 1.0);
+        writer.newRecord(new Record(new IntValue(250), SAMPLED, Flag.VALID));
+
+        DataPoint dp = point(3001);
+        assertEquals(26.0f, dp.getValue());
+        assertTrue(dp.isValid());
+        assertEquals(SAMPLED, dp.getSampleTime());
+        assertTrue(dp.getTimestamp() > SAMPLED);
+    }
+
+    @Test
+    void testIec61850ValueKeepsTypeAndTimestamp() {
+        SlotWriter writer = compile("IEC61850", 3002, "M_ME_NC_1", ValueType.INTEGER, 0.1, 1.0);
+        writer.newRecord(new Record(new IntValue(250), SAMPLED, Flag.VALID));
+
+        DataPoint dp = point(3002);
+        assertEquals(250, dp.getValue());
+        assertEquals(SAMPLED, dp.getTimestamp());
+        assertEquals("ch3002", dp.getId());
+        assertEquals("IEC61850", dp.getSourceProtocol());
+    }
+
+    @Test
+    void testBooleanValue() {
+        SlotWriter writer = compile("MODBUS_TCP", 3003, "M_SP_NA_1", ValueType.BOOLEAN, 2.0, 0.0);
+        writer.newRecord(new Record(new BooleanValue(true), SAMPLED, Flag.VALID));
+        assertEquals(Boolean.TRUE, point(3003).getValue());
+
+        writer.newRecord(new Record(new BooleanValue(false), SAMPLED, Flag.VALID));
+        assertEquals(Boolean.FALSE, point(3003).getValue());
+    }
+
+    @Test
+    void testInvalidRecordKeepsLastValue() {
+        SlotWriter writer = compile("MODBUS_TCP", 3004, "M_ME_NC_1", ValueType.INTEGER, 1.0, 0.0);
+        writer.newRecord(new Record(new IntValue(7), SAMPLED, Flag.VALID));
+
+        writer.newRecord(new Record(new IntValue(8), SAMPLED, Flag.DRIVER_ERROR_TIMEOUT));
+        assertInvalid(3004, 7.0f);
+
+        // not a number
+        writer.newRecord(new Record(new StringValue("n/a"), SAMPLED, Flag.VALID));
+        assertInvalid(3004, 7.0f);
+
+        writer.newRecord(new Record(new IntValue(9), SAMPLED, Flag.VALID));
+        DataPoint dp = point(3004);
+        assertEquals(9.0f, dp.getValue());
+        assertTrue(dp.isValid());
+    }
+
+    @Test
+    void testInvalidRecordBeforeFirstValue() {
+        SlotWriter writer = compile("MODBUS_TCP", 3005, "M_ME_NC_1", ValueType.INTEGER, 1.0, 0.0);
+        writer.newRecord(new Record(null, SAMPLED, Flag.DRIVER_ERROR_TIMEOUT));
+        assertInvalid(3005, 0.0f);
+    }
+
+    @Test
+    void testDataPointBuiltOncePerWrite() {
+        SlotWriter writer = compile("MODBUS_TCP", 3006, "M_ME_NC_1", ValueType.INTEGER, 1.0, 0.0);
+        writer.newRecord(new Record(new IntValue(1), SAMPLED, Flag.VALID));
+
+        DataPoint first = point(3006);
+        assertSame(first, point(3006));
+
+        writer.newRecord(new Record(new IntValue(2), SAMPLED, Flag.VALID));
+        assertNotSame(first, point(3006));
+        assertEquals(1.0f, first.getValue());
+    }
+
+    private void assertInvalid(int ioa, float value) {
+        DataPoint dp = point(ioa);
+        assertEquals(value, dp.getValue());
+        assertFalse(dp.isValid());
+    }
+
+    private SlotWriter compile(String sourceProtocol, int ioa, String asduType, ValueType valueType,
+            double scalingFactor, double offset) {
+        Mapping mapping = new Mapping("ch" + ioa, sourceProtocol, ioa, COMMON_ADDRESS, asduType, valueType.name(),
+                scalingFactor, offset, null);
+        return SlotWriter.compile("ch" + ioa, mapping, valueType, dataHolder);
+    }
+
+    private DataPoint point(int ioa) {
+        return dataHolder.getDataPoint(COMMON_ADDRESS, ioa);
+    }
+}
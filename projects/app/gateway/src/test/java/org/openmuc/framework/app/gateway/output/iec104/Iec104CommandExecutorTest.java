@@ -0,0 +1,224 @@
+package org.openmuc.framework.app.gateway.output.iec104;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.openmuc.framework.app.gateway.config.MappingRegistry;
+import org.openmuc.framework.data.Flag;
+import org.openmuc.framework.data.Value;
+import org.openmuc.framework.dataaccess.Channel;
+import org.openmuc.framework.dataaccess.DataAccessService;
+import org.openmuc.j60870.ASdu;
+import org.openmuc.j60870.ASduType;
+import org.openmuc.j60870.CauseOfTransmission;
+import org.openmuc.j60870.ie.IeSingleCommand;
+import org.openmuc.j60870.ie.InformationElement;
+import org.openmuc.j60870.ie.InformationObject;
+
+/**
+ * Command sequences against a channel whose writes complete when the test
+ * says so. The command and the select timeout are 1 s.
+ */
+class Iec104CommandExecutorTest {
+
+    private static final int SBO_IOA = 5001;
+    private static final int DIRECT_IOA = 5002;
+    private static final long TIMEOUT_MS = 5000;
+
+    @TempDir
+    File folder;
+
+    private final BlockingQueue<Value> writes = new LinkedBlockingQueue<>();
+    private final BlockingQueue<CompletableFuture<Flag>> pendingWrites = new LinkedBlockingQueue<>();
+    private final BlockingQueue<String> responses = new LinkedBlockingQueue<>();
+
+    private Iec104CommandExecutor executor;
+    private Iec104ConnectionHandler handler;
+    private Iec104ConnectionHandler otherHandler;
+
+    @BeforeEach
+    void start() throws Exception {
+        File mappingFile = new File(folder, "gateway-mappings.xml");
+        String mapping = "<gateway>\n"
+                + "  <iec104 commonAddress=\"1\" commandTimeout=\"1\" selectTimeout=\"1\"/>\n"
+                + "  <point channelId=\"breaker\" source=\"MODBUS_TCP\" ioa=\"4001\" asduType=\"M_SP_NA_1\""
+                + " dataType=\"BOOLEAN\">\n"
+                + "    <command ioa=\"" + SBO_IOA + "\" type=\"C_SC_NA_1\" selectBeforeOperate=\"true\"/>\n"
+                + "  </point>\n"
+                + "  <point channelId=\"switch\" source=\"MODBUS_TCP\" ioa=\"4002\" asduType=\"M_SP_NA_1\""
+                + " dataType=\"BOOLEAN\">\n"
+                + "    <command ioa=\"" + DIRECT_IOA + "\" type=\"C_SC_NA_1\"/>\n"
+                + "  </point>\n"
+                + "</gateway>\n";
+        Files.write(mappingFile.toPath(), mapping.getBytes(StandardCharsets.UTF_8));
+        System.setProperty(MappingRegistry.MAPPING_FILE_PROPERTY, mappingFile.getAbsolutePath());
+
+        Channel channel = (Channel) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] { Channel.class }, (proxy, method, args) -> {
+                    if (!method.getName().equals("writeAsync")) {
+                        return null;
+                    }
+                    CompletableFuture<Flag> write = new CompletableFuture<>();
+                    writes.add((Value) args[0]);
+                    pendingWrites.add(write);
+                    return write;
+                });
+        DataAccessService dataAccessService = (DataAccessService) Proxy.newProxyInstance(
+                getClass().getClassLoader(), new Class<?>[] { DataAccessService.class },
+                (proxy, method, args) -> method.getName().equals("getChannel") ? channel : null);
+
+        executor = new Iec104CommandExecutor(dataAccessService, MappingRegistry.acquire());
+        handler = recordingHandler();
+        otherHandler = recordingHandler();
+    }
+
+    @AfterEach
+    void stop() {
+        executor.shutdown();
+        MappingRegistry.release();
+    }
+
+    @Test
+    void testExecuteRequiresSelect() throws Exception {
+        executor.execute(command(SBO_IOA, false), handler);
+        assertResponses("ACTIVATION_CON -");
+        assertTrue(writes.isEmpty());
+    }
+
+    @Test
+    void testSelectBeforeOperate() throws Exception {
+        executor.execute(command(SBO_IOA, true), handler);
+        assertResponses("ACTIVATION_CON +");
+        assertTrue(writes.isEmpty());
+
+        executor.execute(command(SBO_IOA, false), handler);
+        assertTrue(writes.poll(TIMEOUT_MS, TimeUnit.MILLISECONDS).asBoolean());
+        pendingWrites.take().complete(Flag.VALID);
+        assertResponses("ACTIVATION_CON +", "ACTIVATION_TERMINATION +");
+
+        // the selection is used up by the execute
+        executor.execute(command(SBO_IOA, false), handler);
+        assertResponses("ACTIVATION_CON -");
+        assertTrue(writes.isEmpty());
+    }
+
+    @Test
+    void testDeactivationCancelsSelection() throws Exception {
+        executor.execute(command(SBO_IOA, true), handler);
+        executor.execute(deactivation(SBO_IOA), handler);
+        assertResponses("ACTIVATION_CON +", "DEACTIVATION_CON +");
+
+        executor.execute(command(SBO_IOA, false), handler);
+        assertResponses("ACTIVATION_CON -");
+    }
+
+    @Test
+    void testSelectionNotSharedBetweenConnections() throws Exception {
+        executor.execute(command(SBO_IOA, true), handler);
+        executor.execute(command(SBO_IOA, false), otherHandler);
+        executor.execute(deactivation(SBO_IOA), otherHandler);
+        assertResponses("ACTIVATION_CON +", "ACTIVATION_CON -", "DEACTIVATION_CON +");
+        assertTrue(writes.isEmpty());
+
+        executor.execute(command(SBO_IOA, false), handler);
+        assertTrue(writes.poll(TIMEOUT_MS, TimeUnit.MILLISECONDS).asBoolean());
+    }
+
+    @Test
+    void testExpiredSelectionRejected() throws Exception {
+        executor.execute(command(SBO_IOA, true), handler);
+        assertResponses("ACTIVATION_CON +");
+
+        Thread.sleep(1500);
+        executor.execute(command(SBO_IOA, false), handler);
+        assertResponses("ACTIVATION_CON -");
+        assertTrue(writes.isEmpty());
+    }
+
+    @Test
+    void testClosedConnectionDropsSelection() throws Exception {
+        executor.execute(command(SBO_IOA, true), handler);
+        executor.connectionClosed(handler);
+        executor.execute(command(SBO_IOA, false), handler);
+        assertResponses("ACTIVATION_CON +", "ACTIVATION_CON -");
+    }
+
+    @Test
+    void testSelectWithoutSelectBeforeOperateRejected() throws Exception {
+        executor.execute(command(DIRECT_IOA, true), handler);
+        assertResponses("ACTIVATION_CON -");
+    }
+
+    @Test
+    void testWriteTimeoutConfirmedOnce() throws Exception {
+        executor.execute(command(DIRECT_IOA, false), handler);
+        CompletableFuture<Flag> write = pendingWrites.take();
+
+        assertResponses("ACTIVATION_CON -");
+
+        // the late completion is only logged
+        write.complete(Flag.VALID);
+        assertNull(responses.poll(500, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void testCompletedWriteConfirmedOnce() throws Exception {
+        executor.execute(command(DIRECT_IOA, false), handler);
+        pendingWrites.take().complete(Flag.VALID);
+        assertResponses("ACTIVATION_CON +", "ACTIVATION_TERMINATION +");
+
+        // the timeout passes without a second confirmation
+        assertNull(responses.poll(1500, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void testFailedWriteConfirmedNegative() throws Exception {
+        executor.execute(command(DIRECT_IOA, false), handler);
+        pendingWrites.take().complete(Flag.DRIVER_ERROR_TIMEOUT);
+        assertResponses("ACTIVATION_CON -");
+        assertNull(responses.poll(1500, TimeUnit.MILLISECONDS));
+    }
+
+    private Iec104ConnectionHandler recordingHandler() {
+        return new Iec104ConnectionHandler(null, null, null, null, executor, commonAddress -> true, null) {
+            @Override
+            public void sendCommandResponse(ASdu command, CauseOfTransmission cot, boolean negative) {
+                responses.add(cot + (negative ? " -" : " +"));
+            }
+        };
+    }
+
+    private void assertResponses(String... expected) throws InterruptedException {
+        for (String response : expected) {
+            assertEquals(response, responses.poll(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        }
+    }
+
+    private static ASdu command(int ioa, boolean select) {
+        return singleCommand(ioa, CauseOfTransmission.ACTIVATION, select);
+    }
+
+    private static ASdu deactivation(int ioa) {
+        return singleCommand(ioa, CauseOfTransmission.DEACTIVATION, false);
+    }
+
+    private static ASdu singleCommand(int ioa, CauseOfTransmission cot, boolean select) {
+        InformationObject io = new InformationObject(ioa,
+                new InformationElement[][] { { new IeSingleCommand(true, 0, select) } });
+        return new ASdu(ASduType.C_SC_NA_1, false, cot, false, false, 0, 1, new InformationObject[] { io });
+    }
+}
@@ -0,0 +1,211 @@
+package org.openmuc.framework.app.gateway.output.iec104;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Proxy;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.openmuc.framework.app.gateway.config.MappingRegistry;
+import org.openmuc.framework.app.gateway.core.DataHolder;
+import org.openmuc.framework.app.gateway.dto.DataPoint;
+import org.openmuc.framework.dataaccess.DataAccessService;
+import org.openmuc.j60870.ASdu;
+import org.openmuc.j60870.ASduType;
+import org.openmuc.j60870.ClientConnectionBuilder;
+import org.openmuc.j60870.Connection;
+import org.openmuc.j60870.ConnectionEventListener;
+
+/**
+ * Event stream of the redundancy groups, against j60870 clients on the
+ * loopback address. All clients come from 127.0.0.1, so they form one group.
+ */
+class Iec104ServerTest {
+
+    private static final int COMMON_ADDRESS = 1;
+    private static final long TIMEOUT_MS = 5000;
+
+    @TempDir
+    File folder;
+
+    private int port;
+    private DataHolder dataHolder;
+
+    @Test
+    void testEventsReplayedAfterReconnect() throws Exception {
+        Iec104Server server = startServer();
+        try {
+            Client first = new Client(8);
+            first.connection.startDataTransfer();
+            first.connection.close();
+            waitFor(() -> group(server) == null);
+
+            update(2001);
+            update(2002);
+            update(2003);
+
+            Client second = new Client(8);
+            second.connection.startDataTransfer();
+            second.assertEvents(2001, 2002, 2003);
+            second.connection.close();
+        } finally {
+            server.deactivate();
+        }
+    }
+
+    @Test
+    void testSwitchoverResendsUnacknowledgedEvents() throws Exception {
+        Iec104Server server = startServer();
+        try {
+            // acknowledges after 8 frames or 10 s only
+            Client active = new Client(8);
+            active.connection.startDataTransfer();
+            waitFor(() -> group(server) != null);
+            update(2101);
+            update(2102);
+            active.assertEvents(2101, 2102);
+
+            Client standby = new Client(8);
+            standby.connection.startDataTransfer();
+            standby.assertEvents(2101, 2102);
+
+            update(2103);
+            standby.assertEvents(2103);
+            assertNull(active.events.poll(200, TimeUnit.MILLISECONDS));
+
+            active.connection.close();
+            standby.connection.close();
+        } finally {
+            server.deactivate();
+        }
+    }
+
+    @Test
+    void testSwitchoverSkipsAcknowledgedEvents() throws Exception {
+        Iec104Server server = startServer();
+        try {
+            // acknowledges every frame
+            Client active = new Client(1);
+            active.connection.startDataTransfer();
+            waitFor(() -> group(server) != null);
+            update(2201);
+            active.assertEvents(2201);
+
+            // the S-frame follows the ASDU, STOPDT must not overtake it
+            Thread.sleep(200);
+            active.connection.stopDataTransfer();
+            update(2202);
+
+            Client standby = new Client(8);
+            standby.connection.startDataTransfer();
+            standby.assertEvents(2202);
+            assertTrue(group(server).getAcknowledgedSeq() > 0);
+
+            active.connection.close();
+            standby.connection.close();
+        } finally {
+            server.deactivate();
+        }
+    }
+
+    private Iec104Server startServer() throws Exception {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+
+        File mappingFile = new File(folder, "gateway-mappings.xml");
+        String mapping = "<gateway>\n"
+                + "  <iec104 bindIp=\"127.0.0.1\" port=\"" + port + "\" commonAddress=\"" + COMMON_ADDRESS
+                + "\" soeBufferSize=\"64\"/>\n"
+                + "  <point channelId=\"breaker\" source=\"MODBUS\" ioa=\"2001\" asduType=\"M_SP_TB_1\""
+                + " dataType=\"BOOLEAN\"/>\n"
+                + "</gateway>\n";
+        Files.write(mappingFile.toPath(), mapping.getBytes(StandardCharsets.UTF_8));
+        System.setProperty(MappingRegistry.MAPPING_FILE_PROPERTY, mappingFile.getAbsolutePath());
+
+        Iec104Server server = new Iec104Server();
+        Field dataAccessService = Iec104Server.class.getDeclaredField("dataAccessService");
+        dataAccessService.setAccessible(true);
+        dataAccessService.set(server, Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] { DataAccessService.class }, (proxy, method, args) -> null));
+        server.activate();
+
+        Field dataHolderField = Iec104Server.class.getDeclaredField("dataHolder");
+        dataHolderField.setAccessible(true);
+        dataHolder = (DataHolder) dataHolderField.get(server);
+        return server;
+    }
+
+    private RedundancyGroup group(Iec104Server server) {
+        return server.getRedundancyGroup("127.0.0.1", port);
+    }
+
+    /**
+     * Time-tagged point seen for the first time, recorded as one event.
+     */
+    private void update(int ioa) {
+        dataHolder.updateDataPoint(new DataPoint(ioa, COMMON_ADDRESS, "M_SP_TB_1", true,
+                System.currentTimeMillis(), true));
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "condition not met in time");
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * Controlling station that records the IOAs of the events it receives.
+     */
+    private class Client implements ConnectionEventListener {
+
+        private final BlockingQueue<Integer> events = new LinkedBlockingQueue<>();
+        private final Connection connection;
+
+        /**
+         * @param acknowledgeAfter I-frames received before the client acknowledges them (w)
+         */
+        Client(int acknowledgeAfter) throws IOException {
+            connection = new ClientConnectionBuilder("127.0.0.1").setPort(port)
+                    .setMaxUnconfirmedIPdusReceived(acknowledgeAfter)
+                    .setConnectionEventListener(this)
+                    .build();
+        }
+
+        void assertEvents(int... ioas) throws InterruptedException {
+            for (int ioa : ioas) {
+                Integer received = events.poll(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                assertEquals(Integer.valueOf(ioa), received);
+            }
+        }
+
+        @Override
+        public void newASdu(Connection connection, ASdu asdu) {
+            if (asdu.getTypeIdentification() == ASduType.M_SP_TB_1) {
+                events.add(asdu.getInformationObjects()[0].getInformationObjectAddress());
+            }
+        }
+
+        @Override
+        public void connectionClosed(Connection connection, IOException e) {
+        }
+
+        @Override
+        public void dataTransferStateChanged(Connection connection, boolean stopped) {
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package org.openmuc.framework.app.gateway.output.modbus;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+import org.openmuc.framework.app.gateway.dto.DataPoint;
+import org.openmuc.framework.app.gateway.dto.Mapping;
+
+import com.ghgande.j2mod.modbus.procimg.IllegalAddressException;
+import com.ghgande.j2mod.modbus.procimg.InputRegister;
+
+class ModbusProcessImageTest {
+
+    /**
+     * Registers in IOA order: 100 FLOAT32 (0-1), 200 INT16 (2), 300 double point (3), 400 INT32 (4-5).
+     * Discrete inputs: 150 (0), 250 (1).
+     */
+    private final ModbusProcessImage image = new ModbusProcessImage(1, Arrays.asList(
+            new Mapping(400, "M_IT_NA_1", "LONG"),
+            new Mapping(300, "M_DP_NA_1", "INT16"),
+            new Mapping(250, "M_SP_TB_1", "BOOLEAN"),
+            new Mapping(200, "M_ME_NB_1", "INT16"),
+            new Mapping(150, "M_SP_NA_1", "BOOLEAN"),
+            new Mapping(100, "M_ME_NC_1", "DOUBLE")));
+
+    @Test
+    void testRegisterMap() {
+        assertEquals(6, image.getInputRegisterCount());
+        assertEquals(6, image.getRegisterCount());
+        assertEquals(2, image.getDigitalInCount());
+        assertEquals(6, image.getMappedPoints());
+    }
+
+    @Test
+    void testFloatHighWordFirst() {
+        update(100, 1.5f);
+        int bits = Float.floatToIntBits(1.5f);
+        assertEquals(bits >>> 16, image.getInputRegister(0).getValue());
+        assertEquals(bits & 0xFFFF, image.getInputRegister(1).getValue());
+        assertEquals(bits >>> 16, image.getRegister(0).getValue());
+    }
+
+    @Test
+    void testIntegratedTotalExact() {
+        long count = 16_777_217L;
+        update(400, count);
+        assertEquals(count, image.getInputRegister(4).getValue() << 16 | image.getInputRegister(5).getValue());
+        update(400, -5L);
+        assertEquals(-5, (short) image.getInputRegister(4).getValue() << 16 | image.getInputRegister(5).getValue());
+    }
+
+    @Test
+    void testScaledValueClampedToInt16() {
+        update(200, -12);
+        assertEquals(-12, image.getInputRegister(2).toShort());
+        update(200, 100000);
+        assertEquals(Short.MAX_VALUE, image.getInputRegister(2).toShort());
+        update(200, -100000);
+        assertEquals(Short.MIN_VALUE, image.getInputRegister(2).toShort());
+    }
+
+    @Test
+    void testDoublePointState() {
+        update(300, 2);
+        assertEquals(2, image.getInputRegister(3).getValue());
+        update(300, false);
+        assertEquals(1, image.getInputRegister(3).getValue());
+        update(300, true);
+        assertEquals(2, image.getInputRegister(3).getValue());
+        update(300, 3);
+        assertEquals(3, image.getInputRegister(3).getValue());
+        // the double point uses one register, the following point is unaffected
+        assertEquals(0, image.getInputRegister(4).getValue());
+    }
+
+    @Test
+    void testSinglePointsAreDiscreteInputs() {
+        update(150, true);
+        update(250, 0);
+        assertTrue(image.getDigitalIn(0).isSet());
+        assertFalse(image.getDigitalIn(1).isSet());
+        update(250, 1);
+        assertTrue(image.getDigitalIn(1).isSet());
+    }
+
+    @Test
+    void testRangeCopy() {
+        update(300, 1);
+        update(200, 7);
+        InputRegister[] range = image.getInputRegisterRange(2, 2);
+        assertEquals(7, range[0].getValue());
+        assertEquals(1, range[1].getValue());
+    }
+
+    @Test
+    void testInvalidAccess() {
+        assertThrows(IllegalAddressException.class, () -> image.getInputRegisterRange(5, 2));
+        assertThrows(IllegalAddressException.class, () -> image.getDigitalIn(2));
+        assertThrows(IllegalAddressException.class, () -> image.getRegister(0).setValue(1));
+        assertThrows(IllegalAddressException.class, () -> image.getDigitalOut(0));
+    }
+
+    @Test
+    void testUnmappedPointIgnored() {
+        update(999, 1.0f);
+        for (int i = 0; i < image.getInputRegisterCount(); i++) {
+            assertEquals(0, image.getInputRegister(i).getValue());
+        }
+    }
+
+    private void update(int ioa, Object value) {
+        image.update(new DataPoint(ioa, 1, null, value, System.currentTimeMillis(), true));
+    }
+}
@@ -45,6 +45,20 @@ public interface ConfigService {
 
     RootConfig getConfig(ConfigChangeListener listener);
 
+    /**
+     * Registers a listener for configuration changes. Unlike {@link #getConfig(ConfigChangeListener)} the listener is
+     * also notified once right away if a configuration has already been applied, so a component can subscribe to
+     * channels as soon as they exist and then react to every later change. The default implementation registers the
+     * listener through {@link #getConfig(ConfigChangeListener)} and notifies it once right away.
+     * 
+     * @param listener
+     *            the listener to be notified whenever a configuration has been applied.
+     */
+    default void listenForConfigChange(ConfigChangeListener listener) {
+        getConfig(listener);
+        listener.configurationChanged();
+    }
+
     void stopListeningForConfigChange(ConfigChangeListener listener);
 
     void setConfig(RootConfig config);
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.data;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Cursor over logged records sorted by time, returned by history reads that stream their result instead of returning
+ * it as one list. Implementations read the records in chunks, so only a chunk is held in memory at a time.
+ * <p>
+ * A cursor holds resources of the data logger until it is closed, it should be used in a try-with-resources
+ * statement. A cursor is not thread-safe.
+ */
+public interface RecordCursor extends Closeable {
+
+    /**
+     * Returns true if there is another record.
+     *
+     * @return true if {@link #next()} returns a record
+     * @throws IOException
+     *             if any kind of error occurs accessing the logged data.
+     */
+    boolean hasNext() throws IOException;
+
+    /**
+     * Returns the next record.
+     *
+     * @return the next record
+     * @throws IOException
+     *             if any kind of error occurs accessing the logged data.
+     * @throws NoSuchElementException
+     *             if there is no other record
+     */
+    Record next() throws IOException;
+
+    /**
+     * Releases the resources of the cursor. Does nothing by default.
+     */
+    @Override
+    default void close() throws IOException {
+    }
+
+    /**
+     * Returns a cursor over a list of records that is already in memory.
+     *
+     * @param records
+     *            the records
+     * @return a cursor over the records
+     */
+    static RecordCursor of(List<Record> records) {
+        Iterator<Record> iterator = records.iterator();
+        return new RecordCursor() {
+
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public Record next() {
+                return iterator.next();
+            }
+        };
+    }
+}
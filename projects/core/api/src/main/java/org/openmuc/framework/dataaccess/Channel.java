@@ -23,10 +23,12 @@ package org.openmuc.framework.dataaccess;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import org.openmuc.framework.data.Flag;
 import org.openmuc.framework.data.FutureValue;
 import org.openmuc.framework.data.Record;
+import org.openmuc.framework.data.RecordCursor;
 import org.openmuc.framework.data.Value;
 import org.openmuc.framework.data.ValueType;
 
@@ -266,6 +268,20 @@ public interface Channel {
      */
     Flag write(Value value);
 
+    /**
+     * Writes the given value like {@link #write(Value)} but without blocking the caller. The returned future is
+     * completed with the resulting flag once the driver has finished the write. The default implementation runs
+     * {@link #write(Value)} in the common pool.
+     *
+     * @param value
+     *            the value that is to be written
+     * @return a future completed with <code>Flag.VALID</code> if the value was successfully written or any other flag
+     *         indicating the error.
+     */
+    default CompletableFuture<Flag> writeAsync(Value value) {
+        return CompletableFuture.supplyAsync(() -> write(value));
+    }
+
     /**
      * Schedules a List&lt;records&gt; with future timestamps as write tasks <br>
      * This function will schedule single write tasks to the provided timestamps.<br>
@@ -349,4 +365,48 @@ public interface Channel {
      */
     List<Record> getLoggedRecords(long startTime, long endTime) throws DataLoggerNotAvailableException, IOException;
 
+    /**
+     * Returns a cursor over the logged data records with timestamps from <code>startTime</code> to
+     * <code>endTime</code> inclusive, followed by the future values up to <code>endTime</code> like
+     * {@link #getLoggedRecords(long, long)}. The records are read in chunks while the cursor is iterated, so long
+     * ranges can be processed without holding them in memory. The caller has to close the cursor. The default
+     * implementation returns a cursor over the result of {@link #getLoggedRecords(long, long)}.
+     *
+     * @param startTime
+     *            the starting time in milliseconds since midnight, January 1, 1970 UTC. inclusive
+     * @param endTime
+     *            the ending time in milliseconds since midnight, January 1, 1970 UTC. inclusive
+     * @return a cursor over the logged data records
+     * @throws DataLoggerNotAvailableException
+     *             if no data logger is installed and therefore no logged data can be accessed.
+     * @throws IOException
+     *             if any kind of error occurs accessing the logged data.
+     */
+    default RecordCursor getLoggedRecordCursor(long startTime, long endTime)
+            throws DataLoggerNotAvailableException, IOException {
+        return RecordCursor.of(getLoggedRecords(startTime, endTime));
+    }
+
+    /**
+     * Returns the logged data records from <code>startTime</code> to <code>endTime</code> downsampled to one record per
+     * interval of <code>resolution</code> milliseconds, holding the mean of the interval's values. Intended for numeric
+     * channels, e.g. to plot long ranges. The default implementation returns all records.
+     *
+     * @param startTime
+     *            the starting time in milliseconds since midnight, January 1, 1970 UTC. inclusive
+     * @param endTime
+     *            the ending time in milliseconds since midnight, January 1, 1970 UTC. inclusive
+     * @param resolution
+     *            the interval length in milliseconds, all records are returned if not positive
+     * @return one record per interval containing logged data.
+     * @throws DataLoggerNotAvailableException
+     *             if no data logger is installed and therefore no logged data can be accessed.
+     * @throws IOException
+     *             if any kind of error occurs accessing the logged data.
+     */
+    default List<Record> getLoggedRecords(long startTime, long endTime, long resolution)
+            throws DataLoggerNotAvailableException, IOException {
+        return getLoggedRecords(startTime, endTime);
+    }
+
 }
@@ -61,4 +61,24 @@ public interface DataAccessService {
      */
     void write(List<WriteValueContainer> values);
 
+    /**
+     * Returns the number of logged record reads ({@link Channel#getLoggedRecords(long, long)}) served from the
+     * in-memory history cache since the start. Zero if the implementation has no cache or it is disabled.
+     * 
+     * @return the number of cache hits
+     */
+    default long getHistoryCacheHits() {
+        return 0;
+    }
+
+    /**
+     * Returns the number of logged record reads of cached channels that were not covered by the in-memory history
+     * cache and went to the data logger since the start. Zero if the implementation has no cache or it is disabled.
+     * 
+     * @return the number of cache misses
+     */
+    default long getHistoryCacheMisses() {
+        return 0;
+    }
+
 }
@@ -27,11 +27,13 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
+import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.Timer;
 import java.util.TimerTask;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CountDownLatch;
 import java.util.stream.Collectors;
 
@@ -46,6 +48,7 @@ import org.openmuc.framework.data.FutureValue;
 import org.openmuc.framework.data.IntValue;
 import org.openmuc.framework.data.LongValue;
 import org.openmuc.framework.data.Record;
+import org.openmuc.framework.data.RecordCursor;
 import org.openmuc.framework.data.ShortValue;
 import org.openmuc.framework.data.StringValue;
 import org.openmuc.framework.data.TypeConversionException;
@@ -58,6 +61,7 @@ import org.openmuc.framework.dataaccess.DeviceState;
 import org.openmuc.framework.dataaccess.ReadRecordContainer;
 import org.openmuc.framework.dataaccess.RecordListener;
 import org.openmuc.framework.dataaccess.WriteValueContainer;
+import org.openmuc.framework.datalogger.spi.DataLoggerService;
 import org.openmuc.framework.datalogger.spi.LogChannel;
 import org.openmuc.framework.driver.spi.ChannelRecordContainer;
 import org.slf4j.Logger;
@@ -242,15 +246,96 @@ public final class ChannelImpl implements Channel {
     @Override
     public List<Record> getLoggedRecords(long startTime) throws DataLoggerNotAvailableException, IOException {
         String reader = getValidReaderIdFromConfig();
-        return dataManager.getDataLogger(reader).getRecords(config.getId(), startTime, System.currentTimeMillis());
+        DataLoggerService dataLogger = dataManager.getDataLogger(reader);
+        long endTime = System.currentTimeMillis();
+        List<Record> cachedRecords = getCachedRecords(reader, startTime, endTime);
+        if (cachedRecords != null) {
+            return cachedRecords;
+        }
+        return dataLogger.getRecords(config.getId(), startTime, endTime);
     }
 
     @Override
     public List<Record> getLoggedRecords(long startTime, long endTime)
             throws DataLoggerNotAvailableException, IOException {
         String reader = getValidReaderIdFromConfig();
-        List<Record> toReturn = dataManager.getDataLogger(reader).getRecords(config.getId(), startTime, endTime);
+        DataLoggerService dataLogger = dataManager.getDataLogger(reader);
+        List<Record> toReturn = getCachedRecords(reader, startTime, endTime);
+        if (toReturn == null) {
+            toReturn = dataLogger.getRecords(config.getId(), startTime, endTime);
+        }
+        addFutureValues(toReturn, endTime);
+        return toReturn;
+    }
 
+    @Override
+    public List<Record> getLoggedRecords(long startTime, long endTime, long resolution)
+            throws DataLoggerNotAvailableException, IOException {
+        String reader = getValidReaderIdFromConfig();
+        List<Record> toReturn = dataManager.getDataLogger(reader)
+                .getRecords(config.getId(), startTime, endTime, resolution);
+        addFutureValues(toReturn, endTime);
+        return toReturn;
+    }
+
+    @Override
+    public RecordCursor getLoggedRecordCursor(long startTime, long endTime)
+            throws DataLoggerNotAvailableException, IOException {
+        String reader = getValidReaderIdFromConfig();
+        RecordCursor loggedRecords = dataManager.getDataLogger(reader)
+                .getRecordCursor(config.getId(), startTime, endTime);
+        List<Record> futureRecords = new ArrayList<>();
+        addFutureValues(futureRecords, endTime);
+        if (futureRecords.isEmpty()) {
+            return loggedRecords;
+        }
+        return new FutureValuesCursor(loggedRecords, futureRecords);
+    }
+
+    /*
+     * Returns the logged records followed by the future values.
+     */
+    private static final class FutureValuesCursor implements RecordCursor {
+
+        private final RecordCursor loggedRecords;
+        private final Iterator<Record> futureRecords;
+
+        private FutureValuesCursor(RecordCursor loggedRecords, List<Record> futureRecords) {
+            this.loggedRecords = loggedRecords;
+            this.futureRecords = futureRecords.iterator();
+        }
+
+        @Override
+        public boolean hasNext() throws IOException {
+            return loggedRecords.hasNext() || futureRecords.hasNext();
+        }
+
+        @Override
+        public Record next() throws IOException {
+            return loggedRecords.hasNext() ? loggedRecords.next() : futureRecords.next();
+        }
+
+        @Override
+        public void close() throws IOException {
+            loggedRecords.close();
+        }
+    }
+
+    /*
+     * Returns the records from the history cache of the data manager or null if they are not cached. The data logger
+     * is still looked up before, so a read of an unavailable logger fails as without the cache. Channels configured for
+     * event logging are always read from the logger, which merges the events into the records.
+     */
+    private List<Record> getCachedRecords(String reader, long startTime, long endTime) {
+        HistoryCache historyCache = dataManager.historyCache;
+        if (historyCache == null || config.getLoggingInterval() <= 0 || config.isLoggingEvent()
+                || !HistoryCache.isCached(getValueType()) || !HistoryCache.READER_ID.equals(reader)) {
+            return null;
+        }
+        return historyCache.get(config.getId(), startTime, endTime);
+    }
+
+    private void addFutureValues(List<Record> toReturn, long endTime) {
         // values in the future values list are sorted.
         Long currentTime = System.currentTimeMillis();
         for (FutureValue futureValue : futureValues) {
@@ -264,7 +349,19 @@ public final class ChannelImpl implements Channel {
                 }
             }
         }
-        return toReturn;
+    }
+
+    /**
+     * Returns the ID of the data logger the logged records are read from or null if the channel configures none.
+     */
+    String getReaderId() {
+        if (config.getReader() != null && !config.getReader().isEmpty()) {
+            return config.getReader();
+        }
+        if (config.getLoggingSettings() == null || config.getLoggingSettings().isEmpty()) {
+            return null;
+        }
+        return firstLoggerFromLogSettings();
     }
 
     private String getValidReaderIdFromConfig() {
@@ -414,20 +511,7 @@ public final class ChannelImpl implements Channel {
         }
 
         CountDownLatch writeTaskFinishedSignal = new CountDownLatch(1);
-        WriteValueContainerImpl writeValueContainer = new WriteValueContainerImpl(this);
-
-        Value adjustedValue = value;
-
-        Double valueOffset = config.getValueOffset();
-        Double scalingFactor = config.getScalingFactor();
-
-        if (valueOffset != null) {
-            adjustedValue = new DoubleValue(adjustedValue.asDouble() - valueOffset);
-        }
-        if (scalingFactor != null) {
-            adjustedValue = new DoubleValue(adjustedValue.asDouble() / scalingFactor);
-        }
-        writeValueContainer.setValue(adjustedValue);
+        WriteValueContainerImpl writeValueContainer = createScaledWriteContainer(value);
 
         List<WriteValueContainerImpl> writeValueContainerList = Arrays.asList(writeValueContainer);
         WriteTask writeTask = new WriteTask(dataManager, config.deviceParent.device, writeValueContainerList,
@@ -451,6 +535,48 @@ public final class ChannelImpl implements Channel {
         return writeValueContainer.getFlag();
     }
 
+    @Override
+    public CompletableFuture<Flag> writeAsync(Value value) {
+        if (config.deviceParent.driverParent.getId().equals("virtual")) {
+            return CompletableFuture.completedFuture(write(value));
+        }
+
+        CompletableFuture<Flag> result = new CompletableFuture<>();
+        WriteValueContainerImpl writeValueContainer = createScaledWriteContainer(value);
+
+        WriteTask writeTask = new WriteTask(dataManager, config.deviceParent.device,
+                Arrays.asList(writeValueContainer), new CountDownLatch(1), () -> {
+                    latestRecord = new Record(value, System.currentTimeMillis(), writeValueContainer.getFlag());
+                    notifyListeners();
+                    result.complete(writeValueContainer.getFlag());
+                });
+
+        synchronized (dataManager.newWriteTasks) {
+            dataManager.newWriteTasks.add(writeTask);
+        }
+        dataManager.interrupt();
+
+        return result;
+    }
+
+    private WriteValueContainerImpl createScaledWriteContainer(Value value) {
+        WriteValueContainerImpl writeValueContainer = new WriteValueContainerImpl(this);
+
+        Value adjustedValue = value;
+
+        Double valueOffset = config.getValueOffset();
+        Double scalingFactor = config.getScalingFactor();
+
+        if (valueOffset != null) {
+            adjustedValue = new DoubleValue(adjustedValue.asDouble() - valueOffset);
+        }
+        if (scalingFactor != null) {
+            adjustedValue = new DoubleValue(adjustedValue.asDouble() / scalingFactor);
+        }
+        writeValueContainer.setValue(adjustedValue);
+        return writeValueContainer;
+    }
+
     @Override
     public void writeFuture(List<FutureValue> values) {
         if (values == null) {
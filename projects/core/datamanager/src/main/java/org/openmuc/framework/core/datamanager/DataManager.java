@@ -121,6 +121,7 @@ public final class DataManager extends Thread implements DataAccessService, Conf
     private final Deque<DataLoggerService> activeDataLoggers = new LinkedBlockingDeque<>();
     private final LinkedList<List<ChannelRecordContainer>> receivedRecordContainers = new LinkedList<>();
     private final ReentrantLock configLock = new ReentrantLock();
+    volatile HistoryCache historyCache;
     CountDownLatch dataLoggerRemovedSignal;
     volatile int activeDeviceCountDown;
     ThreadPoolExecutor executor = null;
@@ -135,6 +136,7 @@ public final class DataManager extends Thread implements DataAccessService, Conf
     private volatile RootConfigImpl rootConfigWithoutDefaults;
     private File configFile;
     private volatile Boolean dataManagerActivated = false;
+    private volatile boolean configApplied = false;
     private CountDownLatch newConfigSignal;
 
     @Activate
@@ -155,6 +157,7 @@ public final class DataManager extends Thread implements DataAccessService, Conf
 
         NamedThreadFactory namedThreadFactory = new NamedThreadFactory("OpenMUC Data Manager Pool - thread-");
         executor = (ThreadPoolExecutor) Executors.newCachedThreadPool(namedThreadFactory);
+        historyCache = HistoryCache.fromSystemProperties();
 
         try {
             this.configFile = configFile;
@@ -263,7 +266,7 @@ public final class DataManager extends Thread implements DataAccessService, Conf
                 triggerTimeouts(currentAction.timeouts);
             }
 
-            LoggingController loggingController = new LoggingController(activeDataLoggers);
+            LoggingController loggingController = new LoggingController(activeDataLoggers, historyCache);
 
             if (loggingController.channelsHaveToBeLogged(currentAction)) {
                 for (Optional<ChannelCollection> collection : loggingController.triggerLogging(currentAction)) {
@@ -497,7 +500,7 @@ public final class DataManager extends Thread implements DataAccessService, Conf
 
         synchronized (receivedRecordContainers) {
             List<ChannelRecordContainer> recordContainers;
-            LoggingController loggingController = new LoggingController(activeDataLoggers);
+            LoggingController loggingController = new LoggingController(activeDataLoggers, historyCache);
             List<ChannelRecordContainerImpl> channelRecordContainerList = new ArrayList<>();
             while ((recordContainers = receivedRecordContainers.poll()) != null) {
                 recordContainers.stream()
@@ -715,6 +718,9 @@ public final class DataManager extends Thread implements DataAccessService, Conf
                 }
                 oldChannelConfig.state = ChannelState.DELETED;
                 oldChannelConfig.channel.setFlag(Flag.CHANNEL_DELETED);
+                if (historyCache != null) {
+                    historyCache.remove(oldChannelConfig.getId());
+                }
                 // note: disabling SampleTasks and such has to be done at the
                 // Device level
             }
@@ -729,6 +735,7 @@ public final class DataManager extends Thread implements DataAccessService, Conf
 
             rootConfig = newRootConfig;
             rootConfigWithoutDefaults = configWithoutDefaults;
+            configApplied = true;
 
             for (final ConfigChangeListener configChangeListener : configChangeListeners) {
                 if (configChangeListener == null) {
@@ -1126,6 +1133,17 @@ public final class DataManager extends Thread implements DataAccessService, Conf
         }
     }
 
+    @Override
+    public void listenForConfigChange(ConfigChangeListener listener) {
+        synchronized (configChangeListeners) {
+            configChangeListeners.remove(listener);
+            configChangeListeners.add(listener);
+            if (configApplied) {
+                executor.execute(listener::configurationChanged);
+            }
+        }
+    }
+
     @Override
     public void stopListeningForConfigChange(ConfigChangeListener listener) {
         synchronized (configChangeListeners) {
@@ -1351,6 +1369,18 @@ public final class DataManager extends Thread implements DataAccessService, Conf
         return new ArrayList<>(rootConfig.channelConfigsById.keySet());
     }
 
+    @Override
+    public long getHistoryCacheHits() {
+        HistoryCache cache = historyCache;
+        return cache != null ? cache.getHits() : 0;
+    }
+
+    @Override
+    public long getHistoryCacheMisses() {
+        HistoryCache cache = historyCache;
+        return cache != null ? cache.getMisses() : 0;
+    }
+
     DataLoggerService getDataLogger(String loggerId) throws DataLoggerNotAvailableException {
         DataLoggerService dataLogger;
         if (loggerId == null || loggerId.isEmpty()) {
@@ -0,0 +1,316 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.core.datamanager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.openmuc.framework.data.DoubleValue;
+import org.openmuc.framework.data.Flag;
+import org.openmuc.framework.data.Record;
+import org.openmuc.framework.data.TypeConversionException;
+import org.openmuc.framework.data.Value;
+import org.openmuc.framework.data.ValueType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * In-memory copy of the most recent logged values of numeric channels ({@link #isCached(ValueType)}), so repeated
+ * reads of the last minutes (e.g. by aggregations) do not go to the data logger.
+ * <p>
+ * Every channel logged by interval gets a ring of (timestamp, value, flag) entries in primitive arrays, filled with
+ * the records handed to the data loggers at each logging tick and holding the configured number of minutes. A read is
+ * served from the ring only if the ring has been filled since its start, otherwise it is delegated to the logger.
+ * Like SlotsDb, the ring returns the logging timestamps and double values and leaves out ticks without a value. The
+ * cache is therefore only filled and read for channels whose reader is SlotsDb ({@link #READER_ID}), with the ticks
+ * delivered to it. SlotsDb also returns the logged events of a channel, which are not in the ring: the ring of a
+ * channel is dropped when an event is logged for it, and channels configured for event logging are not read from the
+ * cache.
+ * <p>
+ * The hit and miss counts are available through {@link DataManager#getHistoryCacheHits()} and
+ * {@link DataManager#getHistoryCacheMisses()} and logged at debug level.
+ * <p>
+ * Configured with the system properties
+ * <code>org.openmuc.framework.core.datamanager.history_cache_minutes</code> (disabled if unset or 0) and
+ * <code>org.openmuc.framework.core.datamanager.history_cache_max_kb</code> (memory cap of all rings, default 16384).
+ * Channels whose ring would exceed the cap are not cached.
+ */
+final class HistoryCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(HistoryCache.class);
+
+    private static final String PROPERTY_PREFIX = HistoryCache.class.getPackage().getName().toLowerCase();
+    static final String MINUTES_PROPERTY = PROPERTY_PREFIX + ".history_cache_minutes";
+    static final String MAX_KB_PROPERTY = PROPERTY_PREFIX + ".history_cache_max_kb";
+    private static final long MAX_KB_DEFAULT = 16384;
+
+    /**
+     * ID of the data logger whose read semantics the cache reproduces.
+     */
+    static final String READER_ID = "slotsdb";
+
+    /*
+     * Bytes of an entry: timestamp, value, flag.
+     */
+    private static final int ENTRY_BYTES = 17;
+
+    /*
+     * Interval of the statistics written to the debug log.
+     */
+    private static final long STATISTICS_INTERVAL = 60000;
+
+    private final long retention;
+    private final long maxBytes;
+    private final Map<String, Ring> rings = new ConcurrentHashMap<>();
+    private final AtomicLong allocatedBytes = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final AtomicLong nextStatistics = new AtomicLong();
+
+    HistoryCache(long retention, long maxBytes) {
+        this.retention = retention;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Returns the cache configured by the system properties or null if it is disabled.
+     */
+    static HistoryCache fromSystemProperties() {
+        long minutes = Long.getLong(MINUTES_PROPERTY, 0);
+        if (minutes <= 0) {
+            return null;
+        }
+        long maxKb = Long.getLong(MAX_KB_PROPERTY, MAX_KB_DEFAULT);
+        logger.info("Caching the logged values of the last {} minutes, at most {} kB.", minutes, maxKb);
+        return new HistoryCache(minutes * 60000, maxKb * 1024);
+    }
+
+    /**
+     * Returns true if the values of channels with the value type are cached, which are the numeric value types.
+     */
+    static boolean isCached(ValueType valueType) {
+        switch (valueType) {
+        case DOUBLE:
+        case FLOAT:
+        case LONG:
+        case INTEGER:
+        case SHORT:
+        case BYTE:
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    /**
+     * Adds the record logged for a channel at a logging tick.
+     *
+     * @param channelId
+     *            the channel ID
+     * @param loggingInterval
+     *            the logging interval of the channel, a new ring is created if it has changed
+     * @param timestamp
+     *            the logging timestamp
+     * @param record
+     *            the logged record, may be null
+     */
+    void add(String channelId, int loggingInterval, long timestamp, Record record) {
+        Ring ring = rings.get(channelId);
+        if (ring == null || ring.loggingInterval != loggingInterval) {
+            ring = createRing(channelId, loggingInterval);
+            if (ring == null) {
+                return;
+            }
+        }
+
+        double value = Double.NaN;
+        byte flag = Flag.NO_VALUE_RECEIVED_YET.getCode();
+        if (record != null) {
+            flag = record.getFlag().getCode();
+            Value recordValue = record.getValue();
+            if (recordValue != null) {
+                try {
+                    value = recordValue.asDouble();
+                } catch (TypeConversionException e) {
+                    // not numeric, not returned like a missing value
+                }
+            }
+        }
+        ring.add(timestamp, value, flag);
+    }
+
+    private Ring createRing(String channelId, int loggingInterval) {
+        remove(channelId);
+        if (loggingInterval <= 0) {
+            return null;
+        }
+        int capacity = (int) Math.min(Integer.MAX_VALUE - 8, retention / loggingInterval + 1);
+        long bytes = (long) capacity * ENTRY_BYTES;
+        if (allocatedBytes.addAndGet(bytes) > maxBytes) {
+            allocatedBytes.addAndGet(-bytes);
+            logger.warn("History cache is full, the values of channel {} are not cached.", channelId);
+            // an empty ring, which never returns records, so the warning is logged once
+            Ring empty = new Ring(loggingInterval, 0);
+            rings.put(channelId, empty);
+            return empty;
+        }
+        Ring ring = new Ring(loggingInterval, capacity);
+        rings.put(channelId, ring);
+        return ring;
+    }
+
+    /**
+     * Removes the ring of a channel, e.g. of a deleted channel.
+     */
+    void remove(String channelId) {
+        Ring removed = rings.remove(channelId);
+        if (removed != null) {
+            allocatedBytes.addAndGet(-(long) removed.timestamps.length * ENTRY_BYTES);
+        }
+    }
+
+    /**
+     * Returns the cached records of a channel between start and end (both included) or null if the cache does not hold
+     * the whole range.
+     */
+    List<Record> get(String channelId, long start, long end) {
+        Ring ring = rings.get(channelId);
+        List<Record> records = ring != null ? ring.get(start, end) : null;
+        if (records != null) {
+            hits.increment();
+        }
+        else {
+            misses.increment();
+        }
+        logStatistics();
+        return records;
+    }
+
+    long getHits() {
+        return hits.sum();
+    }
+
+    long getMisses() {
+        return misses.sum();
+    }
+
+    long getAllocatedBytes() {
+        return allocatedBytes.get();
+    }
+
+    private void logStatistics() {
+        if (!logger.isDebugEnabled()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        long next = nextStatistics.get();
+        if (now >= next && nextStatistics.compareAndSet(next, now + STATISTICS_INTERVAL)) {
+            logger.debug("History cache: {} hits, {} misses, {} channels, {} bytes", getHits(), getMisses(),
+                    rings.size(), getAllocatedBytes());
+        }
+    }
+
+    /*
+     * Ring of the entries of a channel, sorted by timestamp.
+     */
+    private static final class Ring {
+
+        private final int loggingInterval;
+        private final long[] timestamps;
+        private final double[] values;
+        private final byte[] flags;
+        private int first = 0; // index of the oldest entry
+        private int size = 0;
+        /*
+         * The ring holds every tick since this timestamp: the first tick added or the tick after the last overwritten
+         * one.
+         */
+        private long coveredSince = Long.MAX_VALUE;
+
+        private Ring(int loggingInterval, int capacity) {
+            this.loggingInterval = loggingInterval;
+            timestamps = new long[capacity];
+            values = new double[capacity];
+            flags = new byte[capacity];
+        }
+
+        private synchronized void add(long timestamp, double value, byte flag) {
+            if (timestamps.length == 0 || size > 0 && timestamp <= timestamps[index(size - 1)]) {
+                return;
+            }
+            int index;
+            if (size == timestamps.length) {
+                coveredSince = timestamps[first] + 1;
+                index = first;
+                first = index(1);
+            }
+            else {
+                if (size == 0) {
+                    coveredSince = timestamp;
+                }
+                index = index(size++);
+            }
+            timestamps[index] = timestamp;
+            values[index] = value;
+            flags[index] = flag;
+        }
+
+        private int index(int position) {
+            int index = first + position;
+            return index < timestamps.length ? index : index - timestamps.length;
+        }
+
+        private synchronized List<Record> get(long start, long end) {
+            if (start < coveredSince || start > end) {
+                return null;
+            }
+            // first entry with timestamp >= start
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (timestamps[index(mid)] < start) {
+                    low = mid + 1;
+                }
+                else {
+                    high = mid;
+                }
+            }
+            List<Record> records = new ArrayList<>();
+            for (int position = low; position < size; position++) {
+                int index = index(position);
+                if (timestamps[index] > end) {
+                    break;
+                }
+                if (!Double.isNaN(values[index])) {
+                    records.add(new Record(new DoubleValue(values[index]), timestamps[index],
+                            Flag.newFlag(flags[index])));
+                }
+            }
+            return records;
+        }
+    }
+}
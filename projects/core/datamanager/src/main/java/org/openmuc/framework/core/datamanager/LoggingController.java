@@ -43,10 +43,16 @@ public class LoggingController {
 
     private static final Logger logger = LoggerFactory.getLogger(LoggingController.class);
     private final Deque<DataLoggerService> activeDataLoggers;
+    private final HistoryCache historyCache;
     private Map<String, List<LoggingRecord>> logContainerMap;
 
     public LoggingController(Deque<DataLoggerService> activeDataLoggers) {
+        this(activeDataLoggers, null);
+    }
+
+    LoggingController(Deque<DataLoggerService> activeDataLoggers, HistoryCache historyCache) {
         this.activeDataLoggers = activeDataLoggers;
+        this.historyCache = historyCache;
     }
 
     public boolean channelsHaveToBeLogged(Action currentAction) {
@@ -66,11 +72,15 @@ public class LoggingController {
                 }
                 else if (!channel.config.isDisabled()) {
                     fillLoggingRecordMapWithChannel(channel);
+                    addToHistoryCache(channel, currentAction.startTime);
                 }
             }
 
             for (ChannelImpl channel : toRemove) {
                 loggingCollection.channels.remove(channel);
+                if (historyCache != null) {
+                    historyCache.remove(channel.getId());
+                }
             }
 
             if (loggingCollection.channels != null && !loggingCollection.channels.isEmpty()) {
@@ -83,6 +93,11 @@ public class LoggingController {
     }
 
     public void deliverLogsToEventBasedLogServices(List<ChannelRecordContainerImpl> channelRecordContainerList) {
+        if (historyCache != null) {
+            // events are not in the rings, reads of the channels go to the logger until a new ring covers them
+            channelRecordContainerList
+                    .forEach(channelRecord -> historyCache.remove(channelRecord.getChannel().getId()));
+        }
         initLoggingRecordMap();
         channelRecordContainerList.stream()
                 .forEach(channelRecord -> fillLoggingRecordMapWithChannel(channelRecord.getChannel()));
@@ -96,6 +111,23 @@ public class LoggingController {
         }
     }
 
+    private void addToHistoryCache(ChannelImpl channel, long startTime) {
+        if (historyCache != null && HistoryCache.isCached(channel.getValueType())
+                && HistoryCache.READER_ID.equals(channel.getReaderId())
+                && deliveredTo(HistoryCache.READER_ID, channel)) {
+            historyCache.add(channel.getId(), channel.getLoggingInterval(), startTime, channel.getLatestRecord());
+        }
+    }
+
+    /**
+     * Returns true if the record of the channel just added to the log container map goes to the data logger.
+     */
+    private boolean deliveredTo(String loggerId, ChannelImpl channel) {
+        List<LoggingRecord> loggingRecords = logContainerMap.get(loggerId);
+        return loggingRecords != null && !loggingRecords.isEmpty()
+                && loggingRecords.get(loggingRecords.size() - 1).getChannelId().equals(channel.getId());
+    }
+
     private void initLoggingRecordMap() {
         logContainerMap = new HashMap<>();
         for (DataLoggerService dataLogger : activeDataLoggers) {
@@ -35,13 +35,24 @@ public final class WriteTask extends DeviceTask implements ConnectedTask {
     private static final Logger logger = LoggerFactory.getLogger(WriteTask.class);
 
     private final CountDownLatch writeTaskFinishedSignal;
+    private final Runnable writeTaskFinishedCallback;
     List<WriteValueContainerImpl> writeValueContainers;
 
     public WriteTask(DataManager dataManager, Device device, List<WriteValueContainerImpl> writeValueContainers,
             CountDownLatch writeTaskFinishedSignal) {
+        this(dataManager, device, writeValueContainers, writeTaskFinishedSignal, null);
+    }
+
+    /**
+     * @param writeTaskFinishedCallback
+     *            invoked on the task thread once the flags of all containers are set, may be null
+     */
+    public WriteTask(DataManager dataManager, Device device, List<WriteValueContainerImpl> writeValueContainers,
+            CountDownLatch writeTaskFinishedSignal, Runnable writeTaskFinishedCallback) {
         this.dataManager = dataManager;
         this.device = device;
         this.writeTaskFinishedSignal = writeTaskFinishedSignal;
+        this.writeTaskFinishedCallback = writeTaskFinishedCallback;
         this.writeValueContainers = writeValueContainers;
     }
 
@@ -62,7 +73,7 @@ public final class WriteTask extends DeviceTask implements ConnectedTask {
             for (WriteValueContainerImpl valueContainer : writeValueContainers) {
                 valueContainer.setFlag(Flag.CONNECTION_EXCEPTION);
             }
-            writeTaskFinishedSignal.countDown();
+            signalFinished();
             synchronized (dataManager.disconnectedDevices) {
                 dataManager.disconnectedDevices.add(device);
             }
@@ -75,7 +86,7 @@ public final class WriteTask extends DeviceTask implements ConnectedTask {
             }
         }
 
-        writeTaskFinishedSignal.countDown();
+        signalFinished();
         synchronized (dataManager.tasksFinished) {
             dataManager.tasksFinished.add(this);
         }
@@ -83,6 +94,17 @@ public final class WriteTask extends DeviceTask implements ConnectedTask {
 
     }
 
+    private void signalFinished() {
+        writeTaskFinishedSignal.countDown();
+        if (writeTaskFinishedCallback != null) {
+            try {
+                writeTaskFinishedCallback.run();
+            } catch (Exception e) {
+                logger.warn("write finished callback threw an exception", e);
+            }
+        }
+    }
+
     @Override
     public DeviceTaskType getType() {
         return DeviceTaskType.WRITE;
@@ -96,7 +118,7 @@ public final class WriteTask extends DeviceTask implements ConnectedTask {
         for (WriteValueContainerImpl valueContainer : writeValueContainers) {
             valueContainer.setFlag(Flag.COMM_DEVICE_NOT_CONNECTED);
         }
-        writeTaskFinishedSignal.countDown();
+        signalFinished();
     }
 
 }
@@ -0,0 +1,183 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.framework.core.datamanager;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.File;
+import java.lang.reflect.Method;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.openmuc.framework.data.DoubleValue;
+import org.openmuc.framework.data.Flag;
+import org.openmuc.framework.data.Record;
+import org.openmuc.framework.data.ValueType;
+import org.openmuc.framework.dataaccess.ChannelState;
+import org.openmuc.framework.datalogger.slotsdb.SlotsDb;
+import org.openmuc.framework.datalogger.spi.DataLoggerService;
+import org.openmuc.framework.datalogger.spi.LoggingRecord;
+
+public class HistoryCacheTest {
+
+    private static final long START = 1700000000000L;
+
+    @TempDir
+    File folder;
+
+    @Test
+    public void testRingCoversLastTicks() {
+        // 10 s of 1 s ticks: 11 entries
+        HistoryCache cache = new HistoryCache(10000, 1024);
+        for (long t = 1000; t <= 30000; t += 1000) {
+            cache.add("ch", 1000, t, new Record(new DoubleValue(t / 1000), t));
+        }
+
+        List<Record> records = cache.get("ch", 20000, 30000);
+        assertEquals(11, records.size());
+        assertEquals(20000L, records.get(0).getTimestamp());
+        assertEquals(30.0, records.get(10).getValue().asDouble());
+
+        // overwritten ticks are delegated to the logger
+        assertNull(cache.get("ch", 19000, 30000));
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void testTicksWithoutValueAreLeftOut() {
+        HistoryCache cache = new HistoryCache(10000, 1024);
+        cache.add("ch", 1000, 1000, new Record(new DoubleValue(1), 1000L));
+        cache.add("ch", 1000, 2000, new Record(Flag.DRIVER_ERROR_TIMEOUT));
+        cache.add("ch", 1000, 3000, null);
+
+        List<Record> records = cache.get("ch", 1000, 3000);
+        assertEquals(1, records.size());
+        assertNull(cache.get("ch", 0, 3000));
+    }
+
+    @Test
+    public void testMemoryCap() {
+        // room for one ring of 11 entries
+        HistoryCache cache = new HistoryCache(10000, 200);
+        cache.add("ch1", 1000, 1000, new Record(new DoubleValue(1), 1000L));
+        cache.add("ch2", 1000, 1000, new Record(new DoubleValue(2), 1000L));
+
+        assertEquals(1, cache.get("ch1", 1000, 1000).size());
+        assertNull(cache.get("ch2", 1000, 1000));
+
+        cache.remove("ch1");
+        assertEquals(0, cache.getAllocatedBytes());
+    }
+
+    /*
+     * A channel logged by interval that also got an event (e.g. while it was configured for event logging): SlotsDb
+     * returns the event with the ticks, the cache must not return the ticks only.
+     */
+    @Test
+    public void testEventLoggedChannelReadLikeSlotsDb() throws Exception {
+        SlotsDb slotsDb = activateSlotsDb();
+        ChannelConfigImpl config = channelConfig("ch", 1000, false);
+        slotsDb.setChannelsToLog(Collections.singletonList(config));
+
+        HistoryCache cache = new HistoryCache(60000, 1024 * 1024);
+        Deque<DataLoggerService> loggers = new ArrayDeque<>();
+        loggers.add(slotsDb);
+        LoggingController loggingController = new LoggingController(loggers, cache);
+
+        try {
+            logTicks(slotsDb, cache, 0, 5);
+
+            ChannelImpl eventChannel = new ChannelImpl(null, channelConfig("ch", -1, true), ChannelState.LISTENING,
+                    Flag.NO_VALUE_RECEIVED_YET, START, new ArrayList<>());
+            eventChannel.setLatestRecord(new Record(new DoubleValue(55.5), START + 5500, Flag.VALID));
+            loggingController.deliverLogsToEventBasedLogServices(
+                    Collections.singletonList(new ChannelRecordContainerImpl(eventChannel)));
+
+            logTicks(slotsDb, cache, 6, 8);
+
+            // the range with the event is read from SlotsDb, the one after it from the cache
+            assertEquals(10, slotsDb.getRecords("ch", START, START + 8000).size());
+            assertNull(cache.get("ch", START, START + 8000));
+            List<Record> cached = cache.get("ch", START + 6000, START + 8000);
+            assertNotNull(cached);
+            assertSameRecords(slotsDb.getRecords("ch", START + 6000, START + 8000), cached);
+        } finally {
+            invoke(slotsDb, "deactivate");
+        }
+    }
+
+    private SlotsDb activateSlotsDb() throws Exception {
+        // read once by SlotsDb, no other test uses it
+        System.setProperty(SlotsDb.class.getPackage().getName().toLowerCase() + ".dbfolder",
+                folder.getAbsolutePath() + File.separator);
+        SlotsDb slotsDb = new SlotsDb();
+        invoke(slotsDb, "activate");
+        return slotsDb;
+    }
+
+    private static void invoke(SlotsDb slotsDb, String componentMethod) throws Exception {
+        for (Method method : SlotsDb.class.getDeclaredMethods()) {
+            if (method.getName().equals(componentMethod)) {
+                method.setAccessible(true);
+                method.invoke(slotsDb, new Object[] { null });
+            }
+        }
+    }
+
+    private static ChannelConfigImpl channelConfig(String id, int loggingInterval, boolean loggingEvent) {
+        ChannelConfigImpl config = new ChannelConfigImpl(id, null);
+        config.setValueType(ValueType.DOUBLE);
+        config.setDisabled(false);
+        config.setListening(true);
+        config.setLoggingInterval(loggingInterval);
+        config.setLoggingEvent(loggingEvent);
+        return config;
+    }
+
+    /*
+     * Logs the ticks first to last to SlotsDb and the cache, like the logging controller.
+     */
+    private static void logTicks(SlotsDb slotsDb, HistoryCache cache, int first, int last) {
+        for (int tick = first; tick <= last; tick++) {
+            long timestamp = START + tick * 1000L;
+            Record record = new Record(new DoubleValue(tick), timestamp, Flag.VALID);
+            slotsDb.log(Collections.singletonList(new LoggingRecord("ch", record)), timestamp);
+            cache.add("ch", 1000, timestamp, record);
+        }
+    }
+
+    private static void assertSameRecords(List<Record> expected, List<Record> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getTimestamp(), actual.get(i).getTimestamp());
+            assertEquals(expected.get(i).getValue().asDouble(), actual.get(i).getValue().asDouble());
+            assertEquals(expected.get(i).getFlag(), actual.get(i).getFlag());
+        }
+    }
+}
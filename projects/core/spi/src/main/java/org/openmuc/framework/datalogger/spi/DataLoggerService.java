@@ -22,9 +22,14 @@
 package org.openmuc.framework.datalogger.spi;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 
+import org.openmuc.framework.data.DoubleValue;
+import org.openmuc.framework.data.Flag;
 import org.openmuc.framework.data.Record;
+import org.openmuc.framework.data.RecordCursor;
+import org.openmuc.framework.data.TypeConversionException;
 
 public interface DataLoggerService {
 
@@ -65,6 +70,87 @@ public interface DataLoggerService {
      */
     List<Record> getRecords(String channelId, long startTime, long endTime) throws IOException;
 
+    /**
+     * Returns a cursor over the logged data records with timestamps from <code>startTime</code> to
+     * <code>endTime</code> for the channel with the given <code>channelId</code>, for reads too long to be returned as
+     * one list. The caller has to close the cursor.
+     * <p>
+     * The default implementation returns a cursor over the result of {@link #getRecords(String, long, long)}. Loggers
+     * should override it to read the records in chunks.
+     *
+     * @param channelId
+     *            the channel ID.
+     * @param startTime
+     *            the starting time in milliseconds since midnight, January 1, 1970 UTC. inclusive
+     * @param endTime
+     *            the ending time in milliseconds since midnight, January 1, 1970 UTC. inclusive
+     * @return a cursor over the logged data records, sorted by time
+     * @throws IOException
+     *             if any kind of error occurs accessing the logged data.
+     */
+    default RecordCursor getRecordCursor(String channelId, long startTime, long endTime) throws IOException {
+        return RecordCursor.of(getRecords(channelId, startTime, endTime));
+    }
+
+    /**
+     * Returns the logged data records from <code>startTime</code> to <code>endTime</code> downsampled to one record per
+     * interval of <code>resolution</code> milliseconds, starting at <code>startTime</code>. The record of an interval
+     * holds the mean of its numeric values and the start of the interval as timestamp, intervals without values are
+     * left out.
+     * <p>
+     * The default implementation aggregates the result of {@link #getRecords(String, long, long)}. Loggers keeping
+     * pre-aggregated data should override it.
+     *
+     * @param channelId
+     *            the channel ID.
+     * @param startTime
+     *            the starting time in milliseconds since midnight, January 1, 1970 UTC. inclusive
+     * @param endTime
+     *            the ending time in milliseconds since midnight, January 1, 1970 UTC. inclusive
+     * @param resolution
+     *            the interval length in milliseconds, all records are returned if not positive
+     * @return one record per interval containing logged data.
+     * @throws IOException
+     *             if any kind of error occurs accessing the logged data.
+     */
+    default List<Record> getRecords(String channelId, long startTime, long endTime, long resolution)
+            throws IOException {
+        List<Record> records = getRecords(channelId, startTime, endTime);
+        if (resolution <= 0) {
+            return records;
+        }
+
+        List<Record> aggregated = new ArrayList<>();
+        long interval = 0;
+        double sum = 0;
+        int count = 0;
+        for (Record record : records) {
+            if (record == null || record.getValue() == null || record.getTimestamp() == null
+                    || record.getTimestamp() < startTime) {
+                continue;
+            }
+            double value;
+            try {
+                value = record.getValue().asDouble();
+            } catch (TypeConversionException e) {
+                continue;
+            }
+            long recordInterval = (record.getTimestamp() - startTime) / resolution;
+            if (count > 0 && recordInterval != interval) {
+                aggregated.add(new Record(new DoubleValue(sum / count), startTime + interval * resolution, Flag.VALID));
+                sum = 0;
+                count = 0;
+            }
+            interval = recordInterval;
+            sum += value;
+            count++;
+        }
+        if (count > 0) {
+            aggregated.add(new Record(new DoubleValue(sum / count), startTime + interval * resolution, Flag.VALID));
+        }
+        return aggregated;
+    }
+
     /**
      * Returns the Record with the highest timestamp available in all logged data for the channel with the given
      * <code>channelId</code>. If there are multiple Records with the same timestamp, results may not be consistent.
@@ -24,17 +24,16 @@ import java.io.File;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.RandomAccessFile;
-import java.util.Arrays;
 import java.util.Calendar;
 import java.util.GregorianCalendar;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Map.Entry;
 
 import org.openmuc.framework.data.Record;
+import org.openmuc.framework.data.RecordCursor;
 import org.openmuc.framework.datalogger.ascii.utils.Const;
 import org.openmuc.framework.datalogger.ascii.utils.LoggerUtils;
 import org.openmuc.framework.datalogger.spi.DataLoggerService;
@@ -57,6 +56,13 @@ public class AsciiLogger implements DataLoggerService {
     private final String loggerDirectory;
     private final HashMap<String, LogChannel> logChannelList = new HashMap<>();
     private boolean isFillUpFiles = true;
+    private long flushInterval = 0;
+    private int flushBufferSize = 65536;
+    /*
+     * Groups and open writers by logging interval and offset, see groupKey().
+     */
+    private final HashMap<Long, LogIntervalContainerGroup> logIntervalGroups = new HashMap<>();
+    private final HashMap<Long, LogFileWriter> logFileWriters = new HashMap<>();
     private static final long MS_PER_DAY = 86400000;
 
     public AsciiLogger() {
@@ -211,6 +217,27 @@ public class AsciiLogger implements DataLoggerService {
     protected void deactivate(ComponentContext context) {
 
         logger.info("Deactivating Ascii Logger");
+        closeWriters();
+    }
+
+    /*
+     * Closes the open files, e.g. before they are filled up or renamed.
+     */
+    private synchronized void closeWriters() {
+        for (LogFileWriter writer : logFileWriters.values()) {
+            writer.close();
+        }
+        logFileWriters.clear();
+        logIntervalGroups.clear();
+    }
+
+    /*
+     * Writes the buffered lines, so that they are read.
+     */
+    private synchronized void flushWriters() {
+        for (LogFileWriter writer : logFileWriters.values()) {
+            writer.flush();
+        }
     }
 
     private void createDirectory(String loggerDirectory) {
@@ -234,6 +261,7 @@ public class AsciiLogger implements DataLoggerService {
     @Override
     public void setChannelsToLog(List<LogChannel> logChannels) {
 
+        closeWriters();
         Calendar calendar = new GregorianCalendar(Locale.getDefault());
         logChannelList.clear();
 
@@ -278,61 +306,59 @@ public class AsciiLogger implements DataLoggerService {
 
     @Override
     public synchronized void log(List<LoggingRecord> loggingRecords, long timestamp) {
-        HashMap<List<Integer>, LogIntervalContainerGroup> logIntervalGroups = new HashMap<>();
+        for (LogIntervalContainerGroup group : logIntervalGroups.values()) {
+            group.clear();
+        }
 
         // add each container to a group with the same logging interval
         for (LoggingRecord container : loggingRecords) {
 
             int logInterval = -1;
             int logTimeOffset = 0;
-            List<Integer> logTimeArray = Arrays.asList(logInterval, logTimeOffset);
-            String channelId = container.getChannelId();
+            LogChannel logChannel = logChannelList.get(container.getChannelId());
 
-            if (logChannelList.containsKey(channelId)) {
-                logInterval = logChannelList.get(channelId).getLoggingInterval();
-                logTimeOffset = logChannelList.get(channelId).getLoggingTimeOffset();
-                logTimeArray = Arrays.asList(logInterval, logTimeOffset);
+            if (logChannel != null) {
+                logInterval = logChannel.getLoggingInterval();
+                logTimeOffset = logChannel.getLoggingTimeOffset();
             }
             else {
                 // TODO there might be a change in the channel config file
             }
 
-            if (logIntervalGroups.containsKey(logTimeArray)) {
-                // add the container to an existing group
-                LogIntervalContainerGroup group = logIntervalGroups.get(logTimeArray);
-                group.add(container);
-            }
-            else {
-                // create a new group and add the container
-                LogIntervalContainerGroup group = new LogIntervalContainerGroup();
-                group.add(container);
-                logIntervalGroups.put(logTimeArray, group);
-            }
-
+            logIntervalGroups.computeIfAbsent(groupKey(logInterval, logTimeOffset),
+                    key -> new LogIntervalContainerGroup()).add(container);
         }
 
         // alle gruppen loggen
-        Iterator<Entry<List<Integer>, LogIntervalContainerGroup>> it = logIntervalGroups.entrySet().iterator();
-        List<Integer> logTimeArray;
-
         Calendar calendar = new GregorianCalendar(Locale.getDefault());
 
-        while (it.hasNext()) {
+        for (Entry<Long, LogIntervalContainerGroup> entry : logIntervalGroups.entrySet()) {
 
-            logTimeArray = it.next().getKey();
-            LogIntervalContainerGroup group = logIntervalGroups.get(logTimeArray);
-            LogFileWriter fileOutHandler = new LogFileWriter(loggerDirectory, isFillUpFiles);
+            LogIntervalContainerGroup group = entry.getValue();
+            if (group.getList().isEmpty()) {
+                continue;
+            }
+            int logInterval = (int) (entry.getKey() >> 32);
+            int logTimeOffset = (int) (long) entry.getKey();
+            LogFileWriter fileOutHandler = logFileWriters.computeIfAbsent(entry.getKey(),
+                    key -> new LogFileWriter(loggerDirectory, isFillUpFiles, flushInterval, flushBufferSize));
 
             calendar.setTimeInMillis(timestamp);
 
-            fileOutHandler.log(group, logTimeArray.get(0), logTimeArray.get(1), calendar, logChannelList);
-            setLastLoggedLineTimeStamp(logTimeArray.get(0), logTimeArray.get(1), calendar.getTimeInMillis());
+            fileOutHandler.write(group, logInterval, logTimeOffset, calendar, logChannelList);
+            setLastLoggedLineTimeStamp(logInterval, logTimeOffset, calendar.getTimeInMillis());
         }
     }
 
+    private static long groupKey(int loggingInterval, int loggingTimeOffset) {
+        return (long) loggingInterval << 32 | loggingTimeOffset & 0xffffffffL;
+    }
+
     @Override
     public List<Record> getRecords(String channelId, long startTime, long endTime) throws IOException {
 
+        flushWriters();
+
         LogChannel logChannel = logChannelList.get(channelId);
         LogFileReader reader = null;
 
@@ -349,6 +375,18 @@ public class AsciiLogger implements DataLoggerService {
         }
     }
 
+    @Override
+    public RecordCursor getRecordCursor(String channelId, long startTime, long endTime) throws IOException {
+
+        flushWriters();
+
+        LogChannel logChannel = logChannelList.get(channelId);
+        if (logChannel == null) {
+            throw new IOException("ChannelID (" + channelId + ") not available. It's not a logging Channel.");
+        }
+        return new LogFileReader(loggerDirectory, logChannel).getCursor(startTime, endTime);
+    }
+
     /**
      * Get the latest logged Record for the given value. This is achieved by searching within a few times the
      * loggingInterval from the current time for any record and then selecting the one with the highest timestamp
@@ -359,6 +397,7 @@ public class AsciiLogger implements DataLoggerService {
      */
     @Override
     public Record getLatestLogRecord(String channelId) throws IOException {
+        flushWriters();
         LogChannel logChannel = logChannelList.get(channelId);
         LogFileReader reader = null;
 
@@ -407,6 +446,14 @@ public class AsciiLogger implements DataLoggerService {
             logger.debug("Property: {} not found in system.properties. Using default value: true", fillUpPropertyStr);
             isFillUpFiles = true;
         }
+
+        String flushIntervalPropertyStr = AsciiLogger.class.getPackage().getName().toLowerCase() + ".flushInterval";
+        flushInterval = Long.getLong(flushIntervalPropertyStr, 0);
+        logger.debug("Property: {} is set to {}", flushIntervalPropertyStr, flushInterval);
+
+        String bufferSizePropertyStr = AsciiLogger.class.getPackage().getName().toLowerCase() + ".flushBufferSize";
+        flushBufferSize = Integer.getInteger(bufferSizePropertyStr, flushBufferSize);
+        logger.debug("Property: {} is set to {}", bufferSizePropertyStr, flushBufferSize);
     }
 
     @Override
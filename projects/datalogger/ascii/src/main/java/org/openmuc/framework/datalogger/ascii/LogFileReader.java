@@ -25,15 +25,20 @@ import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.NoSuchElementException;
 
 import org.openmuc.framework.data.ByteArrayValue;
 import org.openmuc.framework.data.DoubleValue;
 import org.openmuc.framework.data.Flag;
 import org.openmuc.framework.data.Record;
+import org.openmuc.framework.data.RecordCursor;
 import org.openmuc.framework.data.StringValue;
 import org.openmuc.framework.datalogger.ascii.utils.Const;
 import org.openmuc.framework.datalogger.ascii.utils.LoggerUtils;
@@ -114,6 +119,67 @@ public class LogFileReader {
         return recordsMap;
     }
 
+    /**
+     * Get a cursor over the values between start time stamp and end time stamp. The cursor reads one day file at a
+     * time, so only the records of one day are held in memory.
+     *
+     * @param startTimestamp
+     *            start time stamp
+     * @param endTimestamp
+     *            end time stamp
+     * @return cursor over the records of the given time span
+     */
+    public RecordCursor getCursor(long startTimestamp, long endTimestamp) {
+        return new DayFileCursor(startTimestamp, endTimestamp);
+    }
+
+    /**
+     * Cursor reading the day files of the requested time span one after the other.
+     */
+    private class DayFileCursor implements RecordCursor {
+
+        private final long end;
+        private long dayStart;
+        private List<Record> day = new ArrayList<>();
+        private int position = 0;
+
+        private DayFileCursor(long start, long end) {
+            this.dayStart = start;
+            this.end = end;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (position == day.size()) {
+                if (dayStart > end) {
+                    return false;
+                }
+                Calendar calendar = new GregorianCalendar(Locale.getDefault());
+                calendar.setTimeInMillis(dayStart);
+                calendar.add(Calendar.DAY_OF_MONTH, 1);
+                calendar.set(Calendar.HOUR_OF_DAY, 0);
+                calendar.set(Calendar.MINUTE, 0);
+                calendar.set(Calendar.SECOND, 0);
+                calendar.set(Calendar.MILLISECOND, 0);
+                long nextDayStart = calendar.getTimeInMillis();
+
+                List<Record> records = getValues(dayStart, Math.min(end, nextDayStart - 1)).get(ids[0]);
+                day = records != null ? records : new ArrayList<>();
+                position = 0;
+                dayStart = nextDayStart;
+            }
+            return true;
+        }
+
+        @Override
+        public Record next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return day.get(position++);
+        }
+    }
+
     /**
      * Get all records of the given file
      * 
@@ -206,6 +272,11 @@ public class LogFileReader {
             }
             unixTimestampColumn = channelsColumnsMap.get(Const.TIMESTAMP_STRING);
             firstValueLine = raf.readLine();
+            if (firstValueLine == null) {
+                // only the header, the lines are still buffered by the writer
+                raf.close();
+                return recordsMap;
+            }
 
             rowSize = firstValueLine.length() + 1l; // +1 because of "\n"
 
@@ -21,10 +21,10 @@
 package org.openmuc.framework.datalogger.ascii;
 
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
-import java.io.PrintStream;
-import java.io.UnsupportedEncodingException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.Calendar;
 import java.util.GregorianCalendar;
 import java.util.List;
@@ -45,23 +45,59 @@ import org.openmuc.framework.datalogger.spi.LoggingRecord;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Writes the lines of a logging interval group to the daily log files.
+ * <p>
+ * The file of the current day stays open between {@link #write} calls and is changed at the day boundary. Lines are
+ * built in reused buffers and collected in a byte buffer, which is written to the file with one write when the flush
+ * policy is due (see {@link #LogFileWriter(String, boolean, long, int)}), when it is full and when the writer is
+ * flushed or closed. {@link #log} writes one line and closes the file again.
+ */
 public class LogFileWriter {
 
     private static final Logger logger = LoggerFactory.getLogger(LogFileWriter.class);
+    private static final int DEFAULT_BUFFER_SIZE = 65536;
     private final StringBuilder sb = new StringBuilder();
     private final StringBuilder sbValue = new StringBuilder();
     private final String directoryPath;
     private final boolean isFillUpFiles;
+    private final long flushInterval;
+    private ByteBuffer buffer;
     private File actualFile;
+    private FileChannel channel;
+    private int openDay = -1; // year * 1000 + day of year of the open file
+    private int openInterval;
+    private int openOffset;
+    private long lastFlush;
 
     public LogFileWriter(String directoryPath, boolean isFillUpFiles) {
+        this(directoryPath, isFillUpFiles, 0, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Creates a writer with a flush policy.
+     *
+     * @param directoryPath
+     *            directory of the log files
+     * @param isFillUpFiles
+     *            fill gaps since the last logged line with error lines
+     * @param flushInterval
+     *            0 to write the lines of every {@link #write} call to the file, a positive interval in ms to write
+     *            them at the first call after the interval or a negative value to write them only if the buffer is
+     *            full
+     * @param bufferSize
+     *            size of the buffer in bytes
+     */
+    public LogFileWriter(String directoryPath, boolean isFillUpFiles, long flushInterval, int bufferSize) {
 
         this.isFillUpFiles = isFillUpFiles;
         this.directoryPath = directoryPath;
+        this.flushInterval = flushInterval;
+        this.buffer = ByteBuffer.allocate(Math.max(bufferSize, 1024));
     }
 
     /**
-     * Main logger writing controller.
+     * Main logger writing controller. Writes the line and closes the file.
      *
      * @param group
      *            log interval container group
@@ -77,9 +113,29 @@ public class LogFileWriter {
     public void log(LogIntervalContainerGroup group, int loggingInterval, int logTimeOffset, Calendar calendar,
             Map<String, LogChannel> logChannelList) {
 
-        PrintStream out = getStream(group, loggingInterval, logTimeOffset, calendar, logChannelList);
+        write(group, loggingInterval, logTimeOffset, calendar, logChannelList);
+        close();
+    }
+
+    /**
+     * Adds the line of the group to the file of the day of calendar, opening the file if needed, and writes the
+     * buffered lines if the flush policy is due.
+     *
+     * @param group
+     *            log interval container group
+     * @param loggingInterval
+     *            logging interval
+     * @param logTimeOffset
+     *            logging time offset
+     * @param calendar
+     *            calendar of current time
+     * @param logChannelList
+     *            logging channel list
+     */
+    public void write(LogIntervalContainerGroup group, int loggingInterval, int logTimeOffset, Calendar calendar,
+            Map<String, LogChannel> logChannelList) {
 
-        if (out == null) {
+        if (!openFile(group, loggingInterval, logTimeOffset, calendar, logChannelList)) {
             return;
         }
 
@@ -87,19 +143,65 @@ public class LogFileWriter {
 
         // TODO match column with container id, so that they don't get mixed up
 
-        if (isFillUpFiles) {
-            fillUpFile(loggingInterval, logTimeOffset, calendar, logChannelList, logRecordContainer, out);
+        try {
+            if (isFillUpFiles) {
+                fillUpFile(loggingInterval, logTimeOffset, calendar, logChannelList, logRecordContainer);
+            }
+
+            buildLoggingLine(logRecordContainer, logChannelList, calendar, false);
+            append(sb);
+
+            long now = System.currentTimeMillis();
+            if (flushInterval == 0 || flushInterval > 0 && now - lastFlush >= flushInterval) {
+                writeBuffer();
+                lastFlush = now;
+            }
+        } catch (IOException e) {
+            logger.error("Could not write to file " + actualFile.getAbsolutePath(), e);
+            close();
         }
+    }
 
-        String logLine = getLoggingLine(logRecordContainer, logChannelList, calendar, false);
+    /**
+     * Writes the buffered lines to the file.
+     */
+    public void flush() {
+        if (channel == null) {
+            return;
+        }
+        try {
+            writeBuffer();
+        } catch (IOException e) {
+            logger.error("Could not write to file " + actualFile.getAbsolutePath(), e);
+            close();
+        }
+    }
 
-        out.print(logLine); // print because of println makes different newline char on different systems
-        out.flush();
-        out.close();
+    /**
+     * Writes the buffered lines and closes the file.
+     */
+    public void close() {
+        if (channel == null) {
+            return;
+        }
+        try {
+            writeBuffer();
+        } catch (IOException e) {
+            logger.error("Could not write to file " + actualFile.getAbsolutePath(), e);
+        } finally {
+            buffer.clear();
+            try {
+                channel.close();
+            } catch (IOException e) {
+                logger.error("Could not close file " + actualFile.getAbsolutePath());
+            }
+            channel = null;
+            openDay = -1;
+        }
     }
 
     private void fillUpFile(int loggingInterval, int logTimeOffset, Calendar calendar,
-            Map<String, LogChannel> logChannelList, List<LoggingRecord> loggingRecords, PrintStream out) {
+            Map<String, LogChannel> logChannelList, List<LoggingRecord> loggingRecords) throws IOException {
 
         Long lastLoglineTimestamp = AsciiLogger.getLastLoggedLineTimeStamp(loggingInterval, logTimeOffset);
 
@@ -118,14 +220,18 @@ public class LogFileWriter {
 
                     for (int i = 1; i < numOfErrorLines; ++i) {
                         errCalendar.setTimeInMillis(lastLoglineTimestamp + ((long) loggingInterval * i));
-                        out.print(getLoggingLine(loggingRecords, logChannelList, errCalendar, true));
+                        buildLoggingLine(loggingRecords, logChannelList, errCalendar, true);
+                        append(sb);
                     }
                 }
             }
         }
     }
 
-    private String getLoggingLine(List<LoggingRecord> logRecordContainer, Map<String, LogChannel> logChannelList,
+    /*
+     * Builds the line in sb.
+     */
+    private void buildLoggingLine(List<LoggingRecord> logRecordContainer, Map<String, LogChannel> logChannelList,
             Calendar calendar, boolean isError32) {
         sb.setLength(0);
 
@@ -256,7 +362,34 @@ public class LogFileWriter {
             }
         }
         sb.append(Const.LINESEPARATOR); // All systems with the same newline charter
-        return sb.toString();
+    }
+
+    /*
+     * Adds the ASCII characters to the buffer, writing the buffer first if they do not fit.
+     */
+    private void append(CharSequence chars) throws IOException {
+        int length = chars.length();
+        if (length > buffer.remaining()) {
+            writeBuffer();
+            if (length > buffer.capacity()) {
+                buffer = ByteBuffer.allocate(length);
+            }
+        }
+        for (int i = 0; i < length; i++) {
+            char c = chars.charAt(i);
+            buffer.put(c < 0x80 ? (byte) c : (byte) '?');
+        }
+    }
+
+    private void writeBuffer() throws IOException {
+        if (buffer.position() == 0) {
+            return;
+        }
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
     }
 
     /**
@@ -291,41 +424,45 @@ public class LogFileWriter {
     }
 
     /**
-     * Returns the PrintStream for logging.
+     * Opens the file for logging if the open file is not the one of the day, interval and offset. A new file starts
+     * with the header.
      *
-     * @param group
-     * @param loggingInterval
-     * @param date
-     * @param logChannelList
-     * @return the PrintStream for logging.
+     * @return true if the file is open
      */
-    private PrintStream getStream(LogIntervalContainerGroup group, int loggingInterval, int logTimeOffset,
+    private boolean openFile(LogIntervalContainerGroup group, int loggingInterval, int logTimeOffset,
             Calendar calendar, Map<String, LogChannel> logChannelList) {
 
-        String filename = LoggerUtils.buildFilename(loggingInterval, logTimeOffset, calendar);
+        int day = calendar.get(Calendar.YEAR) * 1000 + calendar.get(Calendar.DAY_OF_YEAR);
+        if (channel != null && day == openDay && loggingInterval == openInterval && logTimeOffset == openOffset) {
+            return true;
+        }
+        close();
 
+        String filename = LoggerUtils.buildFilename(loggingInterval, logTimeOffset, calendar);
         File file = new File(directoryPath + filename);
         actualFile = file;
-        PrintStream out = null;
 
         try {
-            if (file.exists()) {
-                out = new PrintStream(new FileOutputStream(file, true), false, Const.CHAR_SET.toString());
-            }
-            else {
-                out = new PrintStream(new FileOutputStream(file, true), false, Const.CHAR_SET.toString());
+            boolean isNewFile = !file.exists();
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.APPEND);
+            if (isNewFile) {
                 String headerString = LogFileHeader.getIESDataFormatHeaderString(group, file.getName(), loggingInterval,
                         logChannelList);
-
-                out.print(headerString);
-                out.flush();
+                append(headerString);
+                // written at once, the header is read while the following lines are written
+                writeBuffer();
             }
-        } catch (UnsupportedEncodingException e) {
-            logger.error("", e);
-        } catch (FileNotFoundException e) {
+        } catch (IOException e) {
             logger.error("", e);
+            close();
+            return false;
         }
-        return out;
+        openDay = day;
+        openInterval = loggingInterval;
+        openOffset = logTimeOffset;
+        lastFlush = System.currentTimeMillis();
+        return true;
     }
 
     /**
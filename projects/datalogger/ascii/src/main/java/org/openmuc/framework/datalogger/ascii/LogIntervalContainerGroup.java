@@ -39,6 +39,11 @@ public class LogIntervalContainerGroup {
         containers.add(container);
     }
 
+    public void clear() {
+
+        containers.clear();
+    }
+
     public List<LoggingRecord> getList() {
 
         return containers;
@@ -0,0 +1,215 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.framework.datalogger.ascii.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.openmuc.framework.data.DoubleValue;
+import org.openmuc.framework.data.Record;
+import org.openmuc.framework.data.ValueType;
+import org.openmuc.framework.datalogger.ascii.AsciiLogger;
+import org.openmuc.framework.datalogger.ascii.LogFileReader;
+import org.openmuc.framework.datalogger.ascii.utils.LoggerUtils;
+import org.openmuc.framework.datalogger.spi.LogChannel;
+import org.openmuc.framework.datalogger.spi.LoggingRecord;
+import org.osgi.service.component.ComponentContext;
+
+public class AsciiLoggerTest {
+
+    private static final String PROPERTY_PREFIX = AsciiLogger.class.getPackage().getName().toLowerCase();
+    private static final String FLUSH_INTERVAL = PROPERTY_PREFIX + ".flushInterval";
+    private static final String FLUSH_BUFFER_SIZE = PROPERTY_PREFIX + ".flushBufferSize";
+    private static final String FILL_UP_FILES = PROPERTY_PREFIX + ".fillUpFiles";
+
+    private static int loggingInterval = 60000; // ms;
+    private static String dateFormat = "yyyyMMdd HH:mm:ss";
+    private static String fileDate = "20860606";
+    private static String ch01 = "ASCII_LOGGER";
+    private static LogChannel channel = new LogChannelTestImpl(ch01, "", "dummy description", "dummy",
+            ValueType.DOUBLE, 0.0, 0.0, false, 1000, 0, "", loggingInterval, 0, false, false);
+
+    private ComponentAsciiLogger asciiLogger;
+    private Calendar calendar;
+    private File file;
+
+    /*
+     * Opens the protected component methods to the test.
+     */
+    private static class ComponentAsciiLogger extends AsciiLogger {
+
+        ComponentAsciiLogger() {
+            super(TestUtils.TESTFOLDERPATH);
+        }
+
+        @Override
+        protected void activate(ComponentContext context) {
+            super.activate(context);
+        }
+
+        @Override
+        protected void deactivate(ComponentContext context) {
+            super.deactivate(context);
+        }
+    }
+
+    @BeforeEach
+    public void setup() {
+
+        TestUtils.createTestFolder();
+        calendar = TestUtils.stringToDate(dateFormat, fileDate + " 08:00:00");
+        file = new File(TestUtils.TESTFOLDERPATH + LoggerUtils.buildFilename(loggingInterval, 0, calendar));
+        file.delete();
+
+        // the files of the test day are neither filled up nor renamed by setChannelsToLog
+        System.setProperty(FILL_UP_FILES, "false");
+    }
+
+    @AfterEach
+    public void clearProperties() {
+
+        if (asciiLogger != null) {
+            asciiLogger.deactivate(null);
+        }
+        System.clearProperty(FLUSH_INTERVAL);
+        System.clearProperty(FLUSH_BUFFER_SIZE);
+        System.clearProperty(FILL_UP_FILES);
+    }
+
+    @AfterAll
+    public static void tearDown() {
+
+        System.out.println("tearing down");
+        TestUtils.deleteTestFolder();
+    }
+
+    @Test
+    public void tc400_default_flush_interval_writes_every_log() {
+
+        System.out.println("### Begin test tc400_default_flush_interval_writes_every_log");
+
+        activate();
+        for (int i = 0; i < 3; i++) {
+            log(i);
+            assertEquals(i + 1, countRecords());
+        }
+    }
+
+    @Test
+    public void tc401_buffered_lines_flushed_before_read() throws IOException {
+
+        System.out.println("### Begin test tc401_buffered_lines_flushed_before_read");
+
+        System.setProperty(FLUSH_INTERVAL, "-1");
+        activate();
+        long start = calendar.getTimeInMillis();
+        for (int i = 0; i < 3; i++) {
+            log(i);
+        }
+        assertEquals(0, countRecords());
+
+        List<Record> records = asciiLogger.getRecords(ch01, start, calendar.getTimeInMillis());
+        assertEquals(3, records.size());
+        assertEquals(2.0, records.get(2).getValue().asDouble());
+        assertEquals(3, countRecords());
+
+        log(3);
+        assertEquals(3, countRecords());
+        assertEquals(3.0, asciiLogger.getLatestLogRecord(ch01).getValue().asDouble());
+        assertEquals(4, countRecords());
+    }
+
+    @Test
+    public void tc402_flush_buffer_size_property() {
+
+        System.out.println("### Begin test tc402_flush_buffer_size_property");
+
+        System.setProperty(FLUSH_INTERVAL, "-1");
+        System.setProperty(FLUSH_BUFFER_SIZE, "1024");
+        activate();
+
+        // the lines are written when the next line does not fit into the buffer
+        int logged = 0;
+        while (countRecords() == 0 && logged < 1024) {
+            log(logged++);
+        }
+        assertTrue(logged > 2);
+        assertTrue(logged < 1024 / 10);
+    }
+
+    @Test
+    public void tc403_writers_closed_on_set_channels_to_log() {
+
+        System.out.println("### Begin test tc403_writers_closed_on_set_channels_to_log");
+
+        System.setProperty(FLUSH_INTERVAL, "3600000");
+        activate();
+        log(0);
+        log(1);
+        assertEquals(0, countRecords());
+
+        asciiLogger.setChannelsToLog(Collections.singletonList(channel));
+        assertEquals(2, countRecords());
+
+        // a new writer appends to the file after the reconfiguration
+        log(2);
+        assertEquals(2, countRecords());
+        asciiLogger.deactivate(null);
+        asciiLogger = null;
+        assertEquals(3, countRecords());
+    }
+
+    private void activate() {
+
+        asciiLogger = new ComponentAsciiLogger();
+        asciiLogger.activate(null);
+        asciiLogger.setChannelsToLog(Collections.singletonList(channel));
+    }
+
+    private void log(int i) {
+
+        long timestamp = calendar.getTimeInMillis();
+        asciiLogger.log(Collections.singletonList(new LoggingRecord(ch01, new Record(new DoubleValue(i), timestamp))),
+                timestamp);
+        calendar.add(Calendar.MILLISECOND, loggingInterval);
+    }
+
+    /*
+     * Records in the file, read without flushing the writers of the logger.
+     */
+    private int countRecords() {
+
+        if (!file.exists()) {
+            return 0;
+        }
+        return new LogFileReader(TestUtils.TESTFOLDERPATH, channel).getValues(file.getPath()).get(ch01).size();
+    }
+}
@@ -25,6 +25,7 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.Calendar;
 import java.util.HashMap;
 import java.util.LinkedList;
@@ -36,6 +37,7 @@ import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 import org.openmuc.framework.data.DoubleValue;
 import org.openmuc.framework.data.Record;
+import org.openmuc.framework.data.RecordCursor;
 import org.openmuc.framework.data.ValueType;
 import org.openmuc.framework.datalogger.ascii.AsciiLogger;
 import org.openmuc.framework.datalogger.ascii.LogFileReader;
@@ -159,6 +161,29 @@ public class LogFileReaderTestMultipleFiles {
         assertTrue(result);
     }
 
+    @Test
+    public void tc013_cursor_with_three_files() throws IOException {
+
+        long t1 = TestUtils.stringToDate(dateFormat, fileDate0 + " 23:00:00").getTimeInMillis();
+        long t2 = TestUtils.stringToDate(dateFormat, fileDate2 + " 00:59:" + (60 - loggingInterval / 1000))
+                .getTimeInMillis();
+
+        LogFileReader fr = new LogFileReader(TestUtils.TESTFOLDERPATH, channelTestImpl);
+        List<Record> expected = fr.getValues(t1, t2).get(channelTestImpl.getId());
+
+        List<Record> actual = new LinkedList<>();
+        try (RecordCursor cursor = new LogFileReader(TestUtils.TESTFOLDERPATH, channelTestImpl).getCursor(t1, t2)) {
+            while (cursor.hasNext()) {
+                actual.add(cursor.next());
+            }
+        }
+
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getTimestamp(), actual.get(i).getTimestamp());
+        }
+    }
+
     @Test
     public void tc010_test_getValues() {
         LogFileReader fr = new LogFileReader(TestUtils.TESTFOLDERPATH, channelTestImpl);
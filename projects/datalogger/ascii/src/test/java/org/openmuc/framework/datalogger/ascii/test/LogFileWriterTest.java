@@ -20,6 +20,8 @@
  */
 package org.openmuc.framework.datalogger.ascii.test;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.File;
@@ -47,6 +49,7 @@ import org.openmuc.framework.datalogger.ascii.LogFileReader;
 import org.openmuc.framework.datalogger.ascii.LogFileWriter;
 import org.openmuc.framework.datalogger.ascii.LogIntervalContainerGroup;
 import org.openmuc.framework.datalogger.ascii.utils.Const;
+import org.openmuc.framework.datalogger.ascii.utils.LoggerUtils;
 import org.openmuc.framework.datalogger.spi.LogChannel;
 import org.openmuc.framework.datalogger.spi.LoggingRecord;
 
@@ -83,6 +86,13 @@ public class LogFileWriterTest {
     private static Calendar calendar = TestUtils.stringToDate(dateFormat, fileDate1 + time);
     LogFileWriter lfw = new LogFileWriter(TestUtils.TESTFOLDERPATH, true);
 
+    // open writers with a flush policy, one minute channel logged into the files of fileDate3 and fileDate4
+    private static int flushLoggingInterval = 60000; // ms;
+    private static String fileDate3 = "20870303";
+    private static String fileDate4 = "20870304";
+    private static String flushDateFormat = "yyyyMMdd HH:mm:ss";
+    private static String ch10 = "FLUSH";
+
     @BeforeAll
     public static void setup() {
 
@@ -361,4 +371,150 @@ public class LogFileWriterTest {
         assertTrue(assertT);
     }
 
+    @Test
+    public void tc302_open_file_reused_across_writes() {
+
+        System.out.println("### Begin test tc302_open_file_reused_across_writes");
+
+        HashMap<String, LogChannel> channels = flushChannelList();
+        Calendar calendar = TestUtils.stringToDate(flushDateFormat, fileDate3 + " 10:00:00");
+        File file = flushFile(calendar);
+        LogFileWriter writer = new LogFileWriter(TestUtils.TESTFOLDERPATH, false, 0, 1024);
+
+        // flush interval 0: every line is in the file after its write
+        for (int i = 0; i < 3; i++) {
+            writer.write(getFlushGroup(calendar, i), flushLoggingInterval, 0, calendar, channels);
+            assertEquals(i + 1, countRecords(file));
+            calendar.add(Calendar.MILLISECOND, flushLoggingInterval);
+        }
+
+        // the open file is written on, a deleted file is not created again
+        assertTrue(file.delete());
+        writer.write(getFlushGroup(calendar, 3), flushLoggingInterval, 0, calendar, channels);
+        assertFalse(file.exists());
+
+        writer.close();
+        writer.write(getFlushGroup(calendar, 4), flushLoggingInterval, 0, calendar, channels);
+        assertEquals(1, countRecords(file));
+        writer.close();
+    }
+
+    @Test
+    public void tc303_day_change_closes_file() {
+
+        System.out.println("### Begin test tc303_day_change_closes_file");
+
+        HashMap<String, LogChannel> channels = flushChannelList();
+        Calendar calendar = TestUtils.stringToDate(flushDateFormat, fileDate3 + " 23:58:00");
+        File file3 = flushFile(calendar);
+        LogFileWriter writer = new LogFileWriter(TestUtils.TESTFOLDERPATH, false, -1, 1024);
+
+        writer.write(getFlushGroup(calendar, 0), flushLoggingInterval, 0, calendar, channels);
+        calendar.add(Calendar.MILLISECOND, flushLoggingInterval);
+        writer.write(getFlushGroup(calendar, 1), flushLoggingInterval, 0, calendar, channels);
+        assertEquals(0, countRecords(file3));
+
+        // the first line of the next day closes the file of the day before, writing its buffered lines
+        calendar.add(Calendar.MILLISECOND, flushLoggingInterval);
+        File file4 = flushFile(calendar);
+        writer.write(getFlushGroup(calendar, 2), flushLoggingInterval, 0, calendar, channels);
+        assertEquals(fileDate4 + "_" + flushLoggingInterval + ext, file4.getName());
+        assertEquals(2, countRecords(file3));
+        assertEquals(0, countRecords(file4));
+
+        writer.close();
+        assertEquals(1, countRecords(file4));
+    }
+
+    @Test
+    public void tc304_positive_flush_interval_writes_after_interval() throws InterruptedException {
+
+        System.out.println("### Begin test tc304_positive_flush_interval_writes_after_interval");
+
+        HashMap<String, LogChannel> channels = flushChannelList();
+        Calendar calendar = TestUtils.stringToDate(flushDateFormat, fileDate3 + " 12:00:00");
+        File file = flushFile(calendar);
+
+        // interval not reached, the lines are written by flush()
+        LogFileWriter writer = new LogFileWriter(TestUtils.TESTFOLDERPATH, false, 3600000, 1024);
+        for (int i = 0; i < 2; i++) {
+            writer.write(getFlushGroup(calendar, i), flushLoggingInterval, 0, calendar, channels);
+            calendar.add(Calendar.MILLISECOND, flushLoggingInterval);
+        }
+        assertEquals(0, countRecords(file));
+        writer.flush();
+        assertEquals(2, countRecords(file));
+        writer.close();
+
+        // interval reached, the next write writes all buffered lines
+        writer = new LogFileWriter(TestUtils.TESTFOLDERPATH, false, 1, 1024);
+        writer.write(getFlushGroup(calendar, 2), flushLoggingInterval, 0, calendar, channels);
+        calendar.add(Calendar.MILLISECOND, flushLoggingInterval);
+        Thread.sleep(10);
+        writer.write(getFlushGroup(calendar, 3), flushLoggingInterval, 0, calendar, channels);
+        assertEquals(4, countRecords(file));
+        writer.close();
+    }
+
+    @Test
+    public void tc305_negative_flush_interval_writes_full_buffer() {
+
+        System.out.println("### Begin test tc305_negative_flush_interval_writes_full_buffer");
+
+        HashMap<String, LogChannel> channels = flushChannelList();
+        Calendar calendar = TestUtils.stringToDate(flushDateFormat, fileDate3 + " 18:00:00");
+        File file = flushFile(calendar);
+        LogFileWriter writer = new LogFileWriter(TestUtils.TESTFOLDERPATH, false, -1, 1024);
+
+        // the lines are written when the next line does not fit into the buffer
+        int written = 0;
+        while (countRecords(file) == 0 && written < 1024) {
+            writer.write(getFlushGroup(calendar, written), flushLoggingInterval, 0, calendar, channels);
+            calendar.add(Calendar.MILLISECOND, flushLoggingInterval);
+            written++;
+        }
+        assertTrue(written > 2);
+        long bufferedLength = file.length();
+
+        writer.flush();
+        assertEquals(written, countRecords(file));
+        long lineLength = file.length() - bufferedLength;
+        assertTrue((written - 1) * lineLength <= 1024 && written * lineLength > 1024);
+        writer.close();
+    }
+
+    private static HashMap<String, LogChannel> flushChannelList() {
+
+        HashMap<String, LogChannel> channels = new HashMap<>();
+        channels.put(ch10, new LogChannelTestImpl(ch10, "", "dummy description", dummy, ValueType.FLOAT, 0.0, 0.0,
+                false, 1000, 0, "", flushLoggingInterval, 0, false, false));
+        return channels;
+    }
+
+    private static LogIntervalContainerGroup getFlushGroup(Calendar calendar, int i) {
+
+        LogIntervalContainerGroup group = new LogIntervalContainerGroup();
+        group.add(new LoggingRecord(ch10, new Record(new FloatValue(i), calendar.getTimeInMillis())));
+        return group;
+    }
+
+    private static File flushFile(Calendar calendar) {
+
+        File file = new File(TestUtils.TESTFOLDERPATH + LoggerUtils.buildFilename(flushLoggingInterval, 0, calendar));
+        file.delete();
+        return file;
+    }
+
+    /*
+     * Records in the file, read without flushing the writer.
+     */
+    private static int countRecords(File file) {
+
+        if (!file.exists()) {
+            return 0;
+        }
+        LogFileReader reader = new LogFileReader(TestUtils.TESTFOLDERPATH, flushChannelList().get(ch10));
+        return reader.getValues(file.getPath()).get(ch10).size();
+    }
+
 }
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.datalogger.slotsdb;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Summary of the values (NaN slots excluded) of a block of slots or of a query bucket: min, max, sum, count, first and
+ * last value.<br>
+ * <br>
+ * Stored as {@link #SIZE} bytes: min, max, sum, first, last (double) and count (int).
+ */
+final class BlockSummary {
+
+    static final int SIZE = 44;
+
+    private double min;
+    private double max;
+    private double sum;
+    private double first;
+    private double last;
+    private int count;
+
+    BlockSummary() {
+        reset();
+    }
+
+    void reset() {
+        min = Double.POSITIVE_INFINITY;
+        max = Double.NEGATIVE_INFINITY;
+        sum = 0;
+        first = Double.NaN;
+        last = Double.NaN;
+        count = 0;
+    }
+
+    void add(double value) {
+        if (Double.isNaN(value)) {
+            return;
+        }
+        if (count == 0) {
+            first = value;
+        }
+        last = value;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+        sum += value;
+        count++;
+    }
+
+    /*
+     * Adds a stored summary of the following block.
+     */
+    void merge(ByteBuffer buffer, int position) {
+        int otherCount = buffer.getInt(position + 40);
+        if (otherCount == 0) {
+            return;
+        }
+        if (count == 0) {
+            first = buffer.getDouble(position + 24);
+        }
+        last = buffer.getDouble(position + 32);
+        min = Math.min(min, buffer.getDouble(position));
+        max = Math.max(max, buffer.getDouble(position + 8));
+        sum += buffer.getDouble(position + 16);
+        count += otherCount;
+    }
+
+    void write(ByteBuffer buffer, int position) {
+        buffer.putDouble(position, min);
+        buffer.putDouble(position + 8, max);
+        buffer.putDouble(position + 16, sum);
+        buffer.putDouble(position + 24, first);
+        buffer.putDouble(position + 32, last);
+        buffer.putInt(position + 40, count);
+    }
+
+    double getMin() {
+        return min;
+    }
+
+    double getMax() {
+        return max;
+    }
+
+    double getMean() {
+        return sum / count;
+    }
+
+    double getFirst() {
+        return first;
+    }
+
+    double getLast() {
+        return last;
+    }
+
+    int getCount() {
+        return count;
+    }
+}
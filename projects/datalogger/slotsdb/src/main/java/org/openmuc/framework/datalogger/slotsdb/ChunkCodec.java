@@ -0,0 +1,279 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.datalogger.slotsdb;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Encoding of the slots of a compressed chunk.<br>
+ * <br>
+ * Values (XOR compression as in Facebook's Gorilla): the first value is stored with 64 bits. Every following value
+ * is XORed with its predecessor:<br>
+ * - '0': same value as the predecessor (also runs of NaN padding)<br>
+ * - '10': the meaningful bits of the XOR fit into the window of leading and trailing zeros of the previous XOR,
+ * followed by the bits of this window<br>
+ * - '11': 5 bits number of leading zeros, 6 bits number of meaningful bits (0 for 64), followed by the meaningful
+ * bits<br>
+ * <br>
+ * Flags (run-length encoding): pairs of flag code (1 byte) and run length (unsigned varint).
+ */
+final class ChunkCodec {
+
+    private ChunkCodec() {
+    }
+
+    /**
+     * Encodes count values starting at offset into out (see {@link Buffer#array()}) and returns the number of bytes
+     * written.
+     */
+    static int encodeValues(double[] values, int offset, int count, Buffer out) {
+        out.reset();
+        if (count == 0) {
+            return 0;
+        }
+        long previous = Double.doubleToRawLongBits(values[offset]);
+        out.writeBits(previous, 64);
+        int previousLeading = -1;
+        int previousTrailing = 0;
+
+        for (int i = offset + 1; i < offset + count; i++) {
+            long bits = Double.doubleToRawLongBits(values[i]);
+            long xor = bits ^ previous;
+            previous = bits;
+            if (xor == 0) {
+                out.writeBit(false);
+                continue;
+            }
+            out.writeBit(true);
+            int leading = Math.min(Long.numberOfLeadingZeros(xor), 31);
+            int trailing = Long.numberOfTrailingZeros(xor);
+            if (previousLeading >= 0 && leading >= previousLeading && trailing >= previousTrailing) {
+                out.writeBit(false);
+                out.writeBits(xor >>> previousTrailing, 64 - previousLeading - previousTrailing);
+            }
+            else {
+                int meaningful = 64 - leading - trailing;
+                out.writeBit(true);
+                out.writeBits(leading, 5);
+                out.writeBits(meaningful & 0x3f, 6); // 64 is written as 0
+                out.writeBits(xor >>> trailing, meaningful);
+                previousLeading = leading;
+                previousTrailing = trailing;
+            }
+        }
+        return out.length();
+    }
+
+    /**
+     * Decodes count values written by {@link #encodeValues(double[], int, int, Buffer)}.
+     */
+    static void decodeValues(byte[] in, int inOffset, int inLength, double[] values, int offset, int count)
+            throws IOException {
+        if (count == 0) {
+            return;
+        }
+        BitReader reader = new BitReader(in, inOffset, inLength);
+        long previous = reader.readBits(64);
+        values[offset] = Double.longBitsToDouble(previous);
+        int leading = 0;
+        int trailing = 0;
+
+        for (int i = offset + 1; i < offset + count; i++) {
+            if (reader.readBit()) {
+                if (reader.readBit()) {
+                    leading = (int) reader.readBits(5);
+                    int meaningful = (int) reader.readBits(6);
+                    if (meaningful == 0) {
+                        meaningful = 64;
+                    }
+                    trailing = 64 - leading - meaningful;
+                }
+                previous ^= reader.readBits(64 - leading - trailing) << trailing;
+            }
+            values[i] = Double.longBitsToDouble(previous);
+        }
+    }
+
+    /**
+     * Encodes count flag codes starting at offset into out and returns the number of bytes written.
+     */
+    static int encodeFlags(byte[] flags, int offset, int count, Buffer out) {
+        out.reset();
+        int i = offset;
+        int end = offset + count;
+        while (i < end) {
+            byte flag = flags[i];
+            int run = 1;
+            while (i + run < end && flags[i + run] == flag) {
+                run++;
+            }
+            out.writeByte(flag);
+            int remaining = run;
+            while ((remaining & ~0x7f) != 0) {
+                out.writeByte((remaining & 0x7f) | 0x80);
+                remaining >>>= 7;
+            }
+            out.writeByte(remaining);
+            i += run;
+        }
+        return out.length();
+    }
+
+    /**
+     * Decodes count flag codes written by {@link #encodeFlags(byte[], int, int, Buffer)}.
+     */
+    static void decodeFlags(byte[] in, int inOffset, int inLength, byte[] flags, int offset, int count)
+            throws IOException {
+        int position = inOffset;
+        int inEnd = inOffset + inLength;
+        int i = offset;
+        int end = offset + count;
+        while (i < end) {
+            if (position >= inEnd) {
+                throw new IOException("Flags of compressed chunk truncated");
+            }
+            byte flag = in[position++];
+            int run = 0;
+            int shift = 0;
+            int b;
+            do {
+                if (position >= inEnd || shift > 28) {
+                    throw new IOException("Flags of compressed chunk truncated");
+                }
+                b = in[position++] & 0xff;
+                run |= (b & 0x7f) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            if (run <= 0 || run > end - i) {
+                throw new IOException("Invalid flag run in compressed chunk");
+            }
+            Arrays.fill(flags, i, i + run, flag);
+            i += run;
+        }
+    }
+
+    /**
+     * Growable byte array written bitwise (values) or bytewise (flags), reused between chunks.
+     */
+    static final class Buffer {
+
+        private byte[] bytes = new byte[1024];
+        private int bytePosition;
+        private int bitPosition; // bits used in the last byte, 0 if it has not been started
+
+        void reset() {
+            bytePosition = 0;
+            bitPosition = 0;
+        }
+
+        byte[] array() {
+            return bytes;
+        }
+
+        int length() {
+            return bitPosition == 0 ? bytePosition : bytePosition + 1;
+        }
+
+        private void ensure(int length) {
+            if (length > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(length, bytes.length * 2));
+            }
+        }
+
+        void writeByte(int b) {
+            ensure(bytePosition + 1);
+            bytes[bytePosition++] = (byte) b;
+        }
+
+        void writeBit(boolean bit) {
+            ensure(bytePosition + 1);
+            if (bitPosition == 0) {
+                bytes[bytePosition] = 0;
+            }
+            if (bit) {
+                bytes[bytePosition] |= (byte) (0x80 >>> bitPosition);
+            }
+            if (++bitPosition == 8) {
+                bitPosition = 0;
+                bytePosition++;
+            }
+        }
+
+        void writeBits(long value, int count) {
+            ensure(bytePosition + 9);
+            while (count > 0) {
+                if (bitPosition == 0) {
+                    bytes[bytePosition] = 0;
+                }
+                int free = 8 - bitPosition;
+                int n = Math.min(free, count);
+                int bits = (int) (value >>> (count - n)) & ((1 << n) - 1);
+                bytes[bytePosition] |= (byte) (bits << (free - n));
+                count -= n;
+                bitPosition += n;
+                if (bitPosition == 8) {
+                    bitPosition = 0;
+                    bytePosition++;
+                }
+            }
+        }
+    }
+
+    private static final class BitReader {
+
+        private final byte[] bytes;
+        private final int end;
+        private int bytePosition;
+        private int bitPosition;
+
+        private BitReader(byte[] bytes, int offset, int length) {
+            this.bytes = bytes;
+            this.bytePosition = offset;
+            this.end = offset + length;
+        }
+
+        private boolean readBit() throws IOException {
+            return readBits(1) != 0;
+        }
+
+        private long readBits(int count) throws IOException {
+            long value = 0;
+            while (count > 0) {
+                if (bytePosition >= end) {
+                    throw new IOException("Values of compressed chunk truncated");
+                }
+                int available = 8 - bitPosition;
+                int n = Math.min(available, count);
+                int bits = ((bytes[bytePosition] & 0xff) >>> (available - n)) & ((1 << n) - 1);
+                value = (value << n) | bits;
+                count -= n;
+                bitPosition += n;
+                if (bitPosition == 8) {
+                    bitPosition = 0;
+                    bytePosition++;
+                }
+            }
+            return value;
+        }
+    }
+}
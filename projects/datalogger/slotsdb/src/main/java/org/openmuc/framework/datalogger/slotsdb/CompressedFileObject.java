@@ -0,0 +1,632 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.datalogger.slotsdb;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Vector;
+
+import org.openmuc.framework.data.DoubleValue;
+import org.openmuc.framework.data.Flag;
+import org.openmuc.framework.data.Record;
+
+/**
+ * Slot file version 2: the slots are stored in compressed chunks of {@link #CHUNK_SLOTS} slots.<br>
+ * <br>
+ * File layout:<br>
+ * - header of 24 bytes: magic "SLZ2" (int), slots per chunk (int), start timestamp (long), storage period (long)<br>
+ * - chunks: header of 60 bytes (first slot, slot count, value bytes, flag bytes (int) and the {@link BlockSummary} of
+ * the chunk) followed by the values and the flags encoded by {@link ChunkCodec}<br>
+ * <br>
+ * Timestamps are not stored, the slot of a value is given by the first slot of its chunk and its position. The chunk
+ * headers form the time index: the chunk of a timestamp is found without decoding, and aggregated queries take the
+ * chunks inside a bucket from their summaries.<br>
+ * <br>
+ * The last, incomplete chunk is kept in memory while appending. Its slots are also appended uncompressed to a
+ * journal next to the file (first slot (int), then value (double) and flag (byte) per slot) at the end of every
+ * {@link #append(double, long, byte)}, so a crash loses no more slots than with version 1 files, and
+ * {@link #flush()} only forces the new slots to disk. A complete chunk is encoded, written at the end of the file and
+ * forced to disk before the journal is restarted for the next chunk. {@link #close()} writes the incomplete chunk
+ * encoded and deletes the journal, the chunk is moved back to the journal when appending starts again. A chunk cut
+ * off by a crash is dropped when the file is opened again, its slots are read from the journal. Opening a file only
+ * reads it: a complete chunk found in the journal is kept in memory and written by the first append, which runs under
+ * the folder lock of the file.<br>
+ * <br>
+ * All methods are synchronized: appends and reads of the same file are serialized, so a read sees the values of the
+ * incomplete chunk before they are written to disk.
+ */
+final class CompressedFileObject extends FileObject {
+
+    private static final int MAGIC = 0x534c5a32; // "SLZ2"
+    static final int HEADER_SIZE = 24;
+    private static final int CHUNK_HEADER_SIZE = 16 + BlockSummary.SIZE;
+    private static final int JOURNAL_HEADER_SIZE = 4;
+    private static final int JOURNAL_SLOT_SIZE = 9;
+    /*
+     * Slots per chunk.
+     */
+    static final int CHUNK_SLOTS = 1024;
+
+    private RandomAccessFile raf; // open while appending
+    private final File journalFile;
+    private RandomAccessFile journal; // open while appending
+    private long journalLength = 0;
+    /*
+     * Journal entries of the slots put by the current append, written at its end.
+     */
+    private ByteBuffer journalEntries;
+    private RandomAccessFile reader; // during a read only, raf or a file opened for the read
+
+    /*
+     * Time index of the complete chunks: file offset and summary of each chunk.
+     */
+    private long[] chunkOffsets = new long[16];
+    private ByteBuffer chunkSummaries = ByteBuffer.allocate(16 * BlockSummary.SIZE);
+    private int chunkCount = 0;
+
+    /*
+     * Incomplete last chunk, in the journal or, if openInFile, encoded at openOffset. End of the valid data in the
+     * file.
+     */
+    private double[] openValues;
+    private byte[] openFlags;
+    private int openCount = 0;
+    private boolean openInFile = false;
+    private final BlockSummary openSummary = new BlockSummary();
+    private long openOffset = HEADER_SIZE;
+    private long validEnd = 0;
+
+    /*
+     * The last decoded complete chunk.
+     */
+    private int cachedChunk = -1;
+    private double[] cachedValues;
+    private byte[] cachedFlags;
+    private byte[] payload = new byte[0];
+    /*
+     * Slots of the chunk selected by loadChunk: the cached or the open chunk.
+     */
+    private double[] chunkValues;
+    private byte[] chunkFlags;
+
+    private ChunkCodec.Buffer valueBuffer;
+    private ChunkCodec.Buffer flagBuffer;
+
+    CompressedFileObject(File file) throws IOException {
+        super(file);
+        String name = file.getName();
+        if (name.endsWith(SlotsDb.COMPRESSED_FILE_EXTENSION)) {
+            name = name.substring(0, name.length() - SlotsDb.COMPRESSED_FILE_EXTENSION.length());
+        }
+        journalFile = new File(file.getParentFile(), name + SlotsDb.JOURNAL_FILE_EXTENSION);
+        if (dataFile.exists() && dataFile.length() >= HEADER_SIZE) {
+            try (RandomAccessFile in = new RandomAccessFile(dataFile, "r")) {
+                if (in.readInt() != MAGIC || in.readInt() != CHUNK_SLOTS) {
+                    throw new IOException("Not a compressed slot file: " + dataFile);
+                }
+                startTimeStamp = in.readLong();
+                storagePeriod = in.readLong();
+                loadChunks(in);
+            }
+            if (!openInFile) {
+                loadJournal();
+            }
+        }
+        journalLength = journalFile.length();
+        startAccounting();
+    }
+
+    /*
+     * Reads the chunk headers into the time index. A chunk that is incomplete is loaded as open chunk, a chunk cut
+     * off by a crash and everything behind it is ignored and overwritten by the next append.
+     */
+    private void loadChunks(RandomAccessFile in) throws IOException {
+        long fileLength = in.length();
+        long position = HEADER_SIZE;
+        byte[] header = new byte[CHUNK_HEADER_SIZE];
+        while (position + CHUNK_HEADER_SIZE <= fileLength) {
+            in.seek(position);
+            in.readFully(header);
+            ByteBuffer chunkHeader = ByteBuffer.wrap(header);
+            int firstSlot = chunkHeader.getInt(0);
+            int slotCount = chunkHeader.getInt(4);
+            int valueBytes = chunkHeader.getInt(8);
+            int flagBytes = chunkHeader.getInt(12);
+            long end = position + CHUNK_HEADER_SIZE + valueBytes + flagBytes;
+            if (firstSlot != chunkCount * CHUNK_SLOTS || slotCount <= 0 || slotCount > CHUNK_SLOTS || valueBytes <= 0
+                    || flagBytes <= 0 || end > fileLength) {
+                break;
+            }
+            if (slotCount < CHUNK_SLOTS) {
+                ensureOpenChunk();
+                byte[] bytes = readPayload(in, position, valueBytes + flagBytes);
+                ChunkCodec.decodeValues(bytes, 0, valueBytes, openValues, 0, slotCount);
+                ChunkCodec.decodeFlags(bytes, valueBytes, flagBytes, openFlags, 0, slotCount);
+                for (int i = 0; i < slotCount; i++) {
+                    openSummary.add(openValues[i]);
+                }
+                openCount = slotCount;
+                openOffset = position;
+                openInFile = true;
+                validEnd = end;
+                return;
+            }
+            addChunk(position, chunkHeader);
+            position = end;
+        }
+        openOffset = position;
+        validEnd = position;
+    }
+
+    /*
+     * Reads the slots of the incomplete chunk from the journal. A journal of an older chunk (the chunk has been written
+     * before the journal was restarted) is ignored, as is a slot cut off by a crash. A journal of all slots of the
+     * chunk is loaded as full open chunk, which is written when the output is enabled.
+     */
+    private void loadJournal() throws IOException {
+        if (journalFile.length() < JOURNAL_HEADER_SIZE) {
+            return;
+        }
+        try (RandomAccessFile in = new RandomAccessFile(journalFile, "r")) {
+            if (in.readInt() != chunkCount * CHUNK_SLOTS) {
+                return;
+            }
+            int slots = (int) Math.min(CHUNK_SLOTS, (in.length() - JOURNAL_HEADER_SIZE) / JOURNAL_SLOT_SIZE);
+            if (slots == 0) {
+                return;
+            }
+            ByteBuffer entries = ByteBuffer.allocate(slots * JOURNAL_SLOT_SIZE);
+            in.readFully(entries.array());
+            ensureOpenChunk();
+            for (int i = 0; i < slots; i++) {
+                openValues[i] = entries.getDouble();
+                openFlags[i] = entries.get();
+                openSummary.add(openValues[i]);
+            }
+            openCount = slots;
+        }
+    }
+
+    private void addChunk(long offset, ByteBuffer chunkHeader) {
+        if (chunkCount == chunkOffsets.length) {
+            chunkOffsets = Arrays.copyOf(chunkOffsets, chunkCount * 2);
+            ByteBuffer grown = ByteBuffer.allocate(chunkCount * 2 * BlockSummary.SIZE);
+            System.arraycopy(chunkSummaries.array(), 0, grown.array(), 0, chunkCount * BlockSummary.SIZE);
+            chunkSummaries = grown;
+        }
+        chunkOffsets[chunkCount] = offset;
+        System.arraycopy(chunkHeader.array(), 16, chunkSummaries.array(), chunkCount * BlockSummary.SIZE,
+                BlockSummary.SIZE);
+        chunkCount++;
+    }
+
+    private void ensureOpenChunk() {
+        if (openValues == null) {
+            openValues = new double[CHUNK_SLOTS];
+            openFlags = new byte[CHUNK_SLOTS];
+        }
+    }
+
+    private byte[] readPayload(RandomAccessFile in, long chunkOffset, int size) throws IOException {
+        if (payload.length < size) {
+            payload = new byte[size];
+        }
+        in.seek(chunkOffset + CHUNK_HEADER_SIZE);
+        in.readFully(payload, 0, size);
+        return payload;
+    }
+
+    @Override
+    public synchronized long getSlotCount() {
+        return (long) chunkCount * CHUNK_SLOTS + openCount;
+    }
+
+    @Override
+    synchronized long getStoredBytes() {
+        return validEnd + journalLength;
+    }
+
+    private RandomAccessFile enableOutput() throws IOException {
+        if (raf == null) {
+            raf = new RandomAccessFile(dataFile, "rw");
+            journal = new RandomAccessFile(journalFile, "rw");
+            writeJournal();
+            if (openInFile) {
+                // the encoded incomplete chunk is replaced by the journal written above
+                journal.getFD().sync();
+                validEnd = openOffset;
+                openInFile = false;
+            }
+            if (raf.length() > validEnd) {
+                raf.setLength(validEnd); // chunk cut off by a crash
+            }
+            if (openCount == CHUNK_SLOTS) {
+                completeOpenChunk();
+            }
+        }
+        return raf;
+    }
+
+    /*
+     * (Re)writes the journal with the slots of the incomplete chunk.
+     */
+    private void writeJournal() throws IOException {
+        ByteBuffer entries = ByteBuffer.allocate(JOURNAL_HEADER_SIZE + openCount * JOURNAL_SLOT_SIZE);
+        entries.putInt(chunkCount * CHUNK_SLOTS);
+        for (int i = 0; i < openCount; i++) {
+            entries.putDouble(openValues[i]);
+            entries.put(openFlags[i]);
+        }
+        journal.seek(0);
+        journal.write(entries.array());
+        journal.setLength(entries.capacity());
+        journalLength = entries.capacity();
+    }
+
+    @Override
+    public synchronized void createFileAndHeader(long startTimeStamp, long stepIntervall) throws IOException {
+        if (!dataFile.exists() || dataFile.length() < HEADER_SIZE) {
+            dataFile.getParentFile().mkdirs();
+            if (dataFile.exists()) {
+                dataFile.delete(); // file corrupted (header shorter than 24 bytes)
+            }
+            dataFile.createNewFile();
+            this.startTimeStamp = startTimeStamp;
+            storagePeriod = stepIntervall;
+            chunkCount = 0;
+            cachedChunk = -1;
+            openCount = 0;
+            openInFile = false;
+            openSummary.reset();
+            openOffset = HEADER_SIZE;
+            validEnd = 0;
+
+            /*
+             * Keep the file open, because after writing the header -> data will follow!
+             */
+            RandomAccessFile out = enableOutput();
+            out.writeInt(MAGIC);
+            out.writeInt(CHUNK_SLOTS);
+            out.writeLong(startTimeStamp);
+            out.writeLong(stepIntervall);
+            validEnd = HEADER_SIZE;
+        }
+    }
+
+    @Override
+    public synchronized void append(double value, long timestamp, byte flag) throws IOException {
+        if (timestamp < startTimeStamp) {
+            return; // not in file! should never happen...
+        }
+        double pos = (double) (timestamp - startTimeStamp) / storagePeriod;
+        if (pos % 1 != 0) {
+            pos = Math.round(pos);
+        }
+        long slot = (long) pos;
+        long slots = getSlotCount();
+        if (slot < slots) {
+            /*
+             * value has already been stored for this timeslot
+             */
+            return;
+        }
+        enableOutput();
+        if (journalEntries == null) {
+            journalEntries = ByteBuffer.allocate(CHUNK_SLOTS * JOURNAL_SLOT_SIZE);
+        }
+        try {
+            for (long missing = slots; missing < slot; missing++) {
+                putSlot(Double.NaN, Flag.NO_VALUE_RECEIVED_YET.getCode());
+            }
+            putSlot(value, flag);
+
+            journal.seek(journalLength);
+            journal.write(journalEntries.array(), 0, journalEntries.position());
+            journalLength += journalEntries.position();
+        } finally {
+            journalEntries.clear();
+        }
+    }
+
+    private void putSlot(double value, byte flag) throws IOException {
+        ensureOpenChunk();
+        openValues[openCount] = value;
+        openFlags[openCount] = flag;
+        openSummary.add(value);
+        openCount++;
+        journalEntries.putDouble(value);
+        journalEntries.put(flag);
+        if (openCount == CHUNK_SLOTS) {
+            completeOpenChunk();
+            journalEntries.clear();
+        }
+    }
+
+    /*
+     * Writes the full open chunk at the end of the file and restarts the journal for the next chunk.
+     */
+    private void completeOpenChunk() throws IOException {
+        ByteBuffer chunkHeader = writeOpenChunk();
+        raf.getFD().sync(); // before the journal of the chunk is dropped
+        addChunk(openOffset, chunkHeader);
+        openOffset = validEnd;
+        openCount = 0;
+        openSummary.reset();
+        writeJournal();
+    }
+
+    /*
+     * Encodes the open chunk and writes it at openOffset, replacing a previous version of it.
+     */
+    private ByteBuffer writeOpenChunk() throws IOException {
+        if (valueBuffer == null) {
+            valueBuffer = new ChunkCodec.Buffer();
+            flagBuffer = new ChunkCodec.Buffer();
+        }
+        int valueBytes = ChunkCodec.encodeValues(openValues, 0, openCount, valueBuffer);
+        int flagBytes = ChunkCodec.encodeFlags(openFlags, 0, openCount, flagBuffer);
+
+        ByteBuffer chunkHeader = ByteBuffer.allocate(CHUNK_HEADER_SIZE);
+        chunkHeader.putInt(0, chunkCount * CHUNK_SLOTS);
+        chunkHeader.putInt(4, openCount);
+        chunkHeader.putInt(8, valueBytes);
+        chunkHeader.putInt(12, flagBytes);
+        openSummary.write(chunkHeader, 16);
+
+        RandomAccessFile out = enableOutput();
+        out.seek(openOffset);
+        out.write(chunkHeader.array());
+        out.write(valueBuffer.array(), 0, valueBytes);
+        out.write(flagBuffer.array(), 0, flagBytes);
+        validEnd = openOffset + CHUNK_HEADER_SIZE + valueBytes + flagBytes;
+        return chunkHeader;
+    }
+
+    /*
+     * Makes the slots of a chunk available in chunkValues and chunkFlags, decoding complete chunks through the cache.
+     */
+    private void loadChunk(int chunk) throws IOException {
+        if (chunk == chunkCount) {
+            chunkValues = openValues;
+            chunkFlags = openFlags;
+            return;
+        }
+        if (chunk != cachedChunk) {
+            if (cachedValues == null) {
+                cachedValues = new double[CHUNK_SLOTS];
+                cachedFlags = new byte[CHUNK_SLOTS];
+            }
+            if (reader == null) {
+                reader = raf != null ? raf : new RandomAccessFile(dataFile, "r");
+            }
+            long offset = chunkOffsets[chunk];
+            reader.seek(offset + 8);
+            int valueBytes = reader.readInt();
+            int flagBytes = reader.readInt();
+            byte[] bytes = readPayload(reader, offset, valueBytes + flagBytes);
+            cachedChunk = -1;
+            ChunkCodec.decodeValues(bytes, 0, valueBytes, cachedValues, 0, CHUNK_SLOTS);
+            ChunkCodec.decodeFlags(bytes, valueBytes, flagBytes, cachedFlags, 0, CHUNK_SLOTS);
+            cachedChunk = chunk;
+        }
+        chunkValues = cachedValues;
+        chunkFlags = cachedFlags;
+    }
+
+    /*
+     * Closes the file opened for a read.
+     */
+    private void releaseReader() throws IOException {
+        RandomAccessFile current = reader;
+        reader = null;
+        if (current != null && current != raf) {
+            current.close();
+        }
+    }
+
+    @Override
+    public synchronized Record read(long timestamp) throws IOException {
+        timestamp = getClosestTimestamp(timestamp); // round to: startTimestamp
+        // + n*stepIntervall
+        if (timestamp >= startTimeStamp && timestamp <= getTimestampForLatestValue()) {
+            long slot = (timestamp - startTimeStamp) / storagePeriod;
+            try {
+                loadChunk((int) (slot / CHUNK_SLOTS));
+            } finally {
+                releaseReader();
+            }
+            int index = (int) (slot % CHUNK_SLOTS);
+            double toReturn = chunkValues[index];
+            if (!Double.isNaN(toReturn)) {
+                return new Record(new DoubleValue(toReturn), timestamp, Flag.newFlag(chunkFlags[index]));
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public synchronized List<Record> read(long start, long end) throws IOException {
+        start = getClosestTimestamp(start); // round to: startTimestamp +
+                                            // n*stepIntervall
+        end = getClosestTimestamp(end); // round to: startTimestamp +
+                                        // n*stepIntervall
+
+        List<Record> toReturn = new Vector<>();
+
+        if (start < end) {
+            if (start < startTimeStamp) {
+                // of this file.
+                start = startTimeStamp;
+            }
+            if (end > getTimestampForLatestValue()) {
+                end = getTimestampForLatestValue();
+            }
+            if (start > end) {
+                return toReturn;
+            }
+
+            long lastSlot = (end - startTimeStamp) / storagePeriod;
+            long timestampcounter = start;
+            try {
+                for (long slot = (start - startTimeStamp) / storagePeriod; slot <= lastSlot; slot++) {
+                    int index = (int) (slot % CHUNK_SLOTS);
+                    if (index == 0 || timestampcounter == start) {
+                        loadChunk((int) (slot / CHUNK_SLOTS));
+                    }
+                    double d = chunkValues[index];
+                    if (!Double.isNaN(d)) {
+                        toReturn.add(new Record(new DoubleValue(d), timestampcounter, Flag.newFlag(chunkFlags[index])));
+                    }
+                    timestampcounter += storagePeriod;
+                }
+            } finally {
+                releaseReader();
+            }
+        }
+        else if (start == end) {
+            toReturn.add(read(start));
+            toReturn.removeAll(Collections.singleton(null));
+        }
+        return toReturn; // Always return a list -> might be empty -> never is
+                         // null, to avoid NP's
+    }
+
+    @Override
+    public synchronized int readSlots(long firstSlot, double[] values, byte[] flags, int offset, int count)
+            throws IOException {
+        int available = (int) Math.max(0, Math.min(count, getSlotCount() - firstSlot));
+        int done = 0;
+        try {
+            while (done < available) {
+                long slot = firstSlot + done;
+                int index = (int) (slot % CHUNK_SLOTS);
+                int n = Math.min(available - done, CHUNK_SLOTS - index);
+                loadChunk((int) (slot / CHUNK_SLOTS));
+                System.arraycopy(chunkValues, index, values, offset + done, n);
+                System.arraycopy(chunkFlags, index, flags, offset + done, n);
+                done += n;
+            }
+        } finally {
+            releaseReader();
+        }
+        return available;
+    }
+
+    @Override
+    synchronized void aggregate(long start, long end, long bucketStart, long resolution, BlockSummary[] buckets)
+            throws IOException {
+        start = Math.max(getClosestTimestamp(start), startTimeStamp);
+        end = Math.min(getClosestTimestamp(end), getTimestampForLatestValue());
+        if (start > end) {
+            return;
+        }
+
+        long slot = (start - startTimeStamp) / storagePeriod;
+        long lastSlot = (end - startTimeStamp) / storagePeriod;
+        int loaded = -1;
+        try {
+            while (slot <= lastSlot) {
+                long timestamp = startTimeStamp + slot * storagePeriod;
+                if (timestamp < bucketStart) {
+                    slot++;
+                    continue;
+                }
+                long index = (timestamp - bucketStart) / resolution;
+                if (index >= buckets.length) {
+                    break;
+                }
+                BlockSummary bucket = buckets[(int) index];
+                if (bucket == null) {
+                    bucket = new BlockSummary();
+                    buckets[(int) index] = bucket;
+                }
+
+                long bucketEnd = bucketStart + (index + 1) * resolution;
+                long lastInBucket = Math.min(lastSlot, (bucketEnd - 1 - startTimeStamp) / storagePeriod);
+                while (slot <= lastInBucket) {
+                    int chunk = (int) (slot / CHUNK_SLOTS);
+                    if (slot % CHUNK_SLOTS == 0 && slot + CHUNK_SLOTS - 1 <= lastInBucket && chunk < chunkCount) {
+                        bucket.merge(chunkSummaries, chunk * BlockSummary.SIZE);
+                        slot += CHUNK_SLOTS;
+                    }
+                    else {
+                        if (chunk != loaded) {
+                            loadChunk(chunk);
+                            loaded = chunk;
+                        }
+                        bucket.add(chunkValues[(int) (slot % CHUNK_SLOTS)]);
+                        slot++;
+                    }
+                }
+            }
+        } finally {
+            releaseReader();
+        }
+    }
+
+    /**
+     * Writes the incomplete chunk encoded, deletes the journal and closes the file. The FileObject can still be read
+     * and appended to afterwards, the file is opened again if needed.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (raf == null) {
+            return;
+        }
+        try {
+            if (openCount > 0) {
+                writeOpenChunk();
+                openInFile = true;
+            }
+            raf.getFD().sync();
+        } finally {
+            try {
+                raf.close();
+            } finally {
+                raf = null;
+                journal.close();
+                journal = null;
+            }
+        }
+        // the chunk is on disk, the journal is not needed anymore
+        journalFile.delete();
+        journalLength = 0;
+    }
+
+    /**
+     * Forces the slots appended since the last flush to disk. The slots are in the journal already, the incomplete
+     * chunk is not encoded again.
+     */
+    @Override
+    public synchronized void flush() throws IOException {
+        if (raf == null) {
+            return;
+        }
+        journal.getFD().sync();
+        raf.getFD().sync();
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.datalogger.slotsdb;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bytes stored per day folder, kept up to date by the appends and deletions instead of walking the folder tree.<br>
+ * <br>
+ * The manifest is a text file in the root folder with one line "yyyyMMdd bytes" per day. It is written when it has
+ * changed (see {@link #store()}) and when SlotsDb is closed. The bytes appended since the last store are missing after
+ * a crash, so the latest days are measured again on startup. Days without an entry (folders written before the
+ * manifest existed) are measured and added.
+ */
+final class DiskUsageManifest {
+
+    private final File file;
+    private final Map<String, AtomicLong> bytesByDay = new ConcurrentHashMap<>();
+    private final AtomicLong total = new AtomicLong();
+    private volatile boolean changed = false;
+
+    DiskUsageManifest(File rootNode) {
+        file = new File(rootNode, SlotsDb.MANIFEST_FILE_NAME);
+    }
+
+    /**
+     * Loads the stored manifest, if there is one. Lines that cannot be parsed are skipped.
+     *
+     * @throws IOException
+     *             if an I/O error occurs.
+     */
+    void load() throws IOException {
+        if (!file.exists()) {
+            return;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.US_ASCII)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] entry = line.trim().split(" ");
+                if (entry.length != 2) {
+                    continue;
+                }
+                try {
+                    set(entry[0], Long.parseLong(entry[1]));
+                } catch (NumberFormatException e) {
+                    // skipped
+                }
+            }
+        }
+        changed = false;
+    }
+
+    /**
+     * Writes the manifest if it has changed. The file is replaced atomically.
+     *
+     * @throws IOException
+     *             if an I/O error occurs.
+     */
+    synchronized void store() throws IOException {
+        if (!changed) {
+            return;
+        }
+        changed = false;
+        File tmp = new File(file.getPath() + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(tmp.toPath(), StandardCharsets.US_ASCII)) {
+            for (Map.Entry<String, AtomicLong> entry : new TreeMap<>(bytesByDay).entrySet()) {
+                writer.write(entry.getKey() + " " + entry.getValue().get());
+                writer.newLine();
+            }
+        } catch (IOException e) {
+            changed = true;
+            throw e;
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Adds bytes written to (or, if negative, removed from) a day.
+     *
+     * @param day
+     *            day in yyyyMMdd format
+     * @param bytes
+     *            the bytes
+     */
+    void add(String day, long bytes) {
+        if (bytes == 0) {
+            return;
+        }
+        bytesByDay.computeIfAbsent(day, key -> new AtomicLong()).addAndGet(bytes);
+        total.addAndGet(bytes);
+        changed = true;
+    }
+
+    /**
+     * Sets the measured size of a day.
+     */
+    void set(String day, long bytes) {
+        AtomicLong previous = bytesByDay.put(day, new AtomicLong(bytes));
+        total.addAndGet(bytes - (previous != null ? previous.get() : 0));
+        changed = true;
+    }
+
+    /**
+     * Removes a deleted day and returns its bytes.
+     */
+    long remove(String day) {
+        AtomicLong removed = bytesByDay.remove(day);
+        if (removed == null) {
+            return 0;
+        }
+        long bytes = removed.get();
+        total.addAndGet(-bytes);
+        changed = true;
+        return bytes;
+    }
+
+    boolean contains(String day) {
+        return bytesByDay.containsKey(day);
+    }
+
+    /**
+     * Returns the bytes of all days.
+     */
+    long getTotal() {
+        return total.get();
+    }
+
+    /**
+     * Returns the size of a folder and its subfolders, used for days without an entry.
+     */
+    static long measure(File folder) {
+        long size = 0;
+        File[] files = folder.listFiles();
+        if (files == null) {
+            return size; // deleted meanwhile
+        }
+        for (File f : files) {
+            if (f.isDirectory()) {
+                size += measure(f);
+            }
+            else {
+                size += f.length();
+            }
+        }
+        return size;
+    }
+}
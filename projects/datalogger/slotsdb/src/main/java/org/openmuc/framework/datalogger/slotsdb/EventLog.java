@@ -0,0 +1,328 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.datalogger.slotsdb;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.openmuc.framework.data.DoubleValue;
+import org.openmuc.framework.data.Flag;
+import org.openmuc.framework.data.Record;
+
+/**
+ * Event log segment of one channel and day: the events logged with their own timestamps, which do not fit into the
+ * fixed slots of a slot file.<br>
+ * <br>
+ * File layout: header of 8 bytes (magic "SLE1", entry size) followed by entries of 17 bytes: timestamp (long), value
+ * (double), flag (byte). Entries are appended in timestamp order, an event older than the last event of the segment
+ * is not logged.<br>
+ * <br>
+ * Sparse time index: the timestamp of every {@link #INDEX_INTERVAL}th entry is kept in memory and appended to an
+ * index file next to the segment. A range read searches the index binary and reads the entries from the first
+ * indexed entry before the start on. A missing or short index file (crash, older segment) is completed from the
+ * entries when the segment is opened.<br>
+ * <br>
+ * Appends are collected in a buffer and written with one write per {@link #flush(boolean)}, so a burst of events
+ * costs one system call. Reads see the buffered events. All methods are synchronized.
+ */
+final class EventLog {
+
+    private static final int MAGIC = 0x534c4531; // "SLE1"
+    private static final int HEADER_SIZE = 8;
+    static final int ENTRY_SIZE = 17;
+    /*
+     * Entries per index entry.
+     */
+    static final int INDEX_INTERVAL = 256;
+    /*
+     * Entries collected before they are written without a flush.
+     */
+    private static final int BUFFER_ENTRIES = 4096;
+
+    private final File dataFile;
+    private final File indexFile;
+
+    private RandomAccessFile raf; // open while appending
+    private FileChannel channel;
+    private RandomAccessFile indexRaf;
+
+    private long written = 0; // entries in the file
+    private long count = 0; // entries in the file and the buffer
+    private long lastTimestamp = Long.MIN_VALUE;
+    private ByteBuffer buffer; // entries not written yet, allocated on the first append
+
+    private long[] index = new long[16];
+    private int indexCount = 0;
+    private int indexWritten = 0;
+
+    private long accountedBytes;
+
+    EventLog(File folder) throws IOException {
+        dataFile = new File(folder, SlotsDb.EVENT_FILE_NAME);
+        indexFile = new File(folder, SlotsDb.EVENT_INDEX_FILE_NAME);
+        if (dataFile.exists() && dataFile.length() >= HEADER_SIZE) {
+            try (RandomAccessFile in = new RandomAccessFile(dataFile, "r")) {
+                if (in.readInt() != MAGIC || in.readInt() != ENTRY_SIZE) {
+                    throw new IOException("Not an event log: " + dataFile);
+                }
+                written = (in.length() - HEADER_SIZE) / ENTRY_SIZE; // without an entry cut off by a crash
+                count = written;
+                loadIndex(in);
+                if (written > 0) {
+                    lastTimestamp = readTimestamp(in, written - 1);
+                }
+            }
+        }
+        accountedBytes = getStoredBytes();
+    }
+
+    /*
+     * Loads the index file and completes it from the entries.
+     */
+    private void loadIndex(RandomAccessFile in) throws IOException {
+        int required = (int) ((written + INDEX_INTERVAL - 1) / INDEX_INTERVAL);
+        int stored = indexFile.exists() ? (int) Math.min(required, indexFile.length() / 8) : 0;
+        index = new long[Math.max(16, required)];
+        if (stored > 0) {
+            try (RandomAccessFile indexIn = new RandomAccessFile(indexFile, "r")) {
+                ByteBuffer bytes = ByteBuffer.allocate(stored * 8);
+                indexIn.readFully(bytes.array());
+                bytes.asLongBuffer().get(index, 0, stored);
+            }
+        }
+        for (int i = stored; i < required; i++) {
+            index[i] = readTimestamp(in, (long) i * INDEX_INTERVAL);
+        }
+        indexCount = required;
+        indexWritten = stored;
+    }
+
+    private static long readTimestamp(RandomAccessFile in, long entry) throws IOException {
+        in.seek(HEADER_SIZE + entry * ENTRY_SIZE);
+        return in.readLong();
+    }
+
+    private void enableOutput() throws IOException {
+        if (raf != null) {
+            return;
+        }
+        dataFile.getParentFile().mkdirs();
+        raf = new RandomAccessFile(dataFile, "rw");
+        channel = raf.getChannel();
+        if (raf.length() < HEADER_SIZE) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(ENTRY_SIZE).flip();
+            channel.write(header, 0);
+        }
+        channel.truncate(HEADER_SIZE + written * ENTRY_SIZE);
+        indexRaf = new RandomAccessFile(indexFile, "rw");
+        indexRaf.setLength(indexWritten * 8L);
+        if (buffer == null) {
+            buffer = ByteBuffer.allocate(BUFFER_ENTRIES * ENTRY_SIZE);
+        }
+    }
+
+    /**
+     * Appends an event. Returns false if the event is older than the last event of this segment.
+     */
+    synchronized boolean append(long timestamp, double value, byte flag) throws IOException {
+        if (timestamp < lastTimestamp) {
+            return false;
+        }
+        enableOutput();
+        if (!buffer.hasRemaining()) {
+            writeBuffer();
+        }
+        if (count % INDEX_INTERVAL == 0) {
+            if (indexCount == index.length) {
+                index = Arrays.copyOf(index, indexCount * 2);
+            }
+            index[indexCount++] = timestamp;
+        }
+        buffer.putLong(timestamp).putDouble(value).put(flag);
+        count++;
+        lastTimestamp = timestamp;
+        return true;
+    }
+
+    private void writeBuffer() throws IOException {
+        if (buffer == null || buffer.position() == 0) {
+            return;
+        }
+        buffer.flip();
+        long position = HEADER_SIZE + written * ENTRY_SIZE;
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+        buffer.clear();
+        written = count;
+
+        if (indexWritten < indexCount) {
+            ByteBuffer newIndex = ByteBuffer.allocate((indexCount - indexWritten) * 8);
+            newIndex.asLongBuffer().put(index, indexWritten, indexCount - indexWritten);
+            indexRaf.seek(indexWritten * 8L);
+            indexRaf.write(newIndex.array());
+            indexWritten = indexCount;
+        }
+    }
+
+    /**
+     * Writes the buffered events to the file.
+     *
+     * @param force
+     *            true to force them to disk
+     */
+    synchronized void flush(boolean force) throws IOException {
+        if (raf == null) {
+            return;
+        }
+        writeBuffer();
+        if (force) {
+            channel.force(false);
+        }
+    }
+
+    synchronized void close() throws IOException {
+        if (raf == null) {
+            return;
+        }
+        try {
+            writeBuffer();
+            channel.force(false);
+        } finally {
+            raf.close();
+            indexRaf.close();
+            raf = null;
+            channel = null;
+            indexRaf = null;
+        }
+    }
+
+    /**
+     * Returns the events between start and end (both included).
+     */
+    synchronized List<Record> read(long start, long end) throws IOException {
+        List<Record> toReturn = new ArrayList<>();
+        if (count == 0 || start > end || start > lastTimestamp) {
+            return toReturn;
+        }
+
+        // last indexed entry before start, the events from there on are read until end
+        int low = 0;
+        int high = indexCount - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (index[mid] < start) {
+                low = mid;
+            }
+            else {
+                high = mid - 1;
+            }
+        }
+
+        FileChannel in = channel;
+        RandomAccessFile readFile = null;
+        try {
+            if (in == null && written > 0) {
+                readFile = new RandomAccessFile(dataFile, "r");
+                in = readFile.getChannel();
+            }
+            ByteBuffer entries = ByteBuffer.allocate(INDEX_INTERVAL * ENTRY_SIZE);
+            for (long entry = (long) low * INDEX_INTERVAL; entry < count; entry += INDEX_INTERVAL) {
+                int n = (int) Math.min(INDEX_INTERVAL, count - entry);
+                readEntries(in, entry, n, entries);
+                for (int i = 0; i < n; i++) {
+                    long timestamp = entries.getLong(i * ENTRY_SIZE);
+                    if (timestamp > end) {
+                        return toReturn;
+                    }
+                    if (timestamp >= start) {
+                        toReturn.add(new Record(new DoubleValue(entries.getDouble(i * ENTRY_SIZE + 8)), timestamp,
+                                Flag.newFlag(entries.get(i * ENTRY_SIZE + 16))));
+                    }
+                }
+            }
+            return toReturn;
+        } finally {
+            if (readFile != null) {
+                readFile.close();
+            }
+        }
+    }
+
+    /**
+     * Returns the last event or null if there is none.
+     */
+    synchronized Record readLatest() throws IOException {
+        if (count == 0) {
+            return null;
+        }
+        List<Record> latest = read(lastTimestamp, lastTimestamp);
+        return latest.isEmpty() ? null : latest.get(latest.size() - 1);
+    }
+
+    /*
+     * Reads n entries from the file and the buffer into entries (position 0).
+     */
+    private void readEntries(FileChannel in, long first, int n, ByteBuffer entries) throws IOException {
+        entries.clear();
+        int fromFile = (int) Math.max(0, Math.min(n, written - first));
+        if (fromFile > 0) {
+            entries.limit(fromFile * ENTRY_SIZE);
+            long position = HEADER_SIZE + first * ENTRY_SIZE;
+            while (entries.hasRemaining()) {
+                int read = in.read(entries, position + entries.position());
+                if (read < 0) {
+                    throw new IOException("Event log truncated: " + dataFile);
+                }
+            }
+            entries.limit(entries.capacity());
+        }
+        if (fromFile < n) {
+            int bufferOffset = (int) (first + fromFile - written) * ENTRY_SIZE;
+            System.arraycopy(buffer.array(), bufferOffset, entries.array(), fromFile * ENTRY_SIZE,
+                    (n - fromFile) * ENTRY_SIZE);
+        }
+    }
+
+    synchronized long getStoredBytes() {
+        return written == 0 && raf == null && !dataFile.exists() ? 0
+                : HEADER_SIZE + written * ENTRY_SIZE + indexWritten * 8L;
+    }
+
+    /**
+     * Returns the bytes stored since the last call (or since the segment has been opened), see
+     * {@link FileObject#takeStoredGrowth()}.
+     */
+    synchronized long takeStoredGrowth() {
+        long stored = getStoredBytes();
+        long growth = stored - accountedBytes;
+        accountedBytes = stored;
+        return growth;
+    }
+}
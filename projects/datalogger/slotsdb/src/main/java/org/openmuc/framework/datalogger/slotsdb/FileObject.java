@@ -21,165 +21,76 @@
 
 package org.openmuc.framework.datalogger.slotsdb;
 
-import java.io.BufferedOutputStream;
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.nio.ByteBuffer;
-import java.util.Collections;
 import java.util.List;
-import java.util.Vector;
 
-import org.openmuc.framework.data.DoubleValue;
-import org.openmuc.framework.data.Flag;
 import org.openmuc.framework.data.Record;
 
-public final class FileObject {
-
-    private long startTimeStamp; // byte 0-7 in file (cached)
-    private long storagePeriod; // byte 8-15 in file (cached)
-    private final File dataFile;
-    private DataOutputStream dos;
-    private BufferedOutputStream bos;
-    private FileOutputStream fos;
-    private DataInputStream dis;
-    private FileInputStream fis;
-    private boolean canWrite;
-    private boolean canRead;
-    /*
-     * File length will be cached to avoid system calls an improve I/O Performance
-     */
-    private long length = 0;
-
-    public FileObject(String filename) throws IOException {
-        canWrite = false;
-        canRead = false;
-        dataFile = new File(filename);
-        length = dataFile.length();
-        if (dataFile.exists() && length >= 16) {
-            /*
-             * File already exists -> get file Header (startTime and step-frequency) TODO: compare to starttime and
-             * frequency in constructor! new file needed? update to file-array!
-             */
-            try {
-                fis = new FileInputStream(dataFile);
-                try {
-                    dis = new DataInputStream(fis);
-                    try {
-                        startTimeStamp = dis.readLong();
-                        storagePeriod = dis.readLong();
-                    } finally {
-                        if (dis != null) {
-                            dis.close();
-                            dis = null;
-                        }
-                    }
-                } finally {
-                    if (dis != null) {
-                        dis.close();
-                        dis = null;
-                    }
-                }
-            } finally {
-                if (fis != null) {
-                    fis.close();
-                    fis = null;
-                }
-            }
-        }
-    }
+/**
+ * A slot file of one channel: values stored in slots of a fixed storage period, starting at the start timestamp in
+ * the file header. Missing slots are padded with NaN.<br>
+ * <br>
+ * There are two file versions, which can be mixed in one folder:<br>
+ * - {@link SlotsDb#FILE_EXTENSION}: one uncompressed slot of 9 bytes per storage period (see
+ * {@link MappedFileObject})<br>
+ * - {@link SlotsDb#COMPRESSED_FILE_EXTENSION}: chunks of XOR compressed values and run-length encoded flags (see
+ * {@link CompressedFileObject})<br>
+ * <br>
+ * Only one thread may append to a FileObject at a time, reads may run concurrently.
+ */
+public abstract class FileObject {
 
-    public FileObject(File file) throws IOException {
-        canWrite = false;
-        canRead = false;
-        dataFile = file;
-        length = dataFile.length();
-        if (dataFile.exists() && length >= 16) {
-            /*
-             * File already exists -> get file Header (startTime and step-frequency)
-             */
-            fis = new FileInputStream(dataFile);
-            try {
-                dis = new DataInputStream(fis);
-                try {
-                    startTimeStamp = dis.readLong();
-                    storagePeriod = dis.readLong();
-                } finally {
-                    if (dis != null) {
-                        dis.close();
-                        dis = null;
-                    }
-                }
-            } finally {
-                if (fis != null) {
-                    fis.close();
-                    fis = null;
-                }
-            }
+    protected final File dataFile;
+    protected long startTimeStamp; // cached from the file header
+    protected long storagePeriod; // cached from the file header
+    private long accountedBytes = 0; // stored bytes reported by takeStoredGrowth
 
-        }
+    protected FileObject(File dataFile) {
+        this.dataFile = dataFile;
     }
 
-    private void enableOutput() throws IOException {
-        /*
-         * Close Input Streams, for enabling output.
-         */
-        if (dis != null) {
-            dis.close();
-            dis = null;
-        }
-        if (fis != null) {
-            fis.close();
-            fis = null;
-        }
-
-        /*
-         * enabling output
-         */
-        if (fos == null || dos == null || bos == null) {
-            fos = new FileOutputStream(dataFile, true);
-            bos = new BufferedOutputStream(fos);
-            dos = new DataOutputStream(bos);
+    /**
+     * Opens an existing slot file, the version is chosen by the file extension.
+     *
+     * @param file
+     *            the slot file
+     * @return the FileObject of the file
+     * @throws IOException
+     *             if an I/O error occurs.
+     */
+    public static FileObject open(File file) throws IOException {
+        if (file.getName().endsWith(SlotsDb.COMPRESSED_FILE_EXTENSION)) {
+            return new CompressedFileObject(file);
         }
-        canRead = false;
-        canWrite = true;
+        return new MappedFileObject(file);
     }
 
-    private void enableInput() throws IOException {
-        /*
-         * Close Output Streams for enabling input.
-         */
-        if (dos != null) {
-            dos.flush();
-            dos.close();
-            dos = null;
-        }
-        if (bos != null) {
-            bos.close();
-            bos = null;
-        }
-        if (fos != null) {
-            fos.close();
-            fos = null;
-        }
-
-        /*
-         * enabling input
-         */
-        if (fis == null || dis == null) {
-            fis = new FileInputStream(dataFile);
-            dis = new DataInputStream(fis);
+    /**
+     * Returns the FileObject of a new slot file starting at the given timestamp. The file itself is created by
+     * {@link #createFileAndHeader(long, long)}.
+     *
+     * @param folder
+     *            the folder of the channel and day
+     * @param startTimeStamp
+     *            timestamp of the first slot, part of the file name
+     * @param compressed
+     *            true for a compressed (version 2) file
+     * @return the FileObject of the file
+     * @throws IOException
+     *             if an I/O error occurs.
+     */
+    public static FileObject create(String folder, long startTimeStamp, boolean compressed) throws IOException {
+        if (compressed) {
+            return new CompressedFileObject(
+                    new File(folder, startTimeStamp + SlotsDb.COMPRESSED_FILE_EXTENSION));
         }
-        canWrite = false;
-        canRead = true;
+        return new MappedFileObject(new File(folder, startTimeStamp + SlotsDb.FILE_EXTENSION));
     }
 
     /**
      * Return the Timestamp of the first stored Value in this File.
-     * 
+     *
      * @return timestamp as long
      */
     public long getStartTimeStamp() {
@@ -188,139 +99,58 @@ public final class FileObject {
 
     /**
      * Returns the step frequency in seconds.
-     * 
+     *
      * @return step frequency in seconds
      */
     public long getStoringPeriod() {
         return storagePeriod;
     }
 
-    /**
-     * creates the file, if it doesn't exist.
-     * 
-     * @param startTimeStamp
-     *            for file header
-     * @param stepIntervall
-     *            for file header
-     * @throws IOException
-     *             if an I/O error occurs.
-     */
-    public void createFileAndHeader(long startTimeStamp, long stepIntervall) throws IOException {
-        if (!dataFile.exists() || length < 16) {
-            dataFile.getParentFile().mkdirs();
-            if (dataFile.exists() && length < 16) {
-                dataFile.delete(); // file corrupted (header shorter that 16
-            }
-            // bytes)
-            dataFile.createNewFile();
-            this.startTimeStamp = startTimeStamp;
-            storagePeriod = stepIntervall;
-
-            /*
-             * Do not close Output streams, because after writing the header -> data will follow!
-             */
-            fos = new FileOutputStream(dataFile);
-            bos = new BufferedOutputStream(fos);
-            dos = new DataOutputStream(bos);
-            dos.writeLong(startTimeStamp);
-            dos.writeLong(stepIntervall);
-            dos.flush();
-            length += 16; /* wrote 2*8 Bytes */
-            canWrite = true;
-            canRead = false;
-        }
+    public File getFile() {
+        return dataFile;
     }
 
-    public void append(double value, long timestamp, byte flag) throws IOException {
-        long writePosition = getBytePosition(timestamp);
-        if (writePosition == length) {
-            /*
-             * value for this timeslot has not been saved yet "AND" some value has been stored in last timeslot
-             */
-            if (!canWrite) {
-                enableOutput();
-            }
+    /**
+     * Returns the number of written slots, including the slots padded with NaN.
+     *
+     * @return number of slots
+     */
+    public abstract long getSlotCount();
 
-            dos.writeDouble(value);
-            dos.writeByte(flag);
-            length += 9;
-        }
-        else {
-            if (length > writePosition) {
-                /*
-                 * value has already been stored for this timeslot -> handle? AVERAGE, MIN, MAX, LAST speichern?!
-                 */
-            }
-            else {
-                /*
-                 * there are missing some values missing -> fill up with NaN!
-                 */
-                if (!canWrite) {
-                    enableOutput();
-                }
-                long rowsToFillWithNan = (writePosition - length) / 9;// TODO:
-                                                                      // stimmt
-                                                                      // Berechnung?
-                for (int i = 0; i < rowsToFillWithNan; i++) {
-                    dos.writeDouble(Double.NaN); // TODO: festlegen welcher Wert
-                                                 // undefined sein soll NaN
-                                                 // ok?
-                    dos.writeByte(Flag.NO_VALUE_RECEIVED_YET.getCode()); // TODO:
-                                                                         // festlegen
-                    // welcher Wert
-                    // undefined sein
-                    // soll 00 ok?
-                    length += 9;
-                }
-                dos.writeDouble(value);
-                dos.writeByte(flag);
-                length += 9;
-            }
-        }
-        /*
-         * close(); OutputStreams will not be closed or flushed. Data will be written to disk after calling flush()
-         * method.
-         */
-    }
+    /**
+     * Returns the bytes this file occupies on disk, including files kept next to it.
+     *
+     * @return stored bytes
+     */
+    abstract long getStoredBytes();
 
-    public long getTimestampForLatestValue() {
-        return startTimeStamp + (((length - 16) / 9) - 1) * storagePeriod;
+    /*
+     * Called by constructors: bytes already on disk are not reported as growth.
+     */
+    protected void startAccounting() {
+        accountedBytes = getStoredBytes();
     }
 
     /**
-     * calculates the position in a file for a certain timestamp
-     * 
-     * @param timestamp
-     *            the searched timestamp
-     * @return position the position of the timestamp
+     * Returns the bytes stored since the last call (or since the file has been opened) for the disk usage manifest.
+     *
+     * @return the stored bytes, negative if the file has shrunk
      */
-    private long getBytePosition(long timestamp) {
-        if (timestamp >= startTimeStamp) {
-
-            /*
-             * get position for timestamp 117 000: 117 000 - 100 000 = 17 000 17 * 000 / 5 000 = 3.4 Math.round(3.4) = 3
-             * 3*(8+1) = 27 27 + 16 = 43 = position to store to!
-             */
-            // long pos = (Math.round((double) (timestamp - startTimeStamp) /
-            // storagePeriod) * 9) + 16; /* slower */
+    long takeStoredGrowth() {
+        long stored = getStoredBytes();
+        long growth = stored - accountedBytes;
+        accountedBytes = stored;
+        return growth;
+    }
 
-            double pos = (double) (timestamp - startTimeStamp) / storagePeriod;
-            if (pos % 1 != 0) { /* faster */
-                pos = Math.round(pos);
-            }
-            return (long) (pos * 9 + 16);
-        }
-        else {
-            // not in file! should never happen...
-            return -1;
-        }
+    public long getTimestampForLatestValue() {
+        return startTimeStamp + (getSlotCount() - 1) * storagePeriod;
     }
 
     /*
-     * Calculates the closest timestamp to wanted timestamp getByteposition does a similar thing (Math.round()), for
-     * byte position.
+     * Calculates the closest timestamp to wanted timestamp.
      */
-    private long getClosestTimestamp(long timestamp) {
+    protected long getClosestTimestamp(long timestamp) {
         // return Math.round((double) (timestamp -
         // startTimeStamp)/storagePeriod)*storagePeriod+startTimeStamp; /*
         // slower */
@@ -332,25 +162,47 @@ public final class FileObject {
         return (long) ts * storagePeriod + startTimeStamp;
     }
 
-    public Record read(long timestamp) throws IOException {
-        timestamp = getClosestTimestamp(timestamp); // round to: startTimestamp
-        // + n*stepIntervall
-        if (timestamp >= startTimeStamp && timestamp <= getTimestampForLatestValue()) {
-            if (!canRead) {
-                enableInput();
-            }
-            fis.getChannel().position(getBytePosition(timestamp));
-            Double toReturn = dis.readDouble();
-            if (!Double.isNaN(toReturn)) {
-                return new Record(new DoubleValue(toReturn), timestamp, Flag.newFlag(dis.readByte()));
-            }
-        }
-        return null;
-    }
+    /**
+     * creates the file, if it doesn't exist.
+     *
+     * @param startTimeStamp
+     *            for file header
+     * @param stepIntervall
+     *            for file header
+     * @throws IOException
+     *             if an I/O error occurs.
+     */
+    public abstract void createFileAndHeader(long startTimeStamp, long stepIntervall) throws IOException;
+
+    /**
+     * Appends a value to the slot of the timestamp. Slots between the last written slot and this slot are padded with
+     * NaN, a value for an already written slot is ignored.
+     *
+     * @param value
+     *            the value
+     * @param timestamp
+     *            the timestamp, rounded to the closest slot
+     * @param flag
+     *            the flag code
+     * @throws IOException
+     *             if an I/O error occurs.
+     */
+    public abstract void append(double value, long timestamp, byte flag) throws IOException;
+
+    /**
+     * Returns the record of the slot closest to the timestamp or null if there is none or it is NaN.
+     *
+     * @param timestamp
+     *            the timestamp
+     * @return the record or null
+     * @throws IOException
+     *             if an I/O error occurs.
+     */
+    public abstract Record read(long timestamp) throws IOException;
 
     /**
      * Returns a List of Value Objects containing the measured Values between provided start and end timestamp
-     * 
+     *
      * @param start
      *            start timestamp
      * @param end
@@ -359,97 +211,68 @@ public final class FileObject {
      * @throws IOException
      *             if an I/O error occurs.
      */
-    public List<Record> read(long start, long end) throws IOException {
-        start = getClosestTimestamp(start); // round to: startTimestamp +
-                                            // n*stepIntervall
-        end = getClosestTimestamp(end); // round to: startTimestamp +
-                                        // n*stepIntervall
-
-        List<Record> toReturn = new Vector<>();
-
-        if (start < end) {
-            if (start < startTimeStamp) {
-                // of this file.
-                start = startTimeStamp;
-            }
-            if (end > getTimestampForLatestValue()) {
-                end = getTimestampForLatestValue();
-            }
-
-            if (!canRead) {
-                enableInput();
-            }
-
-            long timestampcounter = start;
-            long startPos = getBytePosition(start);
-            long endPos = getBytePosition(end);
-
-            fis.getChannel().position(startPos);
-
-            byte[] b = new byte[(int) (endPos - startPos) + 9];
-            dis.read(b, 0, b.length);
-            ByteBuffer bb = ByteBuffer.wrap(b);
-            bb.rewind();
-
-            for (int i = 0; i <= (endPos - startPos) / 9; i++) {
-                double d = bb.getDouble();
-                Flag s = Flag.newFlag(bb.get());
-                if (!Double.isNaN(d)) {
-                    toReturn.add(new Record(new DoubleValue(d), timestampcounter, s));
-                }
-                timestampcounter += storagePeriod;
-            }
-
-        }
-        else if (start == end) {
-            toReturn.add(read(start));
-            toReturn.removeAll(Collections.singleton(null));
-        }
-        return toReturn; // Always return a list -> might be empty -> never is
-                         // null, to avoid NP's
-    }
+    public abstract List<Record> read(long start, long end) throws IOException;
 
     public List<Record> readFully() throws IOException {
         return read(startTimeStamp, getTimestampForLatestValue());
     }
 
     /**
-     * Closes and Flushes underlying Input- and OutputStreams
-     * 
+     * Decodes consecutive slots into primitive arrays without creating records. Padded slots are returned as NaN with
+     * their flag code.
+     *
+     * @param firstSlot
+     *            index of the first slot, 0 is the slot of the start timestamp
+     * @param values
+     *            receives the values
+     * @param flags
+     *            receives the flag codes
+     * @param offset
+     *            index in the arrays of the first slot
+     * @param count
+     *            maximum number of slots
+     * @return number of slots decoded, less than count at the end of the file
      * @throws IOException
      *             if an I/O error occurs.
      */
-    public void close() throws IOException {
-        canRead = false;
-        canWrite = false;
-        if (dos != null) {
-            dos.flush();
-            dos.close();
-            dos = null;
-        }
-        if (fos != null) {
-            fos.close();
-            fos = null;
-        }
-        if (dis != null) {
-            dis.close();
-            dis = null;
-        }
-        if (fis != null) {
-            fis.close();
-            fis = null;
-        }
-    }
+    public abstract int readSlots(long firstSlot, double[] values, byte[] flags, int offset, int count)
+            throws IOException;
+
+    /**
+     * Adds the values between start and end to the buckets of a query, bucket i covering
+     * <code>[bucketStart + i * resolution, bucketStart + (i + 1) * resolution)</code>. Blocks lying completely inside a
+     * bucket are taken from their summaries, only the slots at the bucket edges are read.
+     *
+     * @param start
+     *            start timestamp
+     * @param end
+     *            end timestamp
+     * @param bucketStart
+     *            start of the first bucket
+     * @param resolution
+     *            bucket length in ms
+     * @param buckets
+     *            the buckets, created on first use
+     * @throws IOException
+     *             if an I/O error occurs.
+     */
+    abstract void aggregate(long start, long end, long bucketStart, long resolution, BlockSummary[] buckets)
+            throws IOException;
 
     /**
-     * Flushes the underlying Data Streams.
-     * 
+     * Closes the file. The FileObject can still be read and appended to afterwards, the file is opened again if
+     * needed.
+     *
      * @throws IOException
      *             if an I/O error occurs.
      */
-    public void flush() throws IOException {
-        if (dos != null) {
-            dos.flush();
-        }
-    }
+    public abstract void close() throws IOException;
+
+    /**
+     * Forces the appended slots to disk.
+     *
+     * @throws IOException
+     *             if an I/O error occurs.
+     */
+    public abstract void flush() throws IOException;
 }
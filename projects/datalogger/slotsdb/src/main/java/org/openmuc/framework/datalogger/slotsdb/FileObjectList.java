@@ -43,7 +43,7 @@ import java.util.Vector;
  */
 public final class FileObjectList {
 
-    private List<FileObject> files;
+    private volatile List<FileObject> files; // replaced on reload, readers may hold the previous list
     // private File folder;
     private String foldername;
     private long firstTS;
@@ -86,26 +86,29 @@ public final class FileObjectList {
     public void reLoadFolder() throws IOException {
         File folder = new File(foldername);
 
-        files = new Vector<>(1);
-        if (folder.isDirectory()) {
-            for (File file : folder.listFiles()) {
-                if (file.length() >= 16) { // otherwise is corrupted or empty
-                                           // file.
-                    String[] split = file.getName().split("\\.");
-                    if (("." + split[split.length - 1]).equals(SlotsDb.FILE_EXTENSION)) {
-                        files.add(new FileObject(file));
-                    }
-                }
-                else {
-                    file.delete();
+        List<FileObject> loaded = new Vector<>(1);
+        File[] folderFiles = folder.listFiles(); // null if not a folder (anymore)
+        if (folderFiles != null) {
+            for (File file : folderFiles) {
+                /*
+                 * Files shorter than their header are corrupted or being created, they are replaced by
+                 * createFileAndHeader.
+                 */
+                String[] split = file.getName().split("\\.");
+                String extension = "." + split[split.length - 1];
+                if (extension.equals(SlotsDb.FILE_EXTENSION) && file.length() >= 16
+                        || extension.equals(SlotsDb.COMPRESSED_FILE_EXTENSION)
+                                && file.length() >= CompressedFileObject.HEADER_SIZE) {
+                    loaded.add(FileObject.open(file));
                 }
             }
-            if (files.size() > 1) {
-                sortList(files);
+            if (loaded.size() > 1) {
+                sortList(loaded);
             }
         }
 
-        size = files.size();
+        size = loaded.size();
+        files = loaded;
 
         /*
          * set first Timestamp for this FileObjectList if there are no files -> first TS = TS@ 00:00:00 o'clock.
@@ -121,7 +124,7 @@ public final class FileObjectList {
             firstTS = sdf.getCalendar().getTimeInMillis();
         }
         else {
-            firstTS = files.get(0).getStartTimeStamp();
+            firstTS = loaded.get(0).getStartTimeStamp();
         }
         folder = null;
     }
@@ -189,6 +192,20 @@ public final class FileObjectList {
         }
     }
 
+    /**
+     * Returns the bytes stored by the files of this List since the last call, see
+     * {@link FileObject#takeStoredGrowth()}.
+     * 
+     * @return the stored bytes
+     */
+    long takeStoredGrowth() {
+        long growth = 0;
+        for (FileObject f : files) {
+            growth += f.takeStoredGrowth();
+        }
+        return growth;
+    }
+
     /**
      * Returns a FileObject in this List for a certain Timestamp. If there is no FileObject containing this Value, null
      * will be returned.
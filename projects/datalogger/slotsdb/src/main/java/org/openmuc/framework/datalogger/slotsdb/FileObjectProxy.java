@@ -27,6 +27,7 @@ import java.net.URLEncoder;
 import java.nio.charset.Charset;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collections;
@@ -35,38 +36,141 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
 import java.util.Timer;
 import java.util.TimerTask;
 import java.util.Vector;
-
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+
+import org.openmuc.framework.data.DoubleValue;
+import org.openmuc.framework.data.Flag;
 import org.openmuc.framework.data.Record;
+import org.openmuc.framework.data.RecordCursor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Access to the SlotsDb folder tree.<br>
+ * <br>
+ * Locking:<br>
+ * - Appends lock the folder of their label and day (lock striping), appends to different channels run in
+ * parallel<br>
+ * - Folders of days before the current logging day are sealed and read without any lock<br>
+ * - Folders of the current logging day are loaded under the folder lock, the reads themselves run on the files
+ * without it<br>
+ * - Retention jobs delete sealed days and only lock the folders they close<br>
+ * <br>
+ * Retention:<br>
+ * - The bytes stored per day are counted by the appends in a {@link DiskUsageManifest}, the size limit is checked
+ * against its total without walking the folder tree<br>
+ * - A deleted day is moved to the trash folder at once and its files are removed by a background thread at a
+ * limited rate<br>
+ * <br>
+ * Events:<br>
+ * - Events are appended with their own timestamps to an {@link EventLog} per label and day, next to the slot files,
+ * and guarded by the same folder lock<br>
+ * - Reads merge the events of a label with its slot values
+ */
 public final class FileObjectProxy {
 
     private static final Logger logger = LoggerFactory.getLogger(FileObjectProxy.class);
 
+    /*
+     * Number of folder locks. Folders are assigned by the hash of label and day.
+     */
+    private static final int LOCK_STRIPES = 64;
+
+    /*
+     * Maximum number of buckets of an aggregated read.
+     */
+    static final int MAX_BUCKETS = 1000000;
+
+    /*
+     * Time range read at once by a cursor.
+     */
+    private static final long CURSOR_WINDOW = 3600000;
+
     private final File rootNode;
-    private HashMap<String, FileObjectList> openFilesHM;
-    private final HashMap<String, String> encodedLabels;
-    private final SimpleDateFormat sdf;
+    private final Map<String, FileObjectList> openFilesHM;
+    private final Map<String, EventLog> openEventsHM;
+    private final Map<String, String> encodedLabels;
+    private final ReentrantLock[] locks;
+    private final Object dayLock = new Object();
+    private final SimpleDateFormat sdf; // guarded by itself
     private final Date date;
     private final Timer timer;
-    private List<File> days;
-    private long size;
+    private volatile List<File> days;
+    private final DiskUsageManifest manifest;
+    private final File trashFolder;
+    private final ExecutorService deleter;
 
     /*
-     * Flush Period in Seconds. if flush_period == 0 -> write directly to disk.
+     * Flush Period in Seconds. if flush_period == 0 -> data is written back to disk by the operating system.
      */
     private int flush_period = 0;
     private int limit_days;
     private int limit_size;
     private int max_open_files;
+    private int delete_rate;
+    private int deletedFiles = 0; // by the deleter thread
+
+    /*
+     * Day of the latest appended value in yyyyMMdd format. Older days are sealed.
+     */
+    private volatile String loggingDay;
+    private volatile Day currentDay;
+    /*
+     * Force the files written by a batch to disk at the end of the batch.
+     */
+    private boolean syncBatches = false;
+    private final Map<String, FolderHandle> folderHandles = new ConcurrentHashMap<>();
+    /*
+     * IDs of the channels whose new files are compressed (version 2).
+     */
+    private volatile Set<String> compressedChannels = Collections.emptySet();
+
+    /*
+     * Cached resolution of a channel ID to its folder of a day: encoded label, folder key, folder lock and the version
+     * of new files.
+     */
+    private static final class FolderHandle {
+
+        private final String label;
+        private final String day;
+        private final String folderKey;
+        private final ReentrantLock lock;
+        private final boolean compressed;
+
+        private FolderHandle(String label, String day, ReentrantLock lock, boolean compressed) {
+            this.label = label;
+            this.day = day;
+            this.folderKey = label + day;
+            this.lock = lock;
+            this.compressed = compressed;
+        }
+    }
 
-    private String strCurrentDay;
-    private long currentDayFirstTS;
-    private long currentDayLastTS;
+    /*
+     * A day in yyyyMMdd format with its first and last timestamp.
+     */
+    private static final class Day {
+
+        private final String name;
+        private final long firstTS;
+        private final long lastTS;
+
+        private Day(String name, long firstTS) {
+            this.name = name;
+            this.firstTS = firstTS;
+            this.lastTS = firstTS + 86399999;
+        }
+    }
 
     /**
      * Creates an instance of a FileObjectProxy<br>
@@ -87,10 +191,37 @@ public final class FileObjectProxy {
 
         rootNode = new File(rootNodePath);
         rootNode.mkdirs();
-        openFilesHM = new HashMap<>();
-        encodedLabels = new HashMap<>();
+        trashFolder = new File(rootNode, SlotsDb.TRASH_FOLDER_NAME);
+        manifest = new DiskUsageManifest(rootNode);
+        try {
+            manifest.load();
+        } catch (IOException e) {
+            logger.error("Loading the disk usage manifest failed, days are measured again: " + e.getMessage());
+        }
+        openFilesHM = new ConcurrentHashMap<>();
+        openEventsHM = new ConcurrentHashMap<>();
+        encodedLabels = new ConcurrentHashMap<>();
+        locks = new ReentrantLock[LOCK_STRIPES];
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
 
         loadDays();
+        measureLatestDays();
+
+        if (SlotsDb.DELETE_RATE != null) {
+            delete_rate = Math.max(1, Integer.parseInt(SlotsDb.DELETE_RATE));
+        }
+        else {
+            delete_rate = SlotsDb.DELETE_RATE_DEFAULT;
+        }
+        deleter = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "SlotsDb deleter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        emptyTrash();
+        timer.schedule(new ManifestJob(), 0, SlotsDb.DATA_EXPIRATION_CHECK_INTERVAL);
 
         if (SlotsDb.FLUSH_PERIOD != null) {
             flush_period = Integer.parseInt(SlotsDb.FLUSH_PERIOD);
@@ -98,7 +229,12 @@ public final class FileObjectProxy {
             createScheduledFlusher();
         }
         else {
-            logger.info("No Flush Period set. Writing Data directly to disk.");
+            logger.info("No Flush Period set. Data is written back to disk by the operating system.");
+        }
+
+        if ("batch".equalsIgnoreCase(SlotsDb.DURABILITY)) {
+            syncBatches = true;
+            logger.info("Forcing every logged batch to disk.");
         }
 
         if (SlotsDb.DATA_LIFETIME_IN_DAYS != null) {
@@ -136,13 +272,23 @@ public final class FileObjectProxy {
      * loads a sorted list of all days in SLOTSDB. Necessary for search- and delete jobs.
      */
     private void loadDays() {
-        days = new Vector<>();
-        for (File f : rootNode.listFiles()) {
-            if (f.isDirectory()) {
-                days.add(f);
+        days = sortFolders(listDayFolders());
+    }
+
+    /*
+     * Returns the day folders in the root folder, unsorted.
+     */
+    private List<File> listDayFolders() {
+        List<File> folders = new Vector<>();
+        File[] files = rootNode.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                if (f.isDirectory() && !f.getName().equals(SlotsDb.TRASH_FOLDER_NAME)) {
+                    folders.add(f);
+                }
             }
         }
-        days = sortFolders(days);
+        return folders;
     }
 
     private List<File> sortFolders(List<File> days) {
@@ -152,7 +298,10 @@ public final class FileObjectProxy {
             public int compare(File f1, File f2) {
                 int i = 0;
                 try {
-                    i = Long.valueOf(sdf.parse(f1.getName()).getTime()).compareTo(sdf.parse(f2.getName()).getTime());
+                    synchronized (sdf) {
+                        i = Long.valueOf(sdf.parse(f1.getName()).getTime())
+                                .compareTo(sdf.parse(f2.getName()).getTime());
+                    }
                 } catch (ParseException e) {
                     logger.error("Error during sorting Files: Folder doesn't match yyyymmdd Format?");
                 }
@@ -182,6 +331,45 @@ public final class FileObjectProxy {
         }
     }
 
+    /*
+     * Measures the latest two days again before anything is appended: the bytes appended to them since the last
+     * store of the manifest are missing after a crash. Two days, since the crash may have happened shortly after a
+     * new day was started.
+     */
+    private void measureLatestDays() {
+        List<File> currentDays = days;
+        for (int i = Math.max(0, currentDays.size() - 2); i < currentDays.size(); i++) {
+            File day = currentDays.get(i);
+            manifest.set(day.getName(), DiskUsageManifest.measure(day));
+        }
+    }
+
+    /*
+     * Measures the days missing in the manifest (folders written before the manifest existed or while it could not be
+     * loaded) and stores the manifest whenever it has changed.
+     */
+    class ManifestJob extends TimerTask {
+
+        @Override
+        public void run() {
+            try {
+                checkManifest();
+                manifest.store();
+            } catch (IOException e) {
+                logger.error("Storing the disk usage manifest failed: " + e.getMessage());
+            }
+        }
+
+        private void checkManifest() {
+            for (File day : days) {
+                if (!manifest.contains(day.getName())) {
+                    manifest.set(day.getName(), DiskUsageManifest.measure(day));
+                    logger.info("Measured folder " + day.getName() + " for the disk usage manifest.");
+                }
+            }
+        }
+    }
+
     private void createScheduledDeleteJob() {
         timer.schedule(new DeleteJob(), SlotsDb.INITIAL_DELAY, SlotsDb.DATA_EXPIRATION_CHECK_INTERVAL);
     }
@@ -202,13 +390,13 @@ public final class FileObjectProxy {
             limit.setTimeInMillis(System.currentTimeMillis() - (86400000L * limit_days));
             try {
                 for (File curElement : days) {
-                    if (sdf.parse(curElement.getName()).getTime() + 86400000 < limit
+                    if (parseDay(curElement.getName()) + 86400000 < limit
                             .getTimeInMillis()) { /*
                                                    * compare folder 's oldest value to limit
                                                    */
                         logger.info("Folder: " + curElement.getName() + " is older then " + limit_days
                                 + " Days. Will be deleted.");
-                        deleteRecursiveFolder(curElement);
+                        deleteDay(curElement);
                     }
                     else {
                         /* oldest existing Folder is not to be deleted yet */
@@ -231,61 +419,110 @@ public final class FileObjectProxy {
         @Override
         public void run() {
             try {
-                while ((getDiskUsage(rootNode) / 1000000 > limit_size)
+                long size;
+                while (((size = manifest.getTotal()) / 1000000 > limit_size)
                         && (days.size() >= 2)) { /*
                                                   * avoid deleting current folder
                                                   */
-                    deleteOldestFolder();
+                    if (!deleteOldestFolder(size)) {
+                        break;
+                    }
                 }
             } catch (IOException e) {
                 logger.error("Deleting old Data failed in IOException: " + e.getMessage());
             }
         }
 
-        private void deleteOldestFolder() throws IOException {
-            if (days.size() >= 2) {
+        private boolean deleteOldestFolder(long size) throws IOException {
+            List<File> currentDays = days;
+            if (currentDays.size() >= 2) {
                 logger.info("Exceeded Maximum Database Size: " + limit_size + " MB. Current size: " + (size / 1000000)
-                        + " MB. Deleting: " + days.get(0).getCanonicalPath());
-                deleteRecursiveFolder(days.get(0));
-                days.remove(0);
-                clearOpenFilesHashMap();
+                        + " MB. Deleting: " + currentDays.get(0).getCanonicalPath());
+                boolean deleted = deleteDay(currentDays.get(0));
+                loadDays();
+                return deleted;
+            }
+            return false;
+        }
+    }
+
+    /*
+     * Deletes a day folder. Open folders of this day are closed under their lock first, appends to other days are not
+     * blocked. The folder is moved to the trash folder and its bytes are removed from the manifest at once, the files
+     * are deleted in the background.
+     */
+    private boolean deleteDay(File dayFolder) throws IOException {
+        String day = dayFolder.getName();
+        if (day.equals(loggingDay)) {
+            logger.warn("Not deleting folder of the current day: " + day);
+            return false;
+        }
+        closeOpenFolders(day, true);
+        trashFolder.mkdirs();
+        File trashed = new File(trashFolder, day + "-" + System.currentTimeMillis());
+        if (!dayFolder.renameTo(trashed)) {
+            throw new IOException("Unable to move folder " + dayFolder + " to " + trashFolder);
+        }
+        manifest.remove(day);
+        deleter.execute(() -> deleteRecursiveFolder(trashed));
+        return true;
+    }
+
+    /*
+     * Deletes the folders left in the trash folder, e.g. by a restart.
+     */
+    private void emptyTrash() {
+        File[] trashed = trashFolder.listFiles();
+        if (trashed != null) {
+            for (File folder : trashed) {
+                deleter.execute(() -> deleteRecursiveFolder(folder));
             }
         }
     }
 
-    private synchronized void deleteRecursiveFolder(File folder) {
-        if (folder.exists()) {
-            for (File f : folder.listFiles()) {
+    private void deleteRecursiveFolder(File folder) {
+        File[] files = folder.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                if (Thread.currentThread().isInterrupted()) {
+                    return; // closed, the rest is deleted by emptyTrash() on the next start
+                }
                 if (f.isDirectory()) {
                     deleteRecursiveFolder(f);
-                    if (f.delete()) {
-
-                    }
                 }
                 else {
                     f.delete();
+                    throttleDeletion();
                 }
             }
-            folder.delete();
         }
+        folder.delete();
     }
 
     /*
-     * recursive function to get the size of a folder. sums up all files. needs an initial LONG to store size to.
+     * Sleeps after every 100 deleted files, so files are deleted at about delete_rate files per second.
      */
-    private long getDiskUsage(File folder) throws IOException {
-        size = 0;
-        recursive_size_walker(folder);
-        return size;
+    private void throttleDeletion() {
+        if (++deletedFiles % 100 != 0) {
+            return;
+        }
+        try {
+            Thread.sleep(100000L / delete_rate);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
     }
 
-    private void recursive_size_walker(File folder) throws IOException {
-        for (File f : folder.listFiles()) {
-            size += f.length();
-            if (f.isDirectory()) {
-                recursive_size_walker(f);
-            }
-        }
+    /**
+     * Sets the channels whose new files are written compressed (version 2). Files already written keep their
+     * version, a channel switches with its next new file.
+     * 
+     * @param channelIds
+     *            IDs of the channels
+     */
+    public void setCompressedChannels(Set<String> channelIds) {
+        compressedChannels = channelIds;
+        folderHandles.clear();
     }
 
     /**
@@ -304,21 +541,110 @@ public final class FileObjectProxy {
      * @throws IOException
      *             if an I/O error occurs.
      */
-    public synchronized void appendValue(String id, double value, long timestamp, byte state, long storingPeriod)
+    public void appendValue(String id, double value, long timestamp, byte state, long storingPeriod)
             throws IOException {
-        FileObject toStoreIn = null;
-
-        id = encodeLabel(id);
+        appendBatch(new String[] { id }, new double[] { value }, new byte[] { state },
+                new long[] { storingPeriod }, 1, timestamp);
+    }
 
+    /**
+     * Appends the values of one logging tick. The folders are resolved through the handle table, so labels are
+     * encoded and folder keys built once per channel and day. With durability "batch" every file written is forced
+     * to disk once after all values have been appended.<br>
+     * <br>
+     * A value that cannot be stored does not stop the batch, the first error is thrown after the batch.
+     * 
+     * @param ids
+     *            channel IDs
+     * @param values
+     *            values, NaN if there is no value
+     * @param states
+     *            flag codes
+     * @param storingPeriods
+     *            storing periods
+     * @param count
+     *            number of values in the arrays
+     * @param timestamp
+     *            time stamp of all values
+     * @throws IOException
+     *             if an I/O error occurs.
+     */
+    public void appendBatch(String[] ids, double[] values, byte[] states, long[] storingPeriods, int count,
+            long timestamp) throws IOException {
         String strDate = getStrDate(timestamp);
 
+        /*
+         * The first value of a new day closes the folders of the previous days. Done before a folder lock is taken,
+         * because closing locks the other folders.
+         */
+        if (loggingDay == null || strDate.compareTo(loggingDay) > 0) {
+            startLoggingDay(strDate);
+        }
+
+        IOException error = null;
+        List<FolderHandle> written = syncBatches ? new ArrayList<>(count) : null;
+
+        for (int i = 0; i < count; i++) {
+            FolderHandle handle = handleFor(ids[i], strDate);
+            handle.lock.lock();
+            try {
+                if (appendValueLocked(handle.label, strDate, values[i], timestamp, states[i], storingPeriods[i],
+                        handle.compressed) && written != null) {
+                    written.add(handle);
+                }
+            } catch (IOException e) {
+                if (error == null) {
+                    error = e;
+                }
+            } finally {
+                handle.lock.unlock();
+            }
+        }
+
+        if (written != null) {
+            for (FolderHandle handle : written) {
+                handle.lock.lock();
+                try {
+                    FileObjectList folder = openFilesHM.get(handle.folderKey);
+                    if (folder != null) { // not closed meanwhile (closing forces the files)
+                        folder.flush();
+                    }
+                } finally {
+                    handle.lock.unlock();
+                }
+            }
+        }
+
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    /*
+     * Returns the handle of a channel's folder for a day, replacing the cached handle on a day change.
+     */
+    private FolderHandle handleFor(String id, String strDate) throws IOException {
+        FolderHandle handle = folderHandles.get(id);
+        if (handle == null || !handle.day.equals(strDate)) {
+            String label = handle != null ? handle.label : encodeLabel(id);
+            handle = new FolderHandle(label, strDate, lockFor(label + strDate), compressedChannels.contains(id));
+            folderHandles.put(id, handle);
+        }
+        return handle;
+    }
+
+    /*
+     * Returns true if the value has been written to a file that is still open.
+     */
+    private boolean appendValueLocked(String id, String strDate, double value, long timestamp, byte state,
+            long storingPeriod, boolean compressed) throws IOException {
+        FileObject toStoreIn = null;
+
         /*
          * If there is no FileObjectList for this folder, a new one will be created. (This will be the first value
-         * stored for this day) Eventually existing FileObjectLists from the day before will be flushed and closed. Also
-         * the Hashtable size will be monitored, to not have too many opened Filestreams.
+         * stored for this day) Also the Hashtable size will be monitored, to not have too many opened Filestreams.
          */
         if (!openFilesHM.containsKey(id + strDate)) {
-            deleteEntryFromLastDay(timestamp, id);
             controlHashtableSize();
             FileObjectList first = new FileObjectList(rootNode.getPath() + "/" + strDate + "/" + id);
             openFilesHM.put(id + strDate, first);
@@ -328,13 +654,13 @@ public final class FileObjectProxy {
              * will be stored and List reloaded for next Value to store.
              */
             if (first.size() == 0) {
-                toStoreIn = new FileObject(
-                        rootNode.getPath() + "/" + strDate + "/" + id + "/" + timestamp + SlotsDb.FILE_EXTENSION);
+                toStoreIn = FileObject.create(rootNode.getPath() + "/" + strDate + "/" + id, timestamp, compressed);
                 toStoreIn.createFileAndHeader(timestamp, storingPeriod);
                 toStoreIn.append(value, timestamp, state);
                 toStoreIn.close(); /* close() also calls flush(). */
+                manifest.add(strDate, toStoreIn.takeStoredGrowth());
                 openFilesHM.get(id + strDate).reLoadFolder();
-                return;
+                return false;
             }
         }
 
@@ -349,7 +675,7 @@ public final class FileObjectProxy {
              * If StartTimeStamp is newer then the Timestamp of the value to store, this value can't be stored.
              */
             if (toStoreIn.getStartTimeStamp() > timestamp) {
-                return;
+                return false;
             }
         }
         if (toStoreIn == null) {
@@ -362,28 +688,107 @@ public final class FileObjectProxy {
         if (toStoreIn.getStoringPeriod() == storingPeriod || toStoreIn.getStoringPeriod() == 0) {
             toStoreIn = openFilesHM.get(id + strDate).getCurrentFileObject();
             toStoreIn.append(value, timestamp, state);
-            if (flush_period == 0) {
-                toStoreIn.flush();
-            }
-            else {
-                return;
-            }
+            manifest.add(strDate, toStoreIn.takeStoredGrowth());
+            return true;
         }
         else {
             /*
              * Intervall changed -> create new File (if there are no newer values for this day, or file)
              */
             if (toStoreIn.getTimestampForLatestValue() < timestamp) {
-                toStoreIn = new FileObject(
-                        rootNode.getPath() + "/" + strDate + "/" + id + "/" + timestamp + SlotsDb.FILE_EXTENSION);
+                toStoreIn = FileObject.create(rootNode.getPath() + "/" + strDate + "/" + id, timestamp, compressed);
                 toStoreIn.createFileAndHeader(timestamp, storingPeriod);
                 toStoreIn.append(value, timestamp, state);
-                if (flush_period == 0) {
-                    toStoreIn.flush();
+                toStoreIn.close(); /* the reloaded list opens the file again */
+                listToStoreIn.closeAllFiles(); /* writes the buffered chunks of compressed files */
+                manifest.add(strDate, toStoreIn.takeStoredGrowth() + listToStoreIn.takeStoredGrowth());
+                listToStoreIn.reLoadFolder();
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Appends events, each with its own timestamp, to the event logs of their channels and days. The events of a
+     * batch are collected in the buffers of the event logs and written with one write per event log after the batch;
+     * with durability "batch" they are forced to disk as well. An event older than the last event of its channel and
+     * day is not logged.<br>
+     * <br>
+     * An event that cannot be stored does not stop the batch, the first error is thrown after the batch.
+     * 
+     * @param ids
+     *            channel IDs
+     * @param values
+     *            values, NaN if there is no value
+     * @param states
+     *            flag codes
+     * @param timestamps
+     *            time stamps of the events
+     * @param count
+     *            number of events in the arrays
+     * @throws IOException
+     *             if an I/O error occurs.
+     */
+    public void appendEvents(String[] ids, double[] values, byte[] states, long[] timestamps, int count)
+            throws IOException {
+        IOException error = null;
+        Map<String, String> written = new HashMap<>(); // folder key to day
+
+        for (int i = 0; i < count; i++) {
+            try {
+                String strDate = getStrDate(timestamps[i]);
+                if (loggingDay == null || strDate.compareTo(loggingDay) > 0) {
+                    startLoggingDay(strDate); // see appendBatch
                 }
-                openFilesHM.get(id + strDate).reLoadFolder();
+                String label = encodeLabel(ids[i]);
+                String folderKey = label + strDate;
+                ReentrantLock lock = lockFor(folderKey);
+                lock.lock();
+                try {
+                    EventLog eventLog = openEventsHM.get(folderKey);
+                    if (eventLog == null) {
+                        controlEventLogs();
+                        eventLog = new EventLog(new File(rootNode.getPath() + "/" + strDate + "/" + label));
+                        openEventsHM.put(folderKey, eventLog);
+                    }
+                    if (eventLog.append(timestamps[i], values[i], states[i])) {
+                        written.put(folderKey, strDate);
+                    }
+                    else if (logger.isDebugEnabled()) {
+                        logger.debug("Event of " + ids[i] + " at " + timestamps[i]
+                                + " is older than its last logged event, not logged.");
+                    }
+                } finally {
+                    lock.unlock();
+                }
+            } catch (IOException e) {
+                if (error == null) {
+                    error = e;
+                }
+            }
+        }
+
+        for (Map.Entry<String, String> entry : written.entrySet()) {
+            ReentrantLock lock = lockFor(entry.getKey());
+            lock.lock();
+            try {
+                EventLog eventLog = openEventsHM.get(entry.getKey());
+                if (eventLog != null) { // not closed meanwhile (closing writes the buffer)
+                    eventLog.flush(syncBatches);
+                    manifest.add(entry.getValue(), eventLog.takeStoredGrowth());
+                }
+            } catch (IOException e) {
+                if (error == null) {
+                    error = e;
+                }
+            } finally {
+                lock.unlock();
             }
         }
+
+        if (error != null) {
+            throw error;
+        }
     }
 
     private String encodeLabel(String label) throws IOException {
@@ -396,19 +801,52 @@ public final class FileObjectProxy {
         return encodedLabel;
     }
 
-    public synchronized Record read(String label, long timestamp) throws IOException {
+    private ReentrantLock lockFor(String folderKey) {
+        return locks[(folderKey.hashCode() & 0x7fffffff) % LOCK_STRIPES];
+    }
+
+    /*
+     * Loads the files of a label for a day. Folders of the current logging day may be written concurrently: they are
+     * loaded under their lock, and a folder open for appending is read through its open files, which hold the
+     * buffered chunks of compressed files. Sealed days are loaded without locking.
+     */
+    private FileObjectList loadFolder(String label, String strDate) throws IOException {
+        String path = rootNode.getPath() + "/" + strDate + "/" + label;
+        if (!strDate.equals(loggingDay)) {
+            return new FileObjectList(path);
+        }
+        ReentrantLock lock = lockFor(label + strDate);
+        lock.lock();
+        try {
+            FileObjectList open = openFilesHM.get(label + strDate);
+            return open != null ? open : new FileObjectList(path);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Record read(String label, long timestamp) throws IOException {
         // label = URLEncoder.encode(label,Charset.defaultCharset().toString());
         // //encodes label to supported String for Filenames.
         label = encodeLabel(label);
 
         String strDate = getStrDate(timestamp);
 
-        if (!openFilesHM.containsKey(label + strDate)) {
-            controlHashtableSize();
-            FileObjectList fol = new FileObjectList(rootNode.getPath() + "/" + strDate + "/" + label);
-            openFilesHM.put(label + strDate, fol);
+        FileObject toReadFrom;
+        ReentrantLock lock = lockFor(label + strDate);
+        lock.lock();
+        try {
+            /*
+             * Folders opened for appending are read directly, others are loaded for this read only.
+             */
+            FileObjectList fol = openFilesHM.get(label + strDate);
+            toReadFrom = fol != null ? fol.getFileObjectForTimestamp(timestamp) : null;
+        } finally {
+            lock.unlock();
+        }
+        if (toReadFrom == null) {
+            toReadFrom = loadFolder(label, strDate).getFileObjectForTimestamp(timestamp);
         }
-        FileObject toReadFrom = openFilesHM.get(label + strDate).getFileObjectForTimestamp(timestamp);
         if (toReadFrom != null) {
             return toReadFrom.read(timestamp); // null if no value for timestamp
                                                // is available
@@ -416,7 +854,7 @@ public final class FileObjectProxy {
         return null;
     }
 
-    public synchronized List<Record> read(String label, long start, long end) throws IOException {
+    public List<Record> read(String label, long start, long end) throws IOException {
         if (logger.isTraceEnabled()) {
             logger.trace("Called: read(" + label + ", " + start + ", " + end + ")");
         }
@@ -439,10 +877,381 @@ public final class FileObjectProxy {
             end = 50000000000000L;
         }
 
-        // label = URLEncoder.encode(label,Charset.defaultCharset().toString());
-        // //encodes label to supported String for Filenames.
+        List<FileObject> toRead = filesFromTo(encodeLabel(label), start, end);
+
+        /*
+         * Read all FileObjects: first (2nd,3rd,4th....n-1) last first and last will be read separately, to not exceed
+         * timestamp range.
+         */
+        if (toRead != null) {
+            if (toRead.size() > 1) {
+                toReturn.addAll(toRead.get(0).read(start, toRead.get(0).getTimestampForLatestValue()));
+                for (int i = 1; i < toRead.size() - 1; i++) {
+                    toReturn.addAll(toRead.get(i).readFully());
+                }
+                toReturn.addAll(
+                        toRead.get(toRead.size() - 1).read(toRead.get(toRead.size() - 1).getStartTimeStamp(), end));
+
+                /*
+                 * Some Values might be null -> remove
+                 */
+                toReturn.removeAll(Collections.singleton(null));
+
+            }
+            else if (toRead.size() == 1) { // single FileObject
+                toReturn.addAll(toRead.get(0).read(start, end));
+                toReturn.removeAll(Collections.singleton(null));
+            }
+        }
+        logger.trace("Selected " + SlotsDb.FILE_EXTENSION + " files contain " + toReturn.size() + " Values.");
+        return toReturn;
+    }
+
+    /**
+     * Returns the events of a label between start and end (both included), sorted by time. Event logs of the current
+     * logging day are read through the open event log, which holds the buffered events.
+     * 
+     * @param label
+     *            channel ID
+     * @param start
+     *            start timestamp
+     * @param end
+     *            end timestamp
+     * @return a list of records
+     * @throws IOException
+     *             if an I/O error occurs.
+     */
+    public List<Record> readEvents(String label, long start, long end) throws IOException {
+        List<Record> toReturn = new ArrayList<>();
+        if (start > end) {
+            return toReturn;
+        }
+        label = encodeLabel(label);
+        for (File folder : sortFolders(eventFolders(label, start, end))) {
+            toReturn.addAll(loadEventLog(label, folder.getName()).read(start, end));
+        }
+        return toReturn;
+    }
+
+    /**
+     * Returns true if there is an event log of a label for a day between start and end, without reading it.
+     * 
+     * @param label
+     *            channel ID
+     * @param start
+     *            start timestamp
+     * @param end
+     *            end timestamp
+     * @return true if events may have been logged between start and end
+     * @throws IOException
+     *             if an I/O error occurs.
+     */
+    public boolean hasEvents(String label, long start, long end) throws IOException {
+        return start <= end && !eventFolders(encodeLabel(label), start, end).isEmpty();
+    }
+
+    /*
+     * Returns the day folders between start and end with an event log of an encoded label, unsorted.
+     */
+    private List<File> eventFolders(String label, long start, long end) {
+        List<File> dayFolders = new ArrayList<>();
+        for (File folder : listDayFolders()) {
+            if (isFolderBetweenStartAndEnd(folder.getName(), start, end)
+                    && new File(folder, label + "/" + SlotsDb.EVENT_FILE_NAME).exists()) {
+                dayFolders.add(folder);
+            }
+        }
+        return dayFolders;
+    }
+
+    /**
+     * Returns the latest event of a label in the latest day folder, like {@link #readLatest(String)} for values.
+     * 
+     * @param label
+     *            channel ID
+     * @return the latest event or null if there is none
+     * @throws IOException
+     *             if an I/O error occurs.
+     */
+    public Record readLatestEvent(String label) throws IOException {
+        label = encodeLabel(label);
+        List<File> currentDays = days;
+        String latestDay = loggingDay != null ? loggingDay
+                : currentDays.isEmpty() ? null : currentDays.get(currentDays.size() - 1).getName();
+        if (latestDay == null
+                || !new File(rootNode, latestDay + "/" + label + "/" + SlotsDb.EVENT_FILE_NAME).exists()) {
+            return null;
+        }
+        return loadEventLog(label, latestDay).readLatest();
+    }
+
+    /*
+     * Returns the event log of a label for a day, see loadFolder.
+     */
+    private EventLog loadEventLog(String label, String strDate) throws IOException {
+        File folder = new File(rootNode.getPath() + "/" + strDate + "/" + label);
+        if (!strDate.equals(loggingDay)) {
+            return new EventLog(folder);
+        }
+        ReentrantLock lock = lockFor(label + strDate);
+        lock.lock();
+        try {
+            EventLog open = openEventsHM.get(label + strDate);
+            return open != null ? open : new EventLog(folder);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns a cursor over the values and events of a label between start and end (both included). The cursor loads
+     * the files of one day at a time and reads them in windows of an hour, so only the records of one window are held
+     * in memory.
+     * 
+     * @param label
+     *            channel ID
+     * @param start
+     *            start timestamp
+     * @param end
+     *            end timestamp
+     * @return a cursor over the records, sorted by time
+     * @throws IOException
+     *             if an I/O error occurs.
+     */
+    public RecordCursor cursor(String label, long start, long end) throws IOException {
         label = encodeLabel(label);
+        if (end > 50000000000000L) { // see read
+            end = 50000000000000L;
+        }
+        List<File> dayFolders = new ArrayList<>();
+        if (start <= end) {
+            for (File folder : listDayFolders()) {
+                if (isFolderBetweenStartAndEnd(folder.getName(), start, end)
+                        && new File(folder, label).isDirectory()) {
+                    dayFolders.add(folder);
+                }
+            }
+        }
+        return new WindowCursor(label, sortFolders(dayFolders), start, end);
+    }
+
+    /*
+     * Cursor over the day folders of a label, see cursor(String, long, long). The slots of a window are decoded into
+     * primitive arrays kept for the whole cursor, a record is only created when it is returned.
+     */
+    private final class WindowCursor implements RecordCursor {
+
+        private final String label;
+        private final Iterator<File> dayFolders;
+        private final long start;
+        private final long end;
+
+        private List<FileObject> dayFiles;
+        private EventLog dayEvents;
+        private long windowStart;
+        private long dayEnd;
+
+        // slot values of the window without the padded slots, reused for every window
+        private double[] values = new double[256];
+        private byte[] flags = new byte[256];
+        private long[] timestamps = new long[256];
+        private int count = 0;
+        private int position = 0;
+
+        private List<Record> events = Collections.emptyList();
+        private int eventPosition = 0;
+
+        private WindowCursor(String label, List<File> dayFolders, long start, long end) {
+            this.label = label;
+            this.dayFolders = dayFolders.iterator();
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public boolean hasNext() throws IOException {
+            while (position == count && eventPosition == events.size()) {
+                if (dayFiles == null && !nextDay()) {
+                    return false;
+                }
+                readWindow();
+            }
+            return true;
+        }
+
+        @Override
+        public Record next() throws IOException {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            // values before events of the same timestamp, as in merge
+            if (eventPosition == events.size()
+                    || position < count && timestamps[position] <= events.get(eventPosition).getTimestamp()) {
+                Record record = new Record(new DoubleValue(values[position]), timestamps[position],
+                        Flag.newFlag(flags[position]));
+                position++;
+                return record;
+            }
+            return events.get(eventPosition++);
+        }
+
+        private boolean nextDay() throws IOException {
+            if (!dayFolders.hasNext()) {
+                return false;
+            }
+            String day = dayFolders.next().getName();
+            long dayStart = getFolderTimestamp(day);
+            windowStart = Math.max(start, dayStart);
+            dayEnd = Math.min(end, dayStart + 86399999);
+            dayFiles = loadFolder(label, day).getFileObjectsFromTo(windowStart, dayEnd);
+            dayEvents = new File(rootNode, day + "/" + label + "/" + SlotsDb.EVENT_FILE_NAME).exists()
+                    ? loadEventLog(label, day)
+                    : null;
+            return true;
+        }
+
+        private void readWindow() throws IOException {
+            long windowEnd = Math.min(dayEnd, windowStart + CURSOR_WINDOW - 1);
+            count = 0;
+            for (FileObject file : dayFiles) {
+                readSlots(file, windowStart, windowEnd);
+            }
+            position = 0;
+            events = dayEvents != null ? dayEvents.read(windowStart, windowEnd) : Collections.emptyList();
+            eventPosition = 0;
+
+            if (windowEnd == dayEnd) {
+                dayFiles = null;
+                dayEvents = null;
+            }
+            else {
+                windowStart = windowEnd + 1;
+            }
+        }
+
+        /*
+         * Appends the slots of a file lying in [from, to] to the window, padded slots are dropped.
+         */
+        private void readSlots(FileObject file, long from, long to) throws IOException {
+            long period = file.getStoringPeriod();
+            long fileStart = file.getStartTimeStamp();
+            long firstSlot = Math.max(0, Math.floorDiv(from - fileStart + period - 1, period));
+            long lastSlot = Math.min(file.getSlotCount() - 1, Math.floorDiv(to - fileStart, period));
+            if (firstSlot > lastSlot) {
+                return;
+            }
+
+            int slots = (int) (lastSlot - firstSlot + 1);
+            if (count + slots > values.length) {
+                int capacity = Math.max(values.length * 2, count + slots);
+                values = Arrays.copyOf(values, capacity);
+                flags = Arrays.copyOf(flags, capacity);
+                timestamps = Arrays.copyOf(timestamps, capacity);
+            }
+
+            int read = file.readSlots(firstSlot, values, flags, count, slots);
+            int kept = count;
+            for (int i = 0; i < read; i++) {
+                double value = values[count + i];
+                if (!Double.isNaN(value)) {
+                    values[kept] = value;
+                    flags[kept] = flags[count + i];
+                    timestamps[kept] = fileStart + (firstSlot + i) * period;
+                    kept++;
+                }
+            }
+            count = kept;
+        }
+    }
+
+    /**
+     * Merges two lists of records sorted by time, e.g. the values and events of a channel logged both ways after a
+     * reconfiguration.
+     * 
+     * @param first
+     *            records sorted by time
+     * @param second
+     *            records sorted by time
+     * @return the records of both lists sorted by time
+     */
+    static List<Record> merge(List<Record> first, List<Record> second) {
+        if (second.isEmpty()) {
+            return first;
+        }
+        if (first.isEmpty()) {
+            return second;
+        }
+        List<Record> merged = new ArrayList<>(first.size() + second.size());
+        int i = 0;
+        int j = 0;
+        while (i < first.size() && j < second.size()) {
+            if (first.get(i).getTimestamp() <= second.get(j).getTimestamp()) {
+                merged.add(first.get(i++));
+            }
+            else {
+                merged.add(second.get(j++));
+            }
+        }
+        merged.addAll(first.subList(i, first.size()));
+        merged.addAll(second.subList(j, second.size()));
+        return merged;
+    }
+
+    /**
+     * Returns the values between start and end downsampled to one record per bucket of <code>resolution</code> ms,
+     * starting at <code>start</code>: the mean of the bucket's values with the bucket start as timestamp. Empty
+     * buckets are left out. The blocks inside a bucket are read from their summaries, so long ranges are read without
+     * reading every slot.
+     * 
+     * @param label
+     *            channel ID
+     * @param start
+     *            start timestamp
+     * @param end
+     *            end timestamp
+     * @param resolution
+     *            bucket length in ms
+     * @return a list of records
+     * @throws IOException
+     *             if an I/O error occurs or the range has more than {@link #MAX_BUCKETS} buckets.
+     */
+    public List<Record> readAggregated(String label, long start, long end, long resolution) throws IOException {
+        if (resolution <= 0) {
+            return read(label, start, end);
+        }
+
+        List<Record> toReturn = new ArrayList<>();
+        if (start > end) {
+            logger.trace("Invalid Read Request: startTS > endTS");
+            return toReturn;
+        }
+        if (end > 50000000000000L) { // see read
+            end = 50000000000000L;
+        }
 
+        long bucketCount = (end - start) / resolution + 1;
+        if (bucketCount > MAX_BUCKETS) {
+            throw new IOException("Resolution of " + resolution + " ms results in more than " + MAX_BUCKETS
+                    + " buckets.");
+        }
+
+        BlockSummary[] buckets = new BlockSummary[(int) bucketCount];
+        for (FileObject file : filesFromTo(encodeLabel(label), start, end)) {
+            file.aggregate(start, end, start, resolution, buckets);
+        }
+
+        for (int i = 0; i < buckets.length; i++) {
+            if (buckets[i] != null && buckets[i].getCount() > 0) {
+                toReturn.add(new Record(new DoubleValue(buckets[i].getMean()), start + i * resolution, Flag.VALID));
+            }
+        }
+        return toReturn;
+    }
+
+    /*
+     * Returns the files of an encoded label with data between start and end, sorted by time.
+     */
+    private List<FileObject> filesFromTo(String label, long start, long end) throws IOException {
         String strStartDate = getStrDate(start);
         String strEndDate = getStrDate(end);
 
@@ -457,19 +1266,19 @@ public final class FileObjectProxy {
              * label.
              */
             String strSubfolder;
-            for (File folder : rootNode.listFiles()) {
+            for (File folder : listDayFolders()) {
                 if (folder.isDirectory()) {
                     if (isFolderBetweenStartAndEnd(folder.getName(), start, end)) {
                         if (Arrays.asList(folder.list()).contains(label)) {
                             strSubfolder = rootNode.getPath() + "/" + folder.getName() + "/" + label;
-                            days.add(new FileObjectList(strSubfolder));
+                            days.add(loadFolder(label, folder.getName()));
                             logger.trace(strSubfolder + " contains " + SlotsDb.FILE_EXTENSION + " files to read from.");
                         }
                     }
                 }
             }
             /*
-             * Sort days, because rootNode.listFiles() is unsorted. FileObjectLists MUST be sorted, otherwise data
+             * Sort days, because listDayFolders() is unsorted. FileObjectLists MUST be sorted, otherwise data
              * output wouldn't be sorted.
              */
             Collections.sort(days, new Comparator<FileObjectList>() {
@@ -484,7 +1293,7 @@ public final class FileObjectProxy {
              * Create a list with all file-objects that must be read for this reading request.
              */
             if (days.size() == 0) {
-                return toReturn;
+                return toRead;
             }
             else if (days.size() == 1) {
                 toRead.addAll(days.get(0).getFileObjectsFromTo(start, end));
@@ -504,45 +1313,16 @@ public final class FileObjectProxy {
             if (folder.list() != null) {
                 if (folder.list().length > 0) { // Are there Files in the
                                                 // folder, that should be read?
-                    fol = new FileObjectList(rootNode.getPath() + "/" + strStartDate + "/" + label);
+                    fol = loadFolder(label, strStartDate);
                     toRead.addAll(fol.getFileObjectsFromTo(start, end));
                 }
             }
         }
         logger.trace("Found " + toRead.size() + " " + SlotsDb.FILE_EXTENSION + " files to read from.");
-
-        /*
-         * Read all FileObjects: first (2nd,3rd,4th....n-1) last first and last will be read separately, to not exceed
-         * timestamp range.
-         */
-        if (toRead != null) {
-            if (toRead.size() > 1) {
-                toReturn.addAll(toRead.get(0).read(start, toRead.get(0).getTimestampForLatestValue()));
-                toRead.get(0).close();
-                for (int i = 1; i < toRead.size() - 1; i++) {
-                    toReturn.addAll(toRead.get(i).readFully());
-                    toRead.get(i).close();
-                }
-                toReturn.addAll(
-                        toRead.get(toRead.size() - 1).read(toRead.get(toRead.size() - 1).getStartTimeStamp(), end));
-                toRead.get(toRead.size() - 1).close();
-
-                /*
-                 * Some Values might be null -> remove
-                 */
-                toReturn.removeAll(Collections.singleton(null));
-
-            }
-            else if (toRead.size() == 1) { // single FileObject
-                toReturn.addAll(toRead.get(0).read(start, end));
-                toReturn.removeAll(Collections.singleton(null));
-            }
-        }
-        logger.trace("Selected " + SlotsDb.FILE_EXTENSION + " files contain " + toReturn.size() + " Values.");
-        return toReturn;
+        return toRead;
     }
 
-    public synchronized Record readLatest(String label) throws IOException {
+    public Record readLatest(String label) throws IOException {
         if (logger.isTraceEnabled()) {
             logger.trace("Called: readLatest(" + label + ")");
         }
@@ -553,7 +1333,7 @@ public final class FileObjectProxy {
          */
         long latestDay = 0;
         File latestFolder = null;
-        for (File folder : rootNode.listFiles()) {
+        for (File folder : listDayFolders()) {
             if (folder.isDirectory()) {
                 if (getFolderTimestamp(folder.getName()) > latestDay) {
                     latestFolder = folder;
@@ -572,9 +1352,12 @@ public final class FileObjectProxy {
         FileObjectList fileObjects = null;
         if (Arrays.asList(latestFolder.list()).contains(label)) {
             strSubfolder = rootNode.getPath() + "/" + latestFolder.getName() + "/" + label;
-            fileObjects = new FileObjectList(strSubfolder);
+            fileObjects = loadFolder(label, latestFolder.getName());
             logger.trace(strSubfolder + " contains " + SlotsDb.FILE_EXTENSION + " files to read from.");
         }
+        if (fileObjects == null) {
+            return null;
+        }
 
         /*
          * For each file get the latest Record and compare those
@@ -603,11 +1386,17 @@ public final class FileObjectProxy {
      */
     private long getFolderTimestamp(String name) {
         try {
-            sdf.parse(name);
+            return parseDay(name);
         } catch (ParseException e) {
             logger.error("Unable to parse Timestamp from: " + name + " folder. " + e.getMessage());
+            return 0;
+        }
+    }
+
+    private long parseDay(String name) throws ParseException {
+        synchronized (sdf) {
+            return sdf.parse(name).getTime();
         }
-        return sdf.getCalendar().getTimeInMillis();
     }
 
     /**
@@ -624,12 +1413,8 @@ public final class FileObjectProxy {
      * @return boolean true if yes else false
      */
     private boolean isFolderBetweenStartAndEnd(String name, long start, long end) {
-        try {
-            sdf.parse(name);
-        } catch (ParseException e) {
-            logger.error("Unable to parse Timestamp from: " + name + " folder. " + e.getMessage());
-        }
-        if (start <= sdf.getCalendar().getTimeInMillis() + 86399999 && sdf.getCalendar().getTimeInMillis() <= end) { // if
+        long folderTS = getFolderTimestamp(name);
+        if (start <= folderTS + 86399999 && folderTS <= end) { // if
                                                                                                                      // start
                                                                                                                      // <=
                                                                                                                      // folder.lastTSofDay
@@ -643,50 +1428,133 @@ public final class FileObjectProxy {
     }
 
     /*
-     * strCurrentDay holds the current Day in yyyyMMdd format, because SimpleDateFormat uses a lot cpu-time.
-     * currentDayFirstTS and ... currentDayLastTS mark the first and last timestamp of this day. If a TS exceeds this
-     * range, strCurrentDay, currentDayFirstTS, currentDayLastTS will be updated.
+     * currentDay holds the current Day in yyyyMMdd format, because SimpleDateFormat uses a lot cpu-time, with the first
+     * and last timestamp of this day. If a TS exceeds this range, currentDay will be replaced.
      */
     private String getStrDate(long timestamp) throws IOException {
-        if (strCurrentDay != null) {
-            if (timestamp >= currentDayFirstTS && timestamp <= currentDayLastTS) {
-                return strCurrentDay;
-            }
+        Day day = currentDay;
+        if (day != null && timestamp >= day.firstTS && timestamp <= day.lastTS) {
+            return day.name;
         }
         /*
          * timestamp for other day or not initialized yet.
          */
-        date.setTime(timestamp);
-        strCurrentDay = sdf.format(date);
-        try {
-            currentDayFirstTS = sdf.parse(strCurrentDay).getTime();
-        } catch (ParseException e) {
-            logger.error("Unable to parse Timestamp from: " + currentDayFirstTS + " String.");
+        synchronized (sdf) {
+            date.setTime(timestamp);
+            String strDay = sdf.format(date);
+            try {
+                day = new Day(strDay, sdf.parse(strDay).getTime());
+            } catch (ParseException e) {
+                throw new IOException("Unable to parse Timestamp from: " + strDay + " String.");
+            }
         }
-        currentDayLastTS = currentDayFirstTS + 86399999;
-        return strCurrentDay;
+        currentDay = day;
+        return day.name;
     }
 
-    private void deleteEntryFromLastDay(long timestamp, String label) throws IOException {
-        String strDate = getStrDate(timestamp - 86400000);
-        if (openFilesHM.containsKey(label + strDate)) {
-            /*
-             * Value for new day has been registered! Close and flush all connections! Empty Hashtable!
-             */
-            clearOpenFilesHashMap();
-            logger.info(
-                    "Started logging to a new Day. <" + strDate + "> Folder has been closed and flushed completely.");
+    /*
+     * Value for new day has been registered! Close and flush the folders of the previous days.
+     */
+    private void startLoggingDay(String strDate) throws IOException {
+        synchronized (dayLock) {
+            if (loggingDay != null && strDate.compareTo(loggingDay) <= 0) {
+                return;
+            }
+            String previousDay = loggingDay;
+            loggingDay = strDate;
+            closeOpenFolders(strDate, false);
+            if (previousDay != null) {
+                logger.info("Started logging to a new Day. <" + previousDay
+                        + "> Folder has been closed and flushed completely.");
+            }
             /* reload days */
             loadDays();
         }
     }
 
-    private void clearOpenFilesHashMap() throws IOException {
-        Iterator<FileObjectList> itr = openFilesHM.values().iterator();
-        while (itr.hasNext()) { // kick out everything
-            itr.next().closeAllFiles();
+    /*
+     * Closes the open folders of a day (matching == true) or of all other days (matching == false), each under its
+     * lock. Must not be called while holding a folder lock.
+     */
+    private void closeOpenFolders(String day, boolean matching) throws IOException {
+        closeOpenFolders(folderKey -> folderKey.endsWith(day) == matching);
+    }
+
+    /*
+     * Closes the open folders and event logs whose folder key is selected, each under its lock. Must not be called
+     * while holding a folder lock.
+     */
+    private void closeOpenFolders(Predicate<String> selected) throws IOException {
+        Iterator<Map.Entry<String, FileObjectList>> itr = openFilesHM.entrySet().iterator();
+        while (itr.hasNext()) {
+            Map.Entry<String, FileObjectList> entry = itr.next();
+            if (!selected.test(entry.getKey())) {
+                continue;
+            }
+            ReentrantLock lock = lockFor(entry.getKey());
+            lock.lock();
+            try {
+                closeFolder(entry.getKey(), entry.getValue());
+                itr.remove();
+            } finally {
+                lock.unlock();
+            }
+        }
+        Iterator<Map.Entry<String, EventLog>> events = openEventsHM.entrySet().iterator();
+        while (events.hasNext()) {
+            Map.Entry<String, EventLog> entry = events.next();
+            if (!selected.test(entry.getKey())) {
+                continue;
+            }
+            ReentrantLock lock = lockFor(entry.getKey());
+            lock.lock();
+            try {
+                closeEventLog(entry.getKey(), entry.getValue());
+                events.remove();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /*
+     * Closes the files of an open folder and counts the bytes written by closing them (buffered chunks of compressed
+     * files). The folder key ends with the day.
+     */
+    private void closeFolder(String folderKey, FileObjectList folder) throws IOException {
+        folder.closeAllFiles();
+        manifest.add(folderKey.substring(folderKey.length() - 8), folder.takeStoredGrowth());
+    }
+
+    private void closeEventLog(String folderKey, EventLog eventLog) throws IOException {
+        eventLog.close();
+        manifest.add(folderKey.substring(folderKey.length() - 8), eventLog.takeStoredGrowth());
+    }
+
+    /*
+     * Closes some event logs if more than max_open_files are open, see controlHashtableSize. Called under a folder
+     * lock, so locked event logs are skipped.
+     */
+    private void controlEventLogs() throws IOException {
+        if (openEventsHM.size() <= max_open_files) {
+            return;
+        }
+        Iterator<Map.Entry<String, EventLog>> itr = openEventsHM.entrySet().iterator();
+        int closed = 0;
+        while (itr.hasNext() && closed < max_open_files / 5) {
+            Map.Entry<String, EventLog> entry = itr.next();
+            ReentrantLock lock = lockFor(entry.getKey());
+            if (!lock.tryLock()) {
+                continue;
+            }
+            try {
+                closeEventLog(entry.getKey(), entry.getValue());
+                itr.remove();
+                closed++;
+            } finally {
+                lock.unlock();
+            }
         }
-        openFilesHM = new HashMap<>();
     }
 
     private void controlHashtableSize() throws IOException {
@@ -699,18 +1567,25 @@ public final class FileObjectProxy {
         if (openFilesHM.size() > max_open_files) {
             logger.debug("More then " + max_open_files
                     + " DataStreams are opened. Flushing and closing some to not exceed OS-Limit.");
-            Iterator<FileObjectList> itr = openFilesHM.values().iterator();
-            for (int i = 0; i < (max_open_files / 5); i++) { // randomly kick
-                                                             // out some of
-                                                             // the
-                                                             // FileObjectLists.
-                                                             // -> the needed
-                                                             // ones will be
-                                                             // reinitialized,
-                                                             // no problem
-                                                             // here.
-                itr.next().closeAllFiles();
-                itr.remove();
+            Iterator<Map.Entry<String, FileObjectList>> itr = openFilesHM.entrySet().iterator();
+            int closed = 0;
+            while (itr.hasNext() && closed < max_open_files / 5) {
+                /*
+                 * randomly kick out some of the FileObjectLists. -> the needed ones will be reinitialized, no problem
+                 * here. Folders locked by a concurrent append are skipped, waiting for them could deadlock.
+                 */
+                Map.Entry<String, FileObjectList> entry = itr.next();
+                ReentrantLock lock = lockFor(entry.getKey());
+                if (!lock.tryLock()) {
+                    continue;
+                }
+                try {
+                    closeFolder(entry.getKey(), entry.getValue());
+                    itr.remove();
+                    closed++;
+                } finally {
+                    lock.unlock();
+                }
             }
         }
     }
@@ -721,13 +1596,46 @@ public final class FileObjectProxy {
      * @throws IOException
      *             if an I/O error occurs.
      */
-    public synchronized void flush() throws IOException {
+    public void flush() throws IOException {
 
-        Iterator<FileObjectList> itr = openFilesHM.values().iterator();
-        while (itr.hasNext()) {
-            itr.next().flush();
+        for (Map.Entry<String, FileObjectList> entry : openFilesHM.entrySet()) {
+            ReentrantLock lock = lockFor(entry.getKey());
+            lock.lock();
+            try {
+                entry.getValue().flush();
+            } finally {
+                lock.unlock();
+            }
+        }
+        for (Map.Entry<String, EventLog> entry : openEventsHM.entrySet()) {
+            ReentrantLock lock = lockFor(entry.getKey());
+            lock.lock();
+            try {
+                entry.getValue().flush(true);
+            } finally {
+                lock.unlock();
+            }
         }
 
         logger.info("Data from " + openFilesHM.size() + " Folders flushed to disk.");
     }
+
+    /**
+     * Stops the scheduled jobs and the deleter, closes all open folders and event logs and stores the disk usage
+     * manifest. Folders left in the trash folder are deleted on the next start.
+     * 
+     * @throws IOException
+     *             if an I/O error occurs.
+     */
+    public void close() throws IOException {
+        timer.cancel();
+        deleter.shutdownNow();
+        try {
+            closeOpenFolders(folderKey -> true);
+        } finally {
+            folderHandles.clear();
+            manifest.store();
+        }
+        logger.info("Closed the SlotsDb folders in " + rootNode.getPath());
+    }
 }
@@ -0,0 +1,560 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.datalogger.slotsdb;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.Collections;
+import java.util.List;
+import java.util.Vector;
+
+import org.openmuc.framework.data.DoubleValue;
+import org.openmuc.framework.data.Flag;
+import org.openmuc.framework.data.Record;
+
+/**
+ * Slot file version 1: 16 byte header (start timestamp, storage period) followed by one slot of 9 bytes (double
+ * value, flag byte) per storage period.<br>
+ * <br>
+ * Appends write into a memory mapping of the file tail region, which is extended in steps of {@link #MAP_INCREMENT}
+ * bytes. Reads use the same mapping while the file is open for appending, otherwise they read the slots they need
+ * through a channel of their own. Opening a file reads its header and the end of its slots the same way, so files that
+ * are only read (like the sealed days of a range query) are never mapped and hold no mapping until garbage collection.
+ * There are no streams to switch between, so a read does not disturb a following append and vice versa. Appended slots are visible to readers of this object as
+ * soon as {@link #append(double, long, byte)} returns.<br>
+ * <br>
+ * The mapping extends the file beyond the written slots. Those slots are zero and never carry a valid flag code, so
+ * they are skipped when a file is opened (also after a crash) and cut off when the file is closed.<br>
+ * <br>
+ * Every complete block of {@link #BLOCK_SLOTS} slots is summarized (see {@link BlockSummary}) in a summary file next
+ * to the slot file, which is written by the appends. Aggregated range queries read the summaries of the blocks inside
+ * a bucket instead of their slots. Summaries missing after a crash or in files written before are recomputed when the
+ * file is opened for appending.<br>
+ * <br>
+ * Only one thread may append to a FileObject at a time, reads may run concurrently.
+ */
+final class MappedFileObject extends FileObject {
+
+    private static final int HEADER_SIZE = 16;
+    private static final int SLOT_SIZE = 9;
+    /*
+     * Bytes the mapping is extended by when an append reaches its end (4096 slots).
+     */
+    private static final long MAP_INCREMENT = SLOT_SIZE * 4096L;
+    /*
+     * Slots per summarized block.
+     */
+    static final int BLOCK_SLOTS = 256;
+    /*
+     * Slots read at a time when the zero slots at the end of a file are skipped.
+     */
+    private static final int TAIL_SCAN_SLOTS = 256;
+
+    private RandomAccessFile raf;
+    private FileChannel channel;
+    /*
+     * Writable mapping of the file starting at byte 0, at least length bytes long while the file is open for
+     * appending and null otherwise. Only the appending thread publishes it.
+     */
+    private volatile MappedByteBuffer buffer;
+    /*
+     * Length of the header and the written slots, published after a slot has been written.
+     */
+    private volatile long length = 0;
+
+    private final File summaryFile;
+    private RandomAccessFile summaryRaf; // open while appending
+    /*
+     * Summaries of the complete blocks, loaded on first use. Published before summaryCount.
+     */
+    private volatile ByteBuffer summaries;
+    private volatile int summaryCount = 0;
+    /*
+     * Summary of the incomplete last block while appending.
+     */
+    private final BlockSummary openBlock = new BlockSummary();
+
+    MappedFileObject(File file) throws IOException {
+        super(file);
+        String name = file.getName();
+        if (name.endsWith(SlotsDb.FILE_EXTENSION)) {
+            name = name.substring(0, name.length() - SlotsDb.FILE_EXTENSION.length());
+        }
+        summaryFile = new File(file.getParentFile(), name + SlotsDb.SUMMARY_FILE_EXTENSION);
+        long fileLength = dataFile.length();
+        if (dataFile.exists() && fileLength >= HEADER_SIZE) {
+            /*
+             * File already exists -> get file Header (startTime and step-frequency) and the written slots. TODO:
+             * compare to starttime and frequency in constructor! new file needed? update to file-array!
+             */
+            try (RandomAccessFile in = new RandomAccessFile(dataFile, "r")) {
+                FileChannel inChannel = in.getChannel();
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                readFully(inChannel, header, 0);
+                startTimeStamp = header.getLong(0); // byte 0-7 in file (cached)
+                storagePeriod = header.getLong(8); // byte 8-15 in file (cached)
+                length = writtenLength(inChannel, fileLength);
+            }
+        }
+        else {
+            length = fileLength;
+        }
+        startAccounting();
+    }
+
+    /*
+     * Skips the zero slots at the end of a mapped region, which have never been written. The slots are read backwards
+     * in steps of TAIL_SCAN_SLOTS, a closed file has none and is done with the first step.
+     */
+    private static long writtenLength(FileChannel in, long fileLength) throws IOException {
+        long slots = (fileLength - HEADER_SIZE) / SLOT_SIZE;
+        ByteBuffer tail = ByteBuffer.allocate((int) Math.min(slots, TAIL_SCAN_SLOTS) * SLOT_SIZE);
+        while (slots > 0) {
+            int count = (int) Math.min(slots, TAIL_SCAN_SLOTS);
+            tail.clear();
+            tail.limit(count * SLOT_SIZE);
+            readFully(in, tail, HEADER_SIZE + (slots - count) * SLOT_SIZE);
+            for (int i = count; i > 0; i--) {
+                if (tail.get(i * SLOT_SIZE - 1) != 0) {
+                    return HEADER_SIZE + (slots - count + i) * SLOT_SIZE;
+                }
+            }
+            slots -= count;
+        }
+        return HEADER_SIZE;
+    }
+
+    private static void readFully(FileChannel in, ByteBuffer target, long position) throws IOException {
+        while (target.hasRemaining()) {
+            int read = in.read(target, position);
+            if (read < 0) {
+                throw new EOFException();
+            }
+            position += read;
+        }
+    }
+
+    private void checkMappable(long size) throws IOException {
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Slot file exceeds " + Integer.MAX_VALUE + " bytes: " + dataFile);
+        }
+    }
+
+    /*
+     * Opens the file for appending and makes sure the mapping covers the given length.
+     */
+    private MappedByteBuffer enableOutput(long requiredLength) throws IOException {
+        MappedByteBuffer current = buffer;
+        if (channel != null && current != null && current.capacity() >= requiredLength) {
+            return current;
+        }
+        boolean opening = channel == null;
+        if (opening) {
+            raf = new RandomAccessFile(dataFile, "rw");
+            channel = raf.getChannel();
+        }
+        long capacity = Math.max(requiredLength, length + MAP_INCREMENT);
+        checkMappable(capacity);
+        current = channel.map(MapMode.READ_WRITE, 0, capacity);
+        buffer = current;
+        if (opening) {
+            openSummaries(current);
+        }
+        return current;
+    }
+
+    @Override
+    public long getSlotCount() {
+        return getSlotCountOf(length);
+    }
+
+    private static long getSlotCountOf(long length) {
+        return Math.max(0, (length - HEADER_SIZE) / SLOT_SIZE);
+    }
+
+    /*
+     * The summary file is derived from the slots written, so the disk usage manifest is updated without asking the
+     * file system.
+     */
+    @Override
+    long getStoredBytes() {
+        long currentLength = length;
+        return currentLength + getSlotCountOf(currentLength) / BLOCK_SLOTS * BlockSummary.SIZE;
+    }
+
+    /*
+     * Loads the summaries of the complete blocks. Summaries of blocks that are not complete (crash) are ignored.
+     */
+    private synchronized ByteBuffer loadSummaries() throws IOException {
+        if (summaries != null) {
+            return summaries;
+        }
+        long stored = summaryFile.exists() ? summaryFile.length() / BlockSummary.SIZE : 0;
+        int count = (int) Math.min(stored, getSlotCount() / BLOCK_SLOTS);
+        byte[] bytes = new byte[Math.max(count, 16) * BlockSummary.SIZE];
+        if (count > 0) {
+            try (RandomAccessFile in = new RandomAccessFile(summaryFile, "r")) {
+                in.readFully(bytes, 0, count * BlockSummary.SIZE);
+            }
+        }
+        ByteBuffer loaded = ByteBuffer.wrap(bytes);
+        summaries = loaded;
+        summaryCount = count;
+        return loaded;
+    }
+
+    /*
+     * Opens the summary file for appending: cuts off summaries of incomplete blocks, recomputes missing ones and
+     * rebuilds the summary of the incomplete last block.
+     */
+    private void openSummaries(MappedByteBuffer slotBuffer) throws IOException {
+        loadSummaries();
+        summaryRaf = new RandomAccessFile(summaryFile, "rw");
+        summaryRaf.setLength((long) summaryCount * BlockSummary.SIZE);
+
+        long slots = getSlotCount();
+        openBlock.reset();
+        for (long slot = (long) summaryCount * BLOCK_SLOTS; slot < slots; slot++) {
+            summarize(slotBuffer, slot);
+        }
+    }
+
+    /*
+     * Adds a written slot to the summary of its block and stores the summary if the block is complete.
+     */
+    private void summarize(MappedByteBuffer slotBuffer, long slot) throws IOException {
+        openBlock.add(slotBuffer.getDouble((int) (HEADER_SIZE + slot * SLOT_SIZE)));
+        if ((slot + 1) % BLOCK_SLOTS != 0) {
+            return;
+        }
+
+        int count = summaryCount;
+        ByteBuffer current = summaries;
+        int position = count * BlockSummary.SIZE;
+        if (current.capacity() < position + BlockSummary.SIZE) {
+            ByteBuffer grown = ByteBuffer.allocate(current.capacity() * 2);
+            System.arraycopy(current.array(), 0, grown.array(), 0, position);
+            current = grown;
+            summaries = grown;
+        }
+        openBlock.write(current, position);
+        summaryRaf.seek(position);
+        summaryRaf.write(current.array(), position, BlockSummary.SIZE);
+        summaryCount = count + 1;
+        openBlock.reset();
+    }
+
+    /*
+     * Returns the written bytes of the file from position from to to, starting at index 0 of the buffer: a view of the
+     * mapping of the appends, or the bytes read from the file while it is not open for appending.
+     */
+    private ByteBuffer readRegion(long from, long to) throws IOException {
+        MappedByteBuffer current = buffer;
+        if (current != null) {
+            ByteBuffer view = current.duplicate();
+            view.limit((int) to);
+            view.position((int) from);
+            return view.slice();
+        }
+        ByteBuffer region = ByteBuffer.allocate((int) (to - from));
+        try (RandomAccessFile in = new RandomAccessFile(dataFile, "r")) {
+            readFully(in.getChannel(), region, from);
+        }
+        return region;
+    }
+
+    @Override
+    public void createFileAndHeader(long startTimeStamp, long stepIntervall) throws IOException {
+        if (!dataFile.exists() || length < HEADER_SIZE) {
+            dataFile.getParentFile().mkdirs();
+            if (dataFile.exists() && length < HEADER_SIZE) {
+                dataFile.delete(); // file corrupted (header shorter that 16
+            }
+            // bytes)
+            dataFile.createNewFile();
+            summaryFile.delete(); // of a replaced file
+            summaries = null;
+            summaryCount = 0;
+            this.startTimeStamp = startTimeStamp;
+            storagePeriod = stepIntervall;
+            length = 0;
+
+            /*
+             * Keep the file open, because after writing the header -> data will follow!
+             */
+            MappedByteBuffer out = enableOutput(HEADER_SIZE);
+            out.putLong(0, startTimeStamp);
+            out.putLong(8, stepIntervall);
+            length = HEADER_SIZE; /* wrote 2*8 Bytes */
+        }
+    }
+
+    @Override
+    public void append(double value, long timestamp, byte flag) throws IOException {
+        long writePosition = getBytePosition(timestamp);
+        long currentLength = length;
+        if (writePosition == currentLength) {
+            /*
+             * value for this timeslot has not been saved yet "AND" some value has been stored in last timeslot
+             */
+            MappedByteBuffer out = enableOutput(currentLength + SLOT_SIZE);
+            putSlot(out, currentLength, value, flag);
+            length = currentLength + SLOT_SIZE;
+            summarize(out, (currentLength - HEADER_SIZE) / SLOT_SIZE);
+        }
+        else {
+            if (currentLength > writePosition) {
+                /*
+                 * value has already been stored for this timeslot -> handle? AVERAGE, MIN, MAX, LAST speichern?!
+                 */
+            }
+            else {
+                /*
+                 * there are missing some values missing -> fill up with NaN!
+                 */
+                MappedByteBuffer out = enableOutput(writePosition + SLOT_SIZE);
+                for (long position = currentLength; position < writePosition; position += SLOT_SIZE) {
+                    // TODO: festlegen welcher Wert undefined sein soll NaN ok?
+                    putSlot(out, position, Double.NaN, Flag.NO_VALUE_RECEIVED_YET.getCode());
+                }
+                putSlot(out, writePosition, value, flag);
+                length = writePosition + SLOT_SIZE;
+                for (long position = currentLength; position <= writePosition; position += SLOT_SIZE) {
+                    summarize(out, (position - HEADER_SIZE) / SLOT_SIZE);
+                }
+            }
+        }
+        /*
+         * The slots are written to the mapping, the operating system writes them to disk. Call flush() to force
+         * them, close() to cut off the unused mapped region.
+         */
+    }
+
+    private static void putSlot(MappedByteBuffer out, long position, double value, byte flag) {
+        out.putDouble((int) position, value);
+        out.put((int) position + 8, flag);
+    }
+
+    /**
+     * calculates the position in a file for a certain timestamp
+     * 
+     * @param timestamp
+     *            the searched timestamp
+     * @return position the position of the timestamp
+     */
+    private long getBytePosition(long timestamp) {
+        if (timestamp >= startTimeStamp) {
+
+            /*
+             * get position for timestamp 117 000: 117 000 - 100 000 = 17 000 17 * 000 / 5 000 = 3.4 Math.round(3.4) = 3
+             * 3*(8+1) = 27 27 + 16 = 43 = position to store to!
+             */
+            // long pos = (Math.round((double) (timestamp - startTimeStamp) /
+            // storagePeriod) * 9) + 16; /* slower */
+
+            double pos = (double) (timestamp - startTimeStamp) / storagePeriod;
+            if (pos % 1 != 0) { /* faster */
+                pos = Math.round(pos);
+            }
+            return (long) (pos * SLOT_SIZE + HEADER_SIZE);
+        }
+        else {
+            // not in file! should never happen...
+            return -1;
+        }
+    }
+
+    @Override
+    public Record read(long timestamp) throws IOException {
+        timestamp = getClosestTimestamp(timestamp); // round to: startTimestamp
+        // + n*stepIntervall
+        if (timestamp >= startTimeStamp && timestamp <= getTimestampForLatestValue()) {
+            long position = getBytePosition(timestamp);
+            ByteBuffer in = readRegion(position, position + SLOT_SIZE);
+            double toReturn = in.getDouble(0);
+            if (!Double.isNaN(toReturn)) {
+                return new Record(new DoubleValue(toReturn), timestamp, Flag.newFlag(in.get(8)));
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public List<Record> read(long start, long end) throws IOException {
+        start = getClosestTimestamp(start); // round to: startTimestamp +
+                                            // n*stepIntervall
+        end = getClosestTimestamp(end); // round to: startTimestamp +
+                                        // n*stepIntervall
+
+        List<Record> toReturn = new Vector<>();
+
+        if (start < end) {
+            if (start < startTimeStamp) {
+                // of this file.
+                start = startTimeStamp;
+            }
+            if (end > getTimestampForLatestValue()) {
+                end = getTimestampForLatestValue();
+            }
+            if (start > end) {
+                return toReturn;
+            }
+
+            long startPos = getBytePosition(start);
+            ByteBuffer in = readRegion(startPos, getBytePosition(end) + SLOT_SIZE);
+
+            long timestampcounter = start;
+            int endPos = in.limit() - SLOT_SIZE;
+
+            for (int position = 0; position <= endPos; position += SLOT_SIZE) {
+                double d = in.getDouble(position);
+                if (!Double.isNaN(d)) {
+                    toReturn.add(new Record(new DoubleValue(d), timestampcounter, Flag.newFlag(in.get(position + 8))));
+                }
+                timestampcounter += storagePeriod;
+            }
+
+        }
+        else if (start == end) {
+            toReturn.add(read(start));
+            toReturn.removeAll(Collections.singleton(null));
+        }
+        return toReturn; // Always return a list -> might be empty -> never is
+                         // null, to avoid NP's
+    }
+
+    @Override
+    public int readSlots(long firstSlot, double[] values, byte[] flags, int offset, int count) throws IOException {
+        int available = (int) Math.max(0, Math.min(count, getSlotCount() - firstSlot));
+        if (available == 0) {
+            return 0;
+        }
+        long from = HEADER_SIZE + firstSlot * SLOT_SIZE;
+        ByteBuffer in = readRegion(from, from + (long) available * SLOT_SIZE);
+        int position = 0;
+        for (int i = offset; i < offset + available; i++) {
+            values[i] = in.getDouble(position);
+            flags[i] = in.get(position + 8);
+            position += SLOT_SIZE;
+        }
+        return available;
+    }
+
+    @Override
+    void aggregate(long start, long end, long bucketStart, long resolution, BlockSummary[] buckets)
+            throws IOException {
+        start = Math.max(getClosestTimestamp(start), startTimeStamp);
+        end = Math.min(getClosestTimestamp(end), getTimestampForLatestValue());
+        if (start > end) {
+            return;
+        }
+
+        if (summaries == null) {
+            loadSummaries();
+        }
+        int blocks = summaryCount;
+        ByteBuffer blockSummaries = summaries;
+
+        long firstSlot = (start - startTimeStamp) / storagePeriod;
+        long lastSlot = (end - startTimeStamp) / storagePeriod;
+        ByteBuffer in = readRegion(HEADER_SIZE + firstSlot * SLOT_SIZE, HEADER_SIZE + (lastSlot + 1) * SLOT_SIZE);
+        long slot = firstSlot;
+        while (slot <= lastSlot) {
+            long timestamp = startTimeStamp + slot * storagePeriod;
+            if (timestamp < bucketStart) {
+                slot++;
+                continue;
+            }
+            long index = (timestamp - bucketStart) / resolution;
+            if (index >= buckets.length) {
+                break;
+            }
+            BlockSummary bucket = buckets[(int) index];
+            if (bucket == null) {
+                bucket = new BlockSummary();
+                buckets[(int) index] = bucket;
+            }
+
+            long bucketEnd = bucketStart + (index + 1) * resolution;
+            long lastInBucket = Math.min(lastSlot, (bucketEnd - 1 - startTimeStamp) / storagePeriod);
+            while (slot <= lastInBucket) {
+                if (slot % BLOCK_SLOTS == 0 && slot + BLOCK_SLOTS - 1 <= lastInBucket && slot / BLOCK_SLOTS < blocks) {
+                    bucket.merge(blockSummaries, (int) (slot / BLOCK_SLOTS) * BlockSummary.SIZE);
+                    slot += BLOCK_SLOTS;
+                }
+                else {
+                    bucket.add(in.getDouble((int) ((slot - firstSlot) * SLOT_SIZE)));
+                    slot++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Closes the file and cuts off the mapped region behind the written slots. The FileObject can still be read and
+     * appended to afterwards, the file is opened again if needed.
+     */
+    @Override
+    public void close() throws IOException {
+        if (channel == null) {
+            return;
+        }
+        MappedByteBuffer current = buffer;
+        buffer = null;
+        try {
+            if (current != null) {
+                current.force();
+            }
+            try {
+                channel.truncate(length);
+            } catch (IOException e) {
+                // e.g. still mapped on Windows, the zero slots are skipped on the next open
+            }
+        } finally {
+            channel = null;
+            raf.close();
+            raf = null;
+            if (summaryRaf != null) {
+                summaryRaf.close();
+                summaryRaf = null;
+            }
+        }
+    }
+
+    /**
+     * Forces the appended slots to disk. Without flush() they are written back by the operating system, since
+     * appends go to the mapping directly.
+     */
+    @Override
+    public void flush() throws IOException {
+        MappedByteBuffer current = buffer;
+        if (channel != null && current != null) {
+            current.force();
+        }
+    }
+}
@@ -23,9 +23,12 @@ package org.openmuc.framework.datalogger.slotsdb;
 
 import java.io.IOException;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import org.openmuc.framework.data.Record;
+import org.openmuc.framework.data.RecordCursor;
 import org.openmuc.framework.data.TypeConversionException;
 import org.openmuc.framework.datalogger.spi.DataLoggerService;
 import org.openmuc.framework.datalogger.spi.LogChannel;
@@ -44,6 +47,31 @@ public final class SlotsDb implements DataLoggerService {
      * File extension for SlotsDB files. Only these Files will be loaded.
      */
     public static final String FILE_EXTENSION = ".slots";
+    /*
+     * File extension for compressed (version 2) SlotsDB files.
+     */
+    public static final String COMPRESSED_FILE_EXTENSION = ".slotz";
+    /*
+     * File extension for the block summaries of a SlotsDB file.
+     */
+    public static final String SUMMARY_FILE_EXTENSION = ".summary";
+    /*
+     * File extension for the journal of the incomplete last chunk of a compressed SlotsDB file.
+     */
+    public static final String JOURNAL_FILE_EXTENSION = ".open";
+    /*
+     * Event log of a channel and day, next to its slot files, and the sparse time index of the event log.
+     */
+    public static final String EVENT_FILE_NAME = "log.events";
+    public static final String EVENT_INDEX_FILE_NAME = "log.events.index";
+    /*
+     * File in the root folder holding the bytes stored per day.
+     */
+    public static final String MANIFEST_FILE_NAME = "slotsdb.manifest";
+    /*
+     * Folder in the root folder receiving deleted days until they have been removed in the background.
+     */
+    public static final String TRASH_FOLDER_NAME = ".deleted";
     /*
      * Root folder for SlotsDB files
      */
@@ -73,6 +101,23 @@ public final class SlotsDb implements DataLoggerService {
      */
     public static final String FLUSH_PERIOD = System
             .getProperty(SlotsDb.class.getPackage().getName().toLowerCase() + ".flushperiod");
+    /*
+     * configures when logged data is forced to disk. Unset: by the flush period (or by the operating system). Set to
+     * "batch" to force every file written by a logging tick once at the end of the tick.
+     */
+    public static final String DURABILITY = System
+            .getProperty(SlotsDb.class.getPackage().getName().toLowerCase() + ".durability");
+    /*
+     * configures the file version of new files: "v1" (default) for uncompressed slots, "v2" for compressed chunks.
+     * Existing files keep their version.
+     */
+    public static final String FORMAT = System
+            .getProperty(SlotsDb.class.getPackage().getName().toLowerCase() + ".format");
+    /*
+     * comma separated IDs of channels whose new files are "v2" if the format above is "v1".
+     */
+    public static final String FORMAT_V2_CHANNELS = System
+            .getProperty(SlotsDb.class.getPackage().getName().toLowerCase() + ".format_v2_channels");
     /*
      * configures how long data will at least be stored in the SLOTSDB.
      */
@@ -83,6 +128,12 @@ public final class SlotsDb implements DataLoggerService {
      */
     public static final String MAX_DATABASE_SIZE = System
             .getProperty(SlotsDb.class.getPackage().getName().toLowerCase() + ".limit_size");
+    /*
+     * configures how many files per second are deleted when old days are removed, to limit the I/O load.
+     */
+    public static final String DELETE_RATE = System
+            .getProperty(SlotsDb.class.getPackage().getName().toLowerCase() + ".delete_rate");
+    public static final int DELETE_RATE_DEFAULT = 1000;
     /*
      * Minimum Size for SLOTSDB (in MB).
      */
@@ -111,7 +162,11 @@ public final class SlotsDb implements DataLoggerService {
 
     @Deactivate
     protected void deactivate(ComponentContext context) {
-        // TODO
+        try {
+            fileObjectProxy.close();
+        } catch (IOException e) {
+            logger.error("error closing the SlotsDb files", e);
+        }
     }
 
     @Override
@@ -121,26 +176,73 @@ public final class SlotsDb implements DataLoggerService {
 
     @Override
     public List<Record> getRecords(String channelId, long startTime, long endTime) throws IOException {
-        return fileObjectProxy.read(channelId, startTime, endTime);
+        return FileObjectProxy.merge(fileObjectProxy.read(channelId, startTime, endTime),
+                fileObjectProxy.readEvents(channelId, startTime, endTime));
+    }
+
+    @Override
+    public RecordCursor getRecordCursor(String channelId, long startTime, long endTime) throws IOException {
+        return fileObjectProxy.cursor(channelId, startTime, endTime);
+    }
+
+    @Override
+    public List<Record> getRecords(String channelId, long startTime, long endTime, long resolution)
+            throws IOException {
+        if (resolution > 0 && fileObjectProxy.hasEvents(channelId, startTime, endTime)) {
+            // events have no block summaries, they are aggregated from the records
+            return DataLoggerService.super.getRecords(channelId, startTime, endTime, resolution);
+        }
+        return fileObjectProxy.readAggregated(channelId, startTime, endTime, resolution);
     }
 
     @Override
     public Record getLatestLogRecord(String channelId) throws IOException {
-        return fileObjectProxy.readLatest(channelId);
+        Record latest = fileObjectProxy.readLatest(channelId);
+        Record latestEvent = fileObjectProxy.readLatestEvent(channelId);
+        if (latest == null || latestEvent != null && latestEvent.getTimestamp() >= latest.getTimestamp()) {
+            return latestEvent;
+        }
+        return latest;
     }
 
     @Override
     public void setChannelsToLog(List<LogChannel> channels) {
         loggingIntervalsById.clear();
+        Set<String> compressed = new HashSet<>();
+        boolean compressedDefault = "v2".equalsIgnoreCase(FORMAT);
+        Set<String> compressedChannels = new HashSet<>();
+        if (FORMAT_V2_CHANNELS != null) {
+            for (String channelId : FORMAT_V2_CHANNELS.split(",")) {
+                compressedChannels.add(channelId.trim());
+            }
+        }
         for (LogChannel channel : channels) {
             loggingIntervalsById.put(channel.getId(), channel.getLoggingInterval());
+            if (compressedDefault || compressedChannels.contains(channel.getId())) {
+                compressed.add(channel.getId());
+            }
         }
+        fileObjectProxy.setCompressedChannels(compressed);
     }
 
     @Override
     public void log(List<LoggingRecord> containers, long timestamp) {
+        int size = containers.size();
+        String[] channelIds = new String[size];
+        double[] values = new double[size];
+        byte[] flags = new byte[size];
+        long[] storingPeriods = new long[size];
+        int count = 0;
+
         for (LoggingRecord container : containers) {
-            Double value;
+            String channelId = container.getChannelId();
+            Integer loggingInterval = loggingIntervalsById.get(channelId);
+            if (loggingInterval == null) {
+                logger.warn("channel {} is not configured for logging", channelId);
+                continue;
+            }
+
+            double value;
             if (container.getRecord().getValue() == null) {
                 value = Double.NaN;
             }
@@ -152,24 +254,55 @@ public final class SlotsDb implements DataLoggerService {
                 }
             }
 
-            // Long timestamp = container.getRecord().getTimestamp();
-            // if (timestamp == null) {
-            // timestamp = 0L;
-            // }
-
-            try {
-                String channelId = container.getChannelId();
-                fileObjectProxy.appendValue(channelId, value, timestamp, container.getRecord().getFlag().getCode(),
-                        loggingIntervalsById.get(channelId));
-            } catch (IOException e) {
-                logger.error("error logging records", e);
-            }
+            channelIds[count] = channelId;
+            values[count] = value;
+            flags[count] = container.getRecord().getFlag().getCode();
+            storingPeriods[count] = loggingInterval;
+            count++;
+        }
+
+        try {
+            fileObjectProxy.appendBatch(channelIds, values, flags, storingPeriods, count, timestamp);
+        } catch (IOException e) {
+            logger.error("error logging records", e);
         }
     }
 
     @Override
     public void logEvent(List<LoggingRecord> containers, long timestamp) {
-        logger.warn("Event logging is not implemented, yet.");
+        int size = containers.size();
+        String[] channelIds = new String[size];
+        double[] values = new double[size];
+        byte[] flags = new byte[size];
+        long[] timestamps = new long[size];
+        int count = 0;
+
+        for (LoggingRecord container : containers) {
+            Record record = container.getRecord();
+            double value;
+            if (record.getValue() == null) {
+                value = Double.NaN;
+            }
+            else {
+                try {
+                    value = record.getValue().asDouble();
+                } catch (TypeConversionException e) {
+                    value = Double.NaN;
+                }
+            }
+
+            channelIds[count] = container.getChannelId();
+            values[count] = value;
+            flags[count] = record.getFlag().getCode();
+            timestamps[count] = record.getTimestamp() != null ? record.getTimestamp() : timestamp;
+            count++;
+        }
+
+        try {
+            fileObjectProxy.appendEvents(channelIds, values, flags, timestamps, count);
+        } catch (IOException e) {
+            logger.error("error logging events", e);
+        }
     }
 
     @Override
@@ -87,7 +87,7 @@ public final class SlotsDbVisualizer extends JFrame {
                 file = fc.getSelectedFile();
                 java.util.List<Record> res = null;
                 try {
-                    FileObject fo = new FileObject(file);
+                    FileObject fo = FileObject.open(file);
                     res = fo.readFully();
                 } catch (IOException e1) {
                     logger.error("error read fully. ", e);
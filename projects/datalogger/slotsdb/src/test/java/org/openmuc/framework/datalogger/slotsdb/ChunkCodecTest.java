@@ -0,0 +1,99 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.datalogger.slotsdb;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+public class ChunkCodecTest {
+
+    @Test
+    public void testValuesRoundTrip() throws IOException {
+        double[] values = { 1.0, 1.0, 1.0, Double.NaN, Double.NaN, 0.0, -0.0, 0.0, 21.5, 21.25, 21.75,
+                // XOR with 1.0 has the sign and the lowest bit set: 64 meaningful bits
+                Double.longBitsToDouble(0xbff0000000000001L), 1.0, Double.MAX_VALUE, Double.MIN_VALUE,
+                Double.NEGATIVE_INFINITY, Double.longBitsToDouble(0x7ff8000000000123L), 1e-300, -1e300 };
+
+        assertArrayEquals(bits(values), bits(roundTrip(values, 0, values.length)));
+    }
+
+    @Test
+    public void testValuesRoundTripAtOffset() throws IOException {
+        double[] values = new double[CompressedFileObject.CHUNK_SLOTS + 10];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = i % 7 == 0 ? Double.NaN : Math.sin(i) * 1000;
+        }
+        int count = CompressedFileObject.CHUNK_SLOTS;
+
+        double[] decoded = roundTrip(values, 10, count);
+        for (int i = 0; i < count; i++) {
+            assertEquals(Double.doubleToRawLongBits(values[10 + i]), Double.doubleToRawLongBits(decoded[i]));
+        }
+    }
+
+    @Test
+    public void testEqualValuesTakeOneBitEach() {
+        double[] values = new double[CompressedFileObject.CHUNK_SLOTS];
+        Arrays.fill(values, 230.1);
+        ChunkCodec.Buffer buffer = new ChunkCodec.Buffer();
+
+        int length = ChunkCodec.encodeValues(values, 0, values.length, buffer);
+
+        assertEquals(8 + (values.length - 1 + 7) / 8, length);
+    }
+
+    @Test
+    public void testFlagsRoundTrip() throws IOException {
+        byte[] flags = new byte[1000];
+        for (int i = 0; i < flags.length; i++) {
+            flags[i] = (byte) (i < 300 ? 1 : i < 301 ? 7 : i % 3);
+        }
+        ChunkCodec.Buffer buffer = new ChunkCodec.Buffer();
+
+        int length = ChunkCodec.encodeFlags(flags, 0, flags.length, buffer);
+        byte[] decoded = new byte[flags.length];
+        ChunkCodec.decodeFlags(buffer.array(), 0, length, decoded, 0, flags.length);
+
+        assertArrayEquals(flags, decoded);
+    }
+
+    private static double[] roundTrip(double[] values, int offset, int count) throws IOException {
+        ChunkCodec.Buffer buffer = new ChunkCodec.Buffer();
+        int length = ChunkCodec.encodeValues(values, offset, count, buffer);
+        double[] decoded = new double[count];
+        ChunkCodec.decodeValues(buffer.array(), 0, length, decoded, 0, count);
+        return decoded;
+    }
+
+    private static long[] bits(double[] values) {
+        long[] bits = new long[values.length];
+        for (int i = 0; i < values.length; i++) {
+            bits[i] = Double.doubleToRawLongBits(values[i]);
+        }
+        return bits;
+    }
+}
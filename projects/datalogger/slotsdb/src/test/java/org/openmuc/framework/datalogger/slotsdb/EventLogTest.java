@@ -0,0 +1,96 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.datalogger.slotsdb;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.openmuc.framework.data.Record;
+
+public class EventLogTest {
+
+    private static final int BLOCK = EventLog.INDEX_INTERVAL;
+
+    @TempDir
+    File folder;
+
+    @Test
+    public void testReadAtIndexBoundaries() throws IOException {
+        EventLog eventLog = new EventLog(folder);
+        // timestamps 10, 20, ...: entry n has timestamp 10 * (n + 1)
+        for (int i = 0; i < 3 * BLOCK + 10; i++) {
+            eventLog.append(10L * (i + 1), i, (byte) 1);
+        }
+
+        // from the buffer, then from the file with the index loaded from disk
+        assertBoundaries(eventLog);
+        eventLog.close();
+        assertBoundaries(new EventLog(folder));
+    }
+
+    @Test
+    public void testEqualTimestampsAcrossIndexEntries() throws IOException {
+        EventLog eventLog = new EventLog(folder);
+        // entries BLOCK - 10 to 2 * BLOCK + 10 share timestamp 5000
+        for (int i = 0; i < 3 * BLOCK; i++) {
+            long timestamp = i < BLOCK - 10 ? i : i <= 2 * BLOCK + 10 ? 5000 : 5000 + i;
+            eventLog.append(timestamp, i, (byte) 1);
+        }
+        assertFalse(eventLog.append(4999, -1, (byte) 1)); // older than the last event
+
+        assertEqualTimestamps(eventLog.read(5000, 5000));
+        eventLog.close();
+        assertEqualTimestamps(new EventLog(folder).read(5000, 5000));
+    }
+
+    private static void assertBoundaries(EventLog eventLog) throws IOException {
+        for (int entry : new int[] { 0, BLOCK - 1, BLOCK, BLOCK + 1, 2 * BLOCK, 3 * BLOCK + 9 }) {
+            long timestamp = 10L * (entry + 1);
+            List<Record> records = eventLog.read(timestamp, timestamp);
+            assertEquals(1, records.size());
+            assertEquals(entry, records.get(0).getValue().asDouble());
+
+            // a start between two events
+            records = eventLog.read(timestamp - 5, timestamp + 5);
+            assertEquals(1, records.size());
+            assertEquals(timestamp, (long) records.get(0).getTimestamp());
+        }
+
+        List<Record> records = eventLog.read(10L * BLOCK, 10L * (2 * BLOCK + 1));
+        assertEquals(BLOCK + 2, records.size());
+        assertEquals(BLOCK - 1, records.get(0).getValue().asDouble());
+    }
+
+    private static void assertEqualTimestamps(List<Record> records) {
+        assertEquals(BLOCK + 21, records.size());
+        for (int i = 0; i < records.size(); i++) {
+            assertEquals(5000L, (long) records.get(i).getTimestamp());
+            assertEquals(BLOCK - 10 + i, records.get(i).getValue().asDouble());
+        }
+    }
+}
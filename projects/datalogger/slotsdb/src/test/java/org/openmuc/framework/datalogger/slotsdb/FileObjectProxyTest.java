@@ -0,0 +1,318 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.datalogger.slotsdb;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.openmuc.framework.data.Flag;
+import org.openmuc.framework.data.Record;
+import org.openmuc.framework.data.RecordCursor;
+
+public class FileObjectProxyTest {
+
+    private static final long START = 1700000000000L;
+    private static final long PERIOD = 1000;
+    private static final int SLOTS = 3000;
+
+    @TempDir
+    File folder;
+
+    @Test
+    public void testUncompressedReadBackAfterRestart() throws IOException {
+        testReadBackAfterRestart(false);
+    }
+
+    @Test
+    public void testCompressedReadBackAfterRestart() throws IOException {
+        testReadBackAfterRestart(true);
+    }
+
+    private void testReadBackAfterRestart(boolean compressed) throws IOException {
+        FileObjectProxy proxy = open(compressed);
+        append(proxy, 0, SLOTS);
+        proxy.close();
+
+        proxy = open(compressed);
+        assertValues(proxy.read("ch", START, START + SLOTS * PERIOD), 0, SLOTS);
+
+        // appending goes on after the restart
+        append(proxy, SLOTS, SLOTS + 100);
+        proxy.close();
+
+        proxy = open(compressed);
+        try {
+            assertValues(proxy.read("ch", START, START + 2 * SLOTS * PERIOD), 0, SLOTS + 100);
+        } finally {
+            proxy.close();
+        }
+    }
+
+    @Test
+    public void testUncompressedCursorEqualsRead() throws IOException {
+        testCursorEqualsRead(false);
+    }
+
+    @Test
+    public void testCompressedCursorEqualsRead() throws IOException {
+        testCursorEqualsRead(true);
+    }
+
+    private void testCursorEqualsRead(boolean compressed) throws IOException {
+        FileObjectProxy proxy = open(compressed);
+        try {
+            append(proxy, 0, SLOTS);
+            // bounds between slots and past the last slot
+            long start = START + 5 * PERIOD + PERIOD / 2;
+            long end = START + (SLOTS + 10) * PERIOD;
+            List<Record> records = new ArrayList<>();
+            try (RecordCursor cursor = proxy.cursor("ch", start, end)) {
+                while (cursor.hasNext()) {
+                    records.add(cursor.next());
+                }
+            }
+            assertValues(records, 6, SLOTS);
+            assertEquals(proxy.read("ch", start, end).size(), records.size());
+        } finally {
+            proxy.close();
+        }
+    }
+
+    @Test
+    public void testUncompressedSlotsAfterCrash() throws IOException {
+        FileObjectProxy crashed = open(false);
+        append(crashed, 0, SLOTS);
+
+        // not closed: the zero slots of the mapped region behind the written slots are skipped
+        FileObjectProxy proxy = open(false);
+        try {
+            assertValues(proxy.read("ch", START, START + 2 * SLOTS * PERIOD), 0, SLOTS);
+        } finally {
+            proxy.close();
+            crashed.close();
+        }
+    }
+
+    @Test
+    public void testCompressedSlotsAfterCrash() throws IOException {
+        FileObjectProxy crashed = open(true);
+        append(crashed, 0, SLOTS);
+        List<File> journals = journals(folder);
+        assertEquals(1, journals.size());
+
+        // not closed: the incomplete chunk is read from the journal
+        FileObjectProxy proxy = open(true);
+        try {
+            assertValues(proxy.read("ch", START, START + SLOTS * PERIOD), 0, SLOTS);
+        } finally {
+            proxy.close();
+            crashed.close();
+        }
+        assertFalse(journals.get(0).exists());
+    }
+
+    @Test
+    public void testCompressedFullJournalAfterCrash() throws IOException {
+        int chunkEnd = 3 * CompressedFileObject.CHUNK_SLOTS;
+        FileObjectProxy crashed = open(true);
+        append(crashed, 0, chunkEnd - 1);
+        File journal = journals(folder).get(0);
+        String name = journal.getName();
+        File dataFile = new File(journal.getParentFile(),
+                name.substring(0, name.length() - SlotsDb.JOURNAL_FILE_EXTENSION.length())
+                        + SlotsDb.COMPRESSED_FILE_EXTENSION);
+        long dataLength = dataFile.length();
+        byte[] entries = Files.readAllBytes(journal.toPath());
+        append(crashed, chunkEnd - 1, chunkEnd);
+        crashed.close();
+
+        // crash after the last slot of the chunk reached the journal, before the chunk was written
+        try (RandomAccessFile out = new RandomAccessFile(dataFile, "rw")) {
+            out.setLength(dataLength);
+        }
+        ByteBuffer lastEntry = ByteBuffer.allocate(9).putDouble(value(chunkEnd - 1)).put(Flag.VALID.getCode());
+        try (RandomAccessFile out = new RandomAccessFile(journal, "rw")) {
+            out.write(entries);
+            out.write(lastEntry.array());
+        }
+
+        // reading keeps the chunk in memory, the file is only written by the next append
+        FileObjectProxy proxy = open(true);
+        try {
+            assertValues(proxy.read("ch", START, START + chunkEnd * PERIOD), 0, chunkEnd);
+            assertEquals(dataLength, dataFile.length());
+            assertTrue(journal.exists());
+            append(proxy, chunkEnd, chunkEnd + 1);
+            assertTrue(dataFile.length() > dataLength);
+        } finally {
+            proxy.close();
+        }
+
+        proxy = open(true);
+        try {
+            assertValues(proxy.read("ch", START, START + (chunkEnd + 1) * PERIOD), 0, chunkEnd + 1);
+        } finally {
+            proxy.close();
+        }
+    }
+
+    @Test
+    public void testUncompressedAggregationEqualsRawMean() throws IOException {
+        testAggregationEqualsRawMean(false);
+    }
+
+    @Test
+    public void testCompressedAggregationEqualsRawMean() throws IOException {
+        testAggregationEqualsRawMean(true);
+    }
+
+    /*
+     * Buckets covering whole blocks and chunks (taken from their summaries) and partial ones (aggregated slot by slot)
+     * return the mean of the raw values, while the files are open for appending and after they have been closed.
+     */
+    private void testAggregationEqualsRawMean(boolean compressed) throws IOException {
+        FileObjectProxy proxy = open(compressed);
+        try {
+            append(proxy, 0, SLOTS);
+            assertAggregations(proxy);
+        } finally {
+            proxy.close();
+        }
+
+        proxy = open(compressed);
+        try {
+            assertAggregations(proxy);
+        } finally {
+            proxy.close();
+        }
+    }
+
+    private static void assertAggregations(FileObjectProxy proxy) throws IOException {
+        long end = START + (SLOTS - 1) * PERIOD;
+        for (long start : new long[] { START, START + 123 * PERIOD }) {
+            for (long resolution : new long[] { 7 * PERIOD, 256 * PERIOD, 1024 * PERIOD, 1500 * PERIOD }) {
+                assertAggregation(proxy, start, end, resolution);
+            }
+        }
+    }
+
+    @Test
+    public void testLatestDayMeasuredAfterCrash() throws IOException {
+        FileObjectProxy proxy = open(true);
+        append(proxy, 0, SLOTS);
+        proxy.close();
+        File day = folder.listFiles(File::isDirectory)[0];
+        File manifest = new File(folder, SlotsDb.MANIFEST_FILE_NAME);
+        assertEquals(day.getName() + " " + DiskUsageManifest.measure(day), manifestLine(manifest));
+
+        // manifest stored before the last appends
+        Files.write(manifest.toPath(), (day.getName() + " 100\n").getBytes(StandardCharsets.US_ASCII));
+        open(true).close();
+        assertEquals(day.getName() + " " + DiskUsageManifest.measure(day), manifestLine(manifest));
+    }
+
+    private static String manifestLine(File manifest) throws IOException {
+        List<String> lines = Files.readAllLines(manifest.toPath(), StandardCharsets.US_ASCII);
+        assertEquals(1, lines.size());
+        return lines.get(0);
+    }
+
+    private static void assertAggregation(FileObjectProxy proxy, long start, long end, long resolution)
+            throws IOException {
+        List<Record> raw = proxy.read("ch", start, end);
+        List<Record> aggregated = proxy.readAggregated("ch", start, end, resolution);
+
+        assertEquals((end - start) / resolution + 1, aggregated.size());
+        for (Record bucket : aggregated) {
+            double sum = 0;
+            int count = 0;
+            for (Record record : raw) {
+                if (record.getTimestamp() >= bucket.getTimestamp()
+                        && record.getTimestamp() < bucket.getTimestamp() + resolution) {
+                    sum += record.getValue().asDouble();
+                    count++;
+                }
+            }
+            assertEquals(sum / count, bucket.getValue().asDouble(), 1e-9);
+        }
+    }
+
+    private FileObjectProxy open(boolean compressed) {
+        FileObjectProxy proxy = new FileObjectProxy(folder.getPath());
+        proxy.setCompressedChannels(compressed ? Collections.singleton("ch") : Collections.<String> emptySet());
+        return proxy;
+    }
+
+    /*
+     * Appends the slots first to end - 1 of channel "ch", leaving out every tenth slot.
+     */
+    private static void append(FileObjectProxy proxy, int first, int end) throws IOException {
+        for (int i = first; i < end; i++) {
+            if (i % 10 != 9) {
+                proxy.appendValue("ch", value(i), START + i * PERIOD, Flag.VALID.getCode(), PERIOD);
+            }
+        }
+    }
+
+    private static void assertValues(List<Record> records, int first, int end) {
+        int expected = first;
+        for (Record record : records) {
+            if (expected % 10 == 9) {
+                expected++;
+            }
+            assertEquals(START + expected * PERIOD, (long) record.getTimestamp());
+            assertEquals(value(expected), record.getValue().asDouble());
+            expected++;
+        }
+        assertEquals(end - (end % 10 == 0 ? 1 : 0), expected);
+    }
+
+    private static List<File> journals(File folder) {
+        List<File> journals = new ArrayList<>();
+        for (File file : folder.listFiles()) {
+            if (file.isDirectory()) {
+                journals.addAll(journals(file));
+            }
+            else if (file.getName().endsWith(SlotsDb.JOURNAL_FILE_EXTENSION)) {
+                journals.add(file);
+            }
+        }
+        return journals;
+    }
+
+    private static double value(int slot) {
+        return Math.round(Math.sin(slot / 100.0) * 10000) / 100.0;
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.datalogger.slotsdb;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+
+import org.openmuc.framework.data.Flag;
+
+/**
+ * Compares the file versions on synthetic series: bytes per slot on disk (all files written for the series, including
+ * the summaries of version 1) and append (encode) and read (decode) throughput.<br>
+ * <br>
+ * Usage: SlotsDbBenchmark [slots per series, default 86400]
+ */
+public final class SlotsDbBenchmark {
+
+    private static final long START = 1700000000000L;
+    private static final long PERIOD = 1000;
+    private static final int ROUNDS = 5;
+
+    private SlotsDbBenchmark() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        int slots = args.length > 0 ? Integer.parseInt(args[0]) : 86400;
+        File folder = Files.createTempDirectory("slotsdb-benchmark").toFile();
+        try {
+            System.out.println(String.format("%-10s %-8s %10s %14s %14s", "series", "version", "bytes/slot",
+                    "append/s", "decode/s"));
+            for (String series : new String[] { "constant", "sensor", "counter", "noise", "gaps" }) {
+                double[] values = series(series, slots);
+                run(folder, series, values, false);
+                run(folder, series, values, true);
+            }
+        } finally {
+            clear(folder);
+            folder.delete();
+        }
+    }
+
+    private static void clear(File folder) {
+        for (File file : folder.listFiles()) {
+            file.delete();
+        }
+    }
+
+    private static long folderBytes(File folder) {
+        long bytes = 0;
+        for (File file : folder.listFiles()) {
+            bytes += file.length();
+        }
+        return bytes;
+    }
+
+    /*
+     * Synthetic series, NaN marks a slot without value.
+     */
+    private static double[] series(String name, int slots) {
+        Random random = new Random(42);
+        double[] values = new double[slots];
+        double value = 230.0;
+        for (int i = 0; i < slots; i++) {
+            switch (name) {
+            case "constant":
+                values[i] = 50.0;
+                break;
+            case "sensor": // slowly varying measurement with one decimal
+                value += random.nextGaussian() * 0.05;
+                values[i] = Math.round(value * 10) / 10.0;
+                break;
+            case "counter": // integrated total
+                value += random.nextInt(3);
+                values[i] = value;
+                break;
+            case "noise":
+                values[i] = random.nextDouble() * 1000;
+                break;
+            default: // sensor with missing values
+                value += random.nextGaussian() * 0.05;
+                values[i] = random.nextInt(100) < 10 ? Double.NaN : Math.round(value * 10) / 10.0;
+                break;
+            }
+        }
+        return values;
+    }
+
+    private static void run(File folder, String series, double[] values, boolean compressed) throws IOException {
+        long appendNanos = Long.MAX_VALUE;
+        long decodeNanos = Long.MAX_VALUE;
+        long bytes = 0;
+        double[] decodedValues = new double[values.length];
+        byte[] decodedFlags = new byte[values.length];
+
+        for (int round = 0; round < ROUNDS; round++) {
+            clear(folder);
+            FileObject file = FileObject.create(folder.getPath(), START, compressed);
+            long start = System.nanoTime();
+            file.createFileAndHeader(START, PERIOD);
+            for (int i = 0; i < values.length; i++) {
+                if (!Double.isNaN(values[i])) {
+                    file.append(values[i], START + i * PERIOD, Flag.VALID.getCode());
+                }
+            }
+            file.close();
+            appendNanos = Math.min(appendNanos, System.nanoTime() - start);
+            bytes = folderBytes(folder);
+
+            FileObject reader = FileObject.open(file.getFile());
+            start = System.nanoTime();
+            int read = reader.readSlots(0, decodedValues, decodedFlags, 0, values.length);
+            decodeNanos = Math.min(decodeNanos, System.nanoTime() - start);
+            reader.close();
+            if (read != lastValue(values) + 1) {
+                throw new IOException("Decoded " + read + " slots of " + series);
+            }
+        }
+
+        System.out.println(String.format("%-10s %-8s %10.2f %14.0f %14.0f", series, compressed ? "v2" : "v1",
+                (double) bytes / values.length, values.length * 1e9 / appendNanos,
+                values.length * 1e9 / decodeNanos));
+    }
+
+    private static int lastValue(double[] values) {
+        int last = values.length - 1;
+        while (last >= 0 && Double.isNaN(values[last])) {
+            last--;
+        }
+        return last;
+    }
+}
@@ -27,6 +27,7 @@ import java.util.Dictionary;
 import java.util.List;
 
 import org.openmuc.framework.data.Record;
+import org.openmuc.framework.data.RecordCursor;
 import org.openmuc.framework.datalogger.spi.DataLoggerService;
 import org.openmuc.framework.datalogger.spi.LogChannel;
 import org.openmuc.framework.datalogger.spi.LoggingRecord;
@@ -149,6 +150,16 @@ public class SqlLoggerService implements DataLoggerService, ManagedService {
         return records;
     }
 
+    @Override
+    public RecordCursor getRecordCursor(String channelId, long startTime, long endTime) throws IOException {
+        for (LogChannel temp : this.channels) {
+            if (temp.getId().equals(channelId)) {
+                return reader.readRecordCursorFromDb(channelId, temp.getValueType(), startTime, endTime);
+            }
+        }
+        return RecordCursor.of(new ArrayList<>());
+    }
+
     /**
      * Returns the Record with the highest timestamp available in all logged data for the channel with the given
      * <code>channelId</code>. If there are multiple Records with the same timestamp, results will not be consistent.
@@ -24,13 +24,21 @@ package org.openmuc.framework.datalogger.sql;
 import static org.openmuc.framework.datalogger.sql.utils.SqlValues.AND;
 
 import java.sql.Timestamp;
+import java.util.Collections;
 import java.util.List;
+import java.util.NoSuchElementException;
 
 import org.openmuc.framework.data.Record;
+import org.openmuc.framework.data.RecordCursor;
 import org.openmuc.framework.data.ValueType;
 
 public class SqlReader {
 
+    /**
+     * Rows read by one query of a cursor
+     */
+    static final int CURSOR_PAGE_SIZE = 10000;
+
     private final DbAccess dbAccess;
 
     public SqlReader(DbAccess dbAccess) {
@@ -46,6 +54,74 @@ public class SqlReader {
 
     }
 
+    /**
+     * Returns a cursor over the records of a channel between startTime and endTime. The records are read in pages of
+     * {@link #CURSOR_PAGE_SIZE} rows ordered by time, each page continues after the time of the last row of the
+     * previous page (time is the primary key), so no result set is kept open between pages.
+     *
+     * @param channelId
+     *            ID of the channel
+     * @param valuetype
+     *            {@link ValueType}
+     * @param startTime
+     *            start of the timeframe, inclusive
+     * @param endTime
+     *            end of the timeframe, inclusive
+     * @return cursor over the records ordered by time
+     */
+    public RecordCursor readRecordCursorFromDb(String channelId, ValueType valuetype, long startTime, long endTime) {
+        return new RecordCursor() {
+
+            private List<Record> page = Collections.emptyList();
+            private int position = 0;
+            private Timestamp from = new Timestamp(startTime);
+            private boolean fromInclusive = true;
+            private boolean lastPage = false;
+
+            @Override
+            public boolean hasNext() {
+                if (position == page.size() && !lastPage) {
+                    StringBuilder sb = new StringBuilder();
+                    selectPage(channelId, from, fromInclusive, new Timestamp(endTime), sb);
+                    page = dbAccess.queryRecords(sb, valuetype);
+                    position = 0;
+                    lastPage = page.size() < CURSOR_PAGE_SIZE;
+                    if (!page.isEmpty()) {
+                        from = new Timestamp(page.get(page.size() - 1).getTimestamp());
+                        fromInclusive = false;
+                    }
+                }
+                return position < page.size();
+            }
+
+            @Override
+            public Record next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return page.get(position++);
+            }
+        };
+    }
+
+    /**
+     * Builds the query of a cursor page
+     */
+    private void selectPage(String channelId, Timestamp from, boolean fromInclusive, Timestamp endTimestamp,
+            StringBuilder sb) {
+
+        sb.append("SELECT time,\"VALUE\" FROM ")
+                .append(channelId)
+                .append(" WHERE time ")
+                .append(fromInclusive ? ">= '" : "> '")
+                .append(from)
+                .append("' AND time <= '")
+                .append(endTimestamp)
+                .append("' ORDER BY time LIMIT ")
+                .append(CURSOR_PAGE_SIZE)
+                .append(';');
+    }
+
     /**
      * Get the latest Record by retrieving records in descending order - ordered by time - and limiting to 1 result
      * 
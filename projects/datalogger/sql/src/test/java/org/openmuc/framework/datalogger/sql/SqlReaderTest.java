@@ -21,18 +21,25 @@
 
 package org.openmuc.framework.datalogger.sql;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.spy;
 
+import java.io.IOException;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.openmuc.framework.data.Record;
+import org.openmuc.framework.data.RecordCursor;
 import org.openmuc.framework.data.ValueType;
 
 public class SqlReaderTest {
@@ -71,6 +78,23 @@ public class SqlReaderTest {
         connection.close();
     }
 
+    @Test
+    void readRecordCursorFromDb() throws SQLException, IOException {
+        writeTestRecords();
+
+        List<Double> values = new ArrayList<>();
+        long start = Timestamp.valueOf("2020-09-08 13:00:00.0").getTime();
+        long end = Timestamp.valueOf("2020-09-08 15:00:00.0").getTime();
+        try (RecordCursor cursor = sqlReader.readRecordCursorFromDb(channelId, valueType, start, end)) {
+            while (cursor.hasNext()) {
+                values.add(cursor.next().getValue().asDouble());
+            }
+        }
+        assertEquals(Arrays.asList(3.0, 1.0), values); // ordered by time, without the record of 2021
+
+        connection.close();
+    }
+
     void writeTestRecords() throws SQLException {
         TestConnectionHelper.executeSQL(connection,
                 String.format("CREATE TABLE %s (time TIMESTAMP NOT NULL, " + "\"VALUE\" DOUBLE)", channelId));
@@ -27,9 +27,11 @@ import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.Date;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Locale;
 import java.util.TimeZone;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.slf4j.Logger;
@@ -49,6 +51,7 @@ public class MqttWriter {
     private final DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
     private final MqttBufferHandler buffer;
     private final String pid;
+    private final List<MqttReadyListener> readyListeners = new CopyOnWriteArrayList<>();
 
     public MqttWriter(MqttConnection connection, String pid) {
         this.connection = connection;
@@ -117,12 +120,23 @@ public class MqttWriter {
                 write(settings.getFirstWillTopic(), settings.getFirstWillPayload());
             }
 
-            Thread recovery = new Thread(this::emptyBuffer, "MqttRecovery");
+            Thread recovery = new Thread(this::recover, "MqttRecovery");
             recovery.start();
 
         });
     }
 
+    private void recover() {
+        emptyBuffer();
+
+        // the listeners publish the current state, which must not be overwritten by older buffered messages
+        if (connected) {
+            for (MqttReadyListener listener : readyListeners) {
+                listener.onReady();
+            }
+        }
+    }
+
     private void emptyBuffer() {
         log("Clearing memory (RAM) buffer.");
         if (buffer.isEmpty()) {
@@ -193,6 +207,21 @@ public class MqttWriter {
                 serverHost, source, cause, dateFormatter.format(timeOfConnectionLoss), duration);
     }
 
+    /**
+     * Registers a listener which is called after every (re)connect, once the buffered messages are resent. It is
+     * called on the recovery thread and not called if the connection is lost during the recovery.
+     *
+     * @param listener
+     *            the listener to call
+     */
+    public void addReadyListener(MqttReadyListener listener) {
+        readyListeners.add(listener);
+    }
+
+    public void removeReadyListener(MqttReadyListener listener) {
+        readyListeners.remove(listener);
+    }
+
     public boolean isInitialConnect() {
         return timeOfConnectionLoss == null;
     }
@@ -21,7 +21,9 @@
 
 package org.openmuc.framework.lib.mqtt;
 
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import com.hivemq.client.mqtt.mqtt3.message.publish.Mqtt3Publish;
 
@@ -29,14 +31,21 @@ import com.hivemq.client.mqtt.mqtt3.message.publish.Mqtt3Publish;
  * MqttWriter stub that simulates successful publishes when connection is simulated as connected
  */
 public class MqttWriterStub extends MqttWriter {
+    private final List<String> publishedTopics = new CopyOnWriteArrayList<>();
+
     public MqttWriterStub(MqttConnection connection) {
         super(connection, "test");
     }
 
     @Override
     CompletableFuture<Mqtt3Publish> publish(String topic, byte[] message) {
+        publishedTopics.add(topic);
         CompletableFuture<Mqtt3Publish> future = new CompletableFuture<>();
         future.complete(Mqtt3Publish.builder().topic("test").build());
         return future;
     }
+
+    List<String> getPublishedTopics() {
+        return publishedTopics;
+    }
 }
@@ -21,6 +21,7 @@
 
 package org.openmuc.framework.lib.mqtt;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
@@ -31,6 +32,9 @@ import static org.mockito.Mockito.when;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.FileSystems;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeEach;
@@ -146,4 +150,48 @@ public class MqttWriterTest {
         // files should be emptied and therefore removed
         assertFalse(file.exists() || file1.exists());
     }
+
+    @Test
+    void testReadyListenerCalledOnEveryConnect() throws InterruptedException {
+        AtomicInteger readyCalls = new AtomicInteger();
+        MqttReadyListener listener = readyCalls::incrementAndGet;
+        mqttWriter.addReadyListener(listener);
+
+        connectedListener.onConnected(() -> null);
+        connectedListener.onConnected(() -> null);
+        // wait for recovery threads to terminate
+        Thread.sleep(1000);
+        assertEquals(2, readyCalls.get());
+
+        mqttWriter.removeReadyListener(listener);
+        connectedListener.onConnected(() -> null);
+        Thread.sleep(1000);
+        assertEquals(2, readyCalls.get());
+    }
+
+    @Test
+    void testReadyListenerCalledAfterBufferedMessages() throws InterruptedException {
+        MqttClientDisconnectedContext disconnectedContext = mock(MqttClientDisconnectedContext.class);
+        MqttClientReconnector reconnector = mock(MqttClientReconnector.class);
+        when(reconnector.isReconnect()).thenReturn(true);
+        MqttClientConfig config = mock(MqttClientConfig.class);
+        when(config.getServerHost()).thenReturn("test");
+        Throwable cause = mock(Throwable.class);
+        when(cause.getMessage()).thenReturn("test");
+        when(disconnectedContext.getReconnector()).thenReturn(reconnector);
+        when(disconnectedContext.getClientConfig()).thenReturn(config);
+        when(disconnectedContext.getCause()).thenReturn(cause);
+        when(disconnectedContext.getSource()).thenReturn(MqttDisconnectSource.USER);
+        disconnectedListener.onDisconnected(disconnectedContext);
+
+        mqttWriter.write("topic2", "buffered".getBytes());
+
+        mqttWriter.addReadyListener(() -> mqttWriter.write("birth", "current".getBytes()));
+        connectedListener.onConnected(() -> null);
+        Thread.sleep(1000);
+
+        // the current state is published after the buffered message
+        List<String> topics = ((MqttWriterStub) mqttWriter).getPublishedTopics();
+        assertEquals(Arrays.asList("topic2", "birth"), topics.subList(topics.size() - 2, topics.size()));
+    }
 }
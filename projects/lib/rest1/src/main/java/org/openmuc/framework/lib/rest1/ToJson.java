@@ -23,6 +23,8 @@ package org.openmuc.framework.lib.rest1;
 
 import static org.openmuc.framework.lib.rest1.Const.VALUE_STRING;
 
+import java.io.IOException;
+import java.io.Writer;
 import java.lang.reflect.Type;
 import java.util.List;
 
@@ -34,6 +36,7 @@ import org.openmuc.framework.config.DriverConfig;
 import org.openmuc.framework.config.DriverInfo;
 import org.openmuc.framework.data.Flag;
 import org.openmuc.framework.data.Record;
+import org.openmuc.framework.data.RecordCursor;
 import org.openmuc.framework.data.TypeConversionException;
 import org.openmuc.framework.data.Value;
 import org.openmuc.framework.data.ValueType;
@@ -101,6 +104,32 @@ public class ToJson {
         jsonObject.add(Const.RECORDS, jsa);
     }
 
+    /**
+     * Writes the records of a cursor as JSON object with the record list, like {@link #addRecordList(List, ValueType)}
+     * and {@link #toString()}, one record at a time without building the JSON tree.
+     *
+     * @param records
+     *            the records to write
+     * @param valueType
+     *            value type of the records
+     * @param writer
+     *            writer receiving the JSON
+     * @throws IOException
+     *             if reading the records or writing fails
+     */
+    public void writeRecordList(RecordCursor records, ValueType valueType, Writer writer) throws IOException {
+        writer.write("{\"" + Const.RECORDS + "\":[");
+        boolean first = true;
+        while (records.hasNext()) {
+            if (!first) {
+                writer.write(',');
+            }
+            first = false;
+            gson.toJson(getRestRecord(records.next(), valueType), RestRecord.class, writer);
+        }
+        writer.write("]}");
+    }
+
     public void addChannelRecordList(List<Channel> channels) throws ClassCastException {
 
         JsonArray jsa = new JsonArray();
@@ -36,6 +36,7 @@ import org.openmuc.framework.config.IdCollisionException;
 import org.openmuc.framework.config.RootConfig;
 import org.openmuc.framework.data.Flag;
 import org.openmuc.framework.data.Record;
+import org.openmuc.framework.data.RecordCursor;
 import org.openmuc.framework.data.Value;
 import org.openmuc.framework.data.ValueType;
 import org.openmuc.framework.dataaccess.Channel;
@@ -113,7 +114,8 @@ public class ChannelResourceServlet extends GenericServlet {
             else if (pathInfoArray[1].startsWith(Const.HISTORY)) {
                 String fromParameter = request.getParameter("from");
                 String untilParameter = request.getParameter("until");
-                doGetHistory(json, channelId, fromParameter, untilParameter, response);
+                String resolutionParameter = request.getParameter("resolution");
+                doGetHistory(json, channelId, fromParameter, untilParameter, resolutionParameter, response);
             }
             else if (pathInfoArray[1].equalsIgnoreCase(Const.DRIVER_ID)) {
                 doGetDriverId(json, channelId, response);
@@ -320,9 +322,10 @@ public class ChannelResourceServlet extends GenericServlet {
     }
 
     private void doGetHistory(ToJson json, String channelId, String fromParameter, String untilParameter,
-            HttpServletResponse response) {
+            String resolutionParameter, HttpServletResponse response) {
         long fromTimeStamp = 0;
         long untilTimeStamp = 0;
+        long resolution = 0;
 
         List<String> channelIds = dataAccess.getAllIds();
         List<Record> records = null;
@@ -333,17 +336,36 @@ public class ChannelResourceServlet extends GenericServlet {
             try {
                 fromTimeStamp = Long.parseLong(fromParameter);
                 untilTimeStamp = Long.parseLong(untilParameter);
+                if (resolutionParameter != null) {
+                    resolution = Long.parseLong(resolutionParameter);
+                }
             } catch (NumberFormatException ex) {
                 ServletLib.sendHTTPErrorAndLogDebug(response, HttpServletResponse.SC_BAD_REQUEST, logger,
-                        "From/To value is not a long number.");
+                        "From/To/Resolution value is not a long number.");
+                return;
             }
 
             try {
-                records = channel.getLoggedRecords(fromTimeStamp, untilTimeStamp);
+                // downsampling averages, only for numeric channels
+                if (resolution > 0 && channel.getValueType() != ValueType.STRING
+                        && channel.getValueType() != ValueType.BYTE_ARRAY) {
+                    records = channel.getLoggedRecords(fromTimeStamp, untilTimeStamp, resolution);
+                }
+                else {
+                    // streamed, long ranges are not held in memory
+                    try (RecordCursor cursor = channel.getLoggedRecordCursor(fromTimeStamp, untilTimeStamp)) {
+                        sendRecords(cursor, channel.getValueType(), response);
+                    }
+                    return;
+                }
             } catch (DataLoggerNotAvailableException e) {
                 ServletLib.sendHTTPErrorAndLogDebug(response, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, logger,
                         e.getMessage());
             } catch (IOException e) {
+                if (response.isCommitted()) {
+                    logger.warn("History of channel " + channelId + " truncated: " + e.getMessage());
+                    return;
+                }
                 ServletLib.sendHTTPErrorAndLogDebug(response, HttpServletResponse.SC_NOT_FOUND, logger, e.getMessage());
             }
             json.addRecordList(records, channel.getValueType());
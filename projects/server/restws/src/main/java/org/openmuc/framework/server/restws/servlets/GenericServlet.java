@@ -20,8 +20,11 @@
  */
 package org.openmuc.framework.server.restws.servlets;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
@@ -37,6 +40,8 @@ import org.openmuc.framework.authentication.AuthenticationService;
 import org.openmuc.framework.config.ConfigChangeListener;
 import org.openmuc.framework.config.ConfigService;
 import org.openmuc.framework.config.RootConfig;
+import org.openmuc.framework.data.RecordCursor;
+import org.openmuc.framework.data.ValueType;
 import org.openmuc.framework.dataaccess.DataAccessService;
 import org.openmuc.framework.lib.rest1.ToJson;
 import org.openmuc.framework.server.restws.RestServer;
@@ -145,6 +150,17 @@ public abstract class GenericServlet extends HttpServlet implements ConfigChange
         }
     }
 
+    /**
+     * Streams the records of a cursor as JSON record list, see {@link ToJson#writeRecordList}. The response is
+     * committed when the first buffer is sent, an error while reading later records truncates the response.
+     */
+    void sendRecords(RecordCursor records, ValueType valueType, HttpServletResponse response) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(response.getOutputStream(), CHARSET));
+        new ToJson().writeRecordList(records, valueType, writer);
+        writer.flush();
+        writer.close();
+    }
+
     String[] checkIfItIsACorrectRest(HttpServletRequest request, HttpServletResponse response, Logger logger) {
         String pathAndQueryString[] = new String[2];
 
@@ -97,10 +97,11 @@
             });
         };
 
-        this.getHistoryValues = function (channelId, from, until) {
+        this.getHistoryValues = function (channelId, from, until, resolution) {
             var req = {
                 method: 'GET',
-                url: SETTINGS.API_URL + SETTINGS.CHANNELS_URL + channelId + SETTINGS.CHANNELS_HISTORY_URL + '?from=' + from + '&until=' + until,
+                url: SETTINGS.API_URL + SETTINGS.CHANNELS_URL + channelId + SETTINGS.CHANNELS_HISTORY_URL + '?from=' + from + '&until=' + until
+                    + (resolution > 0 ? '&resolution=' + resolution : ''),
                 headers: {
                     'Authorization': RestServerAuthService.getAuthHash()
                 }
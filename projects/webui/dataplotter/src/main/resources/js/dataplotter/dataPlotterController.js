@@ -2,6 +2,8 @@
 
     var injectParams = ['$scope', '$stateParams', '$state', '$q', '$translate', 'ChannelsService', 'notify', 'ChannelDataService'];
     var noData;
+    // maximum number of points plotted per channel, longer ranges are downsampled by the logger
+    var MAX_PLOT_POINTS = 2000;
 
     var DataPlotterController = function ($scope, $stateParams, $state, $q, $translate, ChannelsService, notify, ChannelDataService) {
 
@@ -194,13 +196,18 @@
                         };
                     });
                 } else {
-                    return ChannelsService.getHistoryValues(channel.id, $scope.startDate.getTime(), $scope.endDate.getTime()).then(function (response) {
+                    // one averaged point per MAX_PLOT_POINTS-th of the range, raw values if they are fewer
+                    var resolution = Math.floor(($scope.endDate.getTime() - $scope.startDate.getTime()) / MAX_PLOT_POINTS);
+                    if (channel.loggingInterval > 0 && resolution <= channel.loggingInterval) {
+                        resolution = 0;
+                    }
+                    return ChannelsService.getHistoryValues(channel.id, $scope.startDate.getTime(), $scope.endDate.getTime(), resolution).then(function (response) {
                         return {
                             key: channel.label,
                             values: response,
                             color: channel.color,
                             unit: channel.unit,
-                            loggingInterval: channel.loggingInterval
+                            loggingInterval: resolution > 0 ? resolution : channel.loggingInterval
                         };
                     });
                 }